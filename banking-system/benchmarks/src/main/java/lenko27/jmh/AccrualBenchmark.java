@@ -0,0 +1,85 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.CreditAccount;
+import lenko27.entities.accounts.DebitAccount;
+import lenko27.entities.accounts.DepositAccount;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.banks.StorageMode;
+import lenko27.entities.client.Client;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.service.ComplexInterestRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of Bank.interestAccrual in both storage modes.
+ * The bank holds a mix of debit, deposit and credit accounts; every call accrues interest on all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AccrualBenchmark {
+
+    /**
+     * Number of accounts of the bank.
+     */
+    @Param({"1000000"})
+    public int accounts;
+
+    /**
+     * The way the bank stores the balances of its accounts.
+     */
+    @Param({"OBJECT", "COLUMNAR"})
+    public StorageMode storageMode;
+
+    /**
+     * The bank.
+     */
+    private Bank bank;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BankingOperationsException {
+        List<ComplexInterestRate> depositInterest = List.of(
+                new ComplexInterestRate(0, 0.01),
+                new ComplexInterestRate(1_000, 0.02),
+                new ComplexInterestRate(10_000, 0.03));
+        Client client = Client.builder("Bench", "Mark").address("Street").passportData("00 00 000000").build();
+        bank = CentralBank.getInstance().createBank(0.001, depositInterest, 1000, 0.002, 0, storageMode);
+        Account[] templates = {
+                new DebitAccount(UUID.randomUUID(), bank, client),
+                new DepositAccount(UUID.randomUUID(), bank, client),
+                new CreditAccount(UUID.randomUUID(), bank, client)};
+        for (int i = 0; i < accounts; ++i) {
+            Account account = bank.createAccount(templates[i % templates.length], client);
+            if (i % 3 == 2) {
+                account.withdraw(1 + i % 500, false);
+            } else {
+                account.refill(1 + i % 20_000, false);
+            }
+        }
+    }
+
+    @Benchmark
+    public void interestAccrual() throws BankingOperationsException {
+        bank.interestAccrual();
+    }
+}
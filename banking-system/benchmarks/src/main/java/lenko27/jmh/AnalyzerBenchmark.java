@@ -0,0 +1,70 @@
+package lenko27.jmh;
+
+import lenko27.service.Analyzers.CreditAnalyzer;
+import lenko27.service.Analyzers.DebitAnalyzer;
+import lenko27.service.Analyzers.DepositAnalyzer;
+import lenko27.service.ComplexInterestRate;
+import lenko27.service.DepositTierTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the projections of the three analyzers over a varying horizon.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyzerBenchmark {
+
+    /**
+     * Horizon of the projection.
+     */
+    @Param({"12", "360", "3600"})
+    public int time;
+
+    /**
+     * Balance the projection starts from.
+     */
+    public double balance = 75_000;
+
+    /**
+     * Tiers of the deposit interest.
+     */
+    private DepositTierTable depositTiers;
+
+    @Setup
+    public void setUp() {
+        depositTiers = new DepositTierTable(List.of(new ComplexInterestRate(0, 0.03),
+                new ComplexInterestRate(50_000, 0.05), new ComplexInterestRate(100_000, 0.07)));
+    }
+
+    @Benchmark
+    public double debit() {
+        return new DebitAnalyzer(time, balance, 0.1).calculate();
+    }
+
+    @Benchmark
+    public double deposit() {
+        return new DepositAnalyzer(time, balance, depositTiers, 12).calculate();
+    }
+
+    @Benchmark
+    public double credit() {
+        return new CreditAnalyzer(time, -balance, 100_000, 0.2).calculate();
+    }
+}
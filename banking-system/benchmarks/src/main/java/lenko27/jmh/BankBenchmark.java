@@ -0,0 +1,81 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.CreditAccount;
+import lenko27.entities.accounts.DebitAccount;
+import lenko27.entities.accounts.DepositAccount;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.service.ComplexInterestRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the bank-wide operations: interest accrual over all accounts and account creation.
+ * The bank is recreated every iteration, so accrual histories and account lists do not grow across iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankBenchmark {
+
+    /**
+     * Number of accounts of the bank, a third of each type.
+     */
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    /**
+     * The bank.
+     */
+    private Bank bank;
+
+    /**
+     * Owner of the accounts.
+     */
+    private Client client;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws BankingOperationsException {
+        bank = CentralBank.getInstance().createBank(0.1,
+                List.of(new ComplexInterestRate(0, 0.03), new ComplexInterestRate(50_000, 0.05)), 1000, 0.2, 0);
+        client = Client.builder("Bench", "Mark").address("Street").passportData("00 00 000000").build();
+        for (int i = 0; i < accounts; ++i) {
+            Account account = switch (i % 3) {
+                case 0 -> new DebitAccount(UUID.randomUUID(), bank, client);
+                case 1 -> new DepositAccount(UUID.randomUUID(), bank, client);
+                default -> new CreditAccount(UUID.randomUUID(), bank, client);
+            };
+            bank.createAccount(account, client).refill(1 + i % 100_000, false);
+        }
+    }
+
+    @Benchmark
+    public void interestAccrual() throws BankingOperationsException {
+        bank.interestAccrual();
+    }
+
+    @Benchmark
+    public Account createAccount() throws BankingOperationsException {
+        return bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+    }
+}
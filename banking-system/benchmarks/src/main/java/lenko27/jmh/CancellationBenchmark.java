@@ -0,0 +1,76 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.transactions.Transaction;
+import lenko27.exceptions.BankingOperationsException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of Account.cancellingTransaction on accounts with long histories.
+ * Every invocation cancels the next live entry of a ring spread over the whole history and puts the
+ * compensating withdrawal it posted in its place, so no invocation hits an entry that is already cancelled.
+ * Reading the compensating entry back allocates one transaction per invocation.
+ * The account is rebuilt every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CancellationBenchmark {
+
+    /**
+     * Number of entries in the history of the account.
+     */
+    @Param({"1000", "100000"})
+    public int history;
+
+    /**
+     * The account.
+     */
+    private Account account;
+
+    /**
+     * The live transactions the next cancellations are taken from.
+     */
+    private Transaction[] transactions;
+
+    /**
+     * Position of the next transaction to be cancelled.
+     */
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws BankingOperationsException {
+        account = TransferBenchmark.createAccounts(1)[0];
+        transactions = new Transaction[history];
+        for (int i = 0; i < history; ++i) {
+            account.refill(1, true);
+            transactions[i] = account.getTransactions().get(i);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public void cancellingTransaction() {
+        account.cancellingTransaction(account, transactions[next]);
+        List<Transaction> entries = account.getTransactions();
+        transactions[next] = entries.get(entries.size() - 1);
+        next = next + 1 == history ? 0 : next + 1;
+    }
+}
@@ -0,0 +1,134 @@
+package lenko27.jmh;
+
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.service.ComplexInterestRate;
+import lenko27.service.clearing.ClearingHouse;
+import lenko27.service.clearing.SettlementReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the clearing of cross-bank transfers.
+ * recordOneThread and recordAllThreads record transfers between random banks, as CentralBank.doTransfer does
+ * after posting the accounts; settle closes a cycle holding the given number of such transfers.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClearingBenchmark {
+
+    /**
+     * The banks and the clearing house recording their transfers.
+     */
+    @State(Scope.Benchmark)
+    public static class Banks {
+
+        /**
+         * Number of banks.
+         */
+        @Param({"1000"})
+        public int banks;
+
+        /**
+         * Number of transfers recorded in the cycle closed by settle.
+         */
+        @Param({"1000000"})
+        public int transfers;
+
+        /**
+         * The banks.
+         */
+        public Bank[] bankArray;
+
+        /**
+         * The clearing house.
+         */
+        public ClearingHouse clearingHouse;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            CentralBank centralBank = CentralBank.getInstance();
+            bankArray = new Bank[banks];
+            for (int i = 0; i < banks; ++i) {
+                bankArray[i] = centralBank.createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0);
+            }
+            clearingHouse = centralBank.startClearing();
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeCycle() {
+            clearingHouse.closeCycle();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            CentralBank.getInstance().stopClearing();
+        }
+    }
+
+    /**
+     * A cycle filled with transfers before every call of settle.
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+
+        @Setup(Level.Invocation)
+        public void setUp(Banks banks) {
+            for (int i = 0; i < banks.transfers; ++i) {
+                recordRandomly(banks);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(1)
+    public void recordOneThread(Banks banks) {
+        recordRandomly(banks);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(Threads.MAX)
+    public void recordAllThreads(Banks banks) {
+        recordRandomly(banks);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SettlementReport settle(Banks banks, Filled filled) {
+        return banks.clearingHouse.closeCycle();
+    }
+
+    /**
+     * Method to record a transfer of a random sum between two random banks.
+     *
+     * @param banks The banks.
+     */
+    private static void recordRandomly(Banks banks) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Bank payer = banks.bankArray[random.nextInt(banks.bankArray.length)];
+        Bank payee = banks.bankArray[random.nextInt(banks.bankArray.length)];
+        banks.clearingHouse.record(payer, payee, 1 + random.nextInt(1000));
+    }
+}
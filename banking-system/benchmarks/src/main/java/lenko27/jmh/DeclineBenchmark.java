@@ -0,0 +1,105 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.exceptions.InsufficientFundsException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of a transfer workload in which 30% of the transfers are declined for insufficient funds,
+ * comparing doTransfer with fresh exceptions, doTransfer with stackless preallocated exceptions and tryTransfer.
+ * The declined transfers follow a fixed pseudo-random pattern, the same for every mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeclineBenchmark {
+
+    /**
+     * Share of declined transfers, in percent.
+     */
+    private static final int DECLINED_PERCENT = 30;
+
+    /**
+     * Length of the pattern of declined transfers, a power of two.
+     */
+    private static final int PATTERN_LENGTH = 1024;
+
+    /**
+     * Sum no account can afford.
+     */
+    private static final double UNAFFORDABLE = 1e15;
+
+    /**
+     * How transfers report rejections: exceptions, stackless or status.
+     */
+    @Param({"exceptions", "stackless", "status"})
+    public String mode;
+
+    /**
+     * Two funded accounts of one bank.
+     */
+    private Account[] accounts;
+
+    /**
+     * Sum of every transfer of the pattern, UNAFFORDABLE for the declined ones.
+     */
+    private final double[] sums = new double[PATTERN_LENGTH];
+
+    /**
+     * Number of transfers made so far.
+     */
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws BankingOperationsException {
+        BankingOperationsException.setStackless(mode.equals("stackless"));
+        accounts = TransferBenchmark.createAccounts(2);
+        Random random = new Random(42);
+        for (int i = 0; i < PATTERN_LENGTH; ++i) {
+            sums[i] = random.nextInt(100) < DECLINED_PERCENT ? UNAFFORDABLE : 1;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        BankingOperationsException.setStackless(false);
+    }
+
+    @Benchmark
+    public boolean transfer() throws BankingOperationsException {
+        int transfer = next++;
+        Account sender = accounts[transfer & 1];
+        Account accepter = accounts[(transfer & 1) ^ 1];
+        double sum = sums[transfer & (PATTERN_LENGTH - 1)];
+        if (mode.equals("status")) {
+            return CentralBank.getInstance().tryTransfer(sender, accepter, sum) == OperationStatus.COMPLETED;
+        }
+        try {
+            CentralBank.getInstance().doTransfer(sender, accepter, sum);
+            return true;
+        } catch (InsufficientFundsException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.CentralBank;
+import lenko27.service.http.BankingHttpServer;
+import lenko27.service.metrics.HistogramSnapshot;
+import lenko27.service.metrics.LatencyHistogram;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the HTTP front end on the local machine.
+ * Starts the server in process and runs every simulated client on its own virtual thread. The clients share
+ * one HTTP/1.1 client, which keeps a connection per request in flight, so every simulated client holds
+ * its own connection. Every client sends requests back to back for the given time: 70% transfers between random
+ * accounts, 20% balance reads and 10% refills. Reports the throughput and the p50, p99 and p99.9 latencies
+ * of the requests, measured from sending the request to receiving the whole response. Requests of the
+ * warm-up, which lets the JIT compile both ends, are sent but not measured.
+ * Usage: java -cp benchmarks.jar lenko27.jmh.HttpLoadTest [clients] [seconds] [warm-up seconds] [accounts]
+ * Tens of thousands of clients need a matching limit of open files for both ends of the connections.
+ */
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int warmup = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int accountCount = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+        Account[] accounts = TransferBenchmark.createAccounts(accountCount);
+        LatencyHistogram latencies = new LatencyHistogram(64);
+        LongAdder errors = new LongAdder();
+
+        try (BankingHttpServer server = new BankingHttpServer(CentralBank.getInstance(),
+                new InetSocketAddress("127.0.0.1", 0), BankingHttpServer.DEFAULT_BACKLOG);
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.getPort();
+            long begin = System.nanoTime() + warmup * 1_000_000_000L;
+            long end = begin + seconds * 1_000_000_000L;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < clients; ++i) {
+                    executor.submit(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        while (System.nanoTime() < end) {
+                            HttpRequest request = next(base, accounts, random);
+                            long start = System.nanoTime();
+                            boolean failed;
+                            try {
+                                failed = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 500;
+                            } catch (Exception e) {
+                                failed = true;
+                            }
+                            if (start >= begin) {
+                                latencies.record(System.nanoTime() - start);
+                                if (failed) {
+                                    errors.increment();
+                                }
+                            }
+                        }
+                    });
+                }
+            }
+            double elapsed = (System.nanoTime() - begin) / 1e9;
+            HistogramSnapshot snapshot = latencies.snapshot();
+            System.out.printf("clients=%d requests=%d errors=%d throughput=%.0f req/s%n",
+                    clients, snapshot.getCount(), errors.sum(), snapshot.getCount() / elapsed);
+            System.out.printf("p50=%.3f ms p99=%.3f ms p99.9=%.3f ms max=%.3f ms%n",
+                    snapshot.getValueAtPercentile(50) / 1e6, snapshot.getValueAtPercentile(99) / 1e6,
+                    snapshot.getValueAtPercentile(99.9) / 1e6, snapshot.getMax() / 1e6);
+        }
+    }
+
+    /**
+     * Method to pick the next request of a simulated client.
+     *
+     * @param base The address of the server.
+     * @param accounts The funded accounts.
+     * @param random The random source of the client.
+     * @return The request.
+     */
+    private static HttpRequest next(String base, Account[] accounts, ThreadLocalRandom random) {
+        int kind = random.nextInt(10);
+        Account account = accounts[random.nextInt(accounts.length)];
+        if (kind < 7) {
+            Account accepter = accounts[random.nextInt(accounts.length)];
+            return post(base + "/transfers?from=" + account.getId() + "&to=" + accepter.getId() + "&sum=1");
+        }
+        if (kind < 9) {
+            return HttpRequest.newBuilder(URI.create(base + "/accounts/" + account.getId())).GET().build();
+        }
+        return post(base + "/accounts/" + account.getId() + "/refill?sum=1");
+    }
+
+    /**
+     * Method to build a POST request without a body.
+     *
+     * @param uri The address of the request.
+     * @return The request.
+     */
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+}
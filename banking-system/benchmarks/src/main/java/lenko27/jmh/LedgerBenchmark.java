@@ -0,0 +1,70 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.exceptions.BankingOperationsException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of transfers applied under account locks by the calling threads against transfers applied
+ * by the shards of the sharded ledger. Four threads transfer between random accounts of a small set, so
+ * locks are contended and most ledger transfers cross shards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerBenchmark {
+
+    /**
+     * Number of shards of the ledger, or 0 to apply transfers under account locks.
+     */
+    @Param({"0", "4"})
+    public int shards;
+
+    /**
+     * The funded accounts.
+     */
+    private Account[] accounts;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws BankingOperationsException {
+        accounts = TransferBenchmark.createAccounts(16);
+        if (shards > 0) {
+            CentralBank.getInstance().startLedger(shards);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        CentralBank.getInstance().stopLedger();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OperationStatus transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts.length);
+        int to = (from + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+        return CentralBank.getInstance().tryTransfer(accounts[from], accounts[to], 1);
+    }
+}
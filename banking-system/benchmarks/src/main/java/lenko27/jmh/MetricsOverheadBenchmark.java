@@ -0,0 +1,94 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.CentralBank;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.service.metrics.BankingMetrics;
+import lenko27.service.metrics.Operation;
+import lenko27.service.metrics.OperationRecorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the cost of recording operation metrics on an uncontended CentralBank.doTransfer
+ * and a logged refill, with recording off and on. The record benchmark measures the recording alone,
+ * which is easier to compare with the cost of an operation than two noisy throughputs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsOverheadBenchmark {
+
+    /**
+     * Whether operation metrics are recorded.
+     */
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    /**
+     * Number of calls of a frequent operation per timed call.
+     */
+    @Param({"16"})
+    public int sampleRate;
+
+    /**
+     * Two funded accounts of one bank.
+     */
+    private Account[] accounts;
+
+    /**
+     * Recorder of a frequent operation, not shared with the transfers.
+     */
+    private final OperationRecorder recorder = new OperationRecorder(Operation.TRANSFER);
+
+    /**
+     * Direction of the next transfer.
+     */
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws BankingOperationsException {
+        BankingMetrics.setEnabled(enabled);
+        BankingMetrics.setSampleRate(sampleRate);
+        accounts = TransferBenchmark.createAccounts(2);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        BankingMetrics.setEnabled(true);
+        BankingMetrics.setSampleRate(BankingMetrics.DEFAULT_SAMPLE_RATE);
+    }
+
+    @Benchmark
+    public void transfer() throws BankingOperationsException {
+        int from = next;
+        next ^= 1;
+        CentralBank.getInstance().doTransfer(accounts[from], accounts[from ^ 1], 1);
+    }
+
+    @Benchmark
+    public void record() {
+        recorder.success(recorder.start());
+    }
+
+    @Benchmark
+    public void refill() throws BankingOperationsException {
+        accounts[0].refill(1, true);
+    }
+}
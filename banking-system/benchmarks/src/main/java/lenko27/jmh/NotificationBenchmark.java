@@ -0,0 +1,57 @@
+package lenko27.jmh;
+
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.service.ComplexInterestRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of Bank.notifySubscribers with the default synchronous dispatcher at varying subscriber counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NotificationBenchmark {
+
+    /**
+     * Number of clients subscribed to the bank.
+     */
+    @Param({"10", "1000", "100000"})
+    public int subscribers;
+
+    /**
+     * The bank.
+     */
+    private Bank bank;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        bank = CentralBank.getInstance().createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0);
+        for (int i = 0; i < subscribers; ++i) {
+            bank.subscribe(Client.builder("Bench", "Mark").build());
+        }
+    }
+
+    @Benchmark
+    public void notifySubscribers() {
+        bank.notifySubscribers("Dear customer, the conditions of the bank have been changed.");
+    }
+}
@@ -0,0 +1,124 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.DebitAccount;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.banks.StorageMode;
+import lenko27.entities.client.Client;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.persistence.Durability;
+import lenko27.persistence.RecoveryReport;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.service.ComplexInterestRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the restart time: a snapshot of the accounts spread over several banks is taken once,
+ * a tail of refills is logged after it, and every call rebuilds the state with CentralBank.recover.
+ * 10M accounts need a heap of about 8 GB (-jvmArgsAppend -Xmx8g).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    /**
+     * Number of accounts in the snapshot.
+     */
+    @Param({"1000000"})
+    public int accounts;
+
+    /**
+     * Number of banks holding the accounts.
+     */
+    @Param({"4"})
+    public int banks;
+
+    /**
+     * Number of refills logged after the snapshot.
+     */
+    @Param({"100000"})
+    public int tail;
+
+    /**
+     * The way the banks store the balances of their accounts.
+     */
+    @Param({"COLUMNAR"})
+    public StorageMode storageMode;
+
+    /**
+     * Directory of the write-ahead log.
+     */
+    private Path logDirectory;
+
+    /**
+     * Directory of the snapshots.
+     */
+    private Path snapshotDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BankingOperationsException, IOException {
+        CentralBank centralBank = CentralBank.getInstance();
+        Account[] accountArray = new Account[accounts];
+        Client client = null;
+        int created = 0;
+        for (int b = 0; b < banks; ++b) {
+            Bank bank = centralBank.createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0, storageMode);
+            for (int i = b; i < accounts; i += banks) {
+                if (i % 100 == b) {
+                    client = Client.builder("Bench", "Mark").address("Street").passportData("00 00 000000").build();
+                }
+                Account account = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+                account.refill(1_000, false);
+                accountArray[created++] = account;
+            }
+        }
+        logDirectory = Files.createTempDirectory("recovery-benchmark-wal");
+        snapshotDirectory = Files.createTempDirectory("recovery-benchmark-snapshots");
+        try (WriteAheadLog writeAheadLog = WriteAheadLog.open(logDirectory, Durability.ASYNC)) {
+            centralBank.attachWriteAheadLog(writeAheadLog);
+            centralBank.takeSnapshot(snapshotDirectory);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < tail; ++i) {
+                accountArray[random.nextInt(accountArray.length)].refill(1, true);
+            }
+        } finally {
+            centralBank.attachWriteAheadLog(null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        WalBenchmark.deleteDirectory(logDirectory);
+        WalBenchmark.deleteDirectory(snapshotDirectory);
+    }
+
+    @Benchmark
+    public RecoveryReport recover() throws IOException {
+        return CentralBank.getInstance().recover(snapshotDirectory, logDirectory);
+    }
+}
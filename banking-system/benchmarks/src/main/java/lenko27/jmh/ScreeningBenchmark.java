@@ -0,0 +1,135 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.service.screening.SanctionsListRule;
+import lenko27.service.screening.WatchlistRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of screening against a watchlist loaded from a file.
+ * Compares checking clean clients against the Bloom filter of a WatchlistRule and against the exact set
+ * of a SanctionsListRule holding the same entries, and measures what screening adds to a transfer once
+ * the verdicts of both parties are cached: the two checks alone and a whole transfer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+@State(Scope.Thread)
+public class ScreeningBenchmark {
+
+    /**
+     * Number of clean clients checked in turn, a power of two.
+     */
+    private static final int CLIENTS = 1024;
+
+    /**
+     * Number of entries on the watchlist, half full names and half passport numbers.
+     */
+    @Param({"1000000"})
+    public int entries;
+
+    /**
+     * The watchlist, part of the screening pipeline of the central bank during the benchmark.
+     */
+    private WatchlistRule watchlist;
+
+    /**
+     * The same entries without a filter.
+     */
+    private SanctionsListRule exact;
+
+    /**
+     * Clients on none of the lists.
+     */
+    private final Client[] clean = new Client[CLIENTS];
+
+    /**
+     * Two funded accounts of one clean client.
+     */
+    private Account[] accounts;
+
+    /**
+     * Number of operations made so far.
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, BankingOperationsException {
+        Path file = Files.createTempFile("watchlist", ".txt");
+        List<String> lines = new ArrayList<>(entries);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < entries; ++i) {
+                String line = (i & 1) == 0 ? "Watched" + i + " Person" + i : String.format("%010d", i);
+                lines.add(line);
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        long start = System.nanoTime();
+        watchlist = WatchlistRule.load(file);
+        System.out.printf("%nLoaded %d entries in %d ms, filter of %d bits with %d hashes%n", watchlist.size(),
+                (System.nanoTime() - start) / 1_000_000, watchlist.getFilter().bitSize(),
+                watchlist.getFilter().hashCount());
+        Files.delete(file);
+        exact = new SanctionsListRule(lines);
+        for (int i = 0; i < CLIENTS; ++i) {
+            clean[i] = Client.builder("Clean" + i, "Client" + i).address("Street")
+                    .passportData(String.format("%010d", entries + i)).build();
+        }
+        CentralBank.getInstance().getScreening().addRule(watchlist);
+        accounts = TransferBenchmark.createAccounts(2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CentralBank.getInstance().getScreening().removeRule(watchlist);
+    }
+
+    @Benchmark
+    public boolean watchlistCheck() {
+        return watchlist.flags(clean[next++ & (CLIENTS - 1)]);
+    }
+
+    @Benchmark
+    public boolean exactSetCheck() {
+        return exact.flags(clean[next++ & (CLIENTS - 1)]);
+    }
+
+    @Benchmark
+    public boolean cachedTransferScreening() {
+        return accounts[0].getClient().isSuspicious() || accounts[1].getClient().isSuspicious();
+    }
+
+    @Benchmark
+    public OperationStatus transfer() {
+        int transfer = next++;
+        return CentralBank.getInstance().tryTransfer(accounts[transfer & 1], accounts[(transfer & 1) ^ 1], 1);
+    }
+}
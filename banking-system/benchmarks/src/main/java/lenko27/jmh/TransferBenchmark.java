@@ -0,0 +1,136 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.DebitAccount;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.service.ComplexInterestRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of CentralBank.doTransfer.
+ * The uncontended case gives every thread its own accounts; the contended cases let all threads transfer
+ * between the same accounts, fewer accounts meaning more contention, with two, eight and as many threads as
+ * there are processors. Accounts are recreated every iteration, so the journals do not grow across iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferBenchmark {
+
+    /**
+     * Accounts shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        /**
+         * Number of accounts the threads transfer between.
+         */
+        @Param({"2", "1000"})
+        public int accounts;
+
+        /**
+         * The accounts.
+         */
+        public Account[] accountArray;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws BankingOperationsException {
+            accountArray = createAccounts(accounts);
+        }
+    }
+
+    /**
+     * Accounts owned by one thread.
+     */
+    @State(Scope.Thread)
+    public static class Own {
+
+        /**
+         * The accounts.
+         */
+        public Account[] accountArray;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws BankingOperationsException {
+            accountArray = createAccounts(2);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void uncontended(Own own) throws BankingOperationsException {
+        transferRandomly(own.accountArray);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void contendedTwoThreads(Shared shared) throws BankingOperationsException {
+        transferRandomly(shared.accountArray);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void contendedEightThreads(Shared shared) throws BankingOperationsException {
+        transferRandomly(shared.accountArray);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void contendedAllThreads(Shared shared) throws BankingOperationsException {
+        transferRandomly(shared.accountArray);
+    }
+
+    /**
+     * Method to transfer one unit between two different random accounts.
+     *
+     * @param accounts The accounts.
+     * @throws BankingOperationsException If the transfer is rejected.
+     */
+    private static void transferRandomly(Account[] accounts) throws BankingOperationsException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts.length);
+        int to = (from + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+        CentralBank.getInstance().doTransfer(accounts[from], accounts[to], 1);
+    }
+
+    /**
+     * Method to create funded accounts in a new bank.
+     *
+     * @param count The number of accounts.
+     * @return The accounts.
+     * @throws BankingOperationsException If an account can not be funded.
+     */
+    static Account[] createAccounts(int count) throws BankingOperationsException {
+        Bank bank = CentralBank.getInstance().createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0);
+        Client client = Client.builder("Bench", "Mark").address("Street").passportData("00 00 000000").build();
+        Account[] accounts = new Account[count];
+        for (int i = 0; i < count; ++i) {
+            accounts[i] = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+            accounts[i].refill(1_000_000_000, false);
+        }
+        return accounts;
+    }
+}
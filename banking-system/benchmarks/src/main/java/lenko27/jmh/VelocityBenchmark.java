@@ -0,0 +1,71 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.service.velocity.VelocityLimit;
+import lenko27.service.velocity.VelocityPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the velocity check on CentralBank.tryTransfer.
+ * Compares transfers of a bank without velocity rules with transfers of a bank limiting every account
+ * and every client, with limits high enough that no transfer is declined. The contended case lets all
+ * threads send from the same hot account, so they share its counters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VelocityBenchmark {
+
+    /**
+     * Whether the bank of the accounts has velocity rules.
+     */
+    @Param({"false", "true"})
+    public boolean limited;
+
+    /**
+     * Two funded accounts of one client, sending to each other.
+     */
+    private Account[] accounts;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws BankingOperationsException {
+        accounts = TransferBenchmark.createAccounts(2);
+        if (limited) {
+            VelocityLimit limit = new VelocityLimit(Integer.MAX_VALUE, VelocityLimit.MAX_AMOUNT, Duration.ofMinutes(1));
+            accounts[0].getBank().setVelocityPolicy(new VelocityPolicy(limit, limit));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public OperationStatus uncontended() {
+        return CentralBank.getInstance().tryTransfer(accounts[0], accounts[1], 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OperationStatus hotAccount() {
+        return CentralBank.getInstance().tryTransfer(accounts[0], accounts[1], 1);
+    }
+}
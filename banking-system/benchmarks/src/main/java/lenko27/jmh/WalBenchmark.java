@@ -0,0 +1,134 @@
+package lenko27.jmh;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.DebitAccount;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.exceptions.BankingOperationsException;
+import lenko27.persistence.Durability;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.service.ComplexInterestRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark of logged refills without a write-ahead log and with every durability mode.
+ * Every thread refills its own account, so the numbers show the cost of the log rather than lock contention.
+ * The log and the accounts are recreated every iteration, so neither grows across iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalBenchmark {
+
+    /**
+     * The write-ahead log shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Log {
+
+        /**
+         * Durability of the log, or NONE to refill without a log.
+         */
+        @Param({"NONE", "ASYNC", "GROUP", "SYNC"})
+        public String durability;
+
+        /**
+         * Directory of the log, null without a log.
+         */
+        private Path directory;
+
+        /**
+         * The log, null without a log.
+         */
+        private WriteAheadLog writeAheadLog;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            if (!durability.equals("NONE")) {
+                directory = Files.createTempDirectory("wal-benchmark");
+                writeAheadLog = WriteAheadLog.open(directory, Durability.valueOf(durability));
+                CentralBank.getInstance().attachWriteAheadLog(writeAheadLog);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            if (writeAheadLog != null) {
+                CentralBank.getInstance().attachWriteAheadLog(null);
+                writeAheadLog.close();
+                deleteDirectory(directory);
+                writeAheadLog = null;
+            }
+        }
+    }
+
+    /**
+     * The account refilled by one thread.
+     */
+    @State(Scope.Thread)
+    public static class Own {
+
+        /**
+         * The account.
+         */
+        public Account account;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws BankingOperationsException {
+            Bank bank = CentralBank.getInstance().createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0);
+            Client client = Client.builder("Bench", "Mark").address("Street").passportData("00 00 000000").build();
+            account = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void refillOneThread(Log log, Own own) throws BankingOperationsException {
+        own.account.refill(1, true);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void refillAllThreads(Log log, Own own) throws BankingOperationsException {
+        own.account.refill(1, true);
+    }
+
+    /**
+     * Method to delete a directory and everything in it.
+     *
+     * @param directory The directory.
+     * @throws IOException If a file can not be deleted.
+     */
+    static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
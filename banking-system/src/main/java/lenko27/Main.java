@@ -1,21 +1,22 @@
 package lenko27;
 
-import lenko27.entities.client.Client;
+import lenko27.entities.banks.CentralBank;
+import lenko27.service.http.BankingHttpServer;
 
-public class Main {
-    public static void main(String[] args) {
-        /*Client cliet = new Client("AS","jkj");
-        System.out.println(cliet.isSuspicious());
-        cliet.setPassportData("sdf");
-        System.out.println(cliet.isSuspicious());*/
-        //CentralBank cbank = new CentralBank();
-        //cbank.createBank(1,2,2,2, 5);
-        Client client = Client.builder("John", "Doe")
-                .address("123 Street")
-                .passportData("ABCD1234")
-                //.messages("nk")
-                .build();
-        //System.out.println(client.getId());
+import java.io.IOException;
+import java.net.InetSocketAddress;
 
+/**
+ * Entry point running the central bank as a service behind its HTTP front end.
+ * Usage: java lenko27.Main [port] [backlog]
+ */
+public class Main {
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int backlog = args.length > 1 ? Integer.parseInt(args[1]) : BankingHttpServer.DEFAULT_BACKLOG;
+        BankingHttpServer server = new BankingHttpServer(CentralBank.getInstance(), new InetSocketAddress(port), backlog);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Banking API listening on port " + server.getPort());
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,26 @@
 package lenko27.entities.accounts;
 
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
 import lenko27.entities.client.Client;
 import lenko27.exceptions.InsufficientFundsException;
 import lenko27.exceptions.UnauthorizedTransactionException;
 import lenko27.exceptions.WithdrawalBeforeTermException;
+import lenko27.entities.transactions.OperationStatus;
 import lenko27.entities.transactions.Transaction;
+import lenko27.entities.transactions.TransactionJournal;
 import lenko27.entities.transactions.TransactionType;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.service.ledger.ShardedLedger;
+import lenko27.service.events.CancellationEvent;
+import lenko27.service.metrics.Operation;
+import lenko27.service.metrics.OperationRecorder;
 import lombok.SneakyThrows;
 
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This is the abstract Account class for the banking accounts.
@@ -16,17 +28,203 @@ import java.util.List;
  */
 public abstract class Account {
 
+    /**
+     * Get the unique identifier of the account.
+     * Identifiers also define the order in which accounts are locked by transfers.
+     * @return the identifier of the account.
+     */
+    abstract public UUID getId();
+
+    /**
+     * Get the bank the account belongs to.
+     * @return the bank of the account.
+     */
+    abstract public Bank getBank();
+
+    /**
+     * Current balance of the account while it is not bound to an account store, unused once it is.
+     * Changed only while holding the account monitor, read without it.
+     */
+    private volatile double balance;
+
+    /**
+     * Journal holding the transactions of the account, null until the first entry or read,
+     * so accounts without history carry no journal.
+     */
+    private volatile TransactionJournal journal;
+
+    /**
+     * Columnar store holding the balance of the account, null for object storage.
+     */
+    private AccountStore store;
+
+    /**
+     * Slot of the account in its store, -1 for object storage.
+     */
+    private int slot = -1;
+
+    /**
+     * Log sequence number of the last write-ahead log record that changed the balance, 0 if there is none.
+     * Changed only while holding the account monitor.
+     */
+    private long lastLsn;
+
     /**
      * Get the balance of the account.
      * @return the balance of the account.
      */
-    abstract public double getBalance();
+    public double getBalance() {
+        return store == null ? balance : store.getBalance(slot);
+    }
+
+    /**
+     * Set the balance of the account.
+     * Must be called while holding the account monitor.
+     * @param balance the new balance of the account.
+     */
+    protected void setBalance(double balance) {
+        if (store == null) {
+            this.balance = balance;
+        } else {
+            store.setBalance(slot, balance);
+        }
+    }
+
+    /**
+     * Get the slot of the account in its account store.
+     * @return the slot of the account, or -1 if the account keeps its balance itself.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Turn the account into a handle to a slot of an account store.
+     * The current balance is moved into the store.
+     * @param store the store that will hold the balance.
+     * @param slot the slot of the account in the store.
+     */
+    synchronized void bind(AccountStore store, int slot) {
+        store.setBalance(slot, balance);
+        this.slot = slot;
+        this.store = store;
+    }
+
+    /**
+     * Get the log sequence number of the last write-ahead log record that changed the balance.
+     * Snapshots store it with the balance, so that recovery replays only the records that came later.
+     * @return the log sequence number, or 0 if no record changed the balance.
+     */
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Set the log sequence number of the last write-ahead log record that changed the balance.
+     * Must be called while holding the account monitor, together with the change the record describes.
+     * @param lastLsn the log sequence number of the record.
+     */
+    public synchronized void setLastLsn(long lastLsn) {
+        this.lastLsn = lastLsn;
+    }
+
+    /**
+     * Restore the balance of the account from a snapshot.
+     * Nothing is logged and no client checks are made.
+     * @param balance the balance stored in the snapshot.
+     * @param lastLsn the log sequence number stored with the balance.
+     */
+    public synchronized void restoreState(double balance, long lastLsn) {
+        setBalance(balance);
+        this.lastLsn = lastLsn;
+    }
+
+    /**
+     * Replay a balance change read from the write-ahead log during recovery.
+     * Changes already contained in the restored state are skipped.
+     * @param lsn the log sequence number of the record.
+     * @param type the type of the transaction.
+     * @param sum the amount involved in the transaction.
+     * @return true if the change was applied, false if it was already contained in the state.
+     */
+    public synchronized boolean replay(long lsn, TransactionType type, double sum) {
+        if (lsn <= lastLsn) {
+            return false;
+        }
+        journal().append(type, sum);
+        boolean credited = type == TransactionType.REFILL || type == TransactionType.TRANSFERACCEPTER;
+        setBalance(credited ? getBalance() + sum : getBalance() - sum);
+        lastLsn = lsn;
+        return true;
+    }
+
+    /**
+     * Replay the cancellation of a journal entry read from the write-ahead log during recovery.
+     * Cancellations already contained in the restored state are skipped, and so are entries whose type or sum
+     * differ from the logged ones. The balance is not changed: the compensating entry is replayed on its own.
+     * @param lsn the log sequence number of the record.
+     * @param position the position of the cancelled entry in the journal.
+     * @param type the type of the cancelled entry.
+     * @param sum the amount of the cancelled entry.
+     * @return true if the entry was marked as cancelled, false otherwise.
+     */
+    public synchronized boolean replayCancel(long lsn, int position, TransactionType type, double sum) {
+        if (lsn <= lastLsn) {
+            return false;
+        }
+        lastLsn = lsn;
+        TransactionJournal current = journal();
+        return position < current.size() && current.getType(position) == type && current.getSum(position) == sum
+                && current.cancel(position);
+    }
+
+    /**
+     * Get the type of the account.
+     * @return the type of the account.
+     */
+    abstract public AccountType getType();
 
     /**
      * Get the list of transactions associated with the account.
+     * The list is a view over the journal of the account.
      * @return the list of transactions.
      */
-    abstract public List<Transaction> getTransactions();
+    public List<Transaction> getTransactions() {
+        return journal().view();
+    }
+
+    /**
+     * Get the journal holding the transactions of the account.
+     * @return the journal of the account.
+     */
+    public TransactionJournal getJournal() {
+        return journal();
+    }
+
+    /**
+     * Get the journal of the account without creating it.
+     * @return the journal of the account, or null if the account has no history yet.
+     */
+    public TransactionJournal getJournalIfPresent() {
+        return journal;
+    }
+
+    /**
+     * Get the journal of the account, creating it on first use.
+     * @return the journal of the account.
+     */
+    private TransactionJournal journal() {
+        TransactionJournal current = journal;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (journal == null) {
+                journal = new TransactionJournal();
+            }
+            return journal;
+        }
+    }
 
     /**
      * Get the client associated with the account.
@@ -36,49 +234,460 @@ public abstract class Account {
 
     /**
      * Log the operation.
+     * Refills and withdrawals are also appended to the write-ahead log, if there is one; refill and withdraw
+     * wait for the entry to become as durable as the log promises only after releasing the account monitor.
+     * Transfer legs are logged by the transfer engine.
      * @param type the type of transaction.
      * @param sum the amount involved in the transaction.
      */
-    abstract public void operationLogging(TransactionType type, double sum);
+    public synchronized void operationLogging(TransactionType type, double sum) {
+        journal().append(type, sum);
+        if (type == TransactionType.REFILL || type == TransactionType.WITHDRAW) {
+            WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+            if (writeAheadLog != null) {
+                lastLsn = writeAheadLog.appendEntry(getId(), type, sum);
+            }
+        }
+    }
+
+    /**
+     * Wait until the last write-ahead log record that changed the balance is durable, if there is a log.
+     * Nothing is done while the account monitor is held, so nobody waits for the disk with it;
+     * whoever holds it commits after releasing it.
+     */
+    private void commitLog() {
+        if (Thread.holdsLock(this)) {
+            return;
+        }
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(getLastLsn());
+        }
+    }
+
+    /**
+     * Check if a sum can be withdrawn from a balance under the rules of the account, without changing anything.
+     * Client checks are not made.
+     * @param balance the balance the sum would be withdrawn from.
+     * @param sum the amount to withdraw.
+     * @throws InsufficientFundsException if there are insufficient funds.
+     * @throws WithdrawalBeforeTermException if the withdrawal is before the term.
+     */
+    public void checkWithdrawal(double balance, double sum) throws InsufficientFundsException, WithdrawalBeforeTermException {
+        OperationStatus status = withdrawalStatus(balance, sum);
+        if (status == OperationStatus.INSUFFICIENT_FUNDS) {
+            throw InsufficientFundsException.create();
+        }
+        if (status == OperationStatus.WITHDRAWAL_BEFORE_TERM) {
+            throw WithdrawalBeforeTermException.create();
+        }
+    }
+
+    /**
+     * Check if a sum can be withdrawn from a balance under the rules of the account, without changing anything
+     * and without throwing. Client checks are not made.
+     * @param balance the balance the sum would be withdrawn from.
+     * @param sum the amount to withdraw.
+     * @return COMPLETED if the sum can be withdrawn, the reason of the rejection otherwise.
+     */
+    abstract public OperationStatus withdrawalStatus(double balance, double sum);
+
+    /**
+     * Apply the net result of the transfers of a batch that touched the account.
+     * The batch has already checked every transfer against the balance and the clients, and logged it.
+     * @param balance the balance after the transfers.
+     * @param types the types of the journal entries of the transfers, in order.
+     * @param sums the sums of the journal entries of the transfers, in order.
+     * @param count the number of journal entries.
+     * @param lastLsn the log sequence number of the last transfer record, or 0 if nothing was logged.
+     */
+    public synchronized void applyTransfers(double balance, TransactionType[] types, double[] sums, int count, long lastLsn) {
+        journal().appendAll(types, sums, count);
+        setBalance(balance);
+        if (lastLsn > 0) {
+            this.lastLsn = lastLsn;
+        }
+    }
 
     /**
      * Refill the account.
+     * Logged refills are recorded in the metrics of the bank; unlogged ones are transfer legs, recorded as transfers.
      * @param sum the amount to refill.
      * @param toLog whether to log this operation or not.
      * @throws UnauthorizedTransactionException if the transaction is not authorized.
+     * @throws IllegalArgumentException if the sum is not a positive finite number.
      */
-    abstract public void refill(double sum, boolean toLog) throws UnauthorizedTransactionException;
+    public void refill(double sum, boolean toLog) throws UnauthorizedTransactionException {
+        if (!toLog) {
+            checkAmount(sum);
+            doRefill(sum, false);
+            return;
+        }
+        ShardedLedger ledger = ledger();
+        if (ledger != null) {
+            checkRequest(sum, Operation.REFILL);
+            OperationStatus status = ledger.awaitRefill(this, sum);
+            if (status == OperationStatus.UNAUTHORIZED) {
+                throw UnauthorizedTransactionException.create();
+            }
+            if (status != null) {
+                return;
+            }
+        }
+        OperationRecorder recorder = getBank().getMetrics().get(Operation.REFILL);
+        long start = recorder.start();
+        try {
+            checkRequest(sum);
+            doRefill(sum, true);
+            commitLog();
+        } catch (UnauthorizedTransactionException | RuntimeException e) {
+            recorder.failure(start, e);
+            throw e;
+        }
+        recorder.success(start);
+    }
 
     /**
      * Withdraw from the account.
+     * Logged withdrawals are recorded in the metrics of the bank; unlogged ones are transfer legs, recorded as transfers.
      * @param sum the amount to withdraw.
      * @param toLog whether to log this operation or not.
      * @throws InsufficientFundsException if there are insufficient funds.
      * @throws UnauthorizedTransactionException if the transaction is not authorized.
      * @throws WithdrawalBeforeTermException if the withdrawal is before the term.
+     * @throws IllegalArgumentException if the sum is not a positive finite number.
      * @return true if the withdrawal was successful, false otherwise.
      */
-    abstract public boolean withdraw(double sum, boolean toLog) throws InsufficientFundsException, UnauthorizedTransactionException, WithdrawalBeforeTermException;
+    public boolean withdraw(double sum, boolean toLog) throws InsufficientFundsException, UnauthorizedTransactionException, WithdrawalBeforeTermException {
+        if (!toLog) {
+            checkAmount(sum);
+            return doWithdraw(sum, false);
+        }
+        ShardedLedger ledger = ledger();
+        if (ledger != null) {
+            checkRequest(sum, Operation.WITHDRAW);
+            OperationStatus status = ledger.awaitWithdraw(this, sum);
+            if (status != null) {
+                status.throwIfRejected();
+                return true;
+            }
+        }
+        OperationRecorder recorder = getBank().getMetrics().get(Operation.WITHDRAW);
+        long start = recorder.start();
+        boolean withdrawn;
+        try {
+            checkRequest(sum);
+            withdrawn = doWithdraw(sum, true);
+            commitLog();
+        } catch (InsufficientFundsException | UnauthorizedTransactionException | WithdrawalBeforeTermException
+                 | RuntimeException e) {
+            recorder.failure(start, e);
+            throw e;
+        }
+        recorder.success(start);
+        return withdrawn;
+    }
+
+    /**
+     * Check that a sum can be refilled, withdrawn or transferred.
+     * Every throwing refill, withdrawal and transfer makes this check, whichever way it is applied.
+     * @param sum the amount.
+     * @throws IllegalArgumentException if the sum is not a positive finite number.
+     */
+    public static void checkAmount(double sum) {
+        if (!(sum > 0 && sum < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Sum must be a positive finite number.");
+        }
+    }
+
+    /**
+     * Check a logged refill or withdrawal before it is applied: the client first, then the amount.
+     * @param sum the amount.
+     * @throws UnauthorizedTransactionException if the client is suspicious.
+     * @throws IllegalArgumentException if the sum is not a positive finite number.
+     */
+    private void checkRequest(double sum) throws UnauthorizedTransactionException {
+        if (getClient().isSuspicious()) {
+            throw UnauthorizedTransactionException.create();
+        }
+        checkAmount(sum);
+    }
+
+    /**
+     * Check a logged refill or withdrawal before it is handed to the sharded ledger.
+     * Rejections are recorded in the metrics of the bank here, since the ledger never sees them;
+     * the shard records the operations it applies.
+     * @param sum the amount.
+     * @param operation the operation recording a rejection.
+     * @throws UnauthorizedTransactionException if the client is suspicious.
+     * @throws IllegalArgumentException if the sum is not a positive finite number.
+     */
+    private void checkRequest(double sum, Operation operation) throws UnauthorizedTransactionException {
+        try {
+            checkRequest(sum);
+        } catch (UnauthorizedTransactionException | RuntimeException e) {
+            OperationRecorder recorder = getBank().getMetrics().get(operation);
+            recorder.failure(recorder.start(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Refill the account, reporting a rejection instead of throwing it.
+     * Logged refills are recorded in the metrics of the bank like those made by refill.
+     * @param sum the amount to refill.
+     * @param toLog whether to log this operation or not.
+     * @return COMPLETED if the account was refilled, the reason of the rejection otherwise.
+     */
+    public OperationStatus tryRefill(double sum, boolean toLog) {
+        if (!toLog) {
+            return refillIfAllowed(sum, false);
+        }
+        ShardedLedger ledger = ledger();
+        OperationStatus applied = ledger == null ? null : ledger.awaitRefill(this, sum);
+        if (applied != null) {
+            return applied;
+        }
+        OperationRecorder recorder = getBank().getMetrics().get(Operation.REFILL);
+        long start = recorder.start();
+        OperationStatus status = refillIfAllowed(sum, true);
+        if (status == OperationStatus.COMPLETED) {
+            commitLog();
+        }
+        recorder.complete(start, status);
+        return status;
+    }
+
+    /**
+     * Withdraw from the account, reporting a rejection instead of throwing it.
+     * Logged withdrawals are recorded in the metrics of the bank like those made by withdraw.
+     * @param sum the amount to withdraw.
+     * @param toLog whether to log this operation or not.
+     * @return COMPLETED if the sum was withdrawn, the reason of the rejection otherwise.
+     */
+    public OperationStatus tryWithdraw(double sum, boolean toLog) {
+        if (!toLog) {
+            return withdrawIfAllowed(sum, false);
+        }
+        ShardedLedger ledger = ledger();
+        OperationStatus applied = ledger == null ? null : ledger.awaitWithdraw(this, sum);
+        if (applied != null) {
+            return applied;
+        }
+        OperationRecorder recorder = getBank().getMetrics().get(Operation.WITHDRAW);
+        long start = recorder.start();
+        OperationStatus status = withdrawIfAllowed(sum, true);
+        if (status == OperationStatus.COMPLETED) {
+            commitLog();
+        }
+        recorder.complete(start, status);
+        return status;
+    }
+
+    /**
+     * Refill the account without waiting for the outcome when the sharded ledger is running.
+     * The refill is logged and recorded in the metrics of the bank like one made by tryRefill.
+     * Without a ledger, the refill is made at once and the returned future is already complete.
+     * @param sum the amount to refill.
+     * @return the future completed with COMPLETED if the account was refilled, the reason of the rejection otherwise.
+     */
+    public CompletableFuture<OperationStatus> refillAsync(double sum) {
+        ShardedLedger ledger = ledger();
+        if (ledger != null) {
+            try {
+                return ledger.refill(this, sum);
+            } catch (RejectedExecutionException e) {
+                // The ledger was stopped meanwhile, so the refill is made in place.
+            }
+        }
+        return CompletableFuture.completedFuture(tryRefill(sum, true));
+    }
+
+    /**
+     * Withdraw from the account without waiting for the outcome when the sharded ledger is running.
+     * The withdrawal is logged and recorded in the metrics of the bank like one made by tryWithdraw.
+     * Without a ledger, the withdrawal is made at once and the returned future is already complete.
+     * @param sum the amount to withdraw.
+     * @return the future completed with COMPLETED if the sum was withdrawn, the reason of the rejection otherwise.
+     */
+    public CompletableFuture<OperationStatus> withdrawAsync(double sum) {
+        ShardedLedger ledger = ledger();
+        if (ledger != null) {
+            try {
+                return ledger.withdraw(this, sum);
+            } catch (RejectedExecutionException e) {
+                // The ledger was stopped meanwhile, so the withdrawal is made in place.
+            }
+        }
+        return CompletableFuture.completedFuture(tryWithdraw(sum, true));
+    }
+
+    /**
+     * Get the sharded ledger logged operations of the account are routed to.
+     * Operations made while holding the monitor of the account, such as cancellations and the commands of the
+     * owning shard itself, are applied in place, since the shard would have to wait for that monitor.
+     * Operations the ledger refuses because it was stopped after this returned are applied in place as well.
+     * @return the running ledger, or null if operations are applied in place.
+     */
+    private ShardedLedger ledger() {
+        ShardedLedger ledger = CentralBank.getInstance().getLedger();
+        return ledger == null || Thread.holdsLock(this) ? null : ledger;
+    }
+
+    /**
+     * Refill the account unless the refill is rejected.
+     * @param sum the amount to refill.
+     * @param toLog whether to log this operation or not.
+     * @return COMPLETED if the account was refilled, the reason of the rejection otherwise.
+     */
+    private synchronized OperationStatus refillIfAllowed(double sum, boolean toLog) {
+        if (!(sum > 0 && sum < Double.POSITIVE_INFINITY)) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        if (getClient().isSuspicious()) {
+            return OperationStatus.UNAUTHORIZED;
+        }
+        if (toLog) {
+            operationLogging(TransactionType.REFILL, sum);
+        }
+        setBalance(getBalance() + sum);
+        return OperationStatus.COMPLETED;
+    }
+
+    /**
+     * Withdraw from the account unless the withdrawal is rejected.
+     * @param sum the amount to withdraw.
+     * @param toLog whether to log this operation or not.
+     * @return COMPLETED if the sum was withdrawn, the reason of the rejection otherwise.
+     */
+    private synchronized OperationStatus withdrawIfAllowed(double sum, boolean toLog) {
+        if (!(sum > 0 && sum < Double.POSITIVE_INFINITY)) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        OperationStatus status = withdrawalStatus(getBalance(), sum);
+        if (status != OperationStatus.COMPLETED) {
+            return status;
+        }
+        if (getClient().isSuspicious()) {
+            return OperationStatus.UNAUTHORIZED;
+        }
+        if (toLog) {
+            operationLogging(TransactionType.WITHDRAW, sum);
+        }
+        setBalance(getBalance() - sum);
+        return OperationStatus.COMPLETED;
+    }
+
+    /**
+     * Refill the account under the rules of its type.
+     * @param sum the amount to refill.
+     * @param toLog whether to log this operation or not.
+     * @throws UnauthorizedTransactionException if the transaction is not authorized.
+     */
+    abstract protected void doRefill(double sum, boolean toLog) throws UnauthorizedTransactionException;
+
+    /**
+     * Withdraw from the account under the rules of its type.
+     * @param sum the amount to withdraw.
+     * @param toLog whether to log this operation or not.
+     * @throws InsufficientFundsException if there are insufficient funds.
+     * @throws UnauthorizedTransactionException if the transaction is not authorized.
+     * @throws WithdrawalBeforeTermException if the withdrawal is before the term.
+     * @return true if the withdrawal was successful, false otherwise.
+     */
+    abstract protected boolean doWithdraw(double sum, boolean toLog) throws InsufficientFundsException, UnauthorizedTransactionException, WithdrawalBeforeTermException;
+
+    /**
+     * Apply an interest or commission change computed by a bank-wide accrual pass.
+     * The change is applied only if the balance is still the one the pass computed it from,
+     * otherwise nothing is changed and the pass has to recompute it.
+     * Balances are compared bit for bit, so a balance that is not a number still matches itself.
+     * Client checks are the responsibility of the pass, and so is committing the write-ahead log entry.
+     * @param expectedBalance the balance the change was computed from.
+     * @param delta the change of the balance, positive for interest and negative for commission.
+     * @return true if the change was applied, false if the balance has changed in the meantime.
+     */
+    public synchronized boolean applyAccrual(double expectedBalance, double delta) {
+        double balance = getBalance();
+        if (Double.doubleToRawLongBits(balance) != Double.doubleToRawLongBits(expectedBalance)) {
+            return false;
+        }
+        if (delta == 0) {
+            return true;
+        }
+        TransactionType type = delta > 0 ? TransactionType.REFILL : TransactionType.WITHDRAW;
+        journal().append(type, Math.abs(delta));
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            lastLsn = writeAheadLog.appendEntry(getId(), type, Math.abs(delta));
+        }
+        setBalance(balance + delta);
+        return true;
+    }
 
     /**
      * Cancel a transaction.
+     * The transaction is found by its sequence number in constant time and marked as cancelled, and a compensating
+     * refill or withdrawal is posted; nothing is removed from the history. Transactions without a sequence number
+     * are matched against the newest entry that is not cancelled and has the same type and sum.
+     * Cancelling a transaction twice, or one the account does not hold, changes nothing.
+     * The tombstone is appended to the write-ahead log right after the compensation, under the same monitor,
+     * so a recovered account refuses to cancel the transaction again.
      * @param account the account to cancel the transaction from.
      * @param transaction the transaction to cancel.
      */
     @SneakyThrows
     public void cancellingTransaction(Account account, Transaction transaction) {
-        if (transaction.getTransactionType() == TransactionType.REFILL){
-            account.withdraw(transaction.getSum(), true);
-        }
-        if (transaction.getTransactionType() == TransactionType.WITHDRAW){
-            account.refill(transaction.getSum(), true);
-        }
-        if (transaction.getTransactionType() == TransactionType.TRANSFERSENDER){
-            account.refill(transaction.getSum(), true);
-        }
-        if (transaction.getTransactionType() == TransactionType.TRANSFERACCEPTER){
-            account.withdraw(transaction.getSum(), true);
+        CancellationEvent event = new CancellationEvent();
+        event.begin();
+        TransactionType type = transaction.getTransactionType();
+        double sum = transaction.getSum();
+        String outcome = "NOT_FOUND";
+        try {
+            synchronized (account) {
+                TransactionJournal accountJournal = account.getJournal();
+                int index = transaction.getId() != 0 ? accountJournal.indexOf(transaction.getId())
+                        : accountJournal.lastIndexOf(transaction.getTransactionType(), transaction.getSum());
+                if (index < 0) {
+                    return;
+                }
+                type = accountJournal.getType(index);
+                sum = accountJournal.getSum(index);
+                if (accountJournal.isCancelled(index)) {
+                    outcome = "ALREADY_CANCELLED";
+                    return;
+                }
+                outcome = "FAILED";
+                if (type == TransactionType.REFILL){
+                    account.withdraw(sum, true);
+                }
+                if (type == TransactionType.WITHDRAW){
+                    account.refill(sum, true);
+                }
+                if (type == TransactionType.TRANSFERSENDER){
+                    account.refill(sum, true);
+                }
+                if (type == TransactionType.TRANSFERACCEPTER){
+                    account.withdraw(sum, true);
+                }
+                accountJournal.cancel(index);
+                WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+                if (writeAheadLog != null) {
+                    account.lastLsn = writeAheadLog.appendCancel(account.getId(), index, type, sum);
+                }
+                outcome = "CANCELLED";
+            }
+            account.commitLog();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.account = account.getId().toString();
+                event.transaction = transaction.getId();
+                event.type = type == null ? null : type.name();
+                event.amount = sum;
+                event.outcome = outcome;
+                event.commit();
+            }
         }
-        account.getTransactions().remove(transaction);
     }
 }
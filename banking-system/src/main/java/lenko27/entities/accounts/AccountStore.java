@@ -0,0 +1,208 @@
+package lenko27.entities.accounts;
+
+import lenko27.entities.client.Client;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * This class is a columnar store for the accounts of a bank.
+ * Balances and account types live in parallel primitive arrays indexed by the account slot, next to the
+ * Account handles of the slots, which read and write their balance through the store.
+ * The arrays are split into fixed-size pages, so growing the store never moves an existing balance
+ * and bank-wide passes can run as plain linear loops over each page.
+ * A handle still carries its identifier, bank, owner and log sequence number, and a journal once it has
+ * history, so the store makes passes cache-friendly rather than shrinking the accounts themselves.
+ */
+public class AccountStore {
+
+    /**
+     * Number of bits of the slot that address an entry inside a page.
+     */
+    public static final int PAGE_SHIFT = 12;
+
+    /**
+     * Number of accounts held by one page.
+     */
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /**
+     * Mask that extracts the index inside a page from a slot.
+     */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * Handle used to read and write single balances with release/acquire ordering.
+     */
+    private static final VarHandle BALANCE = MethodHandles.arrayElementVarHandle(double[].class);
+
+    /**
+     * Pages of account balances.
+     */
+    private volatile double[][] balances = new double[0][];
+
+    /**
+     * Pages of account type codes, see AccountType.code().
+     */
+    private volatile byte[][] types = new byte[0][];
+
+    /**
+     * Pages of account handles.
+     */
+    private volatile Account[][] handles = new Account[0][];
+
+    /**
+     * Number of occupied slots.
+     */
+    private volatile int size;
+
+    /**
+     * Method to add an account to the store and turn it into a handle to its slot.
+     *
+     * @param account The account to be added.
+     * @return The slot of the account.
+     */
+    public synchronized int add(Account account) {
+        int slot = size;
+        int page = slot >>> PAGE_SHIFT;
+        int index = slot & PAGE_MASK;
+        if (index == 0) {
+            addPage();
+        }
+        types[page][index] = account.getType().code();
+        handles[page][index] = account;
+        account.bind(this, slot);
+        size = slot + 1;
+        return slot;
+    }
+
+    /**
+     * Method to get the number of accounts in the store.
+     *
+     * @return The number of occupied slots.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to get the balance of the account in the slot.
+     *
+     * @param slot The slot of the account.
+     * @return The balance of the account.
+     */
+    public double getBalance(int slot) {
+        return (double) BALANCE.getAcquire(balances[slot >>> PAGE_SHIFT], slot & PAGE_MASK);
+    }
+
+    /**
+     * Method to set the balance of the account in the slot.
+     * Must be called while holding the monitor of the account handle.
+     *
+     * @param slot The slot of the account.
+     * @param balance The new balance of the account.
+     */
+    public void setBalance(int slot, double balance) {
+        BALANCE.setRelease(balances[slot >>> PAGE_SHIFT], slot & PAGE_MASK, balance);
+    }
+
+    /**
+     * Method to get the type of the account in the slot.
+     *
+     * @param slot The slot of the account.
+     * @return The type of the account.
+     */
+    public AccountType getType(int slot) {
+        return AccountType.fromCode(types[slot >>> PAGE_SHIFT][slot & PAGE_MASK]);
+    }
+
+    /**
+     * Method to get the owner of the account in the slot.
+     *
+     * @param slot The slot of the account.
+     * @return The client who owns the account.
+     */
+    public Client getOwner(int slot) {
+        return getHandle(slot).getClient();
+    }
+
+    /**
+     * Method to get the handle of the account in the slot.
+     *
+     * @param slot The slot of the account.
+     * @return The account handle.
+     */
+    public Account getHandle(int slot) {
+        return handles[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+    }
+
+    /**
+     * Method to get the number of pages needed for the given number of slots.
+     *
+     * @param size The number of slots.
+     * @return The number of pages.
+     */
+    public static int pageCount(int size) {
+        return (size + PAGE_MASK) >>> PAGE_SHIFT;
+    }
+
+    /**
+     * Method to get the number of occupied entries of a page for the given number of slots.
+     *
+     * @param page The page index.
+     * @param size The number of slots.
+     * @return The number of occupied entries of the page.
+     */
+    public static int pageLength(int page, int size) {
+        return Math.min(PAGE_SIZE, size - (page << PAGE_SHIFT));
+    }
+
+    /**
+     * Method to get a page of balances for linear passes.
+     * Writes to the page must be done while holding the monitors of the affected handles.
+     *
+     * @param page The page index.
+     * @return The page of balances.
+     */
+    public double[] balancePage(int page) {
+        return balances[page];
+    }
+
+    /**
+     * Method to get a page of account type codes for linear passes.
+     *
+     * @param page The page index.
+     * @return The page of type codes.
+     */
+    public byte[] typePage(int page) {
+        return types[page];
+    }
+
+    /**
+     * Method to get a page of account handles for linear passes.
+     *
+     * @param page The page index.
+     * @return The page of handles.
+     */
+    public Account[] handlePage(int page) {
+        return handles[page];
+    }
+
+    /**
+     * Method to append an empty page to every column.
+     * Only the page directories are copied, existing pages stay where they are.
+     */
+    private void addPage() {
+        int pages = balances.length;
+        double[][] newBalances = Arrays.copyOf(balances, pages + 1);
+        newBalances[pages] = new double[PAGE_SIZE];
+        byte[][] newTypes = Arrays.copyOf(types, pages + 1);
+        newTypes[pages] = new byte[PAGE_SIZE];
+        Account[][] newHandles = Arrays.copyOf(handles, pages + 1);
+        newHandles[pages] = new Account[PAGE_SIZE];
+        types = newTypes;
+        handles = newHandles;
+        balances = newBalances;
+    }
+}
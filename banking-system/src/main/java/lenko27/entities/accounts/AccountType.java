@@ -0,0 +1,46 @@
+package lenko27.entities.accounts;
+
+/**
+ * This enum represents the type of an account in the banking system.
+ */
+public enum AccountType {
+
+    /**
+     * Represents a debit account, which can not go below zero.
+     */
+    DEBIT,
+
+    /**
+     * Represents a deposit account, which can not be withdrawn from before the term.
+     */
+    DEPOSIT,
+
+    /**
+     * Represents a credit account, which can go below zero up to the credit limit.
+     */
+    CREDIT;
+
+    /**
+     * All account types indexed by their code.
+     */
+    private static final AccountType[] VALUES = values();
+
+    /**
+     * Method to get the compact code of the account type.
+     *
+     * @return The code of the account type.
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Method to get the account type by its compact code.
+     *
+     * @param code The code of the account type.
+     * @return The account type.
+     */
+    public static AccountType fromCode(byte code) {
+        return VALUES[code];
+    }
+}
@@ -4,12 +4,10 @@ import lenko27.entities.banks.Bank;
 import lenko27.entities.client.Client;
 import lenko27.exceptions.InsufficientFundsException;
 import lenko27.exceptions.UnauthorizedTransactionException;
-import lenko27.entities.transactions.Transaction;
+import lenko27.entities.transactions.OperationStatus;
 import lenko27.entities.transactions.TransactionType;
 import lombok.*;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 /**
  * This class represents a debit account in the banking system.
@@ -23,16 +21,6 @@ public class DebitAccount extends Account {
      */
     private final UUID id;
 
-    /**
-     * List of transactions associated with the account.
-     */
-    private final List<Transaction> transactions = new ArrayList<>();
-
-    /**
-     * Current balance of the account.
-     */
-    private double balance;
-
     /**
      * Bank associated with the account.
      */
@@ -56,6 +44,16 @@ public class DebitAccount extends Account {
         this.client = client;
     }
 
+    /**
+     * Method to get the type of the account.
+     *
+     * @return Always AccountType.DEBIT.
+     */
+    @Override
+    public AccountType getType() {
+        return AccountType.DEBIT;
+    }
+
     /**
      * Method to refill the account.
      *
@@ -64,14 +62,14 @@ public class DebitAccount extends Account {
      * @throws UnauthorizedTransactionException If the client is suspicious.
      */
     @Override
-    public void refill(double sum, boolean toLog) throws UnauthorizedTransactionException {
+    protected synchronized void doRefill(double sum, boolean toLog) throws UnauthorizedTransactionException {
         if (client.isSuspicious()) {
-            throw new UnauthorizedTransactionException();
+            throw UnauthorizedTransactionException.create();
         }
         if (toLog){
             operationLogging(TransactionType.REFILL, sum);
         }
-        balance += sum;
+        setBalance(getBalance() + sum);
     };
     /**
      * Method to withdraw from the account.
@@ -83,28 +81,29 @@ public class DebitAccount extends Account {
      * @return true if the withdrawal was successful, false otherwise.
      */
     @Override
-    public boolean withdraw(double sum, boolean toLog) throws InsufficientFundsException, UnauthorizedTransactionException {
-        if (balance < sum){
-            throw new InsufficientFundsException();
+    protected synchronized boolean doWithdraw(double sum, boolean toLog) throws InsufficientFundsException, UnauthorizedTransactionException {
+        if (withdrawalStatus(getBalance(), sum) != OperationStatus.COMPLETED) {
+            throw InsufficientFundsException.create();
         }
         if (client.isSuspicious()){
-            throw new UnauthorizedTransactionException();
+            throw UnauthorizedTransactionException.create();
         }
         if (toLog){
             operationLogging(TransactionType.WITHDRAW, sum);
         }
-        balance -= sum;
+        setBalance(getBalance() - sum);
         return true;
     };
+
     /**
-     * Method to log operations.
+     * Method to check if a sum can be withdrawn from a balance.
      *
-     * @param type Transaction type.
-     * @param sum  Amount involved in the transaction.
+     * @param balance The balance the sum would be withdrawn from.
+     * @param sum     Amount to be withdrawn.
+     * @return INSUFFICIENT_FUNDS if the balance is lower than the sum, COMPLETED otherwise.
      */
     @Override
-    public void operationLogging(TransactionType type, double sum) {
-        Transaction transaction = new Transaction(type, sum);
-        getTransactions().add(transaction);
+    public OperationStatus withdrawalStatus(double balance, double sum) {
+        return balance < sum ? OperationStatus.INSUFFICIENT_FUNDS : OperationStatus.COMPLETED;
     }
 }
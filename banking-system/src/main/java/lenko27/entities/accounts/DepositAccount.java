@@ -1,6 +1,6 @@
 package lenko27.entities.accounts;
 
-import lenko27.entities.transactions.Transaction;
+import lenko27.entities.transactions.OperationStatus;
 import lenko27.entities.transactions.TransactionType;
 import lenko27.entities.banks.Bank;
 import lenko27.entities.client.Client;
@@ -9,8 +9,6 @@ import lenko27.exceptions.UnauthorizedTransactionException;
 import lenko27.exceptions.WithdrawalBeforeTermException;
 import lombok.*;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 /**
  * This class represents a deposit account in the banking system.
@@ -24,16 +22,6 @@ public class DepositAccount extends Account {
      */
     private final UUID id;
 
-    /**
-     * List of transactions associated with the account.
-     */
-    private final List<Transaction> transactions = new ArrayList<>();
-
-    /**
-     * Current balance of the account.
-     */
-    private double balance;
-
     /**
      * Bank associated with the account.
      */
@@ -57,6 +45,16 @@ public class DepositAccount extends Account {
         this.client = client;
     }
 
+    /**
+     * Method to get the type of the account.
+     *
+     * @return Always AccountType.DEPOSIT.
+     */
+    @Override
+    public AccountType getType() {
+        return AccountType.DEPOSIT;
+    }
+
     /**
      * Method to refill the account.
      *
@@ -65,14 +63,14 @@ public class DepositAccount extends Account {
      * @throws UnauthorizedTransactionException If the client is suspicious.
      */
     @Override
-    public void refill(double sum, boolean toLog) throws UnauthorizedTransactionException {
+    protected synchronized void doRefill(double sum, boolean toLog) throws UnauthorizedTransactionException {
         if (client.isSuspicious()) {
-            throw new UnauthorizedTransactionException();
+            throw UnauthorizedTransactionException.create();
         }
         if (toLog){
             operationLogging(TransactionType.REFILL, sum);
         }
-        balance += sum;
+        setBalance(getBalance() + sum);
     };
     /**
      * Method to withdraw from the account.
@@ -85,32 +83,40 @@ public class DepositAccount extends Account {
      * @return true if the withdrawal was successful, false otherwise.
      */
     @Override
-    public boolean withdraw(double sum, boolean toLog) throws InsufficientFundsException,
+    protected synchronized boolean doWithdraw(double sum, boolean toLog) throws InsufficientFundsException,
             UnauthorizedTransactionException, WithdrawalBeforeTermException {
-        if (balance < sum){
-            throw new InsufficientFundsException();
+        if (getBalance() < sum){
+            throw InsufficientFundsException.create();
         }
         if (client.isSuspicious()){
-            throw new UnauthorizedTransactionException();
+            throw UnauthorizedTransactionException.create();
         }
         if (bank.getTerm()!= 0){
-            throw new WithdrawalBeforeTermException();
+            throw WithdrawalBeforeTermException.create();
         }
         if (toLog){
             operationLogging(TransactionType.WITHDRAW, sum);
         }
-        balance -= sum;
+        setBalance(getBalance() - sum);
         return true;
     }
+
     /**
-     * Method to log operations.
+     * Method to check if a sum can be withdrawn from a balance.
      *
-     * @param type Transaction type.
-     * @param sum  Amount involved in the transaction.
+     * @param balance The balance the sum would be withdrawn from.
+     * @param sum     Amount to be withdrawn.
+     * @return INSUFFICIENT_FUNDS if the balance is lower than the sum, WITHDRAWAL_BEFORE_TERM if the withdrawal
+     * is before the term, COMPLETED otherwise.
      */
     @Override
-    public void operationLogging(TransactionType type, double sum) {
-        Transaction transaction = new Transaction(type, sum);
-        getTransactions().add(transaction);
+    public OperationStatus withdrawalStatus(double balance, double sum) {
+        if (balance < sum){
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        if (bank.getTerm()!= 0){
+            return OperationStatus.WITHDRAWAL_BEFORE_TERM;
+        }
+        return OperationStatus.COMPLETED;
     }
 }
@@ -1,6 +1,8 @@
 package lenko27.entities.banks;
 
 import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.AccountStore;
+import lenko27.entities.accounts.AccountType;
 import lenko27.entities.accounts.CreditAccount;
 import lenko27.entities.accounts.DebitAccount;
 import lenko27.entities.accounts.DepositAccount;
@@ -9,13 +11,31 @@ import lenko27.entities.banks.banking.tools.interfaces.BankingTools;
 import lenko27.entities.banks.banking.tools.interfaces.SubscribingOperations;
 import lenko27.entities.client.Client;
 import lenko27.service.ComplexInterestRate;
+import lenko27.service.DepositTierTable;
+import lenko27.service.accrual.InterestAccrualPipeline;
+import lenko27.service.accrual.PartitionReport;
+import lenko27.service.events.AccrualEvent;
+import lenko27.service.events.NotificationEvent;
+import lenko27.service.metrics.BankMetrics;
+import lenko27.service.metrics.Operation;
+import lenko27.service.metrics.OperationRecorder;
+import lenko27.service.notifications.NotificationDelivery;
+import lenko27.service.notifications.NotificationDispatcher;
+import lenko27.service.notifications.NotificationTopic;
+import lenko27.service.notifications.SynchronousNotificationDispatcher;
+import lenko27.service.velocity.VelocityLimiter;
+import lenko27.service.velocity.VelocityPolicy;
 import lenko27.exceptions.UnauthorizedTransactionException;
 import lenko27.exceptions.UnknownAccountTypeException;
+import lenko27.persistence.WriteAheadLog;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 /**
  * This class represents a bank in the banking system.
@@ -25,6 +45,11 @@ import java.util.UUID;
 @Getter
 public class Bank implements BankingOperations, BankingTools, SubscribingOperations {
 
+    /**
+     * Name of the announcements in flight recordings, standing where the parameter of a topic stands.
+     */
+    private static final String ANNOUNCEMENTS = "ANNOUNCEMENTS";
+
     /**
      * Unique identifier for the bank.
      */
@@ -36,9 +61,39 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     private final List<Account> accountList = new ArrayList<>();
 
     /**
-     * List of clients who have subscribed to the bank.
+     * Columnar store of the bank's accounts, null unless the bank uses StorageMode.COLUMNAR.
+     */
+    private final AccountStore accountStore;
+
+    /**
+     * Notifications about the changes of every parameter, each with its own subscribers.
+     */
+    private final Map<BankParameter, NotificationTopic> topics = createTopics();
+
+    /**
+     * Notifications not about a parameter, sent to the clients who subscribed to the whole bank.
+     */
+    private final NotificationTopic announcements = new NotificationTopic();
+
+    /**
+     * Calls, failures and latencies of the bank's operations.
+     */
+    private final BankMetrics metrics = new BankMetrics();
+
+    /**
+     * Dispatcher delivering notifications to the subscribers, synchronous unless replaced.
+     */
+    @Setter private volatile NotificationDispatcher notificationDispatcher = SynchronousNotificationDispatcher.INSTANCE;
+
+    /**
+     * Velocity rules enforced on transfers sent from the bank's accounts, null if there are none.
+     */
+    private volatile VelocityLimiter velocityLimiter;
+
+    /**
+     * Position of the bank at the central bank, changed only by the settlement of clearing cycles.
      */
-    private final List<Client> subscribedCustomerList = new ArrayList<>();
+    private volatile double settlementBalance;
 
     /**
      * Debit interest rate of the bank.
@@ -58,7 +113,12 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     /**
      * Deposit interest rates of the bank.
      */
-    @Setter private List<ComplexInterestRate> depositInterest;
+    private List<ComplexInterestRate> depositInterest;
+
+    /**
+     * Deposit interest rates of the bank compiled for accrual passes.
+     */
+    private DepositTierTable depositTiers;
 
     /**
      * Term of the bank.
@@ -77,12 +137,77 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
      */
     protected Bank(double interest, List<ComplexInterestRate> depositInterest,
                    double creditLimit, double creditCommission, UUID id, int term){
+        this(interest, depositInterest, creditLimit, creditCommission, id, term, StorageMode.OBJECT);
+    }
+
+    /**
+     * Constructor for the Bank class with a chosen account storage mode.
+     *
+     * @param interest The debit interest rate of the bank.
+     * @param depositInterest The deposit interest rates of the bank.
+     * @param creditLimit The credit limit of the bank.
+     * @param creditCommission The credit commission of the bank.
+     * @param id The unique identifier for the bank.
+     * @param term The term of the bank.
+     * @param storageMode The way the bank stores the balances of its accounts.
+     */
+    protected Bank(double interest, List<ComplexInterestRate> depositInterest,
+                   double creditLimit, double creditCommission, UUID id, int term, StorageMode storageMode){
         this.debitInterest = interest;
-        this.depositInterest = depositInterest;
+        setDepositInterest(depositInterest);
         this.creditLimit = creditLimit;
         this.creditCommission = creditCommission;
         this.id = id;
         this.term = term;
+        this.accountStore = storageMode == StorageMode.COLUMNAR ? new AccountStore() : null;
+    }
+
+    /**
+     * Gets the storage mode of the bank.
+     *
+     * @return The way the bank stores the balances of its accounts.
+     */
+    public StorageMode getStorageMode() {
+        return accountStore == null ? StorageMode.OBJECT : StorageMode.COLUMNAR;
+    }
+
+    /**
+     * Sets the deposit interest rates of the bank and compiles them for accrual passes.
+     *
+     * @param depositInterest The deposit interest rates of the bank.
+     */
+    public void setDepositInterest(List<ComplexInterestRate> depositInterest) {
+        this.depositInterest = depositInterest;
+        this.depositTiers = new DepositTierTable(depositInterest);
+    }
+
+    /**
+     * Sets the velocity rules enforced on transfers sent from the bank's accounts.
+     * The windows of the previous rules are dropped, so the new rules start counting from now.
+     *
+     * @param policy The rules, or null to stop limiting transfers.
+     */
+    public void setVelocityPolicy(VelocityPolicy policy) {
+        this.velocityLimiter = policy == null ? null : new VelocityLimiter(policy);
+    }
+
+    /**
+     * Gets the velocity rules enforced on transfers sent from the bank's accounts.
+     *
+     * @return The rules, or null if transfers are not limited.
+     */
+    public VelocityPolicy getVelocityPolicy() {
+        VelocityLimiter limiter = velocityLimiter;
+        return limiter == null ? null : limiter.getPolicy();
+    }
+
+    /**
+     * Settles the net position of the bank in a clearing cycle.
+     *
+     * @param netPosition The net amount the bank receives, negative if it pays.
+     */
+    public synchronized void settle(double netPosition) {
+        settlementBalance = settlementBalance + netPosition;
     }
 
     /**
@@ -93,7 +218,8 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     @Override
     public void changeCreditCommission(double newCreditCommission){
         setCreditCommission(newCreditCommission);
-        notifySubscribers("Dear customer, credit commission has been changed. " +
+        logParameter(BankParameter.CREDIT_COMMISSION, newCreditCommission);
+        publish(BankParameter.CREDIT_COMMISSION, "Dear customer, credit commission has been changed. " +
                 "New credit commission: " + newCreditCommission);
     }
 
@@ -105,7 +231,8 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     @Override
     public void changeCreditLimit(double newCreditLimit){
         setCreditLimit(newCreditLimit);
-        notifySubscribers("Dear customer, credit limit has been changed. " +
+        logParameter(BankParameter.CREDIT_LIMIT, newCreditLimit);
+        publish(BankParameter.CREDIT_LIMIT, "Dear customer, credit limit has been changed. " +
                 "New credit limit: " + newCreditLimit);
     }
 
@@ -117,7 +244,8 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     @Override
     public void changeDebitInterest(double newDebitInterest){
         setDebitInterest(newDebitInterest);
-        notifySubscribers("Dear customer, debit interest has been changed. New debit interest: " + newDebitInterest);
+        logParameter(BankParameter.DEBIT_INTEREST, newDebitInterest);
+        publish(BankParameter.DEBIT_INTEREST, "Dear customer, debit interest has been changed. New debit interest: " + newDebitInterest);
     }
 
     /**
@@ -128,7 +256,11 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     @Override
     public void changeDepositInterest(List<ComplexInterestRate> newDepositInterest){
         setDepositInterest(newDepositInterest);
-        notifySubscribers("Dear customer, deposit interest has been changed. New debit interest:\n" + formatDepositInterest(newDepositInterest));
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(writeAheadLog.appendDepositInterest(id, newDepositInterest));
+        }
+        publish(BankParameter.DEPOSIT_INTEREST, "Dear customer, deposit interest has been changed. New debit interest:\n" + formatDepositInterest(newDepositInterest));
     }
 
     /**
@@ -139,24 +271,145 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     @Override
     public void changeTerm(int newTerm){
         setTerm(newTerm);
-        notifySubscribers("Dear customer, deposit term has been changed. " +
+        logParameter(BankParameter.TERM, newTerm);
+        publish(BankParameter.TERM, "Dear customer, deposit term has been changed. " +
                 "New deposit term: " + newTerm);
     }
 
+    /**
+     * Records a change of a bank parameter in the write-ahead log, if there is one.
+     *
+     * @param parameter The changed parameter.
+     * @param value The new value of the parameter.
+     */
+    private void logParameter(BankParameter parameter, double value) {
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(writeAheadLog.appendBankParameter(id, parameter, value));
+        }
+    }
+
     /**
      * Accrues interest on all accounts in the bank.
+     * Debit accounts get the debit interest, deposit accounts get the deposit interest of their tier
+     * and credit accounts with a negative balance are charged the credit commission.
      *
      * @throws UnauthorizedTransactionException If the transaction is not authorized.
      */
     @Override
     public void interestAccrual() throws UnauthorizedTransactionException {
-        for(Account account : accountList) {
-            account.refill(account.getBalance() * debitInterest, true);
+        AccrualEvent event = new AccrualEvent();
+        event.begin();
+        OperationRecorder recorder = metrics.get(Operation.INTEREST_ACCRUAL);
+        long start = recorder.start();
+        InterestAccrualPipeline pipeline = new InterestAccrualPipeline(debitInterest, depositTiers, creditCommission);
+        int count = 0;
+        try {
+            if (accountStore != null) {
+                count = accountStore.size();
+                pipeline.accrue(accountStore, 0, count);
+            } else {
+                List<Account> accounts = copyAccounts();
+                count = accounts.size();
+                pipeline.accrue(accounts, 0, count);
+            }
+        } catch (UnauthorizedTransactionException | RuntimeException e) {
+            recorder.failure(start, e);
+            commit(event, 0, count, pipeline, true);
+            throw e;
+        }
+        recorder.success(start);
+        commit(event, 0, count, pipeline, false);
+    }
+
+    /**
+     * Accrues interest on a range of the bank's accounts, skipping accounts of suspicious clients.
+     * Ranges refer to the order in which accounts were created.
+     *
+     * @param from The first account index of the range, inclusive.
+     * @param to The last account index of the range, exclusive.
+     * @return The report of the range, with every skipped account.
+     */
+    public PartitionReport interestAccrual(int from, int to) {
+        AccrualEvent event = new AccrualEvent();
+        event.begin();
+        OperationRecorder recorder = metrics.get(Operation.INTEREST_ACCRUAL);
+        long recorded = recorder.start();
+        long start = System.nanoTime();
+        InterestAccrualPipeline pipeline = new InterestAccrualPipeline(debitInterest, depositTiers, creditCommission, true);
+        Throwable error = null;
+        try {
+            if (accountStore != null) {
+                pipeline.accrue(accountStore, from, Math.min(to, accountStore.size()));
+            } else {
+                List<Account> accounts;
+                synchronized (accountList) {
+                    accounts = new ArrayList<>(accountList.subList(Math.min(from, accountList.size()),
+                            Math.min(to, accountList.size())));
+                }
+                pipeline.accrue(accounts, 0, accounts.size());
+            }
+        } catch (Exception e) {
+            error = e;
+        }
+        if (error != null) {
+            recorder.failure(recorded, error);
+        } else {
+            recorder.success(recorded);
+        }
+        commit(event, from, to, pipeline, error != null);
+        return new PartitionReport(id, from, to, pipeline.getProcessed(), pipeline.getFailures(), error,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Commits the flight recorder event of an accrual, if it is recorded.
+     *
+     * @param event The event, begun before the accrual.
+     * @param from The first account index of the range, inclusive.
+     * @param to The last account index of the range, exclusive.
+     * @param pipeline The pipeline that accrued the range.
+     * @param failed Whether the accrual stopped on an error.
+     */
+    private void commit(AccrualEvent event, int from, int to, InterestAccrualPipeline pipeline, boolean failed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.bank = id.toString();
+            event.from = from;
+            event.to = to;
+            event.processed = pipeline.getProcessed();
+            event.skipped = pipeline.getFailures().size();
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the number of accounts in the bank.
+     *
+     * @return The number of accounts.
+     */
+    public int getAccountCount() {
+        synchronized (accountList) {
+            return accountList.size();
+        }
+    }
+
+    /**
+     * Gets a copy of the bank's accounts in the order they were created.
+     *
+     * @return The copy of the account list.
+     */
+    public List<Account> copyAccounts() {
+        synchronized (accountList) {
+            return new ArrayList<>(accountList);
         }
     }
 
     /**
      * Creates a new account in the bank.
+     * The created account is registered in the bank and in the directory of the central bank,
+     * and in COLUMNAR mode it becomes a handle into the account store.
      *
      * @param account The type of account to be created.
      * @param client The client who will own the account.
@@ -165,7 +418,58 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
      */
     @Override
     public Account createAccount(Account account, Client client) throws UnknownAccountTypeException {
-        accountList.add(account);
+        Account created = newAccount(account, client);
+        synchronized (accountList) {
+            accountList.add(created);
+        }
+        if (accountStore != null) {
+            accountStore.add(created);
+        }
+        CentralBank.getInstance().getDirectory().addAccount(created);
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(writeAheadLog.appendAccountOpened(created));
+        }
+        return created;
+    }
+
+    /**
+     * Restores an account from a snapshot or from the write-ahead log.
+     * The account is registered like a created one, but nothing is logged.
+     *
+     * @param id The unique identifier of the account.
+     * @param type The type of the account.
+     * @param client The client who owns the account.
+     * @param balance The balance of the account.
+     * @param lastLsn The log sequence number of the last record that changed the balance.
+     * @return The restored account.
+     */
+    public Account restoreAccount(UUID id, AccountType type, Client client, double balance, long lastLsn) {
+        Account restored = switch (type) {
+            case DEBIT -> new DebitAccount(id, this, client);
+            case DEPOSIT -> new DepositAccount(id, this, client);
+            case CREDIT -> new CreditAccount(id, this, client);
+        };
+        synchronized (accountList) {
+            accountList.add(restored);
+        }
+        if (accountStore != null) {
+            accountStore.add(restored);
+        }
+        restored.restoreState(balance, lastLsn);
+        CentralBank.getInstance().getDirectory().addAccount(restored);
+        return restored;
+    }
+
+    /**
+     * Creates an account of the same type as the given one.
+     *
+     * @param account The type of account to be created.
+     * @param client The client who will own the account.
+     * @return The newly created account.
+     * @throws UnknownAccountTypeException If the account type is unknown.
+     */
+    private Account newAccount(Account account, Client client) throws UnknownAccountTypeException {
         if (account instanceof CreditAccount){
             return new CreditAccount(UUID.randomUUID(), this, client);
         }
@@ -194,34 +498,140 @@ public class Bank implements BankingOperations, BankingTools, SubscribingOperati
     }
 
     /**
-     * Subscribes a client to the bank.
+     * Subscribes a client to the bank: to the changes of every parameter and to the announcements.
      *
      * @param client The client to be subscribed.
      */
     @Override
     public void subscribe(Client client){
-        getSubscribedCustomerList().add(client);
+        announcements.subscribe(client);
+        for (NotificationTopic topic : topics.values()) {
+            topic.subscribe(client);
+        }
     }
 
     /**
-     * Unsubscribes a client from the bank.
+     * Unsubscribes a client from the bank and from every parameter.
      *
      * @param client The client to be unsubscribed.
      */
     @Override
     public void unsubscribe(Client client){
-        getSubscribedCustomerList().remove(client);
+        announcements.unsubscribe(client);
+        for (NotificationTopic topic : topics.values()) {
+            topic.unsubscribe(client);
+        }
+    }
+
+    /**
+     * Subscribes a client to the changes of one parameter.
+     *
+     * @param client The client to be subscribed.
+     * @param topic The parameter the client is interested in.
+     */
+    @Override
+    public void subscribe(Client client, BankParameter topic){
+        topics.get(topic).subscribe(client);
+    }
+
+    /**
+     * Unsubscribes a client from the changes of one parameter.
+     *
+     * @param client The client to be unsubscribed.
+     * @param topic The parameter the client is no longer interested in.
+     */
+    @Override
+    public void unsubscribe(Client client, BankParameter topic){
+        topics.get(topic).unsubscribe(client);
     }
 
     /**
-     * Notifies all subscribers of the bank with a message.
+     * Notifies the clients subscribed to the whole bank with a message.
      *
      * @param message The message to be sent to the subscribers.
      */
     @Override
     public void notifySubscribers(String message){
-        for (Client client : subscribedCustomerList) {
-            client.update(message);
+        publish(message);
+    }
+
+    /**
+     * Sends an announcement to the clients subscribed to the whole bank through the notification dispatcher.
+     * With an asynchronous dispatcher this returns before the subscribers have the message.
+     *
+     * @param message The message to be sent to the subscribers.
+     * @return The delivery of the message.
+     */
+    public NotificationDelivery publish(String message) {
+        return publish(announcements, ANNOUNCEMENTS, message);
+    }
+
+    /**
+     * Sends a message about a parameter to the clients subscribed to it through the notification dispatcher.
+     *
+     * @param topic The parameter the message is about.
+     * @param message The message to be sent to the subscribers.
+     * @return The delivery of the message.
+     */
+    public NotificationDelivery publish(BankParameter topic, String message) {
+        return publish(topics.get(topic), topic.name(), message);
+    }
+
+    /**
+     * Sends a message to the subscribers of a topic and records the fan-out in the metrics of the bank.
+     * With an asynchronous dispatcher only queueing the message is timed, and the fan-out is also
+     * recorded for the flight recorder.
+     *
+     * @param topic The topic.
+     * @param topicName The name of the topic in flight recordings.
+     * @param message The message to be sent to the subscribers.
+     * @return The delivery of the message.
+     */
+    private NotificationDelivery publish(NotificationTopic topic, String topicName, String message) {
+        NotificationEvent event = new NotificationEvent();
+        event.begin();
+        OperationRecorder recorder = metrics.get(Operation.NOTIFY_SUBSCRIBERS);
+        long start = recorder.start();
+        NotificationDispatcher dispatcher = notificationDispatcher;
+        NotificationDelivery delivery;
+        try {
+            delivery = topic.publish(message, dispatcher);
+        } catch (RuntimeException e) {
+            recorder.failure(start, e);
+            throw e;
+        }
+        recorder.success(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.bank = id.toString();
+            event.topic = topicName;
+            event.subscribers = delivery.getTotal();
+            event.dispatcher = dispatcher.getClass().getSimpleName();
+            event.commit();
+        }
+        return delivery;
+    }
+
+    /**
+     * Method to get the notifications about the changes of a parameter.
+     *
+     * @param topic The parameter.
+     * @return The topic of the parameter.
+     */
+    public NotificationTopic getTopic(BankParameter topic) {
+        return topics.get(topic);
+    }
+
+    /**
+     * Creates a topic for every parameter.
+     *
+     * @return An unmodifiable map of the topics.
+     */
+    private static Map<BankParameter, NotificationTopic> createTopics() {
+        Map<BankParameter, NotificationTopic> topics = new EnumMap<>(BankParameter.class);
+        for (BankParameter parameter : BankParameter.values()) {
+            topics.put(parameter, new NotificationTopic());
         }
+        return Collections.unmodifiableMap(topics);
     }
 }
@@ -0,0 +1,32 @@
+package lenko27.entities.banks;
+
+/**
+ * This enum represents the parameters of a bank that can be changed through BankingTools.
+ */
+public enum BankParameter {
+
+    /**
+     * The commission charged on negative credit balances.
+     */
+    CREDIT_COMMISSION,
+
+    /**
+     * The limit a credit account can go below zero.
+     */
+    CREDIT_LIMIT,
+
+    /**
+     * The interest rate of debit accounts.
+     */
+    DEBIT_INTEREST,
+
+    /**
+     * The tiered interest rates of deposit accounts.
+     */
+    DEPOSIT_INTEREST,
+
+    /**
+     * The term before which deposits can not be withdrawn.
+     */
+    TERM,
+}
@@ -2,16 +2,55 @@ package lenko27.entities.banks;
 
 import lenko27.entities.accounts.Account;
 import lenko27.entities.banks.banking.tools.interfaces.BankingOperations;
-import lenko27.entities.transactions.TransactionType;
+import lenko27.entities.client.Client;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.persistence.Recovery;
+import lenko27.persistence.RecoveryReport;
+import lenko27.persistence.SnapshotWriter;
+import lenko27.persistence.WriteAheadLog;
 import lenko27.service.ComplexInterestRate;
+import lenko27.service.TransferBatchReport;
+import lenko27.service.TransferEngine;
+import lenko27.service.TransferRequest;
+import lenko27.service.accrual.AccrualReport;
+import lenko27.service.accrual.ParallelAccrual;
+import lenko27.service.accrual.PartitionReport;
+import lenko27.service.clearing.ClearingHouse;
+import lenko27.service.clearing.SettlementReport;
+import lenko27.service.directory.EntityDirectory;
+import lenko27.service.events.AccrualRunEvent;
+import lenko27.service.events.TransferEvent;
+import lenko27.service.ledger.ShardedLedger;
+import lenko27.service.metrics.Operation;
+import lenko27.service.screening.MissingKycRule;
+import lenko27.service.screening.RescreenReport;
+import lenko27.service.screening.ScreeningPipeline;
+import lenko27.service.screening.ScreeningRule;
+import lenko27.service.metrics.OperationRecorder;
+import lenko27.service.velocity.VelocityLimiter;
 import lenko27.exceptions.InsufficientFundsException;
 import lenko27.exceptions.UnauthorizedTransactionException;
+import lenko27.exceptions.VelocityLimitExceededException;
 import lenko27.exceptions.WithdrawalBeforeTermException;
 import lombok.Getter;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 /**
  * This class represents a central bank in the banking system.
  * It follows the Singleton design pattern to ensure only one instance of CentralBank exists.
@@ -20,21 +59,71 @@ import java.util.UUID;
 public class CentralBank {
 
     /**
-     * The single instance of the CentralBank class.
+     * List of banks managed by the central bank.
      */
-    private static CentralBank instance;
+    private final List<Bank> bankList;
 
     /**
-     * List of banks managed by the central bank.
+     * Engine that applies transfers atomically and in a deadlock-free lock order.
      */
-    private final List<Bank> bankList;
+    private final TransferEngine transferEngine;
+
+    /**
+     * Directory finding banks and accounts by identifier.
+     */
+    private final EntityDirectory directory;
+
+    /**
+     * Compliance rules deciding which clients are suspicious.
+     */
+    private final ScreeningPipeline screening;
+
+    /**
+     * Clearing house accumulating cross-bank transfers, null until clearing is started.
+     */
+    private volatile ClearingHouse clearingHouse;
+
+    /**
+     * Number of snapshots kept when a new one is taken.
+     */
+    private static final int KEPT_SNAPSHOTS = 2;
+
+    /**
+     * Write-ahead log recording every change, null if the state is kept in memory only.
+     */
+    private volatile WriteAheadLog writeAheadLog;
+
+    /**
+     * Monitor serializing snapshots.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Sharded ledger applying refills, withdrawals and transfers, null if they are applied by the calling threads.
+     */
+    private volatile ShardedLedger ledger;
 
     /**
      * Private constructor for the CentralBank class.
      * Initializes the list of banks.
      */
     private CentralBank() {
-        this.bankList = new ArrayList<>();
+        this.bankList = new CopyOnWriteArrayList<>();
+        this.transferEngine = new TransferEngine();
+        this.directory = new EntityDirectory();
+        this.screening = new ScreeningPipeline(List.of(new MissingKycRule()));
+    }
+
+    /**
+     * Holder of the single instance of the CentralBank class.
+     * The instance is created when the holder class is first used, without locking on later calls.
+     */
+    private static final class InstanceHolder {
+
+        /**
+         * The single instance of the CentralBank class.
+         */
+        private static final CentralBank INSTANCE = new CentralBank();
     }
 
     /**
@@ -44,10 +133,145 @@ public class CentralBank {
      * @return The single instance of the CentralBank class.
      */
     public static CentralBank getInstance() {
-        if (instance == null) {
-            instance = new CentralBank();
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Method to start or stop recording every change in a write-ahead log.
+     * From then on bank and account creation, refills, withdrawals, transfers, bank parameter changes
+     * and client data changes are appended to the log.
+     *
+     * @param writeAheadLog The log to record changes in, or null to keep the state in memory only.
+     */
+    public synchronized void attachWriteAheadLog(WriteAheadLog writeAheadLog) {
+        if (writeAheadLog != null && ledger != null) {
+            throw new IllegalStateException("The sharded ledger has to be stopped before attaching a write-ahead log.");
+        }
+        this.writeAheadLog = writeAheadLog;
+        transferEngine.setWriteAheadLog(writeAheadLog);
+    }
+
+    /**
+     * Method to start applying refills, withdrawals and transfers on a sharded ledger.
+     * From then on every account is owned by one of the shard threads; logged refills and withdrawals of
+     * Account and transfers of this class are handed to the owning shard and wait for its answer, and
+     * transferAsync returns without waiting. Operations handed to the ledger while it is being stopped are
+     * applied by the calling threads instead, and failures of a shard are rethrown as they were thrown.
+     * Transfer legs are not written to a write-ahead log, so the ledger
+     * can not run while one is attached, and a transfer whose credit has not been applied yet is missing from
+     * snapshots taken meanwhile.
+     *
+     * @param shards The number of shards.
+     * @return The running ledger, or the one already running.
+     */
+    public synchronized ShardedLedger startLedger(int shards) {
+        if (writeAheadLog != null) {
+            throw new IllegalStateException("The write-ahead log has to be detached before starting the sharded ledger.");
         }
-        return instance;
+        if (ledger == null) {
+            ShardedLedger started = new ShardedLedger(shards);
+            started.start();
+            ledger = started;
+        }
+        return ledger;
+    }
+
+    /**
+     * Method to stop the sharded ledger once it has applied every operation handed to it.
+     * Operations made afterwards are applied by the calling threads again.
+     *
+     * @throws InterruptedException If interrupted while waiting for the shards to stop.
+     */
+    public synchronized void stopLedger() throws InterruptedException {
+        ShardedLedger running = ledger;
+        if (running != null) {
+            ledger = null;
+            running.close();
+        }
+    }
+
+    /**
+     * Method to write a snapshot of all banks while transfers go on.
+     * Older snapshots are deleted except for the previous one, and so are the log segments
+     * that only hold records older than the oldest kept snapshot; the snapshots hold the journals
+     * of the accounts, so no history is lost with them.
+     *
+     * @param snapshotDirectory The directory holding the snapshots.
+     * @return The directory of the new snapshot.
+     * @throws IOException If the snapshot can not be written.
+     */
+    public Path takeSnapshot(Path snapshotDirectory) throws IOException {
+        synchronized (snapshotLock) {
+            WriteAheadLog log = writeAheadLog;
+            long lsn = log == null ? 0 : log.getLastLsn();
+            Path snapshot = SnapshotWriter.write(snapshotDirectory, List.copyOf(bankList), lsn, ForkJoinPool.commonPool());
+            long oldestLsn = SnapshotWriter.prune(snapshotDirectory, KEPT_SNAPSHOTS);
+            if (log != null) {
+                log.truncateBefore(oldestLsn);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Method to take snapshots periodically.
+     * Snapshots stop at the first one that fails, which is reported by the returned future.
+     *
+     * @param scheduler The executor taking the snapshots.
+     * @param snapshotDirectory The directory holding the snapshots.
+     * @param period The time between the end of one snapshot and the start of the next.
+     * @param unit The unit of the period.
+     * @return The future of the scheduled snapshots, which can be used to stop them.
+     */
+    public ScheduledFuture<?> scheduleSnapshots(ScheduledExecutorService scheduler, Path snapshotDirectory,
+                                                long period, TimeUnit unit) {
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot(snapshotDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Method to replace all banks with the ones recovered from the latest snapshot and the write-ahead log.
+     * Banks are loaded and replayed in parallel on the common fork-join pool.
+     * The write-ahead log has to be detached while recovering and can be reopened and attached afterwards.
+     *
+     * @param snapshotDirectory The directory holding the snapshots.
+     * @param logDirectory The directory holding the write-ahead log, or null to load the snapshot only.
+     * @return The report of the recovery.
+     * @throws IOException If the snapshot or the log can not be read.
+     */
+    public RecoveryReport recover(Path snapshotDirectory, Path logDirectory) throws IOException {
+        if (writeAheadLog != null) {
+            throw new IllegalStateException("The write-ahead log has to be detached before recovering.");
+        }
+        bankList.clear();
+        directory.clear();
+        return Recovery.recover(this, snapshotDirectory, logDirectory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Method to add a bank restored from a snapshot or from the write-ahead log.
+     * Nothing is logged.
+     *
+     * @param id The unique identifier of the bank.
+     * @param interest The debit interest rate of the bank.
+     * @param depositInterest The deposit interest rates of the bank.
+     * @param creditLimit The credit limit of the bank.
+     * @param creditCommission The credit commission of the bank.
+     * @param term The term of the bank.
+     * @param storageMode The way the bank stores the balances of its accounts.
+     * @return The restored bank.
+     */
+    public Bank restoreBank(UUID id, double interest, List<ComplexInterestRate> depositInterest,
+                            double creditLimit, double creditCommission, int term, StorageMode storageMode) {
+        Bank bank = new Bank(interest, depositInterest, creditLimit, creditCommission, id, term, storageMode);
+        directory.addBank(bank);
+        bankList.add(bank);
+        return bank;
     }
 
     /**
@@ -62,33 +286,296 @@ public class CentralBank {
      */
     public Bank createBank(double interest, List<ComplexInterestRate> depositInterest,
                            double creditLimit, double creditCommission, int term) {
-        Bank bank = new Bank(interest, depositInterest, creditLimit, creditCommission, UUID.randomUUID(), term);
+        return createBank(interest, depositInterest, creditLimit, creditCommission, term, StorageMode.OBJECT);
+    }
+
+    /**
+     * Method to create a new bank with a chosen account storage mode and add it to the list of banks.
+     *
+     * @param interest The debit interest rate of the bank.
+     * @param depositInterest The deposit interest rates of the bank.
+     * @param creditLimit The credit limit of the bank.
+     * @param creditCommission The credit commission of the bank.
+     * @param term The term of the bank.
+     * @param storageMode The way the bank stores the balances of its accounts.
+     * @return The newly created bank.
+     */
+    public Bank createBank(double interest, List<ComplexInterestRate> depositInterest,
+                           double creditLimit, double creditCommission, int term, StorageMode storageMode) {
+        Bank bank = new Bank(interest, depositInterest, creditLimit, creditCommission, UUID.randomUUID(), term, storageMode);
+        directory.addBank(bank);
         bankList.add(bank);
+        WriteAheadLog log = writeAheadLog;
+        if (log != null) {
+            log.commit(log.appendBankCreated(bank));
+        }
         return bank;
     }
 
+    /**
+     * Method to find a bank by its identifier.
+     *
+     * @param id The identifier of the bank.
+     * @return The bank, or null if there is no such bank.
+     */
+    public Bank findBank(UUID id) {
+        return directory.findBank(id);
+    }
+
+    /**
+     * Method to find an account of any bank by its identifier.
+     *
+     * @param id The identifier of the account.
+     * @return The account, or null if there is no such account.
+     */
+    public Account findAccount(UUID id) {
+        return directory.findAccount(id);
+    }
+
     /**
      * Method to transfer a sum of money from a sender account to an accepter account.
+     * Safe to call from many threads; the transfer itself is applied by the transfer engine.
      *
      * @param sender The account from which the sum is withdrawn.
      * @param accepter The account to which the sum is deposited.
      * @param sum The sum of money to be transferred.
      * @throws UnauthorizedTransactionException If the client is suspicious.
+     * @throws VelocityLimitExceededException If the transfer would exceed a velocity rule of the sending bank.
      * @throws WithdrawalBeforeTermException If the withdrawal is before the term.
      * @throws InsufficientFundsException If there are insufficient funds.
+     * @throws IllegalArgumentException If the sum is not a positive finite number.
      */
     public void doTransfer(Account sender, Account accepter, double sum) throws UnauthorizedTransactionException, WithdrawalBeforeTermException, InsufficientFundsException {
-        if (sender.getClient().isSuspicious()) {
-            throw new UnauthorizedTransactionException(sender.getClient());
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        OperationRecorder recorder = sender.getBank().getMetrics().get(Operation.TRANSFER);
+        long start = recorder.start();
+        String outcome = OperationStatus.COMPLETED.name();
+        VelocityLimiter velocity = sender.getBank().getVelocityLimiter();
+        long now = 0;
+        boolean counted = false;
+        try {
+            if (sender.getClient().isSuspicious()) {
+                throw UnauthorizedTransactionException.create(sender.getClient());
+            }
+            if (accepter.getClient().isSuspicious()) {
+                throw UnauthorizedTransactionException.create(accepter.getClient());
+            }
+            Account.checkAmount(sum);
+            if (velocity != null) {
+                now = System.nanoTime();
+                if (!velocity.tryAcquire(sender, sum, now)) {
+                    throw VelocityLimitExceededException.create(sender.getClient());
+                }
+                counted = true;
+            }
+            ShardedLedger sharded = ledger;
+            OperationStatus applied = sharded == null ? null : sharded.awaitTransfer(sender, accepter, sum);
+            if (applied != null) {
+                applied.throwIfRejected();
+            } else {
+                transferEngine.transfer(sender, accepter, sum);
+            }
+        } catch (UnauthorizedTransactionException | WithdrawalBeforeTermException | InsufficientFundsException
+                 | RuntimeException e) {
+            if (counted) {
+                velocity.release(sender, sum, now);
+            }
+            recorder.failure(start, e);
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.senderBank = sender.getBank().getId().toString();
+                event.accepterBank = accepter.getBank().getId().toString();
+                event.amount = sum;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+        recorder.success(start);
+        ClearingHouse clearing = clearingHouse;
+        if (clearing != null) {
+            clearing.record(sender.getBank(), accepter.getBank(), sum);
+        }
+    }
+
+    /**
+     * Method to transfer a sum of money from a sender account to an accepter account,
+     * reporting a rejection instead of throwing it. Declined transfers cost no more than completed ones,
+     * since nothing is allocated to report them. Transfers declined after the velocity check are not counted
+     * against the velocity rules.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return COMPLETED if the sum was transferred, the reason of the rejection otherwise.
+     */
+    public OperationStatus tryTransfer(Account sender, Account accepter, double sum) {
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        OperationRecorder recorder = sender.getBank().getMetrics().get(Operation.TRANSFER);
+        long start = recorder.start();
+        OperationStatus status;
+        if (!(sum > 0 && sum < Double.POSITIVE_INFINITY)) {
+            status = OperationStatus.INVALID_AMOUNT;
+        } else if (sender.getClient().isSuspicious() || accepter.getClient().isSuspicious()) {
+            status = OperationStatus.UNAUTHORIZED;
+        } else {
+            VelocityLimiter velocity = sender.getBank().getVelocityLimiter();
+            long now = velocity == null ? 0 : System.nanoTime();
+            if (velocity != null && !velocity.tryAcquire(sender, sum, now)) {
+                status = OperationStatus.VELOCITY_LIMIT_EXCEEDED;
+            } else {
+                ShardedLedger sharded = ledger;
+                status = sharded == null ? null : sharded.awaitTransfer(sender, accepter, sum);
+                if (status == null) {
+                    status = transferEngine.tryTransfer(sender, accepter, sum);
+                }
+                if (velocity != null && status != OperationStatus.COMPLETED) {
+                    velocity.release(sender, sum, now);
+                }
+            }
+        }
+        recorder.complete(start, status);
+        event.end();
+        if (event.shouldCommit()) {
+            event.senderBank = sender.getBank().getId().toString();
+            event.accepterBank = accepter.getBank().getId().toString();
+            event.amount = sum;
+            event.outcome = status.name();
+            event.commit();
+        }
+        ClearingHouse clearing = clearingHouse;
+        if (status == OperationStatus.COMPLETED && clearing != null) {
+            clearing.record(sender.getBank(), accepter.getBank(), sum);
+        }
+        return status;
+    }
+
+    /**
+     * Method to transfer a sum of money from a sender account to an accepter account without waiting
+     * for the outcome when the sharded ledger is running. The amount, the clients and the velocity rules
+     * are checked at once; the transfer is recorded in the metrics and the clearing house once it completes.
+     * Without a ledger, the transfer is made by tryTransfer and the returned future is already complete.
+     * Flight recorder events are not recorded for transfers that complete asynchronously.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return The future completed with COMPLETED once the sum is credited, or with the reason of the rejection.
+     */
+    public CompletableFuture<OperationStatus> transferAsync(Account sender, Account accepter, double sum) {
+        ShardedLedger sharded = ledger;
+        if (sharded == null) {
+            return CompletableFuture.completedFuture(tryTransfer(sender, accepter, sum));
+        }
+        OperationRecorder recorder = sender.getBank().getMetrics().get(Operation.TRANSFER);
+        long start = recorder.start();
+        OperationStatus status = null;
+        if (!(sum > 0 && sum < Double.POSITIVE_INFINITY)) {
+            status = OperationStatus.INVALID_AMOUNT;
+        } else if (sender.getClient().isSuspicious() || accepter.getClient().isSuspicious()) {
+            status = OperationStatus.UNAUTHORIZED;
+        }
+        VelocityLimiter velocity = sender.getBank().getVelocityLimiter();
+        long now = velocity == null ? 0 : System.nanoTime();
+        if (status == null && velocity != null && !velocity.tryAcquire(sender, sum, now)) {
+            status = OperationStatus.VELOCITY_LIMIT_EXCEEDED;
+        }
+        if (status != null) {
+            recorder.complete(start, status);
+            return CompletableFuture.completedFuture(status);
+        }
+        CompletableFuture<OperationStatus> future;
+        try {
+            future = sharded.transfer(sender, accepter, sum);
+        } catch (RejectedExecutionException e) {
+            future = CompletableFuture.completedFuture(transferEngine.tryTransfer(sender, accepter, sum));
+        }
+        return future.whenComplete((outcome, failure) -> {
+            if (failure != null) {
+                if (velocity != null) {
+                    velocity.release(sender, sum, now);
+                }
+                recorder.failure(start, failure);
+                return;
+            }
+            if (velocity != null && outcome != OperationStatus.COMPLETED) {
+                velocity.release(sender, sum, now);
+            }
+            recorder.complete(start, outcome);
+            ClearingHouse clearing = clearingHouse;
+            if (outcome == OperationStatus.COMPLETED && clearing != null) {
+                clearing.record(sender.getBank(), accepter.getBank(), sum);
+            }
+        });
+    }
+
+    /**
+     * Method to apply a batch of transfers, such as a payment file, reporting the outcome of every transfer.
+     * Clients and the velocity rules of the sending banks are checked once per batch and every account
+     * is updated once per chunk of the batch with its net balance, while every transfer keeps its own history entries.
+     *
+     * @param transfers The transfers, in the order they are applied.
+     * @return The report of the batch.
+     */
+    public TransferBatchReport doTransferBatch(List<TransferRequest> transfers) {
+        TransferBatchReport report = transferEngine.transferBatch(transfers);
+        ClearingHouse clearing = clearingHouse;
+        if (clearing != null) {
+            for (int i = 0; i < transfers.size(); ++i) {
+                if (report.statuses().get(i) == OperationStatus.COMPLETED) {
+                    TransferRequest transfer = transfers.get(i);
+                    clearing.record(transfer.sender().getBank(), transfer.accepter().getBank(), transfer.sum());
+                }
+            }
         }
-        if (accepter.getClient().isSuspicious()) {
-            throw new UnauthorizedTransactionException(accepter.getClient());
+        return report;
+    }
+
+    /**
+     * Method to start clearing transfers between banks in windows.
+     * From then on every transfer between accounts of different banks is also recorded as an obligation
+     * between the banks, settled net when the window is closed.
+     *
+     * @return The clearing house, the running one if clearing was already started.
+     */
+    public synchronized ClearingHouse startClearing() {
+        if (clearingHouse == null) {
+            clearingHouse = new ClearingHouse();
         }
-        if (sender.withdraw(sum, false)) {
-            accepter.refill(sum, false);
-            sender.operationLogging(TransactionType.TRANSFERSENDER, sum);
-            accepter.operationLogging(TransactionType.TRANSFERACCEPTER, sum);
+        return clearingHouse;
+    }
+
+    /**
+     * Method to close the current clearing window and settle the net position of every bank.
+     *
+     * @return The report of the closed cycle.
+     * @throws IllegalStateException If clearing was not started.
+     */
+    public SettlementReport closeClearingCycle() {
+        ClearingHouse clearing = clearingHouse;
+        if (clearing == null) {
+            throw new IllegalStateException("Clearing was not started.");
+        }
+        return clearing.closeCycle();
+    }
+
+    /**
+     * Method to stop clearing, settling the transfers of the last window.
+     *
+     * @return The report of the last cycle.
+     * @throws IllegalStateException If clearing was not started.
+     */
+    public synchronized SettlementReport stopClearing() {
+        ClearingHouse clearing = clearingHouse;
+        if (clearing == null) {
+            throw new IllegalStateException("Clearing was not started.");
         }
+        clearingHouse = null;
+        return clearing.closeCycle();
     }
 
     /**
@@ -97,8 +584,87 @@ public class CentralBank {
      * @throws UnauthorizedTransactionException If the transaction is not authorized.
      */
     public void doAccrual() throws UnauthorizedTransactionException {
-        for (BankingOperations bank : bankList) {
-            bank.interestAccrual();
+        AccrualRunEvent event = new AccrualRunEvent();
+        event.begin();
+        boolean failed = true;
+        try {
+            for (BankingOperations bank : bankList) {
+                bank.interestAccrual();
+            }
+            failed = false;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.banks = bankList.size();
+                event.accounts = directory.getAccountCount();
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Method to accrue interest on all accounts in all banks in parallel on the common fork-join pool.
+     * Accounts of suspicious clients are skipped and reported instead of aborting the run.
+     *
+     * @return The report of the run.
+     */
+    public AccrualReport doParallelAccrual() {
+        return run(new ParallelAccrual(), report -> { });
+    }
+
+    /**
+     * Method to accrue interest on all accounts in all banks in parallel.
+     * Every bank is split into ranges of accounts that are accrued as separate tasks.
+     * Accounts of suspicious clients are skipped and reported instead of aborting the run.
+     *
+     * @param executor The executor running the partitions.
+     * @param partitionSize The number of accounts in one partition.
+     * @param progress Callback receiving the report of every finished partition.
+     * @return The report of the run.
+     */
+    public AccrualReport doParallelAccrual(Executor executor, int partitionSize, Consumer<PartitionReport> progress) {
+        return run(new ParallelAccrual(executor, partitionSize), progress);
+    }
+
+    /**
+     * Method to replace a screening rule, such as a watchlist by its update, and rescreen every client
+     * with an account for the new rule only.
+     *
+     * @param rule The rule to be replaced.
+     * @param replacement The new rule.
+     * @return The report of the rescreening.
+     * @throws IllegalArgumentException If the rule is not part of the screening pipeline.
+     */
+    public RescreenReport replaceScreeningRule(ScreeningRule rule, ScreeningRule replacement) {
+        Set<Client> clients = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Bank bank : bankList) {
+            for (Account account : bank.copyAccounts()) {
+                clients.add(account.getClient());
+            }
+        }
+        return screening.replaceRule(rule, replacement, clients);
+    }
+
+    /**
+     * Method to run a parallel accrual over all banks and record it for the flight recorder.
+     *
+     * @param accrual The parallel accrual.
+     * @param progress Callback receiving the report of every finished partition.
+     * @return The report of the run.
+     */
+    private AccrualReport run(ParallelAccrual accrual, Consumer<PartitionReport> progress) {
+        AccrualRunEvent event = new AccrualRunEvent();
+        event.begin();
+        AccrualReport report = accrual.run(bankList, progress);
+        event.end();
+        if (event.shouldCommit()) {
+            event.banks = bankList.size();
+            event.accounts = report.getProcessed();
+            event.parallel = true;
+            event.failed = !report.isSuccessful();
+            event.commit();
         }
+        return report;
     }
 }
@@ -0,0 +1,18 @@
+package lenko27.entities.banks;
+
+/**
+ * This enum represents the way a bank stores the balances of its accounts.
+ */
+public enum StorageMode {
+
+    /**
+     * Every account keeps its balance in its own object.
+     */
+    OBJECT,
+
+    /**
+     * Balances and types live in the columnar AccountStore of the bank,
+     * and accounts read and write their balances through it.
+     */
+    COLUMNAR,
+}
@@ -1,5 +1,6 @@
 package lenko27.entities.banks.banking.tools.interfaces;
 
+import lenko27.entities.banks.BankParameter;
 import lenko27.entities.client.Client;
 
 /**
@@ -21,6 +22,22 @@ public interface SubscribingOperations {
      */
     void unsubscribe(Client client);
 
+    /**
+     * Method to subscribe a client to the notifications about one parameter only.
+     *
+     * @param client The client to be subscribed.
+     * @param topic The parameter the client is interested in.
+     */
+    void subscribe(Client client, BankParameter topic);
+
+    /**
+     * Method to unsubscribe a client from the notifications about one parameter.
+     *
+     * @param client The client to be unsubscribed.
+     * @param topic The parameter the client is no longer interested in.
+     */
+    void unsubscribe(Client client, BankParameter topic);
+
     /**
      * Method to notify all subscribers with a message.
      *
@@ -1,20 +1,33 @@
 package lenko27.entities.client;
 
+import lenko27.entities.banks.CentralBank;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.service.screening.ScreeningVerdict;
+import lenko27.service.screening.VerdictCache;
+import lenko27.service.notifications.BroadcastLog;
+import lenko27.service.notifications.Subscription;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
-import lombok.Setter;
 import lombok.Getter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class represents a client in the banking system.
  */
 @Getter
-@Builder(builderMethodName = "hiddenBuilder")
 public class Client{
 
+    /**
+     * Unique identifier for the client.
+     */
+    private final UUID id;
+
     /**
      * The client's name.
      */
@@ -28,35 +41,204 @@ public class Client{
     /**
      * The client's address.
      */
-    private @Setter String address;
+    private String address;
 
     /**
      * The client's passport data.
      */
-    private @Setter String passportData;
+    private String passportData;
+
+    /**
+     * Subscriptions of the client to the broadcast logs of banks, including cancelled ones.
+     */
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Messages sent to this client only, null until the first one arrives.
+     */
+    @Getter(AccessLevel.NONE)
+    private BroadcastLog directMessages;
+
+    /**
+     * Outcome of the last compliance screening, empty until the client is screened or after its data changed.
+     * Only the screening pipeline can fill it.
+     */
+    @Getter(AccessLevel.NONE)
+    private final VerdictCache screeningVerdict = new VerdictCache();
+
+    /**
+     * Constructor for the Client class used by the builder.
+     *
+     * @param id The identifier of the client, or null for a new one.
+     * @param name The client's name.
+     * @param surname The client's surname.
+     * @param address The client's address.
+     * @param passportData The client's passport data.
+     */
+    private Client(UUID id, @NonNull String name, @NonNull String surname, String address, String passportData) {
+        this.id = id != null ? id : UUID.randomUUID();
+        this.name = name;
+        this.surname = surname;
+        this.address = address;
+        this.passportData = passportData;
+    }
+
+    /**
+     * Static method to restore a client with the identifier it had before a restart.
+     *
+     * @param id The identifier of the client.
+     * @param name The client's name.
+     * @param surname The client's surname.
+     * @param address The client's address.
+     * @param passportData The client's passport data.
+     * @return The client, not screened yet.
+     */
+    public static Client restore(@NonNull UUID id, String name, String surname, String address, String passportData) {
+        return new Client(id, name, surname, address, passportData);
+    }
+
+    /**
+     * Method behind the builder, creating a client with a new identifier.
+     *
+     * @param name The client's name.
+     * @param surname The client's surname.
+     * @param address The client's address.
+     * @param passportData The client's passport data.
+     * @return The client.
+     */
+    @Builder(builderMethodName = "hiddenBuilder")
+    private static Client create(String name, String surname, String address, String passportData) {
+        return new Client(null, name, surname, address, passportData);
+    }
+
+    /**
+     * Method to change the client's address.
+     * The cached screening verdict is dropped, so the client is screened again on the next check.
+     *
+     * @param address The new address.
+     */
+    public void setAddress(String address) {
+        synchronized (this) {
+            this.address = address;
+            screeningVerdict.clear();
+        }
+        logUpdate();
+    }
+
+    /**
+     * Method to change the client's passport data.
+     * The cached screening verdict is dropped, so the client is screened again on the next check.
+     *
+     * @param passportData The new passport data.
+     */
+    public void setPassportData(String passportData) {
+        synchronized (this) {
+            this.passportData = passportData;
+            screeningVerdict.clear();
+        }
+        logUpdate();
+    }
+
+    /**
+     * Method to get the outcome of the last compliance screening.
+     *
+     * @return The verdict, or null if the client is not screened or their data changed since.
+     */
+    public ScreeningVerdict getScreeningVerdict() {
+        return screeningVerdict.get();
+    }
 
     /**
-     * The list of messages associated with the client.
+     * Method to get the cache of the client's screening verdict, which only the screening pipeline can fill.
+     *
+     * @return The cache.
+     */
+    public VerdictCache getVerdictCache() {
+        return screeningVerdict;
+    }
+
+    /**
+     * Method to record a change of the client's data in the write-ahead log, if there is one.
      */
-    @Builder.Default
-    @Getter private List<String> messages = new ArrayList<>();
+    private void logUpdate() {
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(writeAheadLog.appendClientUpdated(this));
+        }
+    }
 
     /**
      * Method to check if the client is suspicious.
-     * A client is considered suspicious if both their address and passport data are null.
+     * A client is considered suspicious if any rule of the screening pipeline of the central bank flags them;
+     * by default that is if both their address and passport data are null. The verdict is cached until
+     * the client's data or the rules change.
      *
      * @return true if the client is suspicious, false otherwise.
      */
     public boolean isSuspicious() {
-        return (getAddress() == null) && (getPassportData() == null);
+        return CentralBank.getInstance().getScreening().isFlagged(this);
     }
     /**
-     * Method to update the client's list of messages.
+     * Method to send a message to this client only.
+     * Notifications of banks are not sent through this method, they are read from the broadcast logs.
      *
      * @param message The message to be added.
      */
-    public void update(String message){
-        messages.add(message);
+    public synchronized void update(String message){
+        if (directMessages == null) {
+            directMessages = new BroadcastLog();
+        }
+        directMessages.append(message);
+    }
+
+    /**
+     * Method to add a subscription to the broadcast log of a bank.
+     *
+     * @param subscription The subscription of this client.
+     */
+    public void addSubscription(Subscription subscription) {
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * Method to get the messages of the client in the order they were sent.
+     * The list is derived from the broadcast logs the client subscribed to and the messages sent to the client only;
+     * it reflects the deliveries made up to the call.
+     *
+     * @return An unmodifiable list of the messages.
+     */
+    public List<String> getMessages() {
+        List<BroadcastLog> logs = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.getEnd() > subscription.getFrom()) {
+                logs.add(subscription.getLog());
+                ranges.add(new int[]{subscription.getFrom(), subscription.getEnd()});
+            }
+        }
+        BroadcastLog direct;
+        synchronized (this) {
+            direct = directMessages;
+        }
+        if (direct != null && direct.size() > 0) {
+            logs.add(direct);
+            ranges.add(new int[]{0, direct.size()});
+        }
+        List<String> messages = new ArrayList<>();
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < logs.size(); ++i) {
+                int[] range = ranges.get(i);
+                if (range[0] < range[1] && (next < 0 || logs.get(i).getSequence(range[0])
+                        < logs.get(next).getSequence(ranges.get(next)[0]))) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                return Collections.unmodifiableList(messages);
+            }
+            messages.add(logs.get(next).get(ranges.get(next)[0]++));
+        }
     }
     /**
      * Static method to create a new ClientBuilder.
@@ -0,0 +1,62 @@
+package lenko27.entities.transactions;
+
+import lenko27.exceptions.InsufficientFundsException;
+import lenko27.exceptions.UnauthorizedTransactionException;
+import lenko27.exceptions.VelocityLimitExceededException;
+import lenko27.exceptions.WithdrawalBeforeTermException;
+
+/**
+ * This enum represents the outcome of an operation that reports rejections instead of throwing them.
+ */
+public enum OperationStatus {
+
+    /**
+     * The operation was applied.
+     */
+    COMPLETED,
+
+    /**
+     * The operation was rejected because a client involved is suspicious.
+     */
+    UNAUTHORIZED,
+
+    /**
+     * The operation was rejected because the account does not hold enough money.
+     */
+    INSUFFICIENT_FUNDS,
+
+    /**
+     * The operation was rejected because money can not be withdrawn from a deposit before its term.
+     */
+    WITHDRAWAL_BEFORE_TERM,
+
+    /**
+     * The operation was rejected because the sum is not a positive finite number.
+     */
+    INVALID_AMOUNT,
+
+    /**
+     * The transfer was rejected because it would exceed a velocity rule of the sending bank.
+     */
+    VELOCITY_LIMIT_EXCEEDED;
+
+    /**
+     * Method to turn a rejection into the exception the throwing API reports for it.
+     *
+     * @throws UnauthorizedTransactionException If a client involved is suspicious or a velocity rule is exceeded.
+     * @throws InsufficientFundsException If the account does not hold enough money.
+     * @throws WithdrawalBeforeTermException If money is withdrawn from a deposit before its term.
+     * @throws IllegalArgumentException If the sum is not a positive finite number.
+     */
+    public void throwIfRejected() throws UnauthorizedTransactionException, InsufficientFundsException, WithdrawalBeforeTermException {
+        switch (this) {
+            case COMPLETED -> {
+            }
+            case UNAUTHORIZED -> throw UnauthorizedTransactionException.create();
+            case INSUFFICIENT_FUNDS -> throw InsufficientFundsException.create();
+            case WITHDRAWAL_BEFORE_TERM -> throw WithdrawalBeforeTermException.create();
+            case INVALID_AMOUNT -> throw new IllegalArgumentException("Sum must be a positive finite number.");
+            case VELOCITY_LIMIT_EXCEEDED -> throw VelocityLimitExceededException.create();
+        }
+    }
+}
@@ -6,6 +6,16 @@ import lombok.Getter;
 @Getter
 public class Transaction {
 
+    /**
+     * The sequence number of the transaction, unique across all journals, or 0 if it was not logged.
+     */
+    private final long id;
+
+    /**
+     * The time the transaction was logged, in milliseconds since the epoch, or 0 if it was not logged.
+     */
+    private final long timestamp;
+
     /**
      * The type of the transaction.
      */
@@ -16,6 +26,11 @@ public class Transaction {
      */
     private final double sum;
 
+    /**
+     * Whether the transaction has been cancelled by a compensating entry.
+     */
+    private final boolean cancelled;
+
     /**
      * Constructor for the Transaction class.
      *
@@ -23,8 +38,24 @@ public class Transaction {
      * @param sum The sum involved in the transaction.
      */
     public Transaction(TransactionType transactionType, double sum){
+        this(0, transactionType, sum, 0, false);
+    }
+
+    /**
+     * Constructor for the Transaction class used for logged transactions.
+     *
+     * @param id The sequence number of the transaction.
+     * @param transactionType The type of the transaction.
+     * @param sum The sum involved in the transaction.
+     * @param timestamp The time the transaction was logged, in milliseconds since the epoch.
+     * @param cancelled Whether the transaction has been cancelled.
+     */
+    public Transaction(long id, TransactionType transactionType, double sum, long timestamp, boolean cancelled){
+        this.id = id;
         this.transactionType = transactionType;
         this.sum = sum;
+        this.timestamp = timestamp;
+        this.cancelled = cancelled;
     }
 
     /**
@@ -0,0 +1,605 @@
+package lenko27.entities.transactions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is the transaction history of an account, stored in columns.
+ * Every entry is a type code, a sum, a sequence number and a timestamp kept in append-only primitive
+ * segments, so logging an operation does not allocate an object. Segments start small and double up to
+ * a fixed size, which keeps accounts with a short history cheap and never moves an existing entry.
+ * Sequence numbers and timestamps are stored as int offsets from the first entry of their segment, so an
+ * entry takes 17 bytes; the rare values too far from that base are kept whole in a map on the side.
+ * Entries are appended while holding the monitor of the owning account and can be read without it.
+ * Entries are never removed: a cancelled entry keeps its position and is marked with a tombstone bit
+ * in its type code, and the cancellation itself is posted as a new entry.
+ */
+public class TransactionJournal {
+
+    /**
+     * Source of sequence numbers, shared by all journals so that entries are ordered across accounts.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * Size of the first segment is 1 << FIRST_SHIFT entries.
+     */
+    private static final int FIRST_SHIFT = 4;
+
+    /**
+     * Size of the largest segment is 1 << LAST_SHIFT entries.
+     */
+    private static final int LAST_SHIFT = 12;
+
+    /**
+     * Number of segments that grow geometrically.
+     */
+    private static final int GROWING_SEGMENTS = LAST_SHIFT - FIRST_SHIFT + 1;
+
+    /**
+     * Number of entries held by the geometrically growing segments.
+     */
+    private static final int GROWING_CAPACITY = ((1 << GROWING_SEGMENTS) - 1) << FIRST_SHIFT;
+
+    /**
+     * All transaction types indexed by ordinal.
+     */
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    /**
+     * Bit of the type code marking a cancelled entry.
+     */
+    private static final byte CANCELLED = (byte) 0x80;
+
+    /**
+     * Bits of the type code holding the transaction type ordinal.
+     */
+    private static final int TYPE_MASK = 0x7F;
+
+    /**
+     * Empty segment lists shared by journals without entries.
+     */
+    private static final byte[][] NO_TYPES = new byte[0][];
+
+    /**
+     * Empty segment lists shared by journals without entries.
+     */
+    private static final double[][] NO_SUMS = new double[0][];
+
+    /**
+     * Empty segment lists shared by journals without entries.
+     */
+    private static final int[][] NO_INTS = new int[0][];
+
+    /**
+     * Empty base lists shared by journals without entries.
+     */
+    private static final long[] NO_BASES = new long[0];
+
+    /**
+     * Offset marking a value that does not fit in an int and is kept whole on the side.
+     */
+    private static final int WIDE = Integer.MIN_VALUE;
+
+    /**
+     * Segments of transaction type ordinals.
+     */
+    private volatile byte[][] types = NO_TYPES;
+
+    /**
+     * Segments of transaction sums.
+     */
+    private volatile double[][] sums = NO_SUMS;
+
+    /**
+     * Segments of sequence numbers, as offsets from the base of their segment.
+     */
+    private volatile int[][] ids = NO_INTS;
+
+    /**
+     * Segments of timestamps, as offsets in milliseconds from the base of their segment.
+     */
+    private volatile int[][] timestamps = NO_INTS;
+
+    /**
+     * Sequence number of the first entry of every segment.
+     */
+    private volatile long[] idBases = NO_BASES;
+
+    /**
+     * Timestamp of the first entry of every segment, in milliseconds since the epoch.
+     */
+    private volatile long[] timestampBases = NO_BASES;
+
+    /**
+     * Sequence numbers too far from the base of their segment, by position. Created on the first such entry.
+     */
+    private volatile Map<Integer, Long> wideIds;
+
+    /**
+     * Timestamps too far from the base of their segment, by position. Created on the first such entry.
+     */
+    private volatile Map<Integer, Long> wideTimestamps;
+
+    /**
+     * Number of entries in the journal.
+     */
+    private volatile int size;
+
+    /**
+     * View of the journal as a list of transactions.
+     */
+    private final List<Transaction> view = new View();
+
+    /**
+     * Positions of the entries by sequence number, built on the first lookup and kept up to date afterwards.
+     * Accessed only while holding the monitor of the owning account.
+     */
+    private IdIndex index;
+
+    /**
+     * Method to append an entry to the journal.
+     * Must be called while holding the monitor of the owning account.
+     *
+     * @param type The type of the transaction.
+     * @param sum The sum involved in the transaction.
+     * @return The sequence number of the new entry.
+     */
+    public long append(TransactionType type, double sum) {
+        long id = SEQUENCE.incrementAndGet();
+        put((byte) type.ordinal(), sum, id, System.currentTimeMillis());
+        return id;
+    }
+
+    /**
+     * Method to append an entry restored from a snapshot, keeping its sequence number, timestamp and tombstone.
+     * Sequence numbers drawn afterwards are larger than the restored one.
+     * Must be called while holding the monitor of the owning account.
+     *
+     * @param type The type of the transaction.
+     * @param sum The sum involved in the transaction.
+     * @param id The sequence number of the entry.
+     * @param timestamp The time the transaction was logged, in milliseconds since the epoch.
+     * @param cancelled Whether the entry carries a tombstone.
+     */
+    public void restore(TransactionType type, double sum, long id, long timestamp, boolean cancelled) {
+        SEQUENCE.accumulateAndGet(id, Math::max);
+        put((byte) (cancelled ? type.ordinal() | CANCELLED : type.ordinal()), sum, id, timestamp);
+    }
+
+    /**
+     * Method to write an entry after the last one.
+     *
+     * @param code The type code of the entry.
+     * @param sum The sum involved in the transaction.
+     * @param id The sequence number of the entry.
+     * @param timestamp The time the transaction was logged.
+     */
+    private void put(byte code, double sum, long id, long timestamp) {
+        int index = size;
+        int segment = segment(index);
+        if (segment == types.length) {
+            addSegment(segment, id, timestamp);
+        }
+        int offset = offset(index, segment);
+        types[segment][offset] = code;
+        sums[segment][offset] = sum;
+        ids[segment][offset] = putId(index, id, idBases[segment]);
+        timestamps[segment][offset] = putTimestamp(index, timestamp, timestampBases[segment]);
+        size = index + 1;
+        if (this.index != null) {
+            this.index.put(id, index);
+        }
+    }
+
+    /**
+     * Method to append several entries at once, with consecutive sequence numbers and one timestamp.
+     * Must be called while holding the monitor of the owning account.
+     *
+     * @param entryTypes The types of the transactions.
+     * @param entrySums The sums involved in the transactions.
+     * @param count The number of entries to append.
+     */
+    public void appendAll(TransactionType[] entryTypes, double[] entrySums, int count) {
+        if (count == 0) {
+            return;
+        }
+        long firstId = SEQUENCE.getAndAdd(count) + 1;
+        long timestamp = System.currentTimeMillis();
+        int start = size;
+        for (int done = 0; done < count; ) {
+            int segment = segment(start + done);
+            if (segment == types.length) {
+                addSegment(segment, firstId + done, timestamp);
+            }
+            int offset = offset(start + done, segment);
+            int length = Math.min(count - done, types[segment].length - offset);
+            byte[] typeSegment = types[segment];
+            int[] idSegment = ids[segment];
+            int[] timestampSegment = timestamps[segment];
+            long idBase = idBases[segment];
+            long timestampBase = timestampBases[segment];
+            for (int k = 0; k < length; ++k) {
+                typeSegment[offset + k] = (byte) entryTypes[done + k].ordinal();
+                idSegment[offset + k] = putId(start + done + k, firstId + done + k, idBase);
+                timestampSegment[offset + k] = putTimestamp(start + done + k, timestamp, timestampBase);
+            }
+            System.arraycopy(entrySums, done, sums[segment], offset, length);
+            done += length;
+        }
+        size = start + count;
+        if (index != null) {
+            for (int k = 0; k < count; ++k) {
+                index.put(firstId + k, start + k);
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of entries in the journal.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to get the type of an entry.
+     *
+     * @param index The position of the entry.
+     * @return The type of the transaction.
+     */
+    public TransactionType getType(int index) {
+        int segment = segment(index);
+        return TYPES[types[segment][offset(index, segment)] & TYPE_MASK];
+    }
+
+    /**
+     * Method to check if an entry has been cancelled.
+     *
+     * @param index The position of the entry.
+     * @return true if the entry carries a tombstone.
+     */
+    public boolean isCancelled(int index) {
+        int segment = segment(index);
+        return (types[segment][offset(index, segment)] & CANCELLED) != 0;
+    }
+
+    /**
+     * Method to get the sum of an entry.
+     *
+     * @param index The position of the entry.
+     * @return The sum involved in the transaction.
+     */
+    public double getSum(int index) {
+        int segment = segment(index);
+        return sums[segment][offset(index, segment)];
+    }
+
+    /**
+     * Method to get the sequence number of an entry.
+     *
+     * @param index The position of the entry.
+     * @return The sequence number of the transaction.
+     */
+    public long getId(int index) {
+        int segment = segment(index);
+        int delta = ids[segment][offset(index, segment)];
+        return delta != WIDE ? idBases[segment] + delta : wideIds.get(index);
+    }
+
+    /**
+     * Method to get the timestamp of an entry.
+     *
+     * @param index The position of the entry.
+     * @return The time the transaction was logged, in milliseconds since the epoch.
+     */
+    public long getTimestamp(int index) {
+        int segment = segment(index);
+        int delta = timestamps[segment][offset(index, segment)];
+        return delta != WIDE ? timestampBases[segment] + delta : wideTimestamps.get(index);
+    }
+
+    /**
+     * Method to get an entry as a transaction object.
+     *
+     * @param index The position of the entry.
+     * @return A new transaction holding the entry.
+     */
+    public Transaction get(int index) {
+        int segment = segment(index);
+        byte code = types[segment][offset(index, segment)];
+        return new Transaction(getId(index), TYPES[code & TYPE_MASK],
+                getSum(index), getTimestamp(index), (code & CANCELLED) != 0);
+    }
+
+    /**
+     * Method to find the position of an entry by its sequence number in constant time.
+     * Must be called while holding the monitor of the owning account.
+     *
+     * @param id The sequence number of the entry.
+     * @return The position of the entry, or -1 if the journal holds no entry with this sequence number.
+     */
+    public int indexOf(long id) {
+        if (index == null) {
+            IdIndex built = new IdIndex(size);
+            for (int i = 0; i < size; ++i) {
+                built.put(getId(i), i);
+            }
+            index = built;
+        }
+        return index.get(id);
+    }
+
+    /**
+     * Method to find the newest entry that has not been cancelled with a given type and sum.
+     * Used for transactions that were not read from the journal and carry no sequence number.
+     *
+     * @param type The type of the transaction.
+     * @param sum The sum involved in the transaction.
+     * @return The position of the entry, or -1 if there is none.
+     */
+    public int lastIndexOf(TransactionType type, double sum) {
+        for (int i = size - 1; i >= 0; --i) {
+            if (!isCancelled(i) && getType(i) == type && getSum(i) == sum) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to mark an entry as cancelled.
+     * Must be called while holding the monitor of the owning account.
+     *
+     * @param index The position of the entry.
+     * @return true if the entry was cancelled, false if it already was.
+     */
+    public boolean cancel(int index) {
+        int segment = segment(index);
+        int offset = offset(index, segment);
+        byte code = types[segment][offset];
+        if ((code & CANCELLED) != 0) {
+            return false;
+        }
+        types[segment][offset] = (byte) (code | CANCELLED);
+        return true;
+    }
+
+    /**
+     * Method to get the journal as a list of transactions.
+     * The list is a view: it reflects later entries and creates transaction objects only when read.
+     *
+     * @return The view of the journal.
+     */
+    public List<Transaction> view() {
+        return view;
+    }
+
+    /**
+     * Method to get the segment holding an entry.
+     *
+     * @param index The position of the entry.
+     * @return The segment index.
+     */
+    private static int segment(int index) {
+        if (index < GROWING_CAPACITY) {
+            return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_SHIFT) + 1);
+        }
+        return GROWING_SEGMENTS + ((index - GROWING_CAPACITY) >>> LAST_SHIFT);
+    }
+
+    /**
+     * Method to get the position of an entry inside its segment.
+     *
+     * @param index The position of the entry.
+     * @param segment The segment holding the entry.
+     * @return The offset inside the segment.
+     */
+    private static int offset(int index, int segment) {
+        if (segment < GROWING_SEGMENTS) {
+            return index - (((1 << segment) - 1) << FIRST_SHIFT);
+        }
+        return (index - GROWING_CAPACITY) & ((1 << LAST_SHIFT) - 1);
+    }
+
+    /**
+     * Method to get the offset of a value from a base, or WIDE if it does not fit in an int.
+     *
+     * @param value The value.
+     * @param base The base of the segment.
+     * @return The offset, or WIDE.
+     */
+    private static int delta(long value, long base) {
+        long delta = value - base;
+        return delta > WIDE && delta <= Integer.MAX_VALUE ? (int) delta : WIDE;
+    }
+
+    /**
+     * Method to encode the sequence number of an entry, keeping it on the side if it is too far from the base.
+     *
+     * @param index The position of the entry.
+     * @param id The sequence number.
+     * @param base The sequence number of the first entry of the segment.
+     * @return The value to store in the segment.
+     */
+    private int putId(int index, long id, long base) {
+        int delta = delta(id, base);
+        if (delta == WIDE) {
+            if (wideIds == null) {
+                wideIds = new ConcurrentHashMap<>();
+            }
+            wideIds.put(index, id);
+        }
+        return delta;
+    }
+
+    /**
+     * Method to encode the timestamp of an entry, keeping it on the side if it is too far from the base.
+     *
+     * @param index The position of the entry.
+     * @param timestamp The timestamp.
+     * @param base The timestamp of the first entry of the segment.
+     * @return The value to store in the segment.
+     */
+    private int putTimestamp(int index, long timestamp, long base) {
+        int delta = delta(timestamp, base);
+        if (delta == WIDE) {
+            if (wideTimestamps == null) {
+                wideTimestamps = new ConcurrentHashMap<>();
+            }
+            wideTimestamps.put(index, timestamp);
+        }
+        return delta;
+    }
+
+    /**
+     * Method to append a segment to every column.
+     *
+     * @param segment The index of the new segment.
+     * @param firstId The sequence number of the first entry of the segment.
+     * @param firstTimestamp The timestamp of the first entry of the segment.
+     */
+    private void addSegment(int segment, long firstId, long firstTimestamp) {
+        int length = 1 << Math.min(FIRST_SHIFT + segment, LAST_SHIFT);
+        byte[][] newTypes = Arrays.copyOf(types, segment + 1);
+        newTypes[segment] = new byte[length];
+        double[][] newSums = Arrays.copyOf(sums, segment + 1);
+        newSums[segment] = new double[length];
+        int[][] newIds = Arrays.copyOf(ids, segment + 1);
+        newIds[segment] = new int[length];
+        int[][] newTimestamps = Arrays.copyOf(timestamps, segment + 1);
+        newTimestamps[segment] = new int[length];
+        long[] newIdBases = Arrays.copyOf(idBases, segment + 1);
+        newIdBases[segment] = firstId;
+        long[] newTimestampBases = Arrays.copyOf(timestampBases, segment + 1);
+        newTimestampBases[segment] = firstTimestamp;
+        sums = newSums;
+        ids = newIds;
+        timestamps = newTimestamps;
+        idBases = newIdBases;
+        timestampBases = newTimestampBases;
+        types = newTypes;
+    }
+
+    /**
+     * This class is the list view of the journal.
+     */
+    private final class View extends AbstractList<Transaction> implements RandomAccess {
+
+        @Override
+        public Transaction get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return TransactionJournal.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * This class maps sequence numbers to positions, using open addressing with linear probing.
+     * Sequence numbers start at 1, so 0 marks an empty slot.
+     */
+    private static final class IdIndex {
+
+        /**
+         * Sequence numbers, 0 for empty slots.
+         */
+        private long[] keys;
+
+        /**
+         * Positions of the entries.
+         */
+        private int[] positions;
+
+        /**
+         * Number of entries in the index.
+         */
+        private int count;
+
+        /**
+         * Constructor for the IdIndex class.
+         *
+         * @param expected The number of entries the index is created for.
+         */
+        private IdIndex(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            positions = new int[capacity];
+        }
+
+        /**
+         * Method to add an entry.
+         *
+         * @param id The sequence number of the entry, not yet in the index.
+         * @param position The position of the entry.
+         */
+        private void put(long id, int position) {
+            if ((count + 1) * 4L > keys.length * 3L) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(id) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            positions[slot] = position;
+            count = count + 1;
+        }
+
+        /**
+         * Method to get the position of an entry.
+         *
+         * @param id The sequence number of the entry.
+         * @return The position, or -1 if the index holds no such entry.
+         */
+        private int get(long id) {
+            int mask = keys.length - 1;
+            for (int slot = hash(id) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    return positions[slot];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Method to double the capacity of the index.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldPositions = positions;
+            keys = new long[oldKeys.length * 2];
+            positions = new int[oldKeys.length * 2];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldPositions[i]);
+                }
+            }
+        }
+
+        /**
+         * Method to spread the bits of a sequence number over the hash.
+         *
+         * @param id The sequence number.
+         * @return The hash of the sequence number.
+         */
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
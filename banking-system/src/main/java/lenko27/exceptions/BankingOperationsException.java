@@ -3,9 +3,17 @@ package lenko27.exceptions;
 /**
  * This class represents an exception that can occur during banking operations.
  * It extends the Exception class, adding several constructors for different use cases.
+ * Routine rejections can be thrown as preallocated instances without a stack trace, which makes
+ * declined operations cheap under load; see setStackless.
  */
 public class BankingOperationsException extends Exception {
 
+    /**
+     * Whether routine rejections are thrown as preallocated instances without a stack trace.
+     * Initialized from the system property lenko27.stacklessExceptions.
+     */
+    private static volatile boolean stackless = Boolean.getBoolean("lenko27.stacklessExceptions");
+
     /**
      * Default constructor for the BankingOperationsException class.
      * Creates a new exception with a default message.
@@ -44,6 +52,36 @@ public class BankingOperationsException extends Exception {
     public BankingOperationsException(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * Constructor for preallocated exceptions without a stack trace or suppressed exceptions,
+     * so that one instance can be thrown by many threads.
+     *
+     * @param message The specific message for this exception.
+     * @param stackless Marks the constructor of stackless exceptions; must be true.
+     */
+    protected BankingOperationsException(String message, boolean stackless) {
+        super(message, null, !stackless, !stackless);
+    }
+
+    /**
+     * Method to check if routine rejections are thrown as preallocated instances without a stack trace.
+     *
+     * @return true if rejections are stackless.
+     */
+    public static boolean isStackless() {
+        return stackless;
+    }
+
+    /**
+     * Method to choose how routine rejections are thrown. Stackless rejections are shared instances
+     * with a generic message, so they neither name the client nor tell where they were thrown.
+     *
+     * @param stackless Whether rejections are thrown as preallocated instances without a stack trace.
+     */
+    public static void setStackless(boolean stackless) {
+        BankingOperationsException.stackless = stackless;
+    }
 }
 
 
@@ -8,6 +8,11 @@ import lenko27.entities.client.Client;
  */
 public class InsufficientFundsException extends BankingOperationsException {
 
+    /**
+     * Preallocated instance without a stack trace, thrown when rejections are stackless.
+     */
+    private static final InsufficientFundsException STACKLESS = new InsufficientFundsException(true);
+
     /**
      * Default constructor for the InsufficientFundsException class.
      * Creates a new exception with a default message.
@@ -35,5 +40,33 @@ public class InsufficientFundsException extends BankingOperationsException {
     public InsufficientFundsException(String message) {
         super(message);
     }
-}
 
+    /**
+     * Constructor for the preallocated instance without a stack trace.
+     *
+     * @param stackless Marks the constructor of the stackless instance.
+     */
+    private InsufficientFundsException(boolean stackless) {
+        super("Insufficient funds in the account.", stackless);
+    }
+
+    /**
+     * Method to get the exception to throw when there are insufficient funds in an account.
+     *
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static InsufficientFundsException create() {
+        return isStackless() ? STACKLESS : new InsufficientFundsException();
+    }
+
+    /**
+     * Method to get the exception to throw when there are insufficient funds in an account.
+     * The client is named in the message unless rejections are stackless.
+     *
+     * @param client The client involved.
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static InsufficientFundsException create(Client client) {
+        return isStackless() ? STACKLESS : new InsufficientFundsException(client);
+    }
+}
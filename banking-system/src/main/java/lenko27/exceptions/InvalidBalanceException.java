@@ -0,0 +1,44 @@
+package lenko27.exceptions;
+
+import lenko27.entities.client.Client;
+
+/**
+ * This class represents an exception that is thrown when the balance of an account is not a finite number,
+ * so that nothing computed from it, such as interest, can be applied.
+ * It extends the BankingOperationsException class, adding several constructors for different use cases.
+ */
+public class InvalidBalanceException extends BankingOperationsException {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default constructor for the InvalidBalanceException class.
+     * Creates a new exception with a default message.
+     */
+    public InvalidBalanceException() {
+        super("Balance of the account is not a finite number.");
+    }
+
+    /**
+     * Constructor for the InvalidBalanceException class.
+     * Creates a new exception with a specific message about the client.
+     *
+     * @param client The client whose account has the invalid balance.
+     */
+    public InvalidBalanceException(Client client) {
+        super("Client " + client.getName() + " " + client.getSurname() + ": Balance of the account is not a finite number.");
+    }
+
+    /**
+     * Constructor for the InvalidBalanceException class.
+     * Creates a new exception with a specific message.
+     *
+     * @param message The specific message for this exception.
+     */
+    public InvalidBalanceException(String message) {
+        super(message);
+    }
+}
@@ -7,6 +7,11 @@ import lenko27.entities.client.Client;
  */
 public class UnauthorizedTransactionException extends BankingOperationsException {
 
+    /**
+     * Preallocated instance without a stack trace, thrown when rejections are stackless.
+     */
+    private static final UnauthorizedTransactionException STACKLESS = new UnauthorizedTransactionException(true);
+
     /**
      * Default constructor for the UnauthorizedTransactionException class.
      * Creates a new exception with a default message.
@@ -34,5 +39,43 @@ public class UnauthorizedTransactionException extends BankingOperationsException
     public UnauthorizedTransactionException(String message) {
         super(message);
     }
-}
 
+    /**
+     * Constructor for the preallocated instance without a stack trace.
+     *
+     * @param stackless Marks the constructor of the stackless instance.
+     */
+    private UnauthorizedTransactionException(boolean stackless) {
+        super("Unauthorized transaction. User is not allowed to perform this operation.", stackless);
+    }
+
+    /**
+     * Constructor for preallocated instances of subclasses without a stack trace.
+     *
+     * @param message The specific message for this exception.
+     * @param stackless Marks the constructor of stackless exceptions; must be true.
+     */
+    protected UnauthorizedTransactionException(String message, boolean stackless) {
+        super(message, stackless);
+    }
+
+    /**
+     * Method to get the exception to throw when a transaction is unauthorized.
+     *
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static UnauthorizedTransactionException create() {
+        return isStackless() ? STACKLESS : new UnauthorizedTransactionException();
+    }
+
+    /**
+     * Method to get the exception to throw when a transaction is unauthorized.
+     * The client is named in the message unless rejections are stackless.
+     *
+     * @param client The client involved.
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static UnauthorizedTransactionException create(Client client) {
+        return isStackless() ? STACKLESS : new UnauthorizedTransactionException(client);
+    }
+}
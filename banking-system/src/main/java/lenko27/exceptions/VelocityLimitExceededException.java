@@ -0,0 +1,67 @@
+package lenko27.exceptions;
+
+import lenko27.entities.client.Client;
+/**
+ * This class represents an exception that is thrown when a transfer would exceed a velocity rule of the bank,
+ * such as the number of transfers or the sum an account or a client may send per minute.
+ * It extends the UnauthorizedTransactionException class, since the transfer is refused rather than failed.
+ */
+public class VelocityLimitExceededException extends UnauthorizedTransactionException {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Preallocated instance without a stack trace, thrown when rejections are stackless.
+     */
+    private static final VelocityLimitExceededException STACKLESS = new VelocityLimitExceededException(true);
+
+    /**
+     * Default constructor for the VelocityLimitExceededException class.
+     * Creates a new exception with a default message.
+     */
+    public VelocityLimitExceededException() {
+        super("Velocity limit exceeded. Too many transfers or too much money sent in the window.");
+    }
+
+    /**
+     * Constructor for the VelocityLimitExceededException class.
+     * Creates a new exception with a specific message about the client.
+     *
+     * @param client The client whose transfer exceeds the limit.
+     */
+    public VelocityLimitExceededException(Client client) {
+        super("Client " + client.getName() + " " + client.getSurname() + ": Velocity limit exceeded. Too many transfers or too much money sent in the window.");
+    }
+
+    /**
+     * Constructor for the preallocated instance without a stack trace.
+     *
+     * @param stackless Marks the constructor of the stackless instance.
+     */
+    private VelocityLimitExceededException(boolean stackless) {
+        super("Velocity limit exceeded. Too many transfers or too much money sent in the window.", stackless);
+    }
+
+    /**
+     * Method to get the exception to throw when a transfer exceeds a velocity rule.
+     *
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static VelocityLimitExceededException create() {
+        return isStackless() ? STACKLESS : new VelocityLimitExceededException();
+    }
+
+    /**
+     * Method to get the exception to throw when a transfer exceeds a velocity rule.
+     * The client is named in the message unless rejections are stackless.
+     *
+     * @param client The sending client.
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static VelocityLimitExceededException create(Client client) {
+        return isStackless() ? STACKLESS : new VelocityLimitExceededException(client);
+    }
+}
@@ -8,6 +8,11 @@ import lenko27.entities.client.Client;
  */
 public class WithdrawalBeforeTermException extends BankingOperationsException {
 
+    /**
+     * Preallocated instance without a stack trace, thrown when rejections are stackless.
+     */
+    private static final WithdrawalBeforeTermException STACKLESS = new WithdrawalBeforeTermException(true);
+
     /**
      * Default constructor for the WithdrawalBeforeTermException class.
      * Creates a new exception with a default message.
@@ -35,5 +40,33 @@ public class WithdrawalBeforeTermException extends BankingOperationsException {
     public WithdrawalBeforeTermException(String message) {
         super(message);
     }
-}
 
+    /**
+     * Constructor for the preallocated instance without a stack trace.
+     *
+     * @param stackless Marks the constructor of the stackless instance.
+     */
+    private WithdrawalBeforeTermException(boolean stackless) {
+        super("Withdrawal before term is not allowed.", stackless);
+    }
+
+    /**
+     * Method to get the exception to throw when a withdrawal is attempted before the term.
+     *
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static WithdrawalBeforeTermException create() {
+        return isStackless() ? STACKLESS : new WithdrawalBeforeTermException();
+    }
+
+    /**
+     * Method to get the exception to throw when a withdrawal is attempted before the term.
+     * The client is named in the message unless rejections are stackless.
+     *
+     * @param client The client involved.
+     * @return The preallocated stackless instance if rejections are stackless, a new exception otherwise.
+     */
+    public static WithdrawalBeforeTermException create(Client client) {
+        return isStackless() ? STACKLESS : new WithdrawalBeforeTermException(client);
+    }
+}
@@ -0,0 +1,25 @@
+package lenko27.persistence;
+
+/**
+ * This enum represents how soon a record of the write-ahead log is forced to disk.
+ */
+public enum Durability {
+
+    /**
+     * Every operation forces its record to disk before it returns.
+     */
+    SYNC,
+
+    /**
+     * Records are forced in groups, every few milliseconds or every few records, whichever comes first.
+     * An operation returns once the group holding its record has been forced.
+     */
+    GROUP,
+
+    /**
+     * Records are forced in the background and operations never wait for them.
+     * A crash of the machine can lose the most recent operations; a crash of the process can not,
+     * since written records are already in the page cache.
+     */
+    ASYNC,
+}
@@ -0,0 +1,524 @@
+package lenko27.persistence;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.AccountType;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.BankParameter;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.banks.StorageMode;
+import lenko27.entities.client.Client;
+import lenko27.entities.transactions.TransactionJournal;
+import lenko27.entities.transactions.TransactionType;
+import lenko27.service.ComplexInterestRate;
+import lenko27.service.directory.EntityDirectory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class rebuilds the state of the central bank from the latest snapshot and the tail of the write-ahead log.
+ * The accounts of different banks are loaded in parallel and registered in the directory of the central bank,
+ * the structural records of the tail are applied in log order, and finally the balance changes and cancellations
+ * are replayed in parallel, one task per bank.
+ * Changes an account already contained when it was written to the snapshot are skipped.
+ */
+public final class Recovery {
+
+    /**
+     * Central bank the state is recovered into.
+     */
+    private final CentralBank centralBank;
+
+    /**
+     * Executor loading and replaying the banks.
+     */
+    private final Executor executor;
+
+    /**
+     * Directory of the central bank, holding the recovered banks and accounts.
+     */
+    private final EntityDirectory directory;
+
+    /**
+     * Recovered clients without accounts, by identifier.
+     */
+    private final Map<UUID, Client> clients = new HashMap<>();
+
+    /**
+     * Decoded records of the log tail, in log order.
+     */
+    private final List<Change> changes = new ArrayList<>();
+
+    private Recovery(CentralBank centralBank, Executor executor) {
+        this.centralBank = centralBank;
+        this.directory = centralBank.getDirectory();
+        this.executor = executor;
+    }
+
+    /**
+     * Method to recover the banks from the latest snapshot and the write-ahead log into a central bank.
+     * Nothing may be logged while recovering, so no write-ahead log may be attached to the central bank.
+     *
+     * @param centralBank The central bank, without banks.
+     * @param snapshotDirectory The directory holding the snapshots.
+     * @param logDirectory The directory holding the write-ahead log, or null to load the snapshot only.
+     * @param executor The executor loading and replaying the banks.
+     * @return The report of the recovery.
+     * @throws IOException If the snapshot or the log can not be read.
+     */
+    public static RecoveryReport recover(CentralBank centralBank, Path snapshotDirectory, Path logDirectory,
+                                         Executor executor) throws IOException {
+        return new Recovery(centralBank, executor).run(snapshotDirectory, logDirectory);
+    }
+
+    /**
+     * Method to run the recovery.
+     *
+     * @param snapshotDirectory The directory holding the snapshots.
+     * @param logDirectory The directory holding the write-ahead log, or null to load the snapshot only.
+     * @return The report of the recovery.
+     * @throws IOException If the snapshot or the log can not be read.
+     */
+    private RecoveryReport run(Path snapshotDirectory, Path logDirectory) throws IOException {
+        long start = System.nanoTime();
+        List<Path> snapshots = SnapshotWriter.list(snapshotDirectory);
+        Path snapshot = snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+        long snapshotLsn = snapshot == null ? 0 : SnapshotWriter.lsn(snapshot);
+
+        long lastLsn = snapshotLsn;
+        if (logDirectory != null) {
+            try (WriteAheadLogReader reader = new WriteAheadLogReader(logDirectory, snapshotLsn)) {
+                while (reader.hasNext()) {
+                    WalRecord record = reader.next();
+                    changes.add(decode(record));
+                    lastLsn = record.lsn();
+                }
+            }
+        }
+
+        int loaded = snapshot == null ? 0 : loadSnapshot(snapshot);
+        long applied = replay();
+        return new RecoveryReport(snapshotLsn, centralBank.getBankList().size(), loaded, changes.size(), applied, lastLsn,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Method to load a snapshot, the accounts of different banks in parallel.
+     *
+     * @param snapshot The snapshot directory.
+     * @return The number of loaded accounts.
+     * @throws IOException If the snapshot can not be read.
+     */
+    private int loadSnapshot(Path snapshot) throws IOException {
+        Client[] owners = loadClients(snapshot.resolve(SnapshotWriter.CLIENTS_FILE));
+        List<Bank> loaded = loadBanks(snapshot.resolve(SnapshotWriter.BANKS_FILE));
+        AtomicInteger count = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < loaded.size(); ++i) {
+            Bank bank = loaded.get(i);
+            Path file = snapshot.resolve(SnapshotWriter.accountsFile(i));
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    count.addAndGet(loadAccounts(file, bank, owners));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        SnapshotWriter.join(futures);
+        return count.get();
+    }
+
+    /**
+     * Method to load the clients file.
+     *
+     * @param file The file.
+     * @return The clients in index order.
+     * @throws IOException If the file can not be read.
+     */
+    private Client[] loadClients(Path file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            Client[] owners = new Client[in.readInt()];
+            for (int i = 0; i < owners.length; ++i) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                String name = in.readUTF();
+                String surname = in.readUTF();
+                String address = readNullable(in);
+                String passportData = readNullable(in);
+                owners[i] = Client.restore(id, name, surname, address, passportData);
+            }
+            return owners;
+        }
+    }
+
+    /**
+     * Method to load the banks file and register the banks in the central bank.
+     *
+     * @param file The file.
+     * @return The banks in file order.
+     * @throws IOException If the file can not be read.
+     */
+    private List<Bank> loadBanks(Path file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            in.readLong();
+            int count = in.readInt();
+            List<Bank> loaded = new ArrayList<>(count);
+            StorageMode[] storageModes = StorageMode.values();
+            for (int i = 0; i < count; ++i) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                StorageMode storageMode = storageModes[in.readByte()];
+                double debitInterest = in.readDouble();
+                double creditLimit = in.readDouble();
+                double creditCommission = in.readDouble();
+                int term = in.readInt();
+                List<ComplexInterestRate> depositInterest = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; --j) {
+                    depositInterest.add(new ComplexInterestRate(in.readDouble(), in.readDouble()));
+                }
+                loaded.add(centralBank.restoreBank(id, debitInterest, depositInterest, creditLimit,
+                        creditCommission, term, storageMode));
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Method to load the accounts file of a bank, together with the journals of the accounts.
+     *
+     * @param file The file.
+     * @param bank The bank.
+     * @param owners The clients in index order.
+     * @return The number of loaded accounts.
+     * @throws IOException If the file can not be read.
+     */
+    private int loadAccounts(Path file, Bank bank, Client[] owners) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SnapshotWriter.BUFFER_SIZE).flip();
+            fill(channel, buffer, 2 * Integer.BYTES);
+            if (buffer.getInt() != SnapshotWriter.MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; ++i) {
+                if (buffer.remaining() < SnapshotWriter.ACCOUNT_SIZE) {
+                    fill(channel, buffer, SnapshotWriter.ACCOUNT_SIZE);
+                }
+                UUID id = new UUID(buffer.getLong(), buffer.getLong());
+                AccountType type = AccountType.fromCode(buffer.get());
+                Client owner = owners[buffer.getInt()];
+                double balance = buffer.getDouble();
+                long lastLsn = buffer.getLong();
+                Account account = bank.restoreAccount(id, type, owner, balance, lastLsn);
+                int entries = buffer.getInt();
+                if (entries > 0) {
+                    TransactionJournal journal = account.getJournal();
+                    synchronized (account) {
+                        for (int j = 0; j < entries; ++j) {
+                            if (buffer.remaining() < SnapshotWriter.ENTRY_SIZE) {
+                                fill(channel, buffer, SnapshotWriter.ENTRY_SIZE);
+                            }
+                            TransactionType entryType = TransactionType.values()[buffer.get()];
+                            boolean cancelled = buffer.get() != 0;
+                            journal.restore(entryType, buffer.getDouble(), buffer.getLong(), buffer.getLong(),
+                                    cancelled);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Method to read from a channel until a buffer holds at least a number of unread bytes.
+     *
+     * @param channel The channel to read from.
+     * @param buffer The buffer, ready to be read; unread bytes are kept.
+     * @param needed The number of bytes needed.
+     * @throws IOException If the channel ends before enough bytes are read.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Method to apply the log tail: structural records in log order, then the balance changes and cancellations of
+     * different banks in parallel.
+     *
+     * @return The number of applied balance changes and cancellations.
+     * @throws IOException If a replay task fails.
+     */
+    private long replay() throws IOException {
+        Map<Bank, List<AccountChange>> balanceChanges = new LinkedHashMap<>();
+        for (Change change : changes) {
+            switch (change) {
+                case BankCreated created -> {
+                    if (directory.findBank(created.id()) == null) {
+                        centralBank.restoreBank(created.id(), created.debitInterest(), created.depositInterest(),
+                                created.creditLimit(), created.creditCommission(), created.term(), created.storageMode());
+                    }
+                }
+                case AccountOpened opened -> {
+                    Bank bank = directory.findBank(opened.bankId());
+                    if (bank != null && directory.findAccount(opened.id()) == null) {
+                        bank.restoreAccount(opened.id(), opened.type(), client(opened.owner()), 0, 0);
+                    }
+                }
+                case ClientUpdated updated -> {
+                    Client client = client(updated.client());
+                    client.setAddress(updated.client().address());
+                    client.setPassportData(updated.client().passportData());
+                }
+                case ParameterChanged changed -> {
+                    Bank bank = directory.findBank(changed.bankId());
+                    if (bank != null) {
+                        switch (changed.parameter()) {
+                            case CREDIT_COMMISSION -> bank.setCreditCommission(changed.value());
+                            case CREDIT_LIMIT -> bank.setCreditLimit(changed.value());
+                            case DEBIT_INTEREST -> bank.setDebitInterest(changed.value());
+                            case DEPOSIT_INTEREST -> { }
+                            case TERM -> bank.setTerm((int) changed.value());
+                        }
+                    }
+                }
+                case DepositInterestChanged changed -> {
+                    Bank bank = directory.findBank(changed.bankId());
+                    if (bank != null) {
+                        bank.setDepositInterest(changed.depositInterest());
+                    }
+                }
+                case Entry entry -> addBalanceChange(balanceChanges, entry.lsn(), entry.accountId(),
+                        entry.type(), entry.sum());
+                case Transfer transfer -> {
+                    addBalanceChange(balanceChanges, transfer.lsn(), transfer.senderId(),
+                            TransactionType.TRANSFERSENDER, transfer.sum());
+                    addBalanceChange(balanceChanges, transfer.lsn(), transfer.accepterId(),
+                            TransactionType.TRANSFERACCEPTER, transfer.sum());
+                }
+                case Cancel cancel -> {
+                    Account account = directory.findAccount(cancel.accountId());
+                    if (account != null) {
+                        balanceChanges.computeIfAbsent(account.getBank(), bank -> new ArrayList<>())
+                                .add(new Cancellation(account, cancel.lsn(), cancel.position(), cancel.type(),
+                                        cancel.sum()));
+                    }
+                }
+            }
+        }
+
+        LongAdder applied = new LongAdder();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (List<AccountChange> bankChanges : balanceChanges.values()) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (AccountChange change : bankChanges) {
+                    boolean done = switch (change) {
+                        case BalanceChange balance -> balance.account().replay(balance.lsn(), balance.type(),
+                                balance.sum());
+                        case Cancellation cancellation -> cancellation.account().replayCancel(cancellation.lsn(),
+                                cancellation.position(), cancellation.type(), cancellation.sum());
+                    };
+                    if (done) {
+                        applied.increment();
+                    }
+                }
+            }, executor));
+        }
+        SnapshotWriter.join(futures);
+        return applied.sum();
+    }
+
+    /**
+     * Method to queue a balance change for the bank of its account.
+     * Changes of accounts that are neither in the snapshot nor opened in the log are dropped.
+     *
+     * @param balanceChanges The queued changes by bank.
+     * @param lsn The log sequence number of the record.
+     * @param accountId The identifier of the account.
+     * @param type The type of the transaction.
+     * @param sum The sum involved in the transaction.
+     */
+    private void addBalanceChange(Map<Bank, List<AccountChange>> balanceChanges, long lsn, UUID accountId,
+                                  TransactionType type, double sum) {
+        Account account = directory.findAccount(accountId);
+        if (account != null) {
+            balanceChanges.computeIfAbsent(account.getBank(), bank -> new ArrayList<>())
+                    .add(new BalanceChange(account, lsn, type, sum));
+        }
+    }
+
+    /**
+     * Method to get a recovered client, creating it if it owns no account and was not created by an earlier record.
+     *
+     * @param data The client data of the record.
+     * @return The client.
+     */
+    private Client client(ClientData data) {
+        List<Account> owned = directory.findAccounts(data.id());
+        if (!owned.isEmpty()) {
+            return owned.get(0).getClient();
+        }
+        return clients.computeIfAbsent(data.id(),
+                id -> Client.restore(id, data.name(), data.surname(), data.address(), data.passportData()));
+    }
+
+    /**
+     * Method to decode a log record.
+     *
+     * @param record The record.
+     * @return The decoded change.
+     */
+    private static Change decode(WalRecord record) {
+        ByteBuffer payload = record.payload();
+        return switch (record.type()) {
+            case BANK_CREATED -> new BankCreated(WalRecord.getUuid(payload), StorageMode.values()[payload.get()],
+                    payload.getDouble(), payload.getDouble(), payload.getDouble(), payload.getInt(),
+                    getDepositInterest(payload));
+            case ACCOUNT_OPENED -> new AccountOpened(WalRecord.getUuid(payload), WalRecord.getUuid(payload),
+                    AccountType.fromCode(payload.get()), getClient(payload));
+            case CLIENT_UPDATED -> new ClientUpdated(getClient(payload));
+            case ENTRY -> new Entry(record.lsn(), WalRecord.getUuid(payload), TransactionType.values()[payload.get()],
+                    payload.getDouble());
+            case TRANSFER -> new Transfer(record.lsn(), WalRecord.getUuid(payload), WalRecord.getUuid(payload),
+                    payload.getDouble());
+            case BANK_PARAMETER -> new ParameterChanged(WalRecord.getUuid(payload),
+                    BankParameter.values()[payload.get()], payload.getDouble());
+            case DEPOSIT_INTEREST -> new DepositInterestChanged(WalRecord.getUuid(payload), getDepositInterest(payload));
+            case CANCEL -> new Cancel(record.lsn(), WalRecord.getUuid(payload), payload.getInt(),
+                    TransactionType.values()[payload.get()], payload.getDouble());
+        };
+    }
+
+    /**
+     * Method to decode a client written by the log.
+     *
+     * @param payload The buffer to read from.
+     * @return The client data.
+     */
+    private static ClientData getClient(ByteBuffer payload) {
+        return new ClientData(WalRecord.getUuid(payload), WalRecord.getString(payload), WalRecord.getString(payload),
+                WalRecord.getString(payload), WalRecord.getString(payload));
+    }
+
+    /**
+     * Method to decode deposit interest rates written by the log.
+     *
+     * @param payload The buffer to read from.
+     * @return The deposit interest rates.
+     */
+    private static List<ComplexInterestRate> getDepositInterest(ByteBuffer payload) {
+        int count = payload.getInt();
+        List<ComplexInterestRate> depositInterest = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            depositInterest.add(new ComplexInterestRate(payload.getDouble(), payload.getDouble()));
+        }
+        return depositInterest;
+    }
+
+    /**
+     * Method to open a snapshot file and check its marker.
+     *
+     * @param file The file.
+     * @return The stream positioned after the marker.
+     * @throws IOException If the file can not be opened or is not a snapshot file.
+     */
+    private static DataInputStream open(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                SnapshotWriter.BUFFER_SIZE));
+        if (in.readInt() != SnapshotWriter.MAGIC) {
+            in.close();
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        return in;
+    }
+
+    /**
+     * Method to read a string that may be null.
+     *
+     * @param in The stream to read from.
+     * @return The string, or null.
+     * @throws IOException If the string can not be read.
+     */
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A decoded record of the log tail.
+     */
+    private sealed interface Change permits BankCreated, AccountOpened, ClientUpdated, ParameterChanged,
+            DepositInterestChanged, Entry, Transfer, Cancel {
+    }
+
+    private record BankCreated(UUID id, StorageMode storageMode, double debitInterest, double creditLimit,
+                               double creditCommission, int term, List<ComplexInterestRate> depositInterest)
+            implements Change {
+    }
+
+    private record AccountOpened(UUID bankId, UUID id, AccountType type, ClientData owner) implements Change {
+    }
+
+    private record ClientUpdated(ClientData client) implements Change {
+    }
+
+    private record ParameterChanged(UUID bankId, BankParameter parameter, double value) implements Change {
+    }
+
+    private record DepositInterestChanged(UUID bankId, List<ComplexInterestRate> depositInterest) implements Change {
+    }
+
+    private record Entry(long lsn, UUID accountId, TransactionType type, double sum) implements Change {
+    }
+
+    private record Transfer(long lsn, UUID senderId, UUID accepterId, double sum) implements Change {
+    }
+
+    private record Cancel(long lsn, UUID accountId, int position, TransactionType type, double sum)
+            implements Change {
+    }
+
+    private record ClientData(UUID id, String name, String surname, String address, String passportData) {
+    }
+
+    /**
+     * A change of an account queued for replay.
+     */
+    private sealed interface AccountChange permits BalanceChange, Cancellation {
+    }
+
+    /**
+     * A balance change queued for replay.
+     */
+    private record BalanceChange(Account account, long lsn, TransactionType type, double sum) implements AccountChange {
+    }
+
+    /**
+     * A cancellation of a journal entry queued for replay.
+     */
+    private record Cancellation(Account account, long lsn, int position, TransactionType type, double sum)
+            implements AccountChange {
+    }
+}
@@ -0,0 +1,16 @@
+package lenko27.persistence;
+
+/**
+ * This record represents the outcome of recovering the state from a snapshot and the write-ahead log.
+ *
+ * @param snapshotLsn     The log sequence number the loaded snapshot was started at, 0 if no snapshot was found.
+ * @param banks           The number of recovered banks.
+ * @param accounts        The number of accounts loaded from the snapshot.
+ * @param replayedRecords The number of log records read after the snapshot.
+ * @param appliedChanges  The number of balance changes and cancellations replayed onto accounts.
+ * @param lastLsn         The log sequence number of the last record read, or the snapshot one if there was none.
+ * @param nanos           The time the recovery took, in nanoseconds.
+ */
+public record RecoveryReport(long snapshotLsn, int banks, int accounts, long replayedRecords,
+                             long appliedChanges, long lastLsn, long nanos) {
+}
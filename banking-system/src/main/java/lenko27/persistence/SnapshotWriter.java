@@ -0,0 +1,376 @@
+package lenko27.persistence;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.client.Client;
+import lenko27.entities.transactions.TransactionJournal;
+import lenko27.service.ComplexInterestRate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * This class writes binary snapshots of the banks, their accounts with their transaction journals
+ * and the clients who own them.
+ * Snapshots are fuzzy: they are taken while transfers go on, every account is read under its own monitor
+ * together with the log sequence number of the last record that changed it and the length of its journal.
+ * Recovery replays the log after the sequence number the snapshot was started at and skips the records
+ * an account already contains. Since the journals are part of the snapshot, the log segments before it
+ * can be deleted without losing the history of any account.
+ * A snapshot is a directory holding one file with the banks, one file with the clients and one file with
+ * the accounts of every bank. It is written under a temporary name and renamed once complete.
+ */
+public final class SnapshotWriter {
+
+    /**
+     * Prefix of snapshot directory names, followed by the log sequence number and the creation time.
+     */
+    static final String PREFIX = "snapshot-";
+
+    /**
+     * Suffix of snapshot directories that are still being written.
+     */
+    static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * File holding the banks.
+     */
+    static final String BANKS_FILE = "banks.bin";
+
+    /**
+     * File holding the clients.
+     */
+    static final String CLIENTS_FILE = "clients.bin";
+
+    /**
+     * Marker at the start of every snapshot file.
+     */
+    static final int MAGIC = 0x534E4150;
+
+    /**
+     * Bytes of an account in an accounts file: identifier, type, owner index, balance, log sequence number
+     * and the number of journal entries following it.
+     */
+    static final int ACCOUNT_SIZE = 2 * Long.BYTES + 1 + Integer.BYTES + Double.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * Bytes of a journal entry in an accounts file: transaction type, tombstone, sum, sequence number and timestamp.
+     */
+    static final int ENTRY_SIZE = 1 + 1 + Double.BYTES + Long.BYTES + Long.BYTES;
+
+    /**
+     * Size of the buffers used to read and write snapshot files.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private SnapshotWriter() {
+    }
+
+    /**
+     * Method to write a snapshot of the banks, writing the accounts of different banks in parallel.
+     *
+     * @param directory The directory holding the snapshots.
+     * @param banks The banks to be written.
+     * @param lsn The log sequence number of the last record appended before the snapshot was started.
+     * @param executor The executor writing the accounts of the banks.
+     * @return The directory of the new snapshot.
+     * @throws IOException If the snapshot can not be written.
+     */
+    public static Path write(Path directory, List<Bank> banks, long lsn, Executor executor) throws IOException {
+        Files.createDirectories(directory);
+        String name = String.format("%s%020d-%020d", PREFIX, lsn, System.currentTimeMillis());
+        Path temporary = directory.resolve(name + TEMPORARY_SUFFIX);
+        Files.createDirectory(temporary);
+
+        writeBanks(temporary.resolve(BANKS_FILE), banks, lsn);
+        Map<Client, Integer> clientIndex = new ConcurrentHashMap<>();
+        List<Client> clients = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < banks.size(); ++i) {
+            Bank bank = banks.get(i);
+            Path file = temporary.resolve(accountsFile(i));
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    writeAccounts(file, bank, clientIndex, clients);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        join(futures);
+        writeClients(temporary.resolve(CLIENTS_FILE), clients);
+
+        Path snapshot = directory.resolve(name);
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+        return snapshot;
+    }
+
+    /**
+     * Method to list the complete snapshots in a directory.
+     *
+     * @param directory The directory holding the snapshots.
+     * @return The snapshot directories, oldest first.
+     * @throws IOException If the directory can not be listed.
+     */
+    public static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(SnapshotWriter::isComplete)
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    /**
+     * Method to get the log sequence number a snapshot was started at.
+     *
+     * @param snapshot The snapshot directory.
+     * @return The log sequence number of the last record appended before the snapshot was started.
+     */
+    public static long lsn(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), PREFIX.length() + 20));
+    }
+
+    /**
+     * Method to delete all but the newest snapshots, together with snapshots that were never completed.
+     * Must not run while a snapshot is written to the same directory.
+     *
+     * @param directory The directory holding the snapshots.
+     * @param keep The number of newest snapshots to keep.
+     * @return The log sequence number of the oldest kept snapshot, or 0 if there is none.
+     * @throws IOException If a snapshot can not be deleted.
+     */
+    public static long prune(Path directory, int keep) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = 0; i < snapshots.size() - keep; ++i) {
+            delete(snapshots.get(i));
+        }
+        List<Path> temporary;
+        try (Stream<Path> files = Files.list(directory)) {
+            temporary = files.filter(path -> path.getFileName().toString().endsWith(TEMPORARY_SUFFIX)).toList();
+        }
+        for (Path path : temporary) {
+            delete(path);
+        }
+        int oldest = Math.max(0, snapshots.size() - keep);
+        return oldest < snapshots.size() ? lsn(snapshots.get(oldest)) : 0;
+    }
+
+    /**
+     * Method to get the name of the file holding the accounts of a bank.
+     *
+     * @param bankIndex The position of the bank in the banks file.
+     * @return The file name.
+     */
+    static String accountsFile(int bankIndex) {
+        return "accounts-" + bankIndex + ".bin";
+    }
+
+    /**
+     * Method to wait for all tasks and rethrow the first failure.
+     *
+     * @param futures The tasks.
+     * @throws IOException If a task failed to read or write a file.
+     */
+    static void join(List<CompletableFuture<Void>> futures) throws IOException {
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Method to write the banks file.
+     *
+     * @param file The file.
+     * @param banks The banks.
+     * @param lsn The log sequence number the snapshot was started at.
+     * @throws IOException If the file can not be written.
+     */
+    private static void writeBanks(Path file, List<Bank> banks, long lsn) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeLong(lsn);
+            out.writeInt(banks.size());
+            for (Bank bank : banks) {
+                out.writeLong(bank.getId().getMostSignificantBits());
+                out.writeLong(bank.getId().getLeastSignificantBits());
+                out.writeByte(bank.getStorageMode().ordinal());
+                out.writeDouble(bank.getDebitInterest());
+                out.writeDouble(bank.getCreditLimit());
+                out.writeDouble(bank.getCreditCommission());
+                out.writeInt(bank.getTerm());
+                List<ComplexInterestRate> depositInterest = bank.getDepositInterest();
+                out.writeInt(depositInterest.size());
+                for (ComplexInterestRate rate : depositInterest) {
+                    out.writeDouble(rate.balanceThreshold());
+                    out.writeDouble(rate.interestRate());
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Method to write the accounts file of a bank.
+     * Owners are written as indexes into the clients file, which are assigned on first sight.
+     * Every account is followed by the entries its journal held when the balance was read.
+     *
+     * @param file The file.
+     * @param bank The bank.
+     * @param clientIndex The indexes assigned to clients so far, shared by all banks.
+     * @param clients The clients in index order, shared by all banks.
+     * @throws IOException If the file can not be written.
+     */
+    private static void writeAccounts(Path file, Bank bank, Map<Client, Integer> clientIndex,
+                                      List<Client> clients) throws IOException {
+        List<Account> accounts = bank.copyAccounts();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(accounts.size());
+            for (Account account : accounts) {
+                double balance;
+                long lastLsn;
+                TransactionJournal journal;
+                int entries;
+                synchronized (account) {
+                    balance = account.getBalance();
+                    lastLsn = account.getLastLsn();
+                    journal = account.getJournalIfPresent();
+                    entries = journal == null ? 0 : journal.size();
+                }
+                int owner = clientIndex.computeIfAbsent(account.getClient(), client -> {
+                    synchronized (clients) {
+                        clients.add(client);
+                        return clients.size() - 1;
+                    }
+                });
+                out.writeLong(account.getId().getMostSignificantBits());
+                out.writeLong(account.getId().getLeastSignificantBits());
+                out.writeByte(account.getType().code());
+                out.writeInt(owner);
+                out.writeDouble(balance);
+                out.writeLong(lastLsn);
+                out.writeInt(entries);
+                for (int j = 0; j < entries; ++j) {
+                    out.writeByte(journal.getType(j).ordinal());
+                    out.writeBoolean(journal.isCancelled(j));
+                    out.writeDouble(journal.getSum(j));
+                    out.writeLong(journal.getId(j));
+                    out.writeLong(journal.getTimestamp(j));
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Method to write the clients file.
+     *
+     * @param file The file.
+     * @param clients The clients in index order.
+     * @throws IOException If the file can not be written.
+     */
+    private static void writeClients(Path file, List<Client> clients) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(clients.size());
+            for (Client client : clients) {
+                out.writeLong(client.getId().getMostSignificantBits());
+                out.writeLong(client.getId().getLeastSignificantBits());
+                out.writeUTF(client.getName());
+                out.writeUTF(client.getSurname());
+                writeNullable(out, client.getAddress());
+                writeNullable(out, client.getPassportData());
+            }
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Method to write a string that may be null.
+     *
+     * @param out The stream to write to.
+     * @param value The string, may be null.
+     * @throws IOException If the string can not be written.
+     */
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Method to check if a path is a complete snapshot.
+     *
+     * @param path The path.
+     * @return true if the path is a snapshot directory that was completely written.
+     */
+    private static boolean isComplete(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && !name.endsWith(TEMPORARY_SUFFIX) && Files.isDirectory(path);
+    }
+
+    /**
+     * Method to delete a snapshot directory with its files.
+     *
+     * @param snapshot The snapshot directory.
+     * @throws IOException If the snapshot can not be deleted.
+     */
+    private static void delete(Path snapshot) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(snapshot)) {
+            files = list.toList();
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+        Files.delete(snapshot);
+    }
+
+    /**
+     * Method to force the entries of a directory to disk, so that a rename survives a crash.
+     * Platforms that can not open directories are skipped.
+     *
+     * @param directory The directory.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform; the rename is still atomic.
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package lenko27.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * This record represents one record read back from the write-ahead log.
+ *
+ * @param type    The kind of the record.
+ * @param lsn     The log sequence number of the record.
+ * @param payload The payload of the record, positioned at its start.
+ */
+public record WalRecord(WalRecordType type, long lsn, ByteBuffer payload) {
+
+    /**
+     * Method to read a UUID written by the log.
+     *
+     * @param buffer The buffer to read from.
+     * @return The UUID.
+     */
+    public static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Method to read a string written by the log.
+     *
+     * @param buffer The buffer to read from.
+     * @return The string, or null if a null string was written.
+     */
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Method to write a UUID.
+     *
+     * @param buffer The buffer to write to.
+     * @param id The UUID.
+     */
+    static void putUuid(ByteBuffer buffer, UUID id) {
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    /**
+     * Method to write a string, or a marker for a null string.
+     *
+     * @param buffer The buffer to write to.
+     * @param value The string, may be null.
+     */
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Method to get the number of bytes putString writes for a string.
+     *
+     * @param value The string, may be null.
+     * @return The encoded size in bytes.
+     */
+    static int stringSize(String value) {
+        return Integer.BYTES + (value == null ? 0 : value.length() * 3);
+    }
+}
@@ -0,0 +1,63 @@
+package lenko27.persistence;
+
+/**
+ * This enum represents the kinds of records in the write-ahead log.
+ */
+public enum WalRecordType {
+
+    /**
+     * A bank was created: bank id, storage mode and all of its parameters.
+     */
+    BANK_CREATED,
+
+    /**
+     * An account was opened: bank id, account id, account type and the owner's data.
+     */
+    ACCOUNT_OPENED,
+
+    /**
+     * The address or passport data of a client changed: the client's data.
+     */
+    CLIENT_UPDATED,
+
+    /**
+     * A refill or withdrawal was logged on an account: account id, transaction type and sum.
+     */
+    ENTRY,
+
+    /**
+     * A transfer was applied: sender id, accepter id and sum.
+     */
+    TRANSFER,
+
+    /**
+     * A numeric parameter of a bank changed: bank id, parameter and new value.
+     */
+    BANK_PARAMETER,
+
+    /**
+     * The deposit interest rates of a bank changed: bank id and the list of tiers.
+     */
+    DEPOSIT_INTEREST,
+
+    /**
+     * A journal entry of an account was cancelled: account id, position of the entry in the account's journal,
+     * its transaction type and its sum. The compensating entry is logged before it as an ENTRY.
+     */
+    CANCEL;
+
+    /**
+     * All record types indexed by their code.
+     */
+    private static final WalRecordType[] VALUES = values();
+
+    /**
+     * Method to get the record type by its code.
+     *
+     * @param code The code of the record type.
+     * @return The record type, or null if the code is unknown.
+     */
+    public static WalRecordType fromCode(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+    }
+}
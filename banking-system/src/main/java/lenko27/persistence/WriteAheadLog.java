@@ -0,0 +1,639 @@
+package lenko27.persistence;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.BankParameter;
+import lenko27.entities.client.Client;
+import lenko27.entities.transactions.TransactionType;
+import lenko27.service.ComplexInterestRate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is a write-ahead log of every balance and configuration change, kept in memory-mapped segment files.
+ * A record is laid out as its length, its type, its log sequence number, its payload and a CRC32C checksum.
+ * Appends are serialized and copy the record into the mapped segment; when a segment is full it is forced
+ * and a new one is mapped. How soon records reach the disk is decided by the Durability of the log:
+ * SYNC forces every record on append, GROUP lets a flusher thread force the records of many operations
+ * at once and makes commit wait for it, ASYNC lets the flusher run without anybody waiting.
+ * In GROUP mode a waiting commit wakes the flusher at once, so records appended while a force is running
+ * are forced together by the next one. Flushes are serialized, so the durable log sequence number only
+ * ever covers records that have been forced.
+ */
+public class WriteAheadLog implements Closeable {
+
+    /**
+     * Default size of a segment file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * Extension of segment files.
+     */
+    static final String SEGMENT_SUFFIX = ".wal";
+
+    /**
+     * Bytes of a record before its payload: length, type and log sequence number.
+     */
+    static final int HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES;
+
+    /**
+     * Bytes of a record after its payload: the checksum.
+     */
+    static final int TRAILER_SIZE = Integer.BYTES;
+
+    /**
+     * Directory holding the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * How soon records are forced to disk.
+     */
+    private final Durability durability;
+
+    /**
+     * Size of a segment file.
+     */
+    private final int segmentSize;
+
+    /**
+     * Longest time a record waits for its group to be forced, in nanoseconds.
+     */
+    private final long groupCommitNanos;
+
+    /**
+     * Number of records that makes the flusher force a group early.
+     */
+    private final int groupCommitRecords;
+
+    /**
+     * Checksum used for records.
+     */
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * Buffer the next record is encoded into.
+     */
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    /**
+     * Channel of the current segment.
+     */
+    private FileChannel channel;
+
+    /**
+     * Mapping of the current segment.
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * Write position in the current segment.
+     */
+    private int position;
+
+    /**
+     * Position in the current segment up to which records have been forced.
+     */
+    private int forcedPosition;
+
+    /**
+     * Log sequence number of the last appended record.
+     */
+    private volatile long lastLsn;
+
+    /**
+     * Number of records appended since the last group was forced.
+     */
+    private int pendingRecords;
+
+    /**
+     * Log sequence number up to which every record is on disk.
+     */
+    private volatile long durableLsn;
+
+    /**
+     * Monitor that commit waits on in GROUP mode.
+     */
+    private final Object durableMonitor = new Object();
+
+    /**
+     * Lock held while a range of records is taken, forced and published as durable.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Background thread forcing groups of records, null in SYNC mode.
+     */
+    private Thread flusher;
+
+    /**
+     * Whether the log has been closed, so that nothing can be appended.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Whether the final flush of a closed log has finished, so that durableLsn will not move any more.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Method to open a log with default segment size and group commit settings
+     * (every 2 ms or every 1024 records).
+     *
+     * @param directory The directory holding the segment files.
+     * @param durability How soon records are forced to disk.
+     * @return The open log.
+     * @throws IOException If the log can not be opened.
+     */
+    public static WriteAheadLog open(Path directory, Durability durability) throws IOException {
+        return open(directory, durability, DEFAULT_SEGMENT_SIZE, 2, 1024);
+    }
+
+    /**
+     * Method to open a log and start its flusher, unless it is in SYNC mode.
+     * If the directory already holds a log, appending continues after its last valid record.
+     *
+     * @param directory The directory holding the segment files.
+     * @param durability How soon records are forced to disk.
+     * @param segmentSize The size of a segment file.
+     * @param groupCommitMillis The longest time a record waits for its group to be forced.
+     * @param groupCommitRecords The number of records that makes a group be forced early.
+     * @return The open log.
+     * @throws IOException If the log can not be opened.
+     */
+    public static WriteAheadLog open(Path directory, Durability durability, int segmentSize,
+                                     long groupCommitMillis, int groupCommitRecords) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, durability, segmentSize, groupCommitMillis, groupCommitRecords);
+        if (durability != Durability.SYNC) {
+            log.flusher = new Thread(log::runFlusher, "wal-flusher");
+            log.flusher.setDaemon(true);
+            log.flusher.start();
+        }
+        return log;
+    }
+
+    /**
+     * Constructor for the WriteAheadLog class, which opens the segment files only;
+     * the flusher is started by open once the log is constructed.
+     *
+     * @param directory The directory holding the segment files.
+     * @param durability How soon records are forced to disk.
+     * @param segmentSize The size of a segment file.
+     * @param groupCommitMillis The longest time a record waits for its group to be forced.
+     * @param groupCommitRecords The number of records that makes a group be forced early.
+     * @throws IOException If the log can not be opened.
+     */
+    private WriteAheadLog(Path directory, Durability durability, int segmentSize,
+                          long groupCommitMillis, int groupCommitRecords) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentSize = segmentSize;
+        this.groupCommitNanos = groupCommitMillis * 1_000_000;
+        this.groupCommitRecords = groupCommitRecords;
+        Files.createDirectories(directory);
+        List<Path> segments = WriteAheadLogReader.segments(directory);
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            WriteAheadLogReader.SegmentEnd end = WriteAheadLogReader.scanEnd(last);
+            channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+            position = end.position();
+            if (position + Integer.BYTES <= segment.capacity()) {
+                segment.putInt(position, 0);
+            }
+            forcedPosition = position;
+            lastLsn = end.lastLsn() > 0 ? end.lastLsn() : WriteAheadLogReader.firstLsn(last) - 1;
+        }
+        durableLsn = lastLsn;
+    }
+
+    /**
+     * Method to get the directory holding the segment files.
+     *
+     * @return The directory of the log.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Method to get the durability of the log.
+     *
+     * @return How soon records are forced to disk.
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Method to get the log sequence number of the last appended record.
+     *
+     * @return The last log sequence number.
+     */
+    public long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Method to get the log sequence number up to which every record is on disk.
+     *
+     * @return The durable log sequence number.
+     */
+    public long getDurableLsn() {
+        return durability == Durability.SYNC ? lastLsn : durableLsn;
+    }
+
+    /**
+     * Method to log the creation of a bank.
+     *
+     * @param bank The created bank.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendBankCreated(Bank bank) {
+        List<ComplexInterestRate> depositInterest = bank.getDepositInterest();
+        ByteBuffer payload = payload(64 + depositInterest.size() * 2 * Double.BYTES);
+        WalRecord.putUuid(payload, bank.getId());
+        payload.put((byte) bank.getStorageMode().ordinal());
+        payload.putDouble(bank.getDebitInterest());
+        payload.putDouble(bank.getCreditLimit());
+        payload.putDouble(bank.getCreditCommission());
+        payload.putInt(bank.getTerm());
+        putDepositInterest(payload, depositInterest);
+        return append(WalRecordType.BANK_CREATED);
+    }
+
+    /**
+     * Method to log the opening of an account.
+     *
+     * @param account The opened account.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendAccountOpened(Account account) {
+        ByteBuffer payload = payload(33 + clientSize(account.getClient()));
+        WalRecord.putUuid(payload, account.getBank().getId());
+        WalRecord.putUuid(payload, account.getId());
+        payload.put(account.getType().code());
+        putClient(payload, account.getClient());
+        return append(WalRecordType.ACCOUNT_OPENED);
+    }
+
+    /**
+     * Method to log a change of a client's data.
+     *
+     * @param client The changed client.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendClientUpdated(Client client) {
+        ByteBuffer payload = payload(clientSize(client));
+        putClient(payload, client);
+        return append(WalRecordType.CLIENT_UPDATED);
+    }
+
+    /**
+     * Method to log a refill or withdrawal entry of an account.
+     *
+     * @param accountId The identifier of the account.
+     * @param type The type of the transaction.
+     * @param sum The sum involved in the transaction.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendEntry(UUID accountId, TransactionType type, double sum) {
+        ByteBuffer payload = payload(25);
+        WalRecord.putUuid(payload, accountId);
+        payload.put((byte) type.ordinal());
+        payload.putDouble(sum);
+        return append(WalRecordType.ENTRY);
+    }
+
+    /**
+     * Method to log a transfer, covering both of its legs.
+     *
+     * @param senderId The identifier of the sender account.
+     * @param accepterId The identifier of the accepter account.
+     * @param sum The transferred sum.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendTransfer(UUID senderId, UUID accepterId, double sum) {
+        ByteBuffer payload = payload(40);
+        WalRecord.putUuid(payload, senderId);
+        WalRecord.putUuid(payload, accepterId);
+        payload.putDouble(sum);
+        return append(WalRecordType.TRANSFER);
+    }
+
+    /**
+     * Method to log the cancellation of a journal entry of an account.
+     * The entry is named by its position in the journal, which recovery rebuilds in log order;
+     * its type and sum are logged too, so that recovery leaves the entry alone if the rebuilt journal does not match.
+     *
+     * @param accountId The identifier of the account.
+     * @param position The position of the cancelled entry in the journal of the account.
+     * @param type The type of the cancelled entry.
+     * @param sum The sum of the cancelled entry.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendCancel(UUID accountId, int position, TransactionType type, double sum) {
+        ByteBuffer payload = payload(29);
+        WalRecord.putUuid(payload, accountId);
+        payload.putInt(position);
+        payload.put((byte) type.ordinal());
+        payload.putDouble(sum);
+        return append(WalRecordType.CANCEL);
+    }
+
+    /**
+     * Method to log a change of a numeric bank parameter.
+     *
+     * @param bankId The identifier of the bank.
+     * @param parameter The changed parameter.
+     * @param value The new value of the parameter.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendBankParameter(UUID bankId, BankParameter parameter, double value) {
+        ByteBuffer payload = payload(25);
+        WalRecord.putUuid(payload, bankId);
+        payload.put((byte) parameter.ordinal());
+        payload.putDouble(value);
+        return append(WalRecordType.BANK_PARAMETER);
+    }
+
+    /**
+     * Method to log a change of the deposit interest rates of a bank.
+     *
+     * @param bankId The identifier of the bank.
+     * @param depositInterest The new deposit interest rates.
+     * @return The log sequence number of the record.
+     */
+    public synchronized long appendDepositInterest(UUID bankId, List<ComplexInterestRate> depositInterest) {
+        ByteBuffer payload = payload(20 + depositInterest.size() * 2 * Double.BYTES);
+        WalRecord.putUuid(payload, bankId);
+        putDepositInterest(payload, depositInterest);
+        return append(WalRecordType.DEPOSIT_INTEREST);
+    }
+
+    /**
+     * Method to wait until a record is as durable as the log promises.
+     * In GROUP mode this wakes the flusher and waits for the group holding the record to be forced;
+     * in SYNC mode the record already is on disk, in ASYNC mode nobody waits.
+     * Closing the log forces every record before it wakes the waiting commits.
+     *
+     * @param lsn The log sequence number of the record.
+     * @throws IllegalStateException If the log was closed without forcing the record.
+     */
+    public void commit(long lsn) {
+        if (durability != Durability.GROUP || durableLsn >= lsn) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        boolean interrupted = false;
+        synchronized (durableMonitor) {
+            while (durableLsn < lsn) {
+                if (stopped) {
+                    throw new IllegalStateException("Write-ahead log was closed before record " + lsn + " was forced.");
+                }
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method to force every appended record to disk.
+     * Concurrent flushes run one after another, so a later range is never published before an earlier one is forced.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            MappedByteBuffer buffer;
+            int from;
+            int to;
+            long upTo;
+            synchronized (this) {
+                buffer = segment;
+                from = forcedPosition;
+                to = position;
+                upTo = lastLsn;
+                forcedPosition = to;
+                pendingRecords = 0;
+            }
+            if (to > from) {
+                buffer.force(from, to - from);
+            }
+            synchronized (durableMonitor) {
+                if (upTo > durableLsn) {
+                    durableLsn = upTo;
+                }
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Method to delete the segments that only hold records up to a log sequence number.
+     * The current segment is never deleted.
+     *
+     * @param lsn The log sequence number of the last record that is no longer needed.
+     * @throws IOException If a segment can not be deleted.
+     */
+    public synchronized void truncateBefore(long lsn) throws IOException {
+        List<Path> segments = WriteAheadLogReader.segments(directory);
+        for (int i = 0; i + 1 < segments.size(); ++i) {
+            if (WriteAheadLogReader.firstLsn(segments.get(i + 1)) > lsn + 1) {
+                break;
+            }
+            Files.delete(segments.get(i));
+        }
+    }
+
+    /**
+     * Method to force every record and close the log.
+     * Appending stops first, so the final flush covers every record a commit can wait for.
+     *
+     * @throws IOException If the current segment can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            if (flusher != null) {
+                LockSupport.unpark(flusher);
+                try {
+                    flusher.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            flush();
+        } finally {
+            synchronized (durableMonitor) {
+                stopped = true;
+                durableMonitor.notifyAll();
+            }
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Method to start encoding the payload of the next record.
+     *
+     * @param maxSize The largest size the payload can have.
+     * @return The buffer to write the payload to.
+     */
+    private ByteBuffer payload(int maxSize) {
+        int capacity = HEADER_SIZE + maxSize + TRAILER_SIZE;
+        if (scratch.capacity() < capacity) {
+            scratch = ByteBuffer.allocate(Math.max(capacity, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        scratch.position(HEADER_SIZE);
+        return scratch;
+    }
+
+    /**
+     * Method to finish the record encoded in the scratch buffer and copy it into the segment.
+     *
+     * @param type The kind of the record.
+     * @return The log sequence number of the record.
+     */
+    private long append(WalRecordType type) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed.");
+        }
+        long lsn = lastLsn + 1;
+        int payloadEnd = scratch.position();
+        scratch.putInt(0, payloadEnd - Integer.BYTES);
+        scratch.put(Integer.BYTES, (byte) type.ordinal());
+        scratch.putLong(Integer.BYTES + 1, lsn);
+        checksum.reset();
+        checksum.update(scratch.array(), Integer.BYTES, payloadEnd - Integer.BYTES);
+        scratch.putInt((int) checksum.getValue());
+        int size = scratch.position();
+        if (position + size + Integer.BYTES > segment.capacity()) {
+            roll(lsn, size);
+        }
+        segment.put(position, scratch.array(), 0, size);
+        int start = position;
+        position += size;
+        lastLsn = lsn;
+        if (durability == Durability.SYNC) {
+            segment.force(start, size);
+            forcedPosition = position;
+        } else if (++pendingRecords >= groupCommitRecords) {
+            LockSupport.unpark(flusher);
+        }
+        return lsn;
+    }
+
+    /**
+     * Method to close the current segment and continue in a new one.
+     *
+     * @param firstLsn The log sequence number of the first record of the new segment.
+     * @param size The size of the record that did not fit.
+     */
+    private void roll(long firstLsn, int size) {
+        if (size + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Record of " + size + " bytes does not fit into a segment.");
+        }
+        segment.putInt(position, 0);
+        segment.force();
+        try {
+            channel.close();
+            openSegment(firstLsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to create and map a new segment file.
+     *
+     * @param firstLsn The log sequence number of the first record of the segment.
+     * @throws IOException If the segment can not be created.
+     */
+    private void openSegment(long firstLsn) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", firstLsn, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        position = 0;
+        forcedPosition = 0;
+    }
+
+    /**
+     * Method run by the flusher thread: force whatever was appended, then sleep until the group
+     * commit interval passes, enough records are pending or a commit is waiting.
+     */
+    private void runFlusher() {
+        while (!closed) {
+            LockSupport.parkNanos(this, groupCommitNanos);
+            if (durableLsn < lastLsn) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Method to get an upper bound of the encoded size of a client.
+     *
+     * @param client The client.
+     * @return The upper bound in bytes.
+     */
+    private static int clientSize(Client client) {
+        return 16 + WalRecord.stringSize(client.getName()) + WalRecord.stringSize(client.getSurname())
+                + WalRecord.stringSize(client.getAddress()) + WalRecord.stringSize(client.getPassportData());
+    }
+
+    /**
+     * Method to encode a client.
+     *
+     * @param payload The buffer to write to.
+     * @param client The client.
+     */
+    private static void putClient(ByteBuffer payload, Client client) {
+        WalRecord.putUuid(payload, client.getId());
+        WalRecord.putString(payload, client.getName());
+        WalRecord.putString(payload, client.getSurname());
+        WalRecord.putString(payload, client.getAddress());
+        WalRecord.putString(payload, client.getPassportData());
+    }
+
+    /**
+     * Method to encode a list of deposit interest rates.
+     *
+     * @param payload The buffer to write to.
+     * @param depositInterest The deposit interest rates.
+     */
+    private static void putDepositInterest(ByteBuffer payload, List<ComplexInterestRate> depositInterest) {
+        payload.putInt(depositInterest.size());
+        for (ComplexInterestRate rate : depositInterest) {
+            payload.putDouble(rate.balanceThreshold());
+            payload.putDouble(rate.interestRate());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package lenko27.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * This class reads the records of a write-ahead log back in log sequence number order.
+ * Reading stops at the first record that is incomplete or fails its checksum, which is where
+ * the log ended when the process stopped.
+ */
+public class WriteAheadLogReader implements Iterator<WalRecord>, Closeable {
+
+    /**
+     * Segment files of the log, in order.
+     */
+    private final List<Path> segments;
+
+    /**
+     * Records with a log sequence number up to this one are skipped.
+     */
+    private final long afterLsn;
+
+    /**
+     * Index of the segment being read.
+     */
+    private int segmentIndex = -1;
+
+    /**
+     * Mapping of the segment being read, null once the log is exhausted.
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * Read position in the current segment.
+     */
+    private int position;
+
+    /**
+     * Next record, null if it has not been read yet.
+     */
+    private WalRecord next;
+
+    /**
+     * Whether the end of the log has been reached.
+     */
+    private boolean finished;
+
+    /**
+     * Checksum used to verify records.
+     */
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * Constructor for the WriteAheadLogReader class.
+     *
+     * @param directory The directory holding the segment files.
+     * @param afterLsn Records with a log sequence number up to this one are skipped.
+     * @throws IOException If the directory can not be listed.
+     */
+    public WriteAheadLogReader(Path directory, long afterLsn) throws IOException {
+        this.segments = segments(directory);
+        this.afterLsn = afterLsn;
+        int first = 0;
+        for (int i = 1; i < segments.size(); ++i) {
+            if (firstLsn(segments.get(i)) <= afterLsn + 1) {
+                first = i;
+            }
+        }
+        this.segmentIndex = first - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !finished) {
+            next = readNext();
+            if (next != null && next.lsn() <= afterLsn) {
+                next = null;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public WalRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        WalRecord record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        finished = true;
+    }
+
+    /**
+     * Method to read the next valid record, moving on to the next segment when needed.
+     *
+     * @return The next record, or null if the end of the log has been reached.
+     */
+    private WalRecord readNext() {
+        while (true) {
+            if (segment != null) {
+                WalRecord record = readRecord(segment, position, checksum);
+                if (record != null) {
+                    position += recordSize(record);
+                    return record;
+                }
+                if (segmentIndex + 1 < segments.size() && !isTerminated(segment, position)) {
+                    finished = true;
+                    return null;
+                }
+            }
+            if (++segmentIndex >= segments.size()) {
+                finished = true;
+                return null;
+            }
+            segment = map(segments.get(segmentIndex));
+            position = 0;
+        }
+    }
+
+    /**
+     * Method to list the segment files of a log in order.
+     *
+     * @param directory The directory holding the segment files.
+     * @return The segment files, sorted by their first log sequence number.
+     * @throws IOException If the directory can not be listed.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(WriteAheadLog.SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Method to get the log sequence number of the first record of a segment from its file name.
+     *
+     * @param segment The segment file.
+     * @return The first log sequence number of the segment.
+     */
+    static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - WriteAheadLog.SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * This record represents where the valid records of a segment end.
+     *
+     * @param position The position after the last valid record.
+     * @param lastLsn  The log sequence number of the last valid record, or 0 if there is none.
+     */
+    record SegmentEnd(int position, long lastLsn) {
+    }
+
+    /**
+     * Method to find where the valid records of a segment end.
+     *
+     * @param file The segment file.
+     * @return The end of the segment.
+     */
+    static SegmentEnd scanEnd(Path file) {
+        MappedByteBuffer segment = map(file);
+        CRC32C checksum = new CRC32C();
+        int position = 0;
+        long lastLsn = 0;
+        WalRecord record;
+        while ((record = readRecord(segment, position, checksum)) != null) {
+            position += recordSize(record);
+            lastLsn = record.lsn();
+        }
+        return new SegmentEnd(position, lastLsn);
+    }
+
+    /**
+     * Method to read the record at a position of a segment.
+     *
+     * @param segment The segment.
+     * @param position The position of the record.
+     * @param checksum The checksum used to verify the record.
+     * @return The record, or null if there is no valid record at the position.
+     */
+    private static WalRecord readRecord(ByteBuffer segment, int position, CRC32C checksum) {
+        if (position + WriteAheadLog.HEADER_SIZE + WriteAheadLog.TRAILER_SIZE > segment.limit()) {
+            return null;
+        }
+        int length = segment.getInt(position);
+        int end = position + Integer.BYTES + length;
+        if (length < WriteAheadLog.HEADER_SIZE - Integer.BYTES || end + WriteAheadLog.TRAILER_SIZE > segment.limit()) {
+            return null;
+        }
+        checksum.reset();
+        checksum.update(segment.slice(position + Integer.BYTES, length));
+        if ((int) checksum.getValue() != segment.getInt(end)) {
+            return null;
+        }
+        WalRecordType type = WalRecordType.fromCode(segment.get(position + Integer.BYTES));
+        if (type == null) {
+            return null;
+        }
+        long lsn = segment.getLong(position + Integer.BYTES + 1);
+        ByteBuffer payload = segment.slice(position + WriteAheadLog.HEADER_SIZE, end - position - WriteAheadLog.HEADER_SIZE);
+        return new WalRecord(type, lsn, payload);
+    }
+
+    /**
+     * Method to get the size of a record read from a segment.
+     *
+     * @param record The record.
+     * @return The number of bytes the record takes in the segment.
+     */
+    private static int recordSize(WalRecord record) {
+        return WriteAheadLog.HEADER_SIZE + record.payload().limit() + WriteAheadLog.TRAILER_SIZE;
+    }
+
+    /**
+     * Method to check if a segment ends with the marker written when the log moved on to the next segment.
+     *
+     * @param segment The segment.
+     * @param position The position after the last valid record.
+     * @return true if the segment was closed properly.
+     */
+    private static boolean isTerminated(ByteBuffer segment, int position) {
+        return position + Integer.BYTES > segment.limit() || segment.getInt(position) == 0;
+    }
+
+    /**
+     * Method to map a segment file for reading.
+     *
+     * @param file The segment file.
+     * @return The mapping of the segment.
+     */
+    private static MappedByteBuffer map(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
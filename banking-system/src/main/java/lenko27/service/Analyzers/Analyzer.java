@@ -11,4 +11,13 @@ public interface Analyzer {
      * @return The result of the calculation as a double.
      */
     double calculate();
+
+    /**
+     * Method to perform the same calculation for many balances in one call.
+     * The analyzer's own balance is not used or changed.
+     *
+     * @param balances The starting balances.
+     * @return The projected balances, in the same order.
+     */
+    double[] calculate(double[] balances);
 }
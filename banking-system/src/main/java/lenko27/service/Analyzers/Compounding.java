@@ -0,0 +1,59 @@
+package lenko27.service.Analyzers;
+
+/**
+ * This class holds the compounding arithmetic shared by the analyzers.
+ * Short horizons are compounded period by period, exactly like the original loops,
+ * while longer horizons use the closed form balance * (1 + rate)^periods.
+ * For horizons up to 10,000 periods the closed form stays within a relative error of 1e-9
+ * of the period-by-period result.
+ */
+final class Compounding {
+
+    /**
+     * Longest horizon that is still compounded period by period.
+     */
+    static final int ITERATIVE_LIMIT = 16;
+
+    private Compounding() {
+    }
+
+    /**
+     * Method to compound a balance at a fixed rate.
+     *
+     * @param balance The starting balance.
+     * @param rate The rate applied every period.
+     * @param periods The number of periods.
+     * @return The compounded balance.
+     */
+    static double grow(double balance, double rate, int periods) {
+        if (periods <= ITERATIVE_LIMIT) {
+            for (int i = 0; i < periods; ++i) {
+                balance += balance * rate;
+            }
+            return balance;
+        }
+        return balance * Math.pow(1 + rate, periods);
+    }
+
+    /**
+     * Method to compound every balance of an array at a fixed rate.
+     *
+     * @param balances The starting balances, replaced by the compounded ones.
+     * @param rate The rate applied every period.
+     * @param periods The number of periods.
+     */
+    static void grow(double[] balances, double rate, int periods) {
+        if (periods <= ITERATIVE_LIMIT) {
+            for (int period = 0; period < periods; ++period) {
+                for (int i = 0; i < balances.length; ++i) {
+                    balances[i] += balances[i] * rate;
+                }
+            }
+            return;
+        }
+        double factor = Math.pow(1 + rate, periods);
+        for (int i = 0; i < balances.length; ++i) {
+            balances[i] *= factor;
+        }
+    }
+}
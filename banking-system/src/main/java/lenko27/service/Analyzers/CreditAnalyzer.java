@@ -36,6 +36,11 @@ public class CreditAnalyzer implements Analyzer{
      */
     private boolean isOverLimit = false;
 
+    /**
+     * The first period after which the balance is below the limit, or -1 if it never gets there.
+     */
+    private int overLimitPeriod = -1;
+
     /**
      * Constructor for the CreditAnalyzer class.
      *
@@ -55,19 +60,73 @@ public class CreditAnalyzer implements Analyzer{
      * Method to calculate the new balance after applying the commission for the given time period.
      * If the balance is negative, the commission is applied for each time period
      * until the balance is no longer negative or the account is over the limit.
+     * A negative balance grows by the factor (1 + |commission|) every period, so the result and
+     * the period in which the balance crosses the limit are both found in closed form.
      *
      * @return The new balance of the account.
      */
     @Override
     public double calculate() {
-        if (balance < 0) {
-            for (int i = 0; i < time; ++i) {
-                balance -= abs(balance * commission);
-                if (balance < limit) {
-                    isOverLimit = true;
-                }
+        if (balance < 0 && time > 0) {
+            double rate = abs(commission);
+            double start = balance;
+            balance = Compounding.grow(start, rate, time);
+            if (balance < limit) {
+                isOverLimit = true;
+                overLimitPeriod = crossingPeriod(start, rate);
             }
         }
         return balance;
     }
+
+    /**
+     * Method to calculate the new balances of many accounts after applying the commission
+     * for the given time period. Only negative balances are charged.
+     *
+     * @param balances The balances of the accounts.
+     * @return The new balances of the accounts.
+     */
+    @Override
+    public double[] calculate(double[] balances) {
+        double rate = abs(commission);
+        double[] result = balances.clone();
+        if (time <= Compounding.ITERATIVE_LIMIT) {
+            for (int period = 0; period < time; ++period) {
+                for (int i = 0; i < result.length; ++i) {
+                    result[i] += Math.min(result[i], 0.0) * rate;
+                }
+            }
+            return result;
+        }
+        double factor = Math.pow(1 + rate, time);
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = result[i] < 0 ? result[i] * factor : result[i];
+        }
+        return result;
+    }
+
+    /**
+     * Method to find the first period after which a negative balance is below the limit.
+     * The period comes from solving start * (1 + rate)^n < limit for n and is then corrected
+     * by at most a period in each direction against the compounded balance.
+     * Must only be called if the balance is below the limit at the end of the time period.
+     *
+     * @param start The negative starting balance.
+     * @param rate The absolute commission.
+     * @return The crossing period, between 1 and the time period.
+     */
+    private int crossingPeriod(double start, double rate) {
+        int period = 1;
+        if (limit < 0 && rate > 0) {
+            period = (int) Math.ceil(Math.log(limit / start) / Math.log1p(rate));
+            period = Math.max(1, Math.min(time, period));
+        }
+        while (period > 1 && Compounding.grow(start, rate, period - 1) < limit) {
+            --period;
+        }
+        while (period < time && Compounding.grow(start, rate, period) >= limit) {
+            ++period;
+        }
+        return period;
+    }
 }
@@ -38,9 +38,20 @@ public class DebitAnalyzer implements Analyzer{
      */
     @Override
     public double calculate() {
-        for (int i=0; i < time; ++i){
-            balance += balance*interest;
-        }
+        balance = Compounding.grow(balance, interest, time);
         return balance;
     }
+
+    /**
+     * Method to calculate the new balances of many accounts with interest after some months
+     *
+     * @param balances The balances of the accounts.
+     * @return The new balances of the accounts.
+     */
+    @Override
+    public double[] calculate(double[] balances) {
+        double[] result = balances.clone();
+        Compounding.grow(result, interest, time);
+        return result;
+    }
 }
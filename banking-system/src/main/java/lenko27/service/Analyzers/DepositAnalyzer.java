@@ -1,6 +1,7 @@
 package lenko27.service.Analyzers;
 
 import lenko27.service.ComplexInterestRate;
+import lenko27.service.DepositTierTable;
 
 import java.util.List;/**
  * This class represents a deposit analyzer in the banking system.
@@ -23,9 +24,9 @@ public class DepositAnalyzer implements Analyzer{
     private double balance;
 
     /**
-     * The list of complex interest rates of the account.
+     * The complex interest rates of the account, compiled into sorted primitive arrays.
      */
-    private final List<ComplexInterestRate> depositInterest;
+    private final DepositTierTable depositTiers;
 
     /**
      * Constructor for the DepositAnalyzer class.
@@ -36,9 +37,22 @@ public class DepositAnalyzer implements Analyzer{
      * @param term The term of the deposit.
      */
     public DepositAnalyzer(int time, double balance, List<ComplexInterestRate> depositInterest, int term){
+        this(time, balance, new DepositTierTable(depositInterest), term);
+    }
+
+    /**
+     * Constructor for the DepositAnalyzer class with already compiled interest rates,
+     * such as the ones kept by Bank.getDepositTiers().
+     *
+     * @param time The time period for the analysis.
+     * @param balance The balance of the account.
+     * @param depositTiers The compiled complex interest rates of the account.
+     * @param term The term of the deposit.
+     */
+    public DepositAnalyzer(int time, double balance, DepositTierTable depositTiers, int term){
         this.time = time;
         this.balance = balance;
-        this.depositInterest = depositInterest;
+        this.depositTiers = depositTiers;
         this.term = term;
     }
 
@@ -46,24 +60,82 @@ public class DepositAnalyzer implements Analyzer{
      * Method to calculate the new balance after applying the interest for the given time period.
      * The interest rate applied is the one whose balance threshold is less than or equal to the current balance.
      * The interest is not applied if the term is not yet over.
+     * The term is skipped in one step, and within a tier the balance is compounded straight to the period
+     * in which it reaches the next threshold, so the cost depends on the number of tiers, not periods.
      *
      * @return The new balance of the account.
      */
     @Override
     public double calculate() {
-        for (int i = 0; i < time; ++i) {
-            if (term > 0) {
-                term--;
-                continue;
+        int skipped = Math.min(Math.max(term, 0), time);
+        term -= skipped;
+        balance = project(balance, time - skipped, depositTiers);
+        return balance;
+    }
+
+    /**
+     * Method to calculate the new balances of many deposits after applying the interest for the given time period.
+     *
+     * @param balances The balances of the accounts.
+     * @return The new balances of the accounts.
+     */
+    @Override
+    public double[] calculate(double[] balances) {
+        int periods = time - Math.min(Math.max(term, 0), time);
+        double[] result = new double[balances.length];
+        for (int i = 0; i < balances.length; ++i) {
+            result[i] = project(balances[i], periods, depositTiers);
+        }
+        return result;
+    }
+
+    /**
+     * Method to compound a balance through the tiers for a number of periods after the term.
+     *
+     * @param balance The starting balance.
+     * @param periods The number of periods with interest.
+     * @param tiers The compiled complex interest rates.
+     * @return The compounded balance.
+     */
+    private static double project(double balance, int periods, DepositTierTable tiers) {
+        while (periods > 0) {
+            int tier = tiers.tierFor(balance);
+            if (tier < 0) {
+                break;
             }
-            for (int j = depositInterest.size() - 1; j >= 0; --j) {
-                ComplexInterestRate rate = depositInterest.get(j);
-                if (balance >= rate.balanceThreshold()) {
-                    balance += balance * rate.interestRate();
-                    break;
-                }
+            double rate = tiers.rate(tier);
+            int step = periods;
+            if (rate <= 0 || balance <= 0) {
+                step = 1;
+            } else if (tier + 1 < tiers.size()) {
+                step = periodsToReach(balance, rate, tiers.threshold(tier + 1), periods);
             }
+            balance = Compounding.grow(balance, rate, step);
+            periods -= step;
         }
         return balance;
     }
+
+    /**
+     * Method to find how many periods a positive balance needs to reach a threshold at a positive rate.
+     * The count comes from solving balance * (1 + rate)^n >= threshold for n and is then corrected
+     * by at most a period in each direction against the compounded balance.
+     *
+     * @param balance The positive starting balance.
+     * @param rate The positive interest rate.
+     * @param threshold The threshold to be reached.
+     * @param periods The number of periods left, the result never exceeds it.
+     * @return The number of periods, between 1 and periods.
+     */
+    private static int periodsToReach(double balance, double rate, double threshold, int periods) {
+        double exact = Math.ceil(Math.log(threshold / balance) / Math.log1p(rate));
+        int step = (int) Math.max(1, Math.min(periods, exact));
+        while (step > 1 && Compounding.grow(balance, rate, step - 1) >= threshold) {
+            --step;
+        }
+        while (step < periods && Compounding.grow(balance, rate, step) < threshold) {
+            ++step;
+        }
+        return step;
+    }
 }
@@ -0,0 +1,102 @@
+package lenko27.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class is a compiled form of a list of complex interest rates.
+ * Thresholds and rates are kept in two primitive arrays sorted by threshold,
+ * so they can be scanned by tight loops instead of walking a list of records.
+ */
+public final class DepositTierTable {
+
+    /**
+     * Balance thresholds in ascending order.
+     */
+    private final double[] thresholds;
+
+    /**
+     * Interest rates, rates[i] applies from thresholds[i] up to thresholds[i + 1].
+     */
+    private final double[] rates;
+
+    /**
+     * Constructor for the DepositTierTable class.
+     *
+     * @param depositInterest The deposit interest rates to be compiled.
+     */
+    public DepositTierTable(List<ComplexInterestRate> depositInterest) {
+        ComplexInterestRate[] sorted = depositInterest.toArray(new ComplexInterestRate[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble(ComplexInterestRate::balanceThreshold));
+        this.thresholds = new double[sorted.length];
+        this.rates = new double[sorted.length];
+        for (int i = 0; i < sorted.length; ++i) {
+            thresholds[i] = sorted[i].balanceThreshold();
+            rates[i] = sorted[i].interestRate();
+        }
+    }
+
+    /**
+     * Method to get the number of tiers.
+     *
+     * @return The number of tiers.
+     */
+    public int size() {
+        return thresholds.length;
+    }
+
+    /**
+     * Method to get the threshold of a tier.
+     *
+     * @param tier The tier index.
+     * @return The balance threshold of the tier.
+     */
+    public double threshold(int tier) {
+        return thresholds[tier];
+    }
+
+    /**
+     * Method to get the rate of a tier.
+     *
+     * @param tier The tier index.
+     * @return The interest rate of the tier.
+     */
+    public double rate(int tier) {
+        return rates[tier];
+    }
+
+    /**
+     * Method to find the tier that applies to a balance by binary search.
+     * This is the tier with the highest threshold that is less than or equal to the balance.
+     *
+     * @param balance The balance of the account.
+     * @return The tier index, or -1 if the balance is below every threshold.
+     */
+    public int tierFor(double balance) {
+        int low = 0;
+        int high = thresholds.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (thresholds[middle] <= balance) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Method to get the interest rate that applies to a balance.
+     * This is the rate of the highest threshold that is less than or equal to the balance,
+     * or zero if the balance is below every threshold.
+     *
+     * @param balance The balance of the account.
+     * @return The applicable interest rate.
+     */
+    public double rateFor(double balance) {
+        int tier = tierFor(balance);
+        return tier < 0 ? 0 : rates[tier];
+    }
+}
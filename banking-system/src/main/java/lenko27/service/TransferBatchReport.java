@@ -0,0 +1,38 @@
+package lenko27.service;
+
+import lenko27.entities.transactions.OperationStatus;
+
+import java.util.List;
+
+/**
+ * This record represents the outcome of a transfer batch.
+ *
+ * @param statuses The outcome of every transfer, in the order of the batch.
+ * @param nanos    The time the whole batch took, in nanoseconds.
+ */
+public record TransferBatchReport(List<OperationStatus> statuses, long nanos) {
+
+    /**
+     * Method to get the number of transfers that were applied.
+     *
+     * @return The number of completed transfers.
+     */
+    public int getCompleted() {
+        int completed = 0;
+        for (OperationStatus status : statuses) {
+            if (status == OperationStatus.COMPLETED) {
+                ++completed;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Method to check if every transfer of the batch was applied.
+     *
+     * @return true if no transfer was rejected.
+     */
+    public boolean isSuccessful() {
+        return getCompleted() == statuses.size();
+    }
+}
@@ -0,0 +1,545 @@
+package lenko27.service;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.entities.transactions.TransactionType;
+import lenko27.exceptions.InsufficientFundsException;
+import lenko27.exceptions.UnauthorizedTransactionException;
+import lenko27.exceptions.WithdrawalBeforeTermException;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.service.velocity.VelocityLimiter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class performs transfers between accounts so that they can be run from many threads at once.
+ * Both account monitors are taken in a fixed order (by account identifier), so two transfers
+ * going in opposite directions can never deadlock. While both monitors are held the withdrawal,
+ * the refill and both log entries are applied as one atomic unit.
+ * If a write-ahead log is attached, both legs are recorded as one transfer record, and the transfer
+ * waits for the record to become durable only after both monitors are released.
+ * Batches of transfers are settled in chunks: the monitors of every account of a chunk are taken in the same
+ * order, the transfers are checked one after another against running balances, and every account is then
+ * updated once with its net balance and all its journal entries.
+ */
+public class TransferEngine {
+
+    /**
+     * Monitor used to break ties between different accounts with equal identifiers.
+     */
+    private static final Object TIE_LOCK = new Object();
+
+    /**
+     * Largest number of distinct accounts whose monitors a batch holds at once.
+     */
+    private static final int MAX_LOCKED_ACCOUNTS = 256;
+
+    /**
+     * Statuses by ordinal, to decode the rejections of single transfers without allocating.
+     */
+    private static final OperationStatus[] STATUSES = OperationStatus.values();
+
+    /**
+     * Order in which a batch takes the monitors of accounts, the same as for a single transfer.
+     */
+    private static final Comparator<Position> LOCK_ORDER = Comparator
+            .comparing((Position position) -> position.account.getId())
+            .thenComparingInt(position -> System.identityHashCode(position.account));
+
+    /**
+     * Write-ahead log recording transfers, null if transfers are kept in memory only.
+     */
+    private volatile WriteAheadLog writeAheadLog;
+
+    /**
+     * Method to set the write-ahead log recording transfers.
+     *
+     * @param writeAheadLog The log, or null to keep transfers in memory only.
+     */
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Method to transfer a sum of money from a sender account to an accepter account.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @throws UnauthorizedTransactionException If the client is suspicious.
+     * @throws WithdrawalBeforeTermException If the withdrawal is before the term.
+     * @throws InsufficientFundsException If there are insufficient funds.
+     * @throws IllegalArgumentException If the sum is not a positive finite number.
+     */
+    public void transfer(Account sender, Account accepter, double sum)
+            throws UnauthorizedTransactionException, WithdrawalBeforeTermException, InsufficientFundsException {
+        Account.checkAmount(sum);
+        long lsn = lockAndApply(sender, accepter, sum);
+        WriteAheadLog log = writeAheadLog;
+        if (lsn > 0 && log != null) {
+            log.commit(lsn);
+        }
+    }
+
+    /**
+     * Method to transfer a sum of money from a sender account to an accepter account,
+     * reporting a rejection instead of throwing it.
+     * Amounts and clients are checked by the caller; the rules of the sender account and the accepter
+     * client are checked again while both monitors are held.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return COMPLETED if the sum was transferred, the reason of the rejection otherwise.
+     */
+    public OperationStatus tryTransfer(Account sender, Account accepter, double sum) {
+        long result = tryLockAndApply(sender, accepter, sum);
+        if (result < 0) {
+            return STATUSES[(int) (-1 - result)];
+        }
+        WriteAheadLog log = writeAheadLog;
+        if (result > 0 && log != null) {
+            log.commit(result);
+        }
+        return OperationStatus.COMPLETED;
+    }
+
+    /**
+     * Method to apply a batch of transfers, reporting the outcome of every transfer instead of throwing.
+     * Amounts, clients and the velocity rules of the sending banks are checked for the whole batch up front,
+     * clients against their cached screening verdicts. Transfers rejected later are not counted against the velocity rules.
+     * The remaining transfers are applied in order, each one atomically; a rejected transfer does not affect the others.
+     * Every transfer still gets its own journal entries and log record, and the call returns once the
+     * last record is durable.
+     *
+     * @param transfers The transfers, in the order they are applied.
+     * @return The report of the batch.
+     */
+    public TransferBatchReport transferBatch(List<TransferRequest> transfers) {
+        long start = System.nanoTime();
+        OperationStatus[] statuses = new OperationStatus[transfers.size()];
+        VelocityLimiter[] counted = validate(transfers, statuses, start);
+        long lastLsn = 0;
+        int from = 0;
+        while (from < transfers.size()) {
+            Map<Account, Position> positions = new IdentityHashMap<>();
+            int to = from;
+            while (to < transfers.size() && positions.size() + 2 <= MAX_LOCKED_ACCOUNTS) {
+                if (statuses[to] == null) {
+                    TransferRequest transfer = transfers.get(to);
+                    positions.computeIfAbsent(transfer.sender(), Position::new);
+                    positions.computeIfAbsent(transfer.accepter(), Position::new);
+                }
+                ++to;
+            }
+            lastLsn = Math.max(lastLsn, new Chunk(transfers, statuses, from, to, positions).lockAndSettle());
+            from = to;
+        }
+        WriteAheadLog log = writeAheadLog;
+        if (lastLsn > 0 && log != null) {
+            log.commit(lastLsn);
+        }
+        release(transfers, statuses, counted, start);
+        return new TransferBatchReport(Arrays.asList(statuses), System.nanoTime() - start);
+    }
+
+    /**
+     * Method to reject the transfers of a batch with an invalid amount, a suspicious client
+     * or a sum exceeding a velocity rule of the sending bank, counting the others against the velocity rules.
+     *
+     * @param transfers The transfers.
+     * @param statuses The statuses of the transfers, set for the rejected ones and left null for the others.
+     * @param now The time of the batch, from System.nanoTime.
+     * @return The velocity limiter that counted every transfer, null for the transfers it did not count.
+     */
+    private static VelocityLimiter[] validate(List<TransferRequest> transfers, OperationStatus[] statuses, long now) {
+        VelocityLimiter[] counted = new VelocityLimiter[statuses.length];
+        for (int i = 0; i < statuses.length; ++i) {
+            TransferRequest transfer = transfers.get(i);
+            if (!(transfer.sum() > 0 && transfer.sum() < Double.POSITIVE_INFINITY)) {
+                statuses[i] = OperationStatus.INVALID_AMOUNT;
+            } else if (transfer.sender().getClient().isSuspicious() || transfer.accepter().getClient().isSuspicious()) {
+                statuses[i] = OperationStatus.UNAUTHORIZED;
+            } else {
+                VelocityLimiter velocity = transfer.sender().getBank().getVelocityLimiter();
+                if (velocity != null) {
+                    if (velocity.tryAcquire(transfer.sender(), transfer.sum(), now)) {
+                        counted[i] = velocity;
+                    } else {
+                        statuses[i] = OperationStatus.VELOCITY_LIMIT_EXCEEDED;
+                    }
+                }
+            }
+        }
+        return counted;
+    }
+
+    /**
+     * Method to take back from the velocity limiters the transfers of a batch that were counted but rejected.
+     *
+     * @param transfers The transfers.
+     * @param statuses The statuses of the transfers.
+     * @param counted The velocity limiter that counted every transfer, null for the transfers it did not count.
+     * @param now The time passed to validate.
+     */
+    private static void release(List<TransferRequest> transfers, OperationStatus[] statuses, VelocityLimiter[] counted,
+                                long now) {
+        for (int i = 0; i < statuses.length; ++i) {
+            if (counted[i] != null && statuses[i] != OperationStatus.COMPLETED) {
+                TransferRequest transfer = transfers.get(i);
+                counted[i].release(transfer.sender(), transfer.sum(), now);
+            }
+        }
+    }
+
+    /**
+     * Method to take both account monitors in a fixed order and apply the transfer.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return The log sequence number of the transfer record, or 0 if nothing was logged.
+     * @throws UnauthorizedTransactionException If the client is suspicious.
+     * @throws WithdrawalBeforeTermException If the withdrawal is before the term.
+     * @throws InsufficientFundsException If there are insufficient funds.
+     */
+    private long lockAndApply(Account sender, Account accepter, double sum)
+            throws UnauthorizedTransactionException, WithdrawalBeforeTermException, InsufficientFundsException {
+        if (sender == accepter) {
+            synchronized (sender) {
+                return apply(sender, accepter, sum);
+            }
+        }
+        int order = lockOrder(sender, accepter);
+        if (order == 0) {
+            synchronized (TIE_LOCK) {
+                synchronized (sender) {
+                    synchronized (accepter) {
+                        return apply(sender, accepter, sum);
+                    }
+                }
+            }
+        }
+        Account first = order < 0 ? sender : accepter;
+        Account second = order < 0 ? accepter : sender;
+        synchronized (first) {
+            synchronized (second) {
+                return apply(sender, accepter, sum);
+            }
+        }
+    }
+
+    /**
+     * Method to take both account monitors in a fixed order and apply the transfer without throwing.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return The log sequence number of the transfer record, 0 if nothing was logged,
+     * or -1 - the ordinal of the status if the transfer was rejected.
+     */
+    private long tryLockAndApply(Account sender, Account accepter, double sum) {
+        if (sender == accepter) {
+            synchronized (sender) {
+                return tryApply(sender, accepter, sum);
+            }
+        }
+        int order = lockOrder(sender, accepter);
+        if (order == 0) {
+            synchronized (TIE_LOCK) {
+                synchronized (sender) {
+                    synchronized (accepter) {
+                        return tryApply(sender, accepter, sum);
+                    }
+                }
+            }
+        }
+        Account first = order < 0 ? sender : accepter;
+        Account second = order < 0 ? accepter : sender;
+        synchronized (first) {
+            synchronized (second) {
+                return tryApply(sender, accepter, sum);
+            }
+        }
+    }
+
+    /**
+     * Method to compare two accounts in the order their monitors are taken.
+     *
+     * @param first The first account.
+     * @param second The second account.
+     * @return A negative number if the first account is locked first, a positive number if the second one is,
+     * 0 if they can only be ordered by the tie lock.
+     */
+    private static int lockOrder(Account first, Account second) {
+        int order = first.getId().compareTo(second.getId());
+        if (order == 0) {
+            order = Integer.compare(System.identityHashCode(first), System.identityHashCode(second));
+        }
+        return order;
+    }
+
+    /**
+     * Method to apply the transfer while both account monitors are held, reporting a rejection instead of throwing.
+     * The accepter is checked before anything is changed, so a rejected accepter leaves the sender untouched.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return The log sequence number of the transfer record, 0 if nothing was logged,
+     * or -1 - the ordinal of the status if the transfer was rejected.
+     */
+    private long tryApply(Account sender, Account accepter, double sum) {
+        if (accepter.getClient().isSuspicious()) {
+            return -1 - OperationStatus.UNAUTHORIZED.ordinal();
+        }
+        OperationStatus status = sender.tryWithdraw(sum, false);
+        if (status != OperationStatus.COMPLETED) {
+            return -1 - status.ordinal();
+        }
+        accepter.tryRefill(sum, false);
+        return logTransfer(sender, accepter, sum);
+    }
+
+    /**
+     * Method to apply the transfer while both account monitors are held.
+     * The refill is checked before anything is changed, so a rejected accepter leaves the sender untouched.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money to be transferred.
+     * @return The log sequence number of the transfer record, or 0 if nothing was logged.
+     * @throws UnauthorizedTransactionException If the client is suspicious.
+     * @throws WithdrawalBeforeTermException If the withdrawal is before the term.
+     * @throws InsufficientFundsException If there are insufficient funds.
+     */
+    private long apply(Account sender, Account accepter, double sum)
+            throws UnauthorizedTransactionException, WithdrawalBeforeTermException, InsufficientFundsException {
+        if (accepter.getClient().isSuspicious()) {
+            throw UnauthorizedTransactionException.create(accepter.getClient());
+        }
+        if (sender.withdraw(sum, false)) {
+            accepter.refill(sum, false);
+            return logTransfer(sender, accepter, sum);
+        }
+        return 0;
+    }
+
+    /**
+     * Method to record an applied transfer in the journals of both accounts and in the write-ahead log,
+     * while both account monitors are held.
+     *
+     * @param sender The account from which the sum was withdrawn.
+     * @param accepter The account to which the sum was deposited.
+     * @param sum The sum of money transferred.
+     * @return The log sequence number of the transfer record, or 0 if nothing was logged.
+     */
+    private long logTransfer(Account sender, Account accepter, double sum) {
+        sender.operationLogging(TransactionType.TRANSFERSENDER, sum);
+        accepter.operationLogging(TransactionType.TRANSFERACCEPTER, sum);
+        WriteAheadLog log = writeAheadLog;
+        if (log != null) {
+            long lsn = log.appendTransfer(sender.getId(), accepter.getId(), sum);
+            sender.setLastLsn(lsn);
+            accepter.setLastLsn(lsn);
+            return lsn;
+        }
+        return 0;
+    }
+
+    /**
+     * This class holds the running state of one account while a chunk of a batch is settled.
+     */
+    private static final class Position {
+
+        /**
+         * The account.
+         */
+        private final Account account;
+
+        /**
+         * Balance after the transfers settled so far.
+         */
+        private double balance;
+
+        /**
+         * Log sequence number of the last transfer record of the account, 0 if nothing was logged.
+         */
+        private long lastLsn;
+
+        /**
+         * Types of the journal entries to be appended.
+         */
+        private TransactionType[] types = new TransactionType[4];
+
+        /**
+         * Sums of the journal entries to be appended.
+         */
+        private double[] sums = new double[4];
+
+        /**
+         * Number of journal entries to be appended.
+         */
+        private int count;
+
+        /**
+         * Constructor for the Position class.
+         *
+         * @param account The account.
+         */
+        private Position(Account account) {
+            this.account = account;
+        }
+
+        /**
+         * Method to record a journal entry.
+         *
+         * @param type The type of the transaction.
+         * @param sum The sum involved in the transaction.
+         */
+        private void add(TransactionType type, double sum) {
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                sums = Arrays.copyOf(sums, count * 2);
+            }
+            types[count] = type;
+            sums[count] = sum;
+            ++count;
+        }
+    }
+
+    /**
+     * This class settles a range of transfers of a batch while holding the monitors of all their accounts.
+     */
+    private final class Chunk {
+
+        /**
+         * The transfers of the batch.
+         */
+        private final List<TransferRequest> transfers;
+
+        /**
+         * The statuses of the transfers of the batch.
+         */
+        private final OperationStatus[] statuses;
+
+        /**
+         * Position of the first transfer of the chunk.
+         */
+        private final int from;
+
+        /**
+         * Position after the last transfer of the chunk.
+         */
+        private final int to;
+
+        /**
+         * Running state of every account of the chunk.
+         */
+        private final Map<Account, Position> positions;
+
+        /**
+         * Running states in lock order.
+         */
+        private final Position[] locked;
+
+        /**
+         * Constructor for the Chunk class.
+         *
+         * @param transfers The transfers of the batch.
+         * @param statuses The statuses of the transfers of the batch.
+         * @param from The position of the first transfer of the chunk.
+         * @param to The position after the last transfer of the chunk.
+         * @param positions The running state of every account of the chunk.
+         */
+        private Chunk(List<TransferRequest> transfers, OperationStatus[] statuses, int from, int to,
+                      Map<Account, Position> positions) {
+            this.transfers = transfers;
+            this.statuses = statuses;
+            this.from = from;
+            this.to = to;
+            this.positions = positions;
+            this.locked = positions.values().toArray(new Position[0]);
+            Arrays.sort(locked, LOCK_ORDER);
+        }
+
+        /**
+         * Method to take the monitors of all accounts of the chunk and settle it.
+         *
+         * @return The log sequence number of the last transfer record, or 0 if nothing was logged.
+         */
+        private long lockAndSettle() {
+            for (int i = 1; i < locked.length; ++i) {
+                if (LOCK_ORDER.compare(locked[i - 1], locked[i]) == 0) {
+                    synchronized (TIE_LOCK) {
+                        return lockFrom(0);
+                    }
+                }
+            }
+            return lockFrom(0);
+        }
+
+        /**
+         * Method to take the remaining monitors in lock order and settle the chunk.
+         *
+         * @param next The position in lock order of the next monitor to take.
+         * @return The log sequence number of the last transfer record, or 0 if nothing was logged.
+         */
+        private long lockFrom(int next) {
+            if (next == locked.length) {
+                return settle();
+            }
+            synchronized (locked[next].account) {
+                return lockFrom(next + 1);
+            }
+        }
+
+        /**
+         * Method to check and log the transfers one after another, then update every account once.
+         *
+         * @return The log sequence number of the last transfer record, or 0 if nothing was logged.
+         */
+        private long settle() {
+            for (Position position : locked) {
+                position.balance = position.account.getBalance();
+            }
+            WriteAheadLog log = writeAheadLog;
+            long lastLsn = 0;
+            for (int i = from; i < to; ++i) {
+                if (statuses[i] != null) {
+                    continue;
+                }
+                TransferRequest transfer = transfers.get(i);
+                Position sender = positions.get(transfer.sender());
+                Position accepter = positions.get(transfer.accepter());
+                double sum = transfer.sum();
+                OperationStatus status = sender.account.withdrawalStatus(sender.balance, sum);
+                if (status != OperationStatus.COMPLETED) {
+                    statuses[i] = status;
+                    continue;
+                }
+                sender.balance -= sum;
+                accepter.balance += sum;
+                sender.add(TransactionType.TRANSFERSENDER, sum);
+                accepter.add(TransactionType.TRANSFERACCEPTER, sum);
+                if (log != null) {
+                    lastLsn = log.appendTransfer(sender.account.getId(), accepter.account.getId(), sum);
+                    sender.lastLsn = lastLsn;
+                    accepter.lastLsn = lastLsn;
+                }
+                statuses[i] = OperationStatus.COMPLETED;
+            }
+            for (Position position : locked) {
+                if (position.count > 0) {
+                    position.account.applyTransfers(position.balance, position.types, position.sums,
+                            position.count, position.lastLsn);
+                }
+            }
+            return lastLsn;
+        }
+    }
+}
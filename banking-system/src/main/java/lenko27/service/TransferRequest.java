@@ -0,0 +1,13 @@
+package lenko27.service;
+
+import lenko27.entities.accounts.Account;
+
+/**
+ * This record represents one transfer of a transfer batch.
+ *
+ * @param sender   The account from which the sum is withdrawn.
+ * @param accepter The account to which the sum is deposited.
+ * @param sum      The sum of money to be transferred.
+ */
+public record TransferRequest(Account sender, Account accepter, double sum) {
+}
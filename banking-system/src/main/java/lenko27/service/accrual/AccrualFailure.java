@@ -0,0 +1,13 @@
+package lenko27.service.accrual;
+
+import lenko27.entities.accounts.Account;
+import lenko27.exceptions.BankingOperationsException;
+
+/**
+ * This record represents an account that was skipped by an accrual run.
+ *
+ * @param account The account that was skipped.
+ * @param cause   The reason the account was skipped.
+ */
+public record AccrualFailure(Account account, BankingOperationsException cause) {
+}
@@ -0,0 +1,72 @@
+package lenko27.service.accrual;
+
+import lenko27.service.DepositTierTable;
+
+/**
+ * This class holds the arithmetic of interest accrual as loops over primitive arrays.
+ * The loops have no calls, no branches that the JIT can not turn into blends and no dependencies
+ * between iterations, so HotSpot compiles them into SIMD code.
+ */
+public final class AccrualKernels {
+
+    private AccrualKernels() {
+    }
+
+    /**
+     * Method to compute the debit interest of every balance.
+     *
+     * @param balances The balances of debit accounts.
+     * @param count The number of balances to be processed.
+     * @param rate The debit interest rate.
+     * @param deltas The array receiving the interest of every balance.
+     */
+    public static void debit(double[] balances, int count, double rate, double[] deltas) {
+        for (int i = 0; i < count; ++i) {
+            deltas[i] = balances[i] * rate;
+        }
+    }
+
+    /**
+     * Method to compute the tiered deposit interest of every balance.
+     * Tiers are applied in ascending order, so each balance ends up with the rate of the highest
+     * threshold it reaches, the same rule as the one used by DepositAnalyzer.
+     *
+     * @param balances The balances of deposit accounts.
+     * @param count The number of balances to be processed.
+     * @param tiers The compiled deposit interest rates.
+     * @param rates Scratch array receiving the applicable rate of every balance.
+     * @param deltas The array receiving the interest of every balance.
+     */
+    public static void deposit(double[] balances, int count, DepositTierTable tiers, double[] rates, double[] deltas) {
+        for (int i = 0; i < count; ++i) {
+            rates[i] = 0;
+        }
+        for (int tier = 0; tier < tiers.size(); ++tier) {
+            double threshold = tiers.threshold(tier);
+            double rate = tiers.rate(tier);
+            for (int i = 0; i < count; ++i) {
+                rates[i] = balances[i] >= threshold ? rate : rates[i];
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            deltas[i] = balances[i] * rates[i];
+        }
+    }
+
+    /**
+     * Method to compute the commission charged on every credit balance.
+     * Only negative balances are charged, by the absolute value of balance * commission,
+     * the same rule as the one used by CreditAnalyzer.
+     *
+     * @param balances The balances of credit accounts.
+     * @param count The number of balances to be processed.
+     * @param commission The credit commission.
+     * @param deltas The array receiving the (non-positive) change of every balance.
+     */
+    public static void credit(double[] balances, int count, double commission, double[] deltas) {
+        double absCommission = Math.abs(commission);
+        for (int i = 0; i < count; ++i) {
+            deltas[i] = Math.min(balances[i], 0.0) * absCommission;
+        }
+    }
+}
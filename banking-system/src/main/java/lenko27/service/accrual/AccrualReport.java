@@ -0,0 +1,43 @@
+package lenko27.service.accrual;
+
+import java.util.List;
+
+/**
+ * This record represents the outcome of a parallel accrual run over several banks.
+ *
+ * @param partitions The reports of every partition, in bank and range order.
+ * @param nanos      The time the whole run took, in nanoseconds.
+ */
+public record AccrualReport(List<PartitionReport> partitions, long nanos) {
+
+    /**
+     * Method to get the number of accounts accrued by the run.
+     *
+     * @return The number of accrued accounts.
+     */
+    public long getProcessed() {
+        long processed = 0;
+        for (PartitionReport partition : partitions) {
+            processed += partition.processed();
+        }
+        return processed;
+    }
+
+    /**
+     * Method to get every account skipped by the run.
+     *
+     * @return The skipped accounts of all partitions.
+     */
+    public List<AccrualFailure> getFailures() {
+        return partitions.stream().flatMap(partition -> partition.failures().stream()).toList();
+    }
+
+    /**
+     * Method to check if every partition of the run was accrued completely.
+     *
+     * @return true if no account was skipped and no partition failed.
+     */
+    public boolean isSuccessful() {
+        return partitions.stream().allMatch(PartitionReport::isSuccessful);
+    }
+}
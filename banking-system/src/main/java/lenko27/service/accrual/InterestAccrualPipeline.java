@@ -0,0 +1,327 @@
+package lenko27.service.accrual;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.AccountStore;
+import lenko27.entities.accounts.AccountType;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.exceptions.InvalidBalanceException;
+import lenko27.exceptions.UnauthorizedTransactionException;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.service.DepositTierTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class accrues interest on a range of accounts in three stages.
+ * Accounts are first gathered into one primitive partition per account type, then every partition
+ * is run through its kernel from AccrualKernels, and finally the results are posted back to the
+ * accounts together with their journal entries, one chunk at a time.
+ * If a write-ahead log is attached, the entries of a chunk are committed together once it is posted.
+ * Debit accounts get the debit interest, deposit accounts get the tiered deposit interest and
+ * credit accounts with a negative balance are charged the credit commission.
+ * A pipeline either stops at the first account of a suspicious client or skips such accounts
+ * and collects them as failures. Accounts whose balance is not a finite number are always skipped
+ * and collected as failures, since no change can be computed for them.
+ */
+public class InterestAccrualPipeline {
+
+    /**
+     * Maximum number of accounts gathered before the kernels run.
+     */
+    public static final int CHUNK_SIZE = AccountStore.PAGE_SIZE;
+
+    /**
+     * Number of times a change is recomputed for a balance that keeps changing before the account is locked.
+     */
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    /**
+     * Debit interest rate of the bank.
+     */
+    private final double debitInterest;
+
+    /**
+     * Compiled deposit interest rates of the bank.
+     */
+    private final DepositTierTable depositTiers;
+
+    /**
+     * Credit commission of the bank.
+     */
+    private final double creditCommission;
+
+    /**
+     * Skipped accounts.
+     */
+    private final List<AccrualFailure> failures = new ArrayList<>();
+
+    /**
+     * Whether accounts of suspicious clients are skipped instead of stopping the pipeline.
+     */
+    private final boolean skipFailures;
+
+    /**
+     * Gathered accounts, indexed by AccountType ordinal.
+     */
+    private final Partition[] partitions = new Partition[AccountType.values().length];
+
+    /**
+     * Number of accounts posted by this pipeline so far.
+     */
+    private int processed;
+
+    /**
+     * Constructor for the InterestAccrualPipeline class.
+     *
+     * @param debitInterest The debit interest rate of the bank.
+     * @param depositTiers The compiled deposit interest rates of the bank.
+     * @param creditCommission The credit commission of the bank.
+     */
+    public InterestAccrualPipeline(double debitInterest, DepositTierTable depositTiers, double creditCommission) {
+        this(debitInterest, depositTiers, creditCommission, false);
+    }
+
+    /**
+     * Constructor for the InterestAccrualPipeline class.
+     *
+     * @param debitInterest The debit interest rate of the bank.
+     * @param depositTiers The compiled deposit interest rates of the bank.
+     * @param creditCommission The credit commission of the bank.
+     * @param skipFailures Whether accounts of suspicious clients are skipped instead of stopping the pipeline.
+     */
+    public InterestAccrualPipeline(double debitInterest, DepositTierTable depositTiers, double creditCommission,
+                                   boolean skipFailures) {
+        this.skipFailures = skipFailures;
+        this.debitInterest = debitInterest;
+        this.depositTiers = depositTiers;
+        this.creditCommission = creditCommission;
+        for (int i = 0; i < partitions.length; ++i) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Method to accrue interest on a range of a list of accounts.
+     *
+     * @param accounts The accounts of the bank.
+     * @param from The first index of the range, inclusive.
+     * @param to The last index of the range, exclusive.
+     * @return The number of accounts posted so far.
+     * @throws UnauthorizedTransactionException If the owner of an account is suspicious.
+     * Accounts before it in the range have been accrued already.
+     */
+    public int accrue(List<Account> accounts, int from, int to) throws UnauthorizedTransactionException {
+        for (int start = from; start < to; start += CHUNK_SIZE) {
+            int end = Math.min(to, start + CHUNK_SIZE);
+            for (int i = start; i < end; ++i) {
+                Account account = accounts.get(i);
+                gather(account, account.getClient(), account.getType().ordinal(), account.getBalance());
+            }
+            flush();
+        }
+        return processed;
+    }
+
+    /**
+     * Method to accrue interest on a range of slots of an account store.
+     * Every page is gathered straight from the columns of the store.
+     *
+     * @param store The account store of the bank.
+     * @param from The first slot of the range, inclusive.
+     * @param to The last slot of the range, exclusive.
+     * @return The number of accounts posted so far.
+     * @throws UnauthorizedTransactionException If the owner of an account is suspicious.
+     * Accounts before it in the range have been accrued already.
+     */
+    public int accrue(AccountStore store, int from, int to) throws UnauthorizedTransactionException {
+        int slot = from;
+        while (slot < to) {
+            int page = slot >>> AccountStore.PAGE_SHIFT;
+            int pageStart = page << AccountStore.PAGE_SHIFT;
+            int end = Math.min(to, pageStart + AccountStore.PAGE_SIZE);
+            double[] balances = store.balancePage(page);
+            byte[] types = store.typePage(page);
+            Account[] handles = store.handlePage(page);
+            for (; slot < end; ++slot) {
+                int index = slot - pageStart;
+                Account account = handles[index];
+                gather(account, account.getClient(), types[index], balances[index]);
+            }
+            flush();
+        }
+        return processed;
+    }
+
+    /**
+     * Method to get the number of accounts posted by this pipeline.
+     *
+     * @return The number of accounts posted so far.
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Method to get the accounts skipped by this pipeline.
+     *
+     * @return The skipped accounts; only those with a balance that is not a finite number
+     * if the pipeline does not skip suspicious clients.
+     */
+    public List<AccrualFailure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Method to add an account to the partition of its type.
+     *
+     * @param account The account to be added.
+     * @param owner The client who owns the account.
+     * @param type The AccountType ordinal of the account.
+     * @param balance The balance of the account.
+     * @throws UnauthorizedTransactionException If the owner is suspicious and failures are not skipped,
+     * after the gathered accounts are posted.
+     */
+    private void gather(Account account, Client owner, int type, double balance) throws UnauthorizedTransactionException {
+        if (owner.isSuspicious()) {
+            if (skipFailures) {
+                failures.add(new AccrualFailure(account, new UnauthorizedTransactionException(owner)));
+                return;
+            }
+            flush();
+            throw new UnauthorizedTransactionException(owner);
+        }
+        partitions[type].add(account, balance);
+    }
+
+    /**
+     * Method to run the kernels on every gathered partition and post the results.
+     */
+    private void flush() {
+        for (AccountType type : AccountType.values()) {
+            Partition partition = partitions[type.ordinal()];
+            if (partition.count == 0) {
+                continue;
+            }
+            switch (type) {
+                case DEBIT -> AccrualKernels.debit(partition.balances, partition.count, debitInterest, partition.deltas);
+                case DEPOSIT -> AccrualKernels.deposit(partition.balances, partition.count, depositTiers,
+                        partition.rates, partition.deltas);
+                case CREDIT -> AccrualKernels.credit(partition.balances, partition.count, creditCommission, partition.deltas);
+            }
+            post(type, partition);
+        }
+        WriteAheadLog writeAheadLog = CentralBank.getInstance().getWriteAheadLog();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(writeAheadLog.getLastLsn());
+        }
+    }
+
+    /**
+     * Method to post the computed changes of a partition to its accounts.
+     * Accounts whose change is not a finite number are collected as failures instead.
+     *
+     * @param type The type of the accounts in the partition.
+     * @param partition The partition to be posted.
+     */
+    private void post(AccountType type, Partition partition) {
+        for (int i = 0; i < partition.count; ++i) {
+            Account account = partition.accounts[i];
+            if (post(type, account, partition.balances[i], partition.deltas[i])) {
+                ++processed;
+            } else {
+                failures.add(new AccrualFailure(account, new InvalidBalanceException(account.getClient())));
+            }
+            partition.accounts[i] = null;
+        }
+        partition.count = 0;
+    }
+
+    /**
+     * Method to post the change of one account.
+     * If the balance has changed since it was gathered, the change is recomputed; if it keeps changing,
+     * the last attempt is made under the account monitor, where it can not change any more.
+     *
+     * @param type The type of the account.
+     * @param account The account.
+     * @param balance The balance the change was computed from.
+     * @param delta The change of the balance.
+     * @return true if the change was applied, false if it is not a finite number.
+     */
+    private boolean post(AccountType type, Account account, double balance, double delta) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; ++attempt) {
+            if (!Double.isFinite(delta)) {
+                return false;
+            }
+            if (account.applyAccrual(balance, delta)) {
+                return true;
+            }
+            balance = account.getBalance();
+            delta = delta(type, balance);
+        }
+        synchronized (account) {
+            balance = account.getBalance();
+            delta = delta(type, balance);
+            return Double.isFinite(delta) && account.applyAccrual(balance, delta);
+        }
+    }
+
+    /**
+     * Method to compute the change of a single balance, used when a gathered balance went stale.
+     *
+     * @param type The type of the account.
+     * @param balance The current balance of the account.
+     * @return The change of the balance.
+     */
+    private double delta(AccountType type, double balance) {
+        return switch (type) {
+            case DEBIT -> balance * debitInterest;
+            case DEPOSIT -> balance * depositTiers.rateFor(balance);
+            case CREDIT -> Math.min(balance, 0.0) * Math.abs(creditCommission);
+        };
+    }
+
+    /**
+     * This class holds the gathered accounts of one type in primitive columns.
+     */
+    private static final class Partition {
+
+        /**
+         * Gathered accounts.
+         */
+        private final Account[] accounts = new Account[CHUNK_SIZE];
+
+        /**
+         * Balances of the gathered accounts.
+         */
+        private final double[] balances = new double[CHUNK_SIZE];
+
+        /**
+         * Changes computed by the kernel.
+         */
+        private final double[] deltas = new double[CHUNK_SIZE];
+
+        /**
+         * Scratch rates used by the deposit kernel.
+         */
+        private final double[] rates = new double[CHUNK_SIZE];
+
+        /**
+         * Number of gathered accounts.
+         */
+        private int count;
+
+        /**
+         * Method to add an account to the partition.
+         *
+         * @param account The account to be added.
+         * @param balance The balance of the account.
+         */
+        private void add(Account account, double balance) {
+            accounts[count] = account;
+            balances[count] = balance;
+            ++count;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package lenko27.service.accrual;
+
+import lenko27.entities.accounts.AccountStore;
+import lenko27.entities.banks.Bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * This class accrues interest on several banks at once.
+ * Every bank is split into ranges of accounts, and every range is accrued as a separate task
+ * on the executor, so the run scales with the number of cores.
+ * Accounts of suspicious clients are skipped and reported instead of aborting the run.
+ */
+public class ParallelAccrual {
+
+    /**
+     * Default number of accounts in one partition.
+     */
+    public static final int DEFAULT_PARTITION_SIZE = 16 * AccountStore.PAGE_SIZE;
+
+    /**
+     * Executor running the partitions.
+     */
+    private final Executor executor;
+
+    /**
+     * Number of accounts in one partition.
+     */
+    private final int partitionSize;
+
+    /**
+     * Constructor for the ParallelAccrual class running on the common fork-join pool.
+     */
+    public ParallelAccrual() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARTITION_SIZE);
+    }
+
+    /**
+     * Constructor for the ParallelAccrual class.
+     *
+     * @param executor The executor running the partitions.
+     * @param partitionSize The number of accounts in one partition.
+     */
+    public ParallelAccrual(Executor executor, int partitionSize) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive: " + partitionSize);
+        }
+        this.executor = executor;
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * Method to accrue interest on all accounts of the banks.
+     *
+     * @param banks The banks to be accrued.
+     * @param progress Callback receiving the report of every finished partition; it is called
+     *                 from the executor threads, possibly concurrently.
+     * @return The report of the whole run.
+     */
+    public AccrualReport run(List<Bank> banks, Consumer<PartitionReport> progress) {
+        long start = System.nanoTime();
+        List<CompletableFuture<PartitionReport>> partitions = new ArrayList<>();
+        for (Bank bank : banks) {
+            int count = bank.getAccountCount();
+            for (int from = 0; from < count; from += partitionSize) {
+                int partitionFrom = from;
+                int partitionTo = Math.min(count, from + partitionSize);
+                partitions.add(CompletableFuture
+                        .supplyAsync(() -> bank.interestAccrual(partitionFrom, partitionTo), executor)
+                        .thenApply(report -> {
+                            progress.accept(report);
+                            return report;
+                        }));
+            }
+        }
+        List<PartitionReport> reports = new ArrayList<>(partitions.size());
+        for (CompletableFuture<PartitionReport> partition : partitions) {
+            reports.add(partition.join());
+        }
+        return new AccrualReport(reports, System.nanoTime() - start);
+    }
+}
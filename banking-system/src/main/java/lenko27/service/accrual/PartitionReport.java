@@ -0,0 +1,28 @@
+package lenko27.service.accrual;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This record represents the outcome of accruing interest on one range of accounts of one bank.
+ *
+ * @param bankId    The identifier of the bank.
+ * @param from      The first account index of the range, inclusive.
+ * @param to        The last account index of the range, exclusive.
+ * @param processed The number of accounts that were accrued.
+ * @param failures  The accounts that were skipped.
+ * @param error     The error that aborted the partition, or null if it ran to the end.
+ * @param nanos     The time the partition took, in nanoseconds.
+ */
+public record PartitionReport(UUID bankId, int from, int to, int processed,
+                              List<AccrualFailure> failures, Throwable error, long nanos) {
+
+    /**
+     * Method to check if every account of the partition was accrued.
+     *
+     * @return true if the partition has neither skipped accounts nor an error.
+     */
+    public boolean isSuccessful() {
+        return error == null && failures.isEmpty();
+    }
+}
@@ -0,0 +1,215 @@
+package lenko27.service.clearing;
+
+import java.util.Arrays;
+
+/**
+ * This class accumulates the obligations between banks during one clearing window.
+ * Obligations are kept in a sparse matrix: one row per paying bank, created on its first transfer, holding only
+ * the receiving banks it has paid to. Rows are locked separately, so transfers from different banks never wait
+ * for each other. Closing the cycle waits for the transfers being recorded; later ones are refused and
+ * have to be recorded in the next cycle.
+ */
+final class ClearingCycle {
+
+    /**
+     * Rows of the matrix by paying bank index, null for banks that have paid nothing.
+     */
+    private volatile Row[] rows;
+
+    /**
+     * Whether the cycle has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the ClearingCycle class.
+     *
+     * @param banks The number of banks known when the cycle starts.
+     */
+    ClearingCycle(int banks) {
+        this.rows = new Row[Math.max(16, banks)];
+    }
+
+    /**
+     * Method to add a transfer to the obligation of one bank to another.
+     *
+     * @param payer The index of the bank of the sender.
+     * @param payee The index of the bank of the accepter.
+     * @param sum The sum of money transferred.
+     * @return true if the transfer was recorded, false if the cycle is closed.
+     */
+    boolean record(int payer, int payee, double sum) {
+        Row row = row(payer);
+        if (row == null) {
+            return false;
+        }
+        synchronized (row) {
+            if (closed) {
+                return false;
+            }
+            row.add(payee, sum);
+        }
+        return true;
+    }
+
+    /**
+     * Method to close the cycle and wait for the transfers being recorded.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (Row row : rows) {
+            if (row != null) {
+                synchronized (row) {
+                    // Every transfer recorded before the cycle was closed has released the row.
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to compute the multilateral net position of every bank from a closed cycle.
+     *
+     * @param positions The net positions by bank index, filled in: positive for banks that receive money.
+     * @return The totals of the cycle.
+     */
+    Totals net(double[] positions) {
+        long transfers = 0;
+        int pairs = 0;
+        double gross = 0;
+        for (int payer = 0; payer < rows.length; ++payer) {
+            Row row = rows[payer];
+            if (row == null) {
+                continue;
+            }
+            transfers += row.transfers;
+            for (int slot = 0; slot < row.payees.length; ++slot) {
+                if (row.payees[slot] == 0) {
+                    continue;
+                }
+                double amount = row.amounts[slot];
+                positions[payer] -= amount;
+                positions[row.payees[slot] - 1] += amount;
+                gross += amount;
+                ++pairs;
+            }
+        }
+        return new Totals(transfers, pairs, gross);
+    }
+
+    /**
+     * Method to get the row of a paying bank, creating it on first use.
+     *
+     * @param payer The index of the paying bank.
+     * @return The row, or null if the cycle is closed.
+     */
+    private Row row(int payer) {
+        Row[] current = rows;
+        if (payer < current.length && current[payer] != null) {
+            return current[payer];
+        }
+        synchronized (this) {
+            if (closed) {
+                return null;
+            }
+            current = rows;
+            if (payer >= current.length) {
+                current = Arrays.copyOf(current, Math.max(payer + 1, current.length * 2));
+            }
+            if (current[payer] == null) {
+                current[payer] = new Row();
+            }
+            rows = current;
+            return current[payer];
+        }
+    }
+
+    /**
+     * This record holds the totals of a cycle.
+     *
+     * @param transfers The number of recorded transfers.
+     * @param pairs The number of bank pairs with an obligation.
+     * @param gross The sum of all recorded transfers.
+     */
+    record Totals(long transfers, int pairs, double gross) {
+    }
+
+    /**
+     * This class holds the obligations of one paying bank, using open addressing with linear probing.
+     */
+    private static final class Row {
+
+        /**
+         * Receiving bank indexes plus one, 0 for empty slots.
+         */
+        private int[] payees = new int[8];
+
+        /**
+         * Amounts owed to the receiving banks.
+         */
+        private double[] amounts = new double[8];
+
+        /**
+         * Number of receiving banks.
+         */
+        private int size;
+
+        /**
+         * Number of transfers recorded in the row.
+         */
+        private long transfers;
+
+        /**
+         * Method to add a transfer to the amount owed to a bank.
+         *
+         * @param payee The index of the receiving bank.
+         * @param sum The sum of money transferred.
+         */
+        private void add(int payee, double sum) {
+            if ((size + 1) * 4 > payees.length * 3) {
+                grow();
+            }
+            int slot = slot(payees, payee + 1);
+            if (payees[slot] == 0) {
+                payees[slot] = payee + 1;
+                ++size;
+            }
+            amounts[slot] += sum;
+            ++transfers;
+        }
+
+        /**
+         * Method to double the capacity of the row.
+         */
+        private void grow() {
+            int[] oldPayees = payees;
+            double[] oldAmounts = amounts;
+            payees = new int[oldPayees.length * 2];
+            amounts = new double[oldPayees.length * 2];
+            for (int i = 0; i < oldPayees.length; ++i) {
+                if (oldPayees[i] != 0) {
+                    int slot = slot(payees, oldPayees[i]);
+                    payees[slot] = oldPayees[i];
+                    amounts[slot] = oldAmounts[i];
+                }
+            }
+        }
+
+        /**
+         * Method to find the slot of a key, or the empty slot where it belongs.
+         *
+         * @param keys The keys of the row.
+         * @param key The key, a bank index plus one.
+         * @return The slot.
+         */
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 7 & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
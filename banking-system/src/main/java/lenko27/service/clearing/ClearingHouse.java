@@ -0,0 +1,114 @@
+package lenko27.service.clearing;
+
+import lenko27.entities.banks.Bank;
+import lenko27.service.directory.UuidMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This class clears the transfers between accounts of different banks.
+ * The accounts are posted in real time by the transfer engine; the clearing house only accumulates what every
+ * bank owes every other bank during a window. Closing the window computes the multilateral net position of every
+ * bank and settles only that: one posting per bank instead of one per transfer.
+ */
+public class ClearingHouse {
+
+    /**
+     * Indexes of the banks in the obligation matrix by bank identifier.
+     */
+    private final UuidMap<Integer> indexes = new UuidMap<>();
+
+    /**
+     * Banks in index order.
+     */
+    private final List<Bank> banks = new ArrayList<>();
+
+    /**
+     * Cycle accumulating the current window.
+     */
+    private volatile ClearingCycle current = new ClearingCycle(0);
+
+    /**
+     * Method to record a transfer between accounts of two banks.
+     * Transfers within one bank need no clearing and are ignored.
+     *
+     * @param payer The bank of the sender.
+     * @param payee The bank of the accepter.
+     * @param sum The sum of money transferred.
+     */
+    public void record(Bank payer, Bank payee, double sum) {
+        if (payer == payee) {
+            return;
+        }
+        int payerIndex = indexOf(payer);
+        int payeeIndex = indexOf(payee);
+        while (!current.record(payerIndex, payeeIndex, sum)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Method to close the current window, start the next one and settle the net positions of the closed one.
+     * Every bank with a net position is settled once, with its net amount.
+     *
+     * @return The report of the closed cycle.
+     */
+    public synchronized SettlementReport closeCycle() {
+        long start = System.nanoTime();
+        ClearingCycle cycle = current;
+        int registered;
+        synchronized (banks) {
+            registered = banks.size();
+        }
+        current = new ClearingCycle(registered);
+        cycle.close();
+        List<Bank> known;
+        synchronized (banks) {
+            known = List.copyOf(banks);
+        }
+
+        double[] positions = new double[known.size()];
+        ClearingCycle.Totals totals = cycle.net(positions);
+        double netAmount = 0;
+        Map<UUID, Double> netPositions = new HashMap<>();
+        for (int i = 0; i < positions.length; ++i) {
+            if (positions[i] == 0) {
+                continue;
+            }
+            Bank bank = known.get(i);
+            bank.settle(positions[i]);
+            netPositions.put(bank.getId(), positions[i]);
+            if (positions[i] > 0) {
+                netAmount += positions[i];
+            }
+        }
+        return new SettlementReport(totals.transfers(), totals.pairs(), totals.gross(), netAmount,
+                Map.copyOf(netPositions), System.nanoTime() - start);
+    }
+
+    /**
+     * Method to get the index of a bank, assigning one on first sight.
+     *
+     * @param bank The bank.
+     * @return The index of the bank in the obligation matrix.
+     */
+    private int indexOf(Bank bank) {
+        Integer index = indexes.get(bank.getId());
+        if (index != null) {
+            return index;
+        }
+        synchronized (banks) {
+            index = indexes.get(bank.getId());
+            if (index == null) {
+                index = banks.size();
+                banks.add(bank);
+                indexes.put(bank.getId(), index);
+            }
+            return index;
+        }
+    }
+}
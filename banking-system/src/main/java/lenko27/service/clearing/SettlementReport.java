@@ -0,0 +1,27 @@
+package lenko27.service.clearing;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This record represents the outcome of closing a clearing cycle.
+ *
+ * @param transfers    The number of cross-bank transfers recorded during the cycle.
+ * @param bankPairs    The number of ordered bank pairs with an obligation.
+ * @param grossAmount  The sum of all cross-bank transfers.
+ * @param netAmount    The sum settled: the total of the positive net positions.
+ * @param netPositions The multilateral net position of every bank that has one, positive for banks receiving money.
+ * @param nanos        The time closing and settling the cycle took, in nanoseconds.
+ */
+public record SettlementReport(long transfers, int bankPairs, double grossAmount, double netAmount,
+                               Map<UUID, Double> netPositions, long nanos) {
+
+    /**
+     * Method to get the share of the gross amount that had to be settled.
+     *
+     * @return The net amount divided by the gross amount, 0 if nothing was transferred.
+     */
+    public double getNettingRatio() {
+        return grossAmount == 0 ? 0 : netAmount / grossAmount;
+    }
+}
@@ -0,0 +1,164 @@
+package lenko27.service.directory;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.client.Client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class finds accounts, banks and the accounts of a client by identifier without scanning.
+ * Banks are registered by the central bank and accounts by their bank as they are created or restored.
+ * Lookups take no lock and can run while entities are registered.
+ */
+public class EntityDirectory {
+
+    /**
+     * Accounts by identifier.
+     */
+    private final UuidMap<Account> accounts = new UuidMap<>();
+
+    /**
+     * Banks by identifier.
+     */
+    private final UuidMap<Bank> banks = new UuidMap<>();
+
+    /**
+     * Accounts of every client by client identifier.
+     */
+    private final UuidMap<OwnedAccounts> clientAccounts = new UuidMap<>();
+
+    /**
+     * Method to register a bank.
+     *
+     * @param bank The bank.
+     */
+    public void addBank(Bank bank) {
+        banks.put(bank.getId(), bank);
+    }
+
+    /**
+     * Method to register an account and add it to the accounts of its client.
+     *
+     * @param account The account.
+     */
+    public void addAccount(Account account) {
+        accounts.put(account.getId(), account);
+        UUID clientId = account.getClient().getId();
+        synchronized (clientAccounts) {
+            OwnedAccounts owned = clientAccounts.get(clientId);
+            if (owned == null) {
+                owned = new OwnedAccounts();
+                clientAccounts.put(clientId, owned);
+            }
+            owned.add(account);
+        }
+    }
+
+    /**
+     * Method to find an account.
+     *
+     * @param id The identifier of the account.
+     * @return The account, or null if there is no such account.
+     */
+    public Account findAccount(UUID id) {
+        return accounts.get(id);
+    }
+
+    /**
+     * Method to find a bank.
+     *
+     * @param id The identifier of the bank.
+     * @return The bank, or null if there is no such bank.
+     */
+    public Bank findBank(UUID id) {
+        return banks.get(id);
+    }
+
+    /**
+     * Method to find the accounts of a client.
+     *
+     * @param client The client.
+     * @return The accounts of the client in the order they were created, empty if there are none.
+     */
+    public List<Account> findAccounts(Client client) {
+        return findAccounts(client.getId());
+    }
+
+    /**
+     * Method to find the accounts of a client.
+     *
+     * @param clientId The identifier of the client.
+     * @return The accounts of the client in the order they were created, empty if there are none.
+     */
+    public List<Account> findAccounts(UUID clientId) {
+        OwnedAccounts owned = clientAccounts.get(clientId);
+        return owned == null ? List.of() : owned.list();
+    }
+
+    /**
+     * Method to get the number of registered accounts.
+     *
+     * @return The number of accounts.
+     */
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Method to forget every registered entity.
+     */
+    public void clear() {
+        synchronized (clientAccounts) {
+            accounts.clear();
+            banks.clear();
+            clientAccounts.clear();
+        }
+    }
+
+    /**
+     * This class holds the accounts of one client in the order they were registered.
+     * Accounts are appended by one writer at a time; readers see a prefix that never changes.
+     */
+    private static final class OwnedAccounts {
+
+        /**
+         * Accounts, followed by free slots.
+         */
+        private volatile Account[] accounts = new Account[2];
+
+        /**
+         * Number of accounts, written after the account it counts.
+         */
+        private volatile int count;
+
+        /**
+         * Method to append an account.
+         * Must be called while holding the monitor of the client map.
+         *
+         * @param account The account.
+         */
+        private void add(Account account) {
+            Account[] current = accounts;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                accounts = current;
+            }
+            current[count] = account;
+            count = count + 1;
+        }
+
+        /**
+         * Method to get the accounts registered so far.
+         *
+         * @return An unmodifiable view of the accounts.
+         */
+        private List<Account> list() {
+            int registered = count;
+            return Collections.unmodifiableList(Arrays.asList(accounts).subList(0, registered));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package lenko27.service.directory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.UUID;
+
+/**
+ * This class is a hash map keyed by UUIDs, using open addressing with linear probing.
+ * The two halves of every key are stored inline in a long array, so a lookup only reads primitive
+ * and reference arrays and never allocates. Writers are serialized; readers take no lock and may run
+ * during inserts: a slot is published by writing its value last with release semantics, and a grown
+ * table is published only after every entry has been copied into it.
+ * Entries can be replaced but not removed.
+ *
+ * @param <V> The type of the values.
+ */
+public class UuidMap<V> {
+
+    /**
+     * Capacity of a new map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Access to the value array with acquire and release semantics.
+     */
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /**
+     * Current table, replaced when the map grows.
+     */
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    /**
+     * Number of entries in the map.
+     */
+    private volatile int size;
+
+    /**
+     * Method to get the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is not in the map.
+     */
+    public V get(UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Method to get the value of a key given by its two halves.
+     *
+     * @param mostSignificantBits The most significant bits of the key.
+     * @param leastSignificantBits The least significant bits of the key.
+     * @return The value, or null if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long mostSignificantBits, long leastSignificantBits) {
+        Table current = table;
+        int mask = current.values.length - 1;
+        for (int slot = hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+            Object value = VALUES.getAcquire(current.values, slot);
+            if (value == null) {
+                return null;
+            }
+            if (current.keys[2 * slot] == mostSignificantBits && current.keys[2 * slot + 1] == leastSignificantBits) {
+                return (V) value;
+            }
+        }
+    }
+
+    /**
+     * Method to add a key or replace its value.
+     *
+     * @param key The key.
+     * @param value The value, not null.
+     * @return The previous value, or null if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(UUID key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        long mostSignificantBits = key.getMostSignificantBits();
+        long leastSignificantBits = key.getLeastSignificantBits();
+        if ((size + 1) * 4L > table.values.length * 3L) {
+            grow();
+        }
+        Table current = table;
+        int mask = current.values.length - 1;
+        for (int slot = hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+            Object previous = current.values[slot];
+            if (previous == null) {
+                current.keys[2 * slot] = mostSignificantBits;
+                current.keys[2 * slot + 1] = leastSignificantBits;
+                VALUES.setRelease(current.values, slot, value);
+                size = size + 1;
+                return null;
+            }
+            if (current.keys[2 * slot] == mostSignificantBits && current.keys[2 * slot + 1] == leastSignificantBits) {
+                VALUES.setRelease(current.values, slot, value);
+                return (V) previous;
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of entries in the map.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to remove every entry.
+     */
+    public synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Method to double the capacity of the table.
+     * The new table is filled before it is published, so readers always see a complete table.
+     */
+    private void grow() {
+        Table current = table;
+        Table grown = new Table(current.values.length * 2);
+        int mask = grown.values.length - 1;
+        for (int i = 0; i < current.values.length; ++i) {
+            Object value = current.values[i];
+            if (value == null) {
+                continue;
+            }
+            long mostSignificantBits = current.keys[2 * i];
+            long leastSignificantBits = current.keys[2 * i + 1];
+            int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+            while (grown.values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            grown.keys[2 * slot] = mostSignificantBits;
+            grown.keys[2 * slot + 1] = leastSignificantBits;
+            grown.values[slot] = value;
+        }
+        table = grown;
+    }
+
+    /**
+     * Method to spread the bits of a key over the hash, so that keys differing in any bit land in different slots.
+     *
+     * @param mostSignificantBits The most significant bits of the key.
+     * @param leastSignificantBits The least significant bits of the key.
+     * @return The hash of the key.
+     */
+    private static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long h = mostSignificantBits * 0x9E3779B97F4A7C15L ^ leastSignificantBits;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * This class holds the slots of the map: two longs of key and one value per slot.
+     */
+    private static final class Table {
+
+        /**
+         * Keys, the most significant bits of slot i at 2 * i and the least significant bits at 2 * i + 1.
+         */
+        private final long[] keys;
+
+        /**
+         * Values, null for empty slots.
+         */
+        private final Object[] values;
+
+        /**
+         * Constructor for the Table class.
+         *
+         * @param capacity The number of slots, a power of two.
+         */
+        private Table(int capacity) {
+            this.keys = new long[2 * capacity];
+            this.values = new Object[capacity];
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package lenko27.service.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This event records an interest accrual over the accounts of one bank or over a range of them.
+ */
+@Name(AccrualEvent.NAME)
+@Label("Interest Accrual")
+@Category({"Banking", "Accrual"})
+@Description("Interest accrued on a range of the accounts of a bank")
+@Enabled(false)
+@StackTrace(false)
+public class AccrualEvent extends Event {
+
+    /**
+     * Name of the event in recordings and settings.
+     */
+    public static final String NAME = "lenko27.InterestAccrual";
+
+    /**
+     * Identifier of the bank.
+     */
+    @Label("Bank")
+    public String bank;
+
+    /**
+     * First account index of the range, inclusive.
+     */
+    @Label("From")
+    public int from;
+
+    /**
+     * Last account index of the range, exclusive.
+     */
+    @Label("To")
+    public int to;
+
+    /**
+     * Number of accounts interest was accrued on.
+     */
+    @Label("Processed")
+    public int processed;
+
+    /**
+     * Number of accounts skipped because their client is suspicious.
+     */
+    @Label("Skipped")
+    public int skipped;
+
+    /**
+     * Whether the accrual stopped on an error.
+     */
+    @Label("Failed")
+    public boolean failed;
+}
@@ -0,0 +1,51 @@
+package lenko27.service.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This event records an accrual run of the central bank over all banks.
+ */
+@Name(AccrualRunEvent.NAME)
+@Label("Interest Accrual Run")
+@Category({"Banking", "Accrual"})
+@Description("Interest accrued on the accounts of every bank")
+@Enabled(false)
+@StackTrace(false)
+public class AccrualRunEvent extends Event {
+
+    /**
+     * Name of the event in recordings and settings.
+     */
+    public static final String NAME = "lenko27.InterestAccrualRun";
+
+    /**
+     * Number of banks of the run.
+     */
+    @Label("Banks")
+    public int banks;
+
+    /**
+     * Number of accounts interest was accrued on, or the number of accounts of the banks if the run
+     * stopped on the first suspicious client.
+     */
+    @Label("Accounts")
+    public long accounts;
+
+    /**
+     * Whether the banks were accrued in parallel partitions.
+     */
+    @Label("Parallel")
+    public boolean parallel;
+
+    /**
+     * Whether the run stopped on an error or skipped accounts.
+     */
+    @Label("Failed")
+    public boolean failed;
+}
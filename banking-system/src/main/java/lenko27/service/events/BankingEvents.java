@@ -0,0 +1,68 @@
+package lenko27.service.events;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class gives access to the flight recorder settings enabling the banking events.
+ * The events are disabled unless a recording enables them, so they cost nothing otherwise: the settings file
+ * lenko27/banking.jfc can be given to -XX:StartFlightRecording next to a JDK profile, or applied to a recording
+ * started from code with enable.
+ */
+public final class BankingEvents {
+
+    /**
+     * Resource holding the settings.
+     */
+    public static final String SETTINGS = "/lenko27/banking.jfc";
+
+    /**
+     * Names of every banking event.
+     */
+    public static final List<String> NAMES = List.of(TransferEvent.NAME, AccrualEvent.NAME, AccrualRunEvent.NAME,
+            NotificationEvent.NAME, CancellationEvent.NAME);
+
+    private BankingEvents() {
+    }
+
+    /**
+     * Method to get the settings: the default profile with every banking event enabled.
+     *
+     * @return The configuration.
+     * @throws IOException If the settings can not be read.
+     * @throws ParseException If the settings are malformed.
+     */
+    public static Configuration configuration() throws IOException, ParseException {
+        try (InputStream in = BankingEvents.class.getResourceAsStream(SETTINGS)) {
+            if (in == null) {
+                throw new IOException("Missing flight recorder settings " + SETTINGS);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return Configuration.create(reader);
+            }
+        }
+    }
+
+    /**
+     * Method to enable every banking event on a recording, keeping its other settings.
+     *
+     * @param recording The recording.
+     * @throws IOException If the settings can not be read.
+     * @throws ParseException If the settings are malformed.
+     */
+    public static void enable(Recording recording) throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(recording.getSettings());
+        settings.putAll(configuration().getSettings());
+        recording.setSettings(settings);
+    }
+}
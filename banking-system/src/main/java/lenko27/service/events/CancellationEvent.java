@@ -0,0 +1,56 @@
+package lenko27.service.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This event records an attempt to cancel a transaction of an account.
+ */
+@Name(CancellationEvent.NAME)
+@Label("Cancellation")
+@Category({"Banking", "Transactions"})
+@Description("A transaction cancelled by a compensating entry")
+@Enabled(false)
+@StackTrace(false)
+public class CancellationEvent extends Event {
+
+    /**
+     * Name of the event in recordings and settings.
+     */
+    public static final String NAME = "lenko27.Cancellation";
+
+    /**
+     * Identifier of the account.
+     */
+    @Label("Account")
+    public String account;
+
+    /**
+     * Sequence number of the transaction, 0 if it was matched by type and sum.
+     */
+    @Label("Transaction")
+    public long transaction;
+
+    /**
+     * Type of the cancelled entry.
+     */
+    @Label("Type")
+    public String type;
+
+    /**
+     * Sum of the cancelled entry.
+     */
+    @Label("Amount")
+    public double amount;
+
+    /**
+     * CANCELLED, NOT_FOUND, ALREADY_CANCELLED, or FAILED if the compensating entry was rejected.
+     */
+    @Label("Outcome")
+    public String outcome;
+}
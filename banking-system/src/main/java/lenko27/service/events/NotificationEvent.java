@@ -0,0 +1,51 @@
+package lenko27.service.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This event records a notification fanned out to the subscribers of a bank.
+ * With an asynchronous dispatcher the event only covers queueing the notification.
+ */
+@Name(NotificationEvent.NAME)
+@Label("Notification")
+@Category({"Banking", "Notifications"})
+@Description("A notification sent to the subscribers of a topic of a bank")
+@Enabled(false)
+@StackTrace(false)
+public class NotificationEvent extends Event {
+
+    /**
+     * Name of the event in recordings and settings.
+     */
+    public static final String NAME = "lenko27.Notification";
+
+    /**
+     * Identifier of the bank.
+     */
+    @Label("Bank")
+    public String bank;
+
+    /**
+     * The changed parameter, or ANNOUNCEMENTS for messages to the subscribers of the whole bank.
+     */
+    @Label("Topic")
+    public String topic;
+
+    /**
+     * Number of subscribers the notification is delivered to.
+     */
+    @Label("Subscribers")
+    public int subscribers;
+
+    /**
+     * Simple name of the class of the dispatcher.
+     */
+    @Label("Dispatcher")
+    public String dispatcher;
+}
@@ -0,0 +1,50 @@
+package lenko27.service.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This event records a transfer made through CentralBank.doTransfer, together with its outcome.
+ */
+@Name(TransferEvent.NAME)
+@Label("Transfer")
+@Category({"Banking", "Transfers"})
+@Description("A transfer between two accounts")
+@Enabled(false)
+@StackTrace(false)
+public class TransferEvent extends Event {
+
+    /**
+     * Name of the event in recordings and settings.
+     */
+    public static final String NAME = "lenko27.Transfer";
+
+    /**
+     * Identifier of the bank of the sender.
+     */
+    @Label("Sender Bank")
+    public String senderBank;
+
+    /**
+     * Identifier of the bank of the accepter.
+     */
+    @Label("Accepter Bank")
+    public String accepterBank;
+
+    /**
+     * Transferred sum.
+     */
+    @Label("Amount")
+    public double amount;
+
+    /**
+     * COMPLETED, the simple name of the exception the transfer failed with, or the status of a rejected tryTransfer.
+     */
+    @Label("Outcome")
+    public String outcome;
+}
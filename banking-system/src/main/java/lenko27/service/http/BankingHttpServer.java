@@ -0,0 +1,523 @@
+package lenko27.service.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lenko27.entities.accounts.Account;
+import lenko27.entities.accounts.CreditAccount;
+import lenko27.entities.accounts.DebitAccount;
+import lenko27.entities.accounts.DepositAccount;
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+import lenko27.entities.client.Client;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.entities.transactions.TransactionJournal;
+import lenko27.exceptions.UnknownAccountTypeException;
+import lenko27.service.Analyzers.Analyzer;
+import lenko27.service.Analyzers.CreditAnalyzer;
+import lenko27.service.Analyzers.DebitAnalyzer;
+import lenko27.service.Analyzers.DepositAnalyzer;
+import lenko27.service.ComplexInterestRate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is the HTTP front end of the central bank, built on the HTTP server of the JDK.
+ * Every request is handled on its own virtual thread, so a request waiting for an account monitor or for
+ * the sharded ledger only parks a virtual thread, and the number of open connections is bounded by the
+ * operating system rather than by a thread pool.
+ * Parameters are read from the query string and from form-encoded bodies of up to 4 KB; responses are JSON objects.
+ * Operations report rejections through the non-throwing API, so declined operations are as cheap as
+ * completed ones and are answered with the status of the rejection.
+ * <pre>
+ * POST /banks?interest=&amp;depositInterest=&amp;creditLimit=&amp;creditCommission=&amp;term=
+ * POST /clients?name=&amp;surname=&amp;address=&amp;passport=
+ * POST /accounts?bank=&amp;client=&amp;type=DEBIT|DEPOSIT|CREDIT
+ * GET  /accounts/{id}
+ * GET  /accounts/{id}/history?limit=
+ * GET  /accounts/{id}/projection?months=
+ * POST /accounts/{id}/refill?sum=
+ * POST /accounts/{id}/withdraw?sum=
+ * POST /transfers?from=&amp;to=&amp;sum=
+ * </pre>
+ */
+public class BankingHttpServer implements AutoCloseable {
+
+    /**
+     * Default number of connections the operating system queues before they are accepted.
+     */
+    public static final int DEFAULT_BACKLOG = 16384;
+
+    /**
+     * Largest request body read, in bytes; larger bodies are answered with 413.
+     */
+    private static final int MAX_BODY_BYTES = 4096;
+
+    /**
+     * Default number of history entries returned.
+     */
+    private static final int DEFAULT_HISTORY_LIMIT = 100;
+
+    static {
+        // The JDK server sends the headers and the body of a response in separate writes; with Nagle's
+        // algorithm the body then waits for the delayed acknowledgement of the headers, about 40 ms.
+        // The property is read once, when the first server of the JVM is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * The central bank the requests are applied to.
+     */
+    private final CentralBank centralBank;
+
+    /**
+     * Clients created through the front end, by identifier.
+     */
+    private final Map<UUID, Client> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Executor starting a virtual thread per request.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * The underlying server.
+     */
+    private final HttpServer server;
+
+    /**
+     * Constructor for the BankingHttpServer class. The server is bound but not started.
+     *
+     * @param centralBank The central bank the requests are applied to.
+     * @param address The address to listen on; port 0 picks a free port.
+     * @param backlog The number of connections queued before they are accepted.
+     * @throws IOException If the server can not be bound.
+     */
+    public BankingHttpServer(CentralBank centralBank, InetSocketAddress address, int backlog) throws IOException {
+        this.centralBank = centralBank;
+        this.server = HttpServer.create(address, backlog);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Method to start accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Method to get the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Method to stop accepting requests, wait up to a second for the ones in progress and release the executor.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * Method to route a request and answer it.
+     * Malformed parameters are answered with 400, unknown banks, clients, accounts and paths with 404,
+     * bodies larger than MAX_BODY_BYTES with 413 and unexpected failures with 500, without their details.
+     *
+     * @param exchange The request and its response.
+     * @throws IOException If the response can not be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                Map<String, String> parameters = parameters(exchange);
+                response = parameters == null
+                        ? Response.error(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes.")
+                        : route(exchange.getRequestMethod(), exchange.getRequestURI().getPath().split("/"), parameters);
+            } catch (IllegalArgumentException | UnknownAccountTypeException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                response = Response.error(500, "Internal error.");
+            }
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.code(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Method to apply a request.
+     *
+     * @param method The HTTP method.
+     * @param path The segments of the path; the first one is empty.
+     * @param parameters The parameters of the query string and of the body.
+     * @return The response.
+     * @throws UnknownAccountTypeException If the account type is unknown.
+     */
+    private Response route(String method, String[] path, Map<String, String> parameters) throws UnknownAccountTypeException {
+        boolean post = method.equals("POST");
+        if (path.length == 2 && post) {
+            switch (path[1]) {
+                case "banks" -> {
+                    return createBank(parameters);
+                }
+                case "clients" -> {
+                    return createClient(parameters);
+                }
+                case "accounts" -> {
+                    return createAccount(parameters);
+                }
+                case "transfers" -> {
+                    return transfer(parameters);
+                }
+            }
+        }
+        if (path.length < 3 || path.length > 4 || !path[1].equals("accounts")) {
+            return Response.error(404, "Unknown path.");
+        }
+        Account account = centralBank.findAccount(parseId(path[2]));
+        if (account == null) {
+            return Response.error(404, "Unknown account " + path[2] + ".");
+        }
+        String action = path.length == 4 ? path[3] : "";
+        if (post) {
+            return switch (action) {
+                case "refill" -> status(account.tryRefill(number(parameters, "sum"), true), account);
+                case "withdraw" -> status(account.tryWithdraw(number(parameters, "sum"), true), account);
+                default -> Response.error(404, "Unknown path.");
+            };
+        }
+        return switch (action) {
+            case "" -> Response.ok(describe(account));
+            case "history" -> history(account, (int) number(parameters, "limit", DEFAULT_HISTORY_LIMIT));
+            case "projection" -> projection(account, (int) number(parameters, "months"));
+            default -> Response.error(404, "Unknown path.");
+        };
+    }
+
+    /**
+     * Method to create a bank with one deposit interest rate for all balances.
+     *
+     * @param parameters The parameters of the bank.
+     * @return The identifier of the bank.
+     */
+    private Response createBank(Map<String, String> parameters) {
+        Bank bank = centralBank.createBank(number(parameters, "interest", 0),
+                List.of(new ComplexInterestRate(0, number(parameters, "depositInterest", 0))),
+                number(parameters, "creditLimit", 0), number(parameters, "creditCommission", 0),
+                (int) number(parameters, "term", 0));
+        return Response.ok("{\"id\":\"" + bank.getId() + "\"}");
+    }
+
+    /**
+     * Method to create a client. Clients without an address or passport data are screened as suspicious.
+     *
+     * @param parameters The data of the client.
+     * @return The identifier of the client.
+     */
+    private Response createClient(Map<String, String> parameters) {
+        Client client = Client.builder(text(parameters, "name"), text(parameters, "surname"))
+                .address(parameters.get("address"))
+                .passportData(parameters.get("passport"))
+                .build();
+        clients.put(client.getId(), client);
+        return Response.ok("{\"id\":\"" + client.getId() + "\",\"suspicious\":" + client.isSuspicious() + "}");
+    }
+
+    /**
+     * Method to open an account of a client in a bank.
+     *
+     * @param parameters The bank, the client and the type of the account.
+     * @return The created account.
+     * @throws UnknownAccountTypeException If the account type is unknown.
+     */
+    private Response createAccount(Map<String, String> parameters) throws UnknownAccountTypeException {
+        Bank bank = centralBank.findBank(parseId(text(parameters, "bank")));
+        if (bank == null) {
+            return Response.error(404, "Unknown bank " + parameters.get("bank") + ".");
+        }
+        Client client = clients.get(parseId(text(parameters, "client")));
+        if (client == null) {
+            return Response.error(404, "Unknown client " + parameters.get("client") + ".");
+        }
+        UUID id = UUID.randomUUID();
+        Account account = switch (parameters.getOrDefault("type", "DEBIT")) {
+            case "DEBIT" -> new DebitAccount(id, bank, client);
+            case "DEPOSIT" -> new DepositAccount(id, bank, client);
+            case "CREDIT" -> new CreditAccount(id, bank, client);
+            default -> throw new UnknownAccountTypeException("Unknown account type " + parameters.get("type") + ".");
+        };
+        return Response.ok(describe(bank.createAccount(account, client)));
+    }
+
+    /**
+     * Method to transfer a sum of money between two accounts.
+     *
+     * @param parameters The sender, the accepter and the sum.
+     * @return The status of the transfer and the balance of the sender.
+     */
+    private Response transfer(Map<String, String> parameters) {
+        Account sender = centralBank.findAccount(parseId(text(parameters, "from")));
+        Account accepter = centralBank.findAccount(parseId(text(parameters, "to")));
+        if (sender == null || accepter == null) {
+            return Response.error(404, "Unknown account.");
+        }
+        return status(centralBank.tryTransfer(sender, accepter, number(parameters, "sum")), sender);
+    }
+
+    /**
+     * Method to list the newest entries of the history of an account, newest first.
+     *
+     * @param account The account.
+     * @param limit The largest number of entries.
+     * @return The entries.
+     */
+    private Response history(Account account, int limit) {
+        StringBuilder body = new StringBuilder("{\"id\":\"").append(account.getId()).append("\",\"transactions\":[");
+        synchronized (account) {
+            TransactionJournal journal = account.getJournal();
+            int last = journal.size() - 1;
+            for (int i = last; i >= 0 && last - i < limit; --i) {
+                if (i != last) {
+                    body.append(',');
+                }
+                body.append("{\"id\":").append(journal.getId(i))
+                        .append(",\"type\":\"").append(journal.getType(i))
+                        .append("\",\"sum\":").append(journal.getSum(i))
+                        .append(",\"timestamp\":").append(journal.getTimestamp(i))
+                        .append(",\"cancelled\":").append(journal.isCancelled(i)).append('}');
+            }
+        }
+        return Response.ok(body.append("]}").toString());
+    }
+
+    /**
+     * Method to project the balance of an account under the current parameters of its bank.
+     *
+     * @param account The account.
+     * @param months The number of months to project over.
+     * @return The current and the projected balance.
+     */
+    private Response projection(Account account, int months) {
+        if (months < 0) {
+            throw new IllegalArgumentException("Parameter months must not be negative.");
+        }
+        Bank bank = account.getBank();
+        double balance = account.getBalance();
+        Analyzer analyzer = switch (account.getType()) {
+            case DEBIT -> new DebitAnalyzer(months, balance, bank.getDebitInterest());
+            case DEPOSIT -> new DepositAnalyzer(months, balance, bank.getDepositTiers(), bank.getTerm());
+            case CREDIT -> new CreditAnalyzer(months, balance, bank.getCreditLimit(), bank.getCreditCommission());
+        };
+        return Response.ok("{\"id\":\"" + account.getId() + "\",\"months\":" + months + ",\"balance\":" + balance
+                + ",\"projected\":" + analyzer.calculate() + "}");
+    }
+
+    /**
+     * Method to answer an operation with its status. Rejections are answered with the matching client error.
+     *
+     * @param status The status of the operation.
+     * @param account The account whose balance is reported.
+     * @return The response.
+     */
+    private static Response status(OperationStatus status, Account account) {
+        int code = switch (status) {
+            case COMPLETED -> 200;
+            case INVALID_AMOUNT -> 400;
+            case UNAUTHORIZED -> 403;
+            case INSUFFICIENT_FUNDS, WITHDRAWAL_BEFORE_TERM -> 409;
+            case VELOCITY_LIMIT_EXCEEDED -> 429;
+        };
+        return new Response(code, "{\"status\":\"" + status + "\",\"balance\":" + account.getBalance() + "}");
+    }
+
+    /**
+     * Method to describe an account.
+     *
+     * @param account The account.
+     * @return The JSON object of the account.
+     */
+    private static String describe(Account account) {
+        return "{\"id\":\"" + account.getId() + "\",\"bank\":\"" + account.getBank().getId()
+                + "\",\"type\":\"" + account.getType() + "\",\"balance\":" + account.getBalance() + "}";
+    }
+
+    /**
+     * Method to read the parameters of the query string and of a form-encoded body.
+     * Body parameters override query parameters of the same name. At most MAX_BODY_BYTES of the body are read.
+     *
+     * @param exchange The request.
+     * @return The parameters, or null if the body is larger than MAX_BODY_BYTES.
+     * @throws IOException If the body can not be read.
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), parameters);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                return null;
+            }
+            if (body.length > 0) {
+                parse(new String(body, StandardCharsets.UTF_8), parameters);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Method to decode form-encoded parameters.
+     *
+     * @param encoded The encoded parameters, or null.
+     * @param parameters The parameters to add the decoded ones to.
+     */
+    private static void parse(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Method to get a required parameter.
+     *
+     * @param parameters The parameters.
+     * @param name The name of the parameter.
+     * @return The value.
+     */
+    private static String text(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter " + name + ".");
+        }
+        return value;
+    }
+
+    /**
+     * Method to get a required numeric parameter.
+     *
+     * @param parameters The parameters.
+     * @param name The name of the parameter.
+     * @return The value.
+     */
+    private static double number(Map<String, String> parameters, String name) {
+        String value = text(parameters, name);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number: " + value + ".");
+        }
+    }
+
+    /**
+     * Method to get an optional numeric parameter.
+     *
+     * @param parameters The parameters.
+     * @param name The name of the parameter.
+     * @param defaultValue The value if the parameter is missing.
+     * @return The value.
+     */
+    private static double number(Map<String, String> parameters, String name, double defaultValue) {
+        return parameters.containsKey(name) ? number(parameters, name) : defaultValue;
+    }
+
+    /**
+     * Method to parse an identifier.
+     *
+     * @param id The identifier.
+     * @return The parsed identifier.
+     */
+    private static UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed identifier " + id + ".");
+        }
+    }
+
+    /**
+     * Method to escape text for a JSON string: quotes, backslashes and control characters.
+     *
+     * @param text The text.
+     * @return The escaped text, without the surrounding quotes.
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * A response: the status code and the JSON body.
+     *
+     * @param code The HTTP status code.
+     * @param body The JSON body.
+     */
+    private record Response(int code, String body) {
+
+        /**
+         * Method to make a successful response.
+         *
+         * @param body The JSON body.
+         * @return The response.
+         */
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+
+        /**
+         * Method to make an error response.
+         *
+         * @param code The HTTP status code.
+         * @param message The description of the error.
+         * @return The response.
+         */
+        static Response error(int code, String message) {
+            return new Response(code, "{\"error\":\"" + escape(String.valueOf(message)) + "\"}");
+        }
+    }
+}
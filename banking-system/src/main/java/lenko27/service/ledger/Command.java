@@ -0,0 +1,64 @@
+package lenko27.service.ledger;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.transactions.OperationStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class is a slot of a command ring, filled by a producer and applied by the shard draining the ring.
+ * Slots are allocated with the ring and reused; only the future of a command is new.
+ */
+final class Command {
+
+    /**
+     * What the shard has to do.
+     */
+    CommandType type;
+
+    /**
+     * The account owned by the shard: the refilled or withdrawn account, the sender or the accepter of a credit.
+     */
+    Account account;
+
+    /**
+     * The accepter of a transfer, null for other commands.
+     */
+    Account accepter;
+
+    /**
+     * The sum of money.
+     */
+    double sum;
+
+    /**
+     * The future completed with the outcome of the operation.
+     */
+    CompletableFuture<OperationStatus> future;
+
+    /**
+     * Method to fill the slot.
+     *
+     * @param type What the shard has to do.
+     * @param account The account owned by the shard.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @param future The future completed with the outcome.
+     */
+    void set(CommandType type, Account account, Account accepter, double sum, CompletableFuture<OperationStatus> future) {
+        this.type = type;
+        this.account = account;
+        this.accepter = accepter;
+        this.sum = sum;
+        this.future = future;
+    }
+
+    /**
+     * Method to drop the references of an applied command, so that the slot does not keep accounts alive.
+     */
+    void clear() {
+        account = null;
+        accepter = null;
+        future = null;
+    }
+}
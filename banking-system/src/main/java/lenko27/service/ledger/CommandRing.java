@@ -0,0 +1,130 @@
+package lenko27.service.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is a bounded queue of commands with many producers and one consumer, backed by a ring of
+ * preallocated slots. A producer claims the next sequence number with a compare-and-set on the tail,
+ * fills the slot in place and publishes it by writing the sequence number into the slot's marker.
+ * The consumer reads slots in sequence order once they are published and frees them by moving the head,
+ * so producers may fill slots out of order while the consumer still sees every command once, in claim order.
+ */
+final class CommandRing {
+
+    /**
+     * The slots, reused round after round.
+     */
+    private final Command[] slots;
+
+    /**
+     * Sequence number of the command each slot holds, written when the slot is published.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Mask turning a sequence number into a slot position.
+     */
+    private final int mask;
+
+    /**
+     * Next sequence number to be claimed.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next sequence number to be consumed; slots before it are free.
+     */
+    private volatile long head;
+
+    /**
+     * Constructor for the CommandRing class.
+     *
+     * @param capacity The number of slots, a power of two.
+     */
+    CommandRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Command[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; ++i) {
+            slots[i] = new Command();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Method to claim a slot, waiting while the ring is full.
+     *
+     * @return The sequence number of the claimed slot.
+     */
+    long claim() {
+        for (int attempt = 0; ; ++attempt) {
+            long sequence = tryClaim();
+            if (sequence >= 0) {
+                return sequence;
+            }
+            if (attempt < 64) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+
+    /**
+     * Method to claim a slot without waiting.
+     *
+     * @return The sequence number of the claimed slot, or -1 if the ring is full.
+     */
+    long tryClaim() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                return -1;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Method to get the slot of a claimed sequence number, to be filled before it is published.
+     *
+     * @param sequence The sequence number.
+     * @return The slot.
+     */
+    Command slot(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Method to hand a filled slot to the consumer.
+     *
+     * @param sequence The sequence number of the slot.
+     */
+    void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+    }
+
+    /**
+     * Method to get the next command, called by the consumer only.
+     *
+     * @return The command at the head, or null if it has not been published yet.
+     */
+    Command peek() {
+        long sequence = head;
+        return published.get((int) sequence & mask) == sequence ? slots[(int) sequence & mask] : null;
+    }
+
+    /**
+     * Method to free the slot at the head after its command was applied, called by the consumer only.
+     */
+    void advance() {
+        head = head + 1;
+    }
+}
@@ -0,0 +1,27 @@
+package lenko27.service.ledger;
+
+/**
+ * This enum represents the commands a ledger shard applies to the accounts it owns.
+ */
+enum CommandType {
+
+    /**
+     * A logged refill.
+     */
+    REFILL,
+
+    /**
+     * A logged withdrawal.
+     */
+    WITHDRAW,
+
+    /**
+     * The debit leg of a transfer, sent to the shard of the sender; followed by the credit leg if it succeeds.
+     */
+    TRANSFER,
+
+    /**
+     * The credit leg of a transfer whose debit was applied, sent to the shard of the accepter; never rejected.
+     */
+    CREDIT,
+}
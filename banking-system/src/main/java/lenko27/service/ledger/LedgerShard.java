@@ -0,0 +1,309 @@
+package lenko27.service.ledger;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.entities.transactions.TransactionType;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is the thread owning one partition of the accounts of a sharded ledger.
+ * It is the only thread that changes the balances and journals of its accounts through the ledger, applying
+ * the commands of its ring one after another. Commands are applied under the account monitor, which is
+ * uncontended in steady state and keeps operations that still lock accounts, such as batches, accruals
+ * and cancellations, correct alongside the shard.
+ * Credit legs for other shards are published without waiting; if the ring of the other shard is full,
+ * they are kept and retried, so shards never wait for each other and a debited transfer is always credited.
+ */
+final class LedgerShard extends Thread {
+
+    /**
+     * Number of empty polls before the shard parks.
+     */
+    private static final int SPINS = 64;
+
+    /**
+     * The ledger the shard belongs to.
+     */
+    private final ShardedLedger ledger;
+
+    /**
+     * Commands for the accounts of the shard.
+     */
+    final CommandRing ring;
+
+    /**
+     * Commands for other shards that did not fit their rings yet, in the order they were made.
+     */
+    private final ArrayDeque<Deferred> deferred = new ArrayDeque<>();
+
+    /**
+     * Journal entry type of a credit leg, reused for every credit.
+     */
+    private final TransactionType[] creditTypes = {TransactionType.TRANSFERACCEPTER};
+
+    /**
+     * Journal entry type of a debit leg, reused for every debit.
+     */
+    private final TransactionType[] debitTypes = {TransactionType.TRANSFERSENDER};
+
+    /**
+     * Sum of the journal entry of a leg, reused for every leg.
+     */
+    private final double[] legSums = new double[1];
+
+    /**
+     * Whether the shard is parked or about to park, so that producers have to wake it.
+     */
+    volatile boolean sleeping;
+
+    /**
+     * Whether the shard has to stop once it runs out of work.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Constructor for the LedgerShard class.
+     *
+     * @param ledger The ledger the shard belongs to.
+     * @param index The position of the shard, used in the thread name.
+     * @param capacity The number of slots of the ring.
+     */
+    LedgerShard(ShardedLedger ledger, int index, int capacity) {
+        super("ledger-shard-" + index);
+        setDaemon(true);
+        this.ledger = ledger;
+        this.ring = new CommandRing(capacity);
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (true) {
+            boolean worked = flushDeferred();
+            Command command;
+            while ((command = ring.peek()) != null) {
+                apply(command);
+                command.clear();
+                ring.advance();
+                worked = true;
+            }
+            if (worked) {
+                idle = 0;
+            } else if (stopping && deferred.isEmpty()) {
+                return;
+            } else if (!deferred.isEmpty()) {
+                Thread.yield();
+            } else if (++idle < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                sleeping = true;
+                if (ring.peek() == null && !stopping) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    /**
+     * Method to check whether the shard belongs to a ledger.
+     *
+     * @param owner The ledger.
+     * @return true if the shard is one of the ledger's shards.
+     */
+    boolean isOf(ShardedLedger owner) {
+        return ledger == owner;
+    }
+
+    /**
+     * Method to stop the shard once it has applied every command and published every deferred credit.
+     */
+    void shutdown() {
+        stopping = true;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Method to queue a command made on this shard's thread for another shard, or for itself, without waiting.
+     *
+     * @param target The shard owning the account.
+     * @param type What the target has to do.
+     * @param account The account owned by the target.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @param future The future completed with the outcome.
+     */
+    void defer(LedgerShard target, CommandType type, Account account, Account accepter, double sum,
+               CompletableFuture<OperationStatus> future) {
+        if (!deferred.isEmpty() || !target.tryOffer(type, account, accepter, sum, future)) {
+            deferred.add(new Deferred(target, type, account, accepter, sum, future));
+        }
+    }
+
+    /**
+     * Method to publish a command if the ring has room.
+     *
+     * @param type What the shard has to do.
+     * @param account The account owned by the shard.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @param future The future completed with the outcome.
+     * @return true if the command was published, false if the ring is full.
+     */
+    boolean tryOffer(CommandType type, Account account, Account accepter, double sum,
+                     CompletableFuture<OperationStatus> future) {
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        ring.slot(sequence).set(type, account, accepter, sum, future);
+        ring.publish(sequence);
+        wake();
+        return true;
+    }
+
+    /**
+     * Method to publish a command, waiting while the ring is full.
+     *
+     * @param type What the shard has to do.
+     * @param account The account owned by the shard.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @param future The future completed with the outcome.
+     */
+    void offer(CommandType type, Account account, Account accepter, double sum,
+               CompletableFuture<OperationStatus> future) {
+        long sequence = ring.claim();
+        ring.slot(sequence).set(type, account, accepter, sum, future);
+        ring.publish(sequence);
+        wake();
+    }
+
+    /**
+     * Method to unpark the shard if it is waiting for commands.
+     */
+    private void wake() {
+        if (sleeping) {
+            LockSupport.unpark(this);
+        }
+    }
+
+    /**
+     * Method to publish the deferred commands, in order, as far as the rings of their shards have room.
+     *
+     * @return true if any command was published.
+     */
+    private boolean flushDeferred() {
+        boolean published = false;
+        Deferred next;
+        while ((next = deferred.peek()) != null
+                && next.target.tryOffer(next.type, next.account, next.accepter, next.sum, next.future)) {
+            deferred.poll();
+            published = true;
+        }
+        return published;
+    }
+
+    /**
+     * Method to apply a command to an account of the shard.
+     *
+     * @param command The command.
+     */
+    private void apply(Command command) {
+        Account account = command.account;
+        double sum = command.sum;
+        CompletableFuture<OperationStatus> future = command.future;
+        try {
+            switch (command.type) {
+                case REFILL -> {
+                    OperationStatus status;
+                    synchronized (account) {
+                        status = account.tryRefill(sum, true);
+                    }
+                    ledger.complete(future, status);
+                }
+                case WITHDRAW -> {
+                    OperationStatus status;
+                    synchronized (account) {
+                        status = account.tryWithdraw(sum, true);
+                    }
+                    ledger.complete(future, status);
+                }
+                case TRANSFER -> debit(account, command.accepter, sum, future);
+                case CREDIT -> {
+                    credit(account, sum);
+                    ledger.complete(future, OperationStatus.COMPLETED);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            ledger.fail(future, e);
+        }
+    }
+
+    /**
+     * Method to apply the debit leg of a transfer and hand the credit leg to the shard of the accepter.
+     * The clients and the rules of the sender account are checked before anything is changed.
+     *
+     * @param sender The account from which the sum is withdrawn, owned by this shard.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money.
+     * @param future The future completed with the outcome once the sum is credited.
+     */
+    private void debit(Account sender, Account accepter, double sum, CompletableFuture<OperationStatus> future) {
+        if (accepter.getClient().isSuspicious() || sender.getClient().isSuspicious()) {
+            ledger.complete(future, OperationStatus.UNAUTHORIZED);
+            return;
+        }
+        OperationStatus status;
+        synchronized (sender) {
+            double balance = sender.getBalance();
+            status = sender.withdrawalStatus(balance, sum);
+            if (status == OperationStatus.COMPLETED) {
+                legSums[0] = sum;
+                sender.applyTransfers(balance - sum, debitTypes, legSums, 1, 0);
+            }
+        }
+        if (status != OperationStatus.COMPLETED) {
+            ledger.complete(future, status);
+            return;
+        }
+        LedgerShard target = ledger.shardOf(accepter);
+        if (target == this) {
+            credit(accepter, sum);
+            ledger.complete(future, OperationStatus.COMPLETED);
+        } else {
+            ledger.crossShard();
+            defer(target, CommandType.CREDIT, accepter, null, sum, future);
+        }
+    }
+
+    /**
+     * Method to apply the credit leg of a transfer whose debit was applied. Credits are never rejected.
+     *
+     * @param accepter The account to which the sum is deposited, owned by this shard.
+     * @param sum The sum of money.
+     */
+    private void credit(Account accepter, double sum) {
+        synchronized (accepter) {
+            legSums[0] = sum;
+            accepter.applyTransfers(accepter.getBalance() + sum, creditTypes, legSums, 1, 0);
+        }
+    }
+
+    /**
+     * A command kept until the ring of its shard has room.
+     *
+     * @param target The shard owning the account.
+     * @param type What the target has to do.
+     * @param account The account owned by the target.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @param future The future completed with the outcome.
+     */
+    private record Deferred(LedgerShard target, CommandType type, Account account, Account accepter, double sum,
+                            CompletableFuture<OperationStatus> future) {
+    }
+}
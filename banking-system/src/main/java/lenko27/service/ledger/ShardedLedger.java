@@ -0,0 +1,340 @@
+package lenko27.service.ledger;
+
+import lenko27.entities.accounts.Account;
+import lenko27.entities.transactions.OperationStatus;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is a ledger in which every account is owned by one of a fixed number of shard threads.
+ * Accounts are hashed to shards by identifier. Refills, withdrawals and transfers are turned into commands
+ * on the ring of the owning shard and answered with a future, so callers never take account monitors
+ * and a hot account is changed by one thread only.
+ * A transfer between accounts of different shards is applied in two steps: the shard of the sender checks
+ * and applies the debit, then hands the credit to the shard of the accepter, which applies it unconditionally.
+ * The future completes once the credit is applied. Between the two steps the sum is in flight and shows in
+ * neither balance. Closing the ledger waits until every accepted command has completed, so no debited
+ * transfer is left without its credit.
+ * Callbacks attached to the futures without an executor run on the shard threads and should be short.
+ * The shard threads run once start is called.
+ */
+public class ShardedLedger implements AutoCloseable {
+
+    /**
+     * Default number of slots of a shard's ring.
+     */
+    public static final int DEFAULT_RING_CAPACITY = 4096;
+
+    /**
+     * The shards.
+     */
+    private final LedgerShard[] shards;
+
+    /**
+     * Number of commands accepted and not yet completed.
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    /**
+     * Number of completed commands.
+     */
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * Number of transfers whose credit was handed to another shard.
+     */
+    private final LongAdder crossShardTransfers = new LongAdder();
+
+    /**
+     * Whether the ledger has stopped accepting commands.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the ShardedLedger class with rings of the default capacity.
+     *
+     * @param shardCount The number of shards.
+     */
+    public ShardedLedger(int shardCount) {
+        this(shardCount, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * Constructor for the ShardedLedger class. The shards do not run until start is called.
+     *
+     * @param shardCount The number of shards.
+     * @param ringCapacity The number of slots of every shard's ring, a power of two.
+     */
+    public ShardedLedger(int shardCount, int ringCapacity) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive: " + shardCount);
+        }
+        this.shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; ++i) {
+            shards[i] = new LedgerShard(this, i, ringCapacity);
+        }
+    }
+
+    /**
+     * Method to start the shard threads. Called once, after the ledger is constructed.
+     */
+    public void start() {
+        for (LedgerShard shard : shards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Method to refill an account on its shard. The refill is logged like one made by Account.tryRefill.
+     *
+     * @param account The account.
+     * @param sum The sum of money.
+     * @return The future completed with COMPLETED, or the reason of the rejection.
+     * @throws RejectedExecutionException If the ledger is closed.
+     */
+    public CompletableFuture<OperationStatus> refill(Account account, double sum) {
+        return submit(CommandType.REFILL, account, null, sum);
+    }
+
+    /**
+     * Method to withdraw from an account on its shard. The withdrawal is logged like one made by Account.tryWithdraw.
+     *
+     * @param account The account.
+     * @param sum The sum of money.
+     * @return The future completed with COMPLETED, or the reason of the rejection.
+     * @throws RejectedExecutionException If the ledger is closed.
+     */
+    public CompletableFuture<OperationStatus> withdraw(Account account, double sum) {
+        return submit(CommandType.WITHDRAW, account, null, sum);
+    }
+
+    /**
+     * Method to transfer a sum of money between two accounts.
+     * The sender's shard checks both clients and the rules of the sender account before debiting it.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money.
+     * @return The future completed with COMPLETED once the sum is credited, or with the reason of the rejection.
+     * @throws RejectedExecutionException If the ledger is closed.
+     */
+    public CompletableFuture<OperationStatus> transfer(Account sender, Account accepter, double sum) {
+        return submit(CommandType.TRANSFER, sender, accepter, sum);
+    }
+
+    /**
+     * Method to refill an account on its shard and wait for the outcome.
+     * A failure of the shard is rethrown as it was thrown, so callers see the same exceptions as in place.
+     *
+     * @param account The account.
+     * @param sum The sum of money.
+     * @return COMPLETED, the reason of the rejection, or null if the ledger was closed before accepting the refill.
+     */
+    public OperationStatus awaitRefill(Account account, double sum) {
+        return await(trySubmit(CommandType.REFILL, account, null, sum));
+    }
+
+    /**
+     * Method to withdraw from an account on its shard and wait for the outcome.
+     * A failure of the shard is rethrown as it was thrown, so callers see the same exceptions as in place.
+     *
+     * @param account The account.
+     * @param sum The sum of money.
+     * @return COMPLETED, the reason of the rejection, or null if the ledger was closed before accepting the withdrawal.
+     */
+    public OperationStatus awaitWithdraw(Account account, double sum) {
+        return await(trySubmit(CommandType.WITHDRAW, account, null, sum));
+    }
+
+    /**
+     * Method to transfer a sum of money between two accounts and wait until it is credited.
+     * A failure of a shard is rethrown as it was thrown, so callers see the same exceptions as in place.
+     *
+     * @param sender The account from which the sum is withdrawn.
+     * @param accepter The account to which the sum is deposited.
+     * @param sum The sum of money.
+     * @return COMPLETED, the reason of the rejection, or null if the ledger was closed before accepting the transfer.
+     */
+    public OperationStatus awaitTransfer(Account sender, Account accepter, double sum) {
+        return await(trySubmit(CommandType.TRANSFER, sender, accepter, sum));
+    }
+
+    /**
+     * Method to get the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Method to get the shard owning an account.
+     *
+     * @param account The account.
+     * @return The position of the shard.
+     */
+    public int getShard(Account account) {
+        UUID id = account.getId();
+        long h = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) shards.length);
+    }
+
+    /**
+     * Method to get the number of commands completed so far.
+     *
+     * @return The number of completed refills, withdrawals and transfers.
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Method to get the number of transfers whose credit was applied by another shard than the debit.
+     *
+     * @return The number of cross-shard transfers.
+     */
+    public long getCrossShardTransfers() {
+        return crossShardTransfers.sum();
+    }
+
+    /**
+     * Method to stop accepting commands, wait until every accepted command has completed and stop the shards.
+     *
+     * @throws InterruptedException If interrupted while waiting for the shards to stop.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        while (pending.get() > 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        for (LedgerShard shard : shards) {
+            shard.shutdown();
+        }
+        for (LedgerShard shard : shards) {
+            shard.join();
+        }
+    }
+
+    /**
+     * Method to hand a command to the shard owning the account.
+     *
+     * @param type What the shard has to do.
+     * @param account The account owned by the shard.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @return The future completed with the outcome.
+     * @throws RejectedExecutionException If the ledger is closed.
+     */
+    private CompletableFuture<OperationStatus> submit(CommandType type, Account account, Account accepter, double sum) {
+        CompletableFuture<OperationStatus> future = trySubmit(type, account, accepter, sum);
+        if (future == null) {
+            throw new RejectedExecutionException("Ledger is closed.");
+        }
+        return future;
+    }
+
+    /**
+     * Method to wait for the outcome of a command, rethrowing a failure of the shard without the CompletionException.
+     *
+     * @param future The future of the command, or null if it was not accepted.
+     * @return The outcome, or null if the command was not accepted.
+     */
+    private static OperationStatus await(CompletableFuture<OperationStatus> future) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Method to hand a command to the shard owning the account, unless the ledger is closed.
+     * Counted as pending before the closed flag is read, so close can not miss a command that was accepted.
+     * Commands made on a shard thread, such as from a callback, are deferred instead of waiting for room.
+     *
+     * @param type What the shard has to do.
+     * @param account The account owned by the shard.
+     * @param accepter The accepter of a transfer, or null.
+     * @param sum The sum of money.
+     * @return The future completed with the outcome, or null if the ledger is closed.
+     */
+    private CompletableFuture<OperationStatus> trySubmit(CommandType type, Account account, Account accepter, double sum) {
+        pending.incrementAndGet();
+        if (closed) {
+            pending.decrementAndGet();
+            return null;
+        }
+        CompletableFuture<OperationStatus> future = new CompletableFuture<>();
+        if (!(sum > 0 && sum < Double.POSITIVE_INFINITY)) {
+            complete(future, OperationStatus.INVALID_AMOUNT);
+            return future;
+        }
+        LedgerShard target = shardOf(account);
+        if (Thread.currentThread() instanceof LedgerShard shard && shard.isOf(this)) {
+            shard.defer(target, type, account, accepter, sum, future);
+        } else {
+            target.offer(type, account, accepter, sum, future);
+        }
+        return future;
+    }
+
+    /**
+     * Method to get the shard owning an account.
+     *
+     * @param account The account.
+     * @return The shard.
+     */
+    LedgerShard shardOf(Account account) {
+        return shards[getShard(account)];
+    }
+
+    /**
+     * Method to count a transfer whose credit goes to another shard.
+     */
+    void crossShard() {
+        crossShardTransfers.increment();
+    }
+
+    /**
+     * Method to complete a command.
+     *
+     * @param future The future of the command.
+     * @param status The outcome.
+     */
+    void complete(CompletableFuture<OperationStatus> future, OperationStatus status) {
+        completed.increment();
+        pending.decrementAndGet();
+        future.complete(status);
+    }
+
+    /**
+     * Method to complete a command that failed unexpectedly.
+     *
+     * @param future The future of the command.
+     * @param failure The failure.
+     */
+    void fail(CompletableFuture<OperationStatus> future, Throwable failure) {
+        pending.decrementAndGet();
+        future.completeExceptionally(failure);
+    }
+}
@@ -0,0 +1,50 @@
+package lenko27.service.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class holds the recorders of every operation of one bank.
+ */
+public class BankMetrics {
+
+    /**
+     * Recorders by operation ordinal.
+     */
+    private final OperationRecorder[] recorders;
+
+    /**
+     * Constructor for the BankMetrics class.
+     */
+    public BankMetrics() {
+        Operation[] operations = Operation.values();
+        recorders = new OperationRecorder[operations.length];
+        for (Operation operation : operations) {
+            recorders[operation.ordinal()] = new OperationRecorder(operation);
+        }
+    }
+
+    /**
+     * Method to get the recorder of an operation.
+     *
+     * @param operation The operation.
+     * @return The recorder.
+     */
+    public OperationRecorder get(Operation operation) {
+        return recorders[operation.ordinal()];
+    }
+
+    /**
+     * Method to get what has been recorded for every operation of the bank.
+     *
+     * @return The snapshots by operation.
+     */
+    public Map<Operation, OperationSnapshot> snapshot() {
+        Map<Operation, OperationSnapshot> snapshots = new EnumMap<>(Operation.class);
+        for (OperationRecorder recorder : recorders) {
+            OperationSnapshot snapshot = recorder.snapshot();
+            snapshots.put(snapshot.operation(), snapshot);
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,162 @@
+package lenko27.service.metrics;
+
+import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.CentralBank;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This class holds the settings of the operation metrics and gives access to what every bank has recorded,
+ * either as a snapshot or through JMX beans named lenko27:type=Operation,name=OPERATION.
+ * Every bank records its own operations, so recording never looks anything up.
+ */
+public final class BankingMetrics {
+
+    /**
+     * Domain of the registered beans.
+     */
+    public static final String DOMAIN = "lenko27";
+
+    /**
+     * Default number of calls of a frequent operation per timed call.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 16;
+
+    /**
+     * Whether calls are recorded.
+     */
+    private static volatile boolean enabled = true;
+
+    /**
+     * Mask of the call number selecting the timed calls of frequent operations.
+     */
+    private static volatile long sampleMask = DEFAULT_SAMPLE_RATE - 1;
+
+    private BankingMetrics() {
+    }
+
+    /**
+     * Method to check if calls are recorded.
+     *
+     * @return true if calls are recorded.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Method to turn recording on or off. What has been recorded so far is kept.
+     *
+     * @param enabled Whether calls are recorded.
+     */
+    public static void setEnabled(boolean enabled) {
+        BankingMetrics.enabled = enabled;
+    }
+
+    /**
+     * Method to get the number of calls of a frequent operation per timed call.
+     *
+     * @return The sample rate.
+     */
+    public static int getSampleRate() {
+        return (int) sampleMask + 1;
+    }
+
+    /**
+     * Method to set the number of calls of a frequent operation per timed call.
+     *
+     * @param sampleRate The sample rate, a power of two; 1 times every call.
+     * @throws IllegalArgumentException If the sample rate is not a power of two.
+     */
+    public static void setSampleRate(int sampleRate) {
+        if (sampleRate <= 0 || Integer.bitCount(sampleRate) != 1) {
+            throw new IllegalArgumentException("Sample rate must be a power of two: " + sampleRate);
+        }
+        sampleMask = sampleRate - 1;
+    }
+
+    /**
+     * Method to get the number of calls of a frequent operation skipped between two timed calls, as a mask.
+     *
+     * @return The sample mask.
+     */
+    static long getSampleMask() {
+        return sampleMask;
+    }
+
+    /**
+     * Method to get what every bank of the central bank has recorded so far.
+     *
+     * @return The snapshot, summed over all banks and by bank.
+     */
+    public static MetricsSnapshot snapshot() {
+        Map<Operation, OperationSnapshot> totals = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            totals.put(operation, OperationSnapshot.empty(operation));
+        }
+        Map<UUID, Map<Operation, OperationSnapshot>> byBank = new HashMap<>();
+        for (Bank bank : CentralBank.getInstance().getBankList()) {
+            Map<Operation, OperationSnapshot> snapshots = bank.getMetrics().snapshot();
+            snapshots.forEach((operation, snapshot) -> totals.merge(operation, snapshot, OperationSnapshot::merge));
+            byBank.put(bank.getId(), snapshots);
+        }
+        return new MetricsSnapshot(totals, byBank);
+    }
+
+    /**
+     * Method to register a JMX bean for every operation with the platform bean server.
+     * Beans that are already registered are kept.
+     *
+     * @throws IllegalStateException If a bean can not be registered.
+     */
+    public static synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : Operation.values()) {
+                ObjectName name = objectName(operation);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new OperationMetrics(operation), name);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the operation metrics.", e);
+        }
+    }
+
+    /**
+     * Method to unregister the JMX beans of the operations.
+     *
+     * @throws IllegalStateException If a bean can not be unregistered.
+     */
+    public static synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : Operation.values()) {
+                ObjectName name = objectName(operation);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister the operation metrics.", e);
+        }
+    }
+
+    /**
+     * Method to get the name of the bean of an operation.
+     *
+     * @param operation The operation.
+     * @return The object name.
+     * @throws JMException If the name is malformed.
+     */
+    public static ObjectName objectName(Operation operation) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Operation,name=" + operation.name());
+    }
+}
@@ -0,0 +1,112 @@
+package lenko27.service.metrics;
+
+/**
+ * This class represents the latencies recorded by a histogram up to some point.
+ */
+public class HistogramSnapshot {
+
+    /**
+     * Snapshot without any recorded value.
+     */
+    static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[LatencyHistogram.BUCKETS], 0, 0);
+
+    /**
+     * Number of values per bucket.
+     */
+    private final long[] counts;
+
+    /**
+     * Number of recorded values.
+     */
+    private final long count;
+
+    /**
+     * Sum of the recorded values, in nanoseconds.
+     */
+    private final long sum;
+
+    /**
+     * Largest recorded value, in nanoseconds.
+     */
+    private final long max;
+
+    /**
+     * Constructor for the HistogramSnapshot class.
+     *
+     * @param counts The number of values per bucket, owned by the snapshot.
+     * @param sum The sum of the recorded values.
+     * @param max The largest recorded value.
+     */
+    HistogramSnapshot(long[] counts, long sum, long max) {
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.counts = counts;
+        this.count = total;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Method to get the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Method to get the mean of the recorded values.
+     *
+     * @return The mean in nanoseconds, 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Method to get the largest recorded value.
+     *
+     * @return The maximum in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Method to get the value below which a share of the recorded values lies.
+     *
+     * @param percentile The share in percent, from 0 to 100.
+     * @return The value in nanoseconds, at most 1/16 above the exact one, 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; ++bucket) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, LatencyHistogram.highestValue(bucket));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Method to combine two snapshots.
+     *
+     * @param other The other snapshot.
+     * @return A snapshot holding the values of both.
+     */
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        long[] merged = counts.clone();
+        for (int bucket = 0; bucket < merged.length; ++bucket) {
+            merged[bucket] += other.counts[bucket];
+        }
+        return new HistogramSnapshot(merged, sum + other.sum, Math.max(max, other.max));
+    }
+}
@@ -0,0 +1,152 @@
+package lenko27.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class is a concurrent latency histogram with log-linear buckets, in the manner of HdrHistogram.
+ * Values below 16 nanoseconds get a bucket each; above that every power of two is split into 16 buckets,
+ * so a recorded value is off by at most 1/16 of itself, up to about 18 minutes.
+ * Recording takes no lock and never allocates once a thread's stripe exists: the buckets are striped by thread,
+ * and every stripe is created on the first value recorded into it.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of the value kept below its highest bit.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Number of buckets every power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two with its own buckets; larger values go to the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * Number of buckets.
+     */
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /**
+     * Slot of a stripe holding the sum of its values.
+     */
+    private static final int SUM = BUCKETS;
+
+    /**
+     * Slot of a stripe holding the largest of its values.
+     */
+    private static final int MAX = BUCKETS + 1;
+
+    /**
+     * Stripes of bucket counts followed by the sum and the maximum, null until used.
+     */
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+    /**
+     * Mask selecting a stripe from a thread identifier.
+     */
+    private final int stripeMask;
+
+    /**
+     * Constructor for the LatencyHistogram class.
+     *
+     * @param stripes The number of stripes, a power of two.
+     */
+    public LatencyHistogram(int stripes) {
+        this.stripes = new AtomicReferenceArray<>(stripes);
+        this.stripeMask = stripes - 1;
+    }
+
+    /**
+     * Method to record a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        AtomicLongArray stripe = stripe((int) Thread.currentThread().threadId() & stripeMask);
+        stripe.getAndIncrement(bucket(value));
+        stripe.getAndAdd(SUM, value);
+        long max = stripe.get(MAX);
+        while (value > max && !stripe.weakCompareAndSetVolatile(MAX, max, value)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    /**
+     * Method to get the recorded latencies, merged over all stripes.
+     * Values recorded during the call may be partly included.
+     *
+     * @return The snapshot of the histogram.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (int i = 0; i < stripes.length(); ++i) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+                counts[bucket] += stripe.get(bucket);
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+        return new HistogramSnapshot(counts, sum, max);
+    }
+
+    /**
+     * Method to get the bucket of a value.
+     *
+     * @param value The value, not negative.
+     * @return The bucket index.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Method to get the largest value of a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return The largest value counted in the bucket.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Method to get a stripe, creating it on first use.
+     *
+     * @param index The stripe index.
+     * @return The stripe.
+     */
+    private AtomicLongArray stripe(int index) {
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 2));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+}
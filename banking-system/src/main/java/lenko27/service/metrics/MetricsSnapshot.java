@@ -0,0 +1,36 @@
+package lenko27.service.metrics;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This record represents what has been recorded for every operation of every bank up to some point.
+ *
+ * @param totals The snapshots of every operation, summed over all banks.
+ * @param byBank The snapshots of every operation by bank identifier.
+ */
+public record MetricsSnapshot(Map<Operation, OperationSnapshot> totals,
+                              Map<UUID, Map<Operation, OperationSnapshot>> byBank) {
+
+    /**
+     * Method to get the snapshot of an operation summed over all banks.
+     *
+     * @param operation The operation.
+     * @return The snapshot of the operation.
+     */
+    public OperationSnapshot get(Operation operation) {
+        return totals.get(operation);
+    }
+
+    /**
+     * Method to get the snapshot of an operation of one bank.
+     *
+     * @param bankId The identifier of the bank.
+     * @param operation The operation.
+     * @return The snapshot of the operation, empty if the bank is unknown.
+     */
+    public OperationSnapshot get(UUID bankId, Operation operation) {
+        Map<Operation, OperationSnapshot> bank = byBank.get(bankId);
+        return bank == null ? OperationSnapshot.empty(operation) : bank.get(operation);
+    }
+}
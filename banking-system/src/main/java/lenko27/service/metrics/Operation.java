@@ -0,0 +1,50 @@
+package lenko27.service.metrics;
+
+/**
+ * This enum represents the operations whose calls, failures and latencies are recorded.
+ */
+public enum Operation {
+
+    /**
+     * A transfer through CentralBank.doTransfer, recorded for the bank of the sender.
+     */
+    TRANSFER(true),
+
+    /**
+     * A logged withdrawal from an account.
+     */
+    WITHDRAW(true),
+
+    /**
+     * A logged refill of an account.
+     */
+    REFILL(true),
+
+    /**
+     * An interest accrual run over the accounts of a bank or over a range of them.
+     */
+    INTEREST_ACCRUAL(false),
+
+    /**
+     * A notification of the subscribers of a bank.
+     */
+    NOTIFY_SUBSCRIBERS(false);
+
+    /**
+     * Whether the operation is frequent enough that only a sample of its calls is timed.
+     */
+    private final boolean sampled;
+
+    Operation(boolean sampled) {
+        this.sampled = sampled;
+    }
+
+    /**
+     * Method to check if only a sample of the calls of the operation is timed.
+     *
+     * @return true for frequent operations, false if every call is timed.
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+}
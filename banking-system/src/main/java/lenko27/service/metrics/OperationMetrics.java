@@ -0,0 +1,93 @@
+package lenko27.service.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This class implements the JMX view of one operation by taking a snapshot on every read.
+ */
+class OperationMetrics implements OperationMetricsMXBean {
+
+    /**
+     * The exposed operation.
+     */
+    private final Operation operation;
+
+    /**
+     * Constructor for the OperationMetrics class.
+     *
+     * @param operation The exposed operation.
+     */
+    OperationMetrics(Operation operation) {
+        this.operation = operation;
+    }
+
+    @Override
+    public long getCalls() {
+        return total().calls();
+    }
+
+    @Override
+    public long getFailures() {
+        return total().failures();
+    }
+
+    @Override
+    public Map<String, Long> getFailuresByType() {
+        return total().failuresByType();
+    }
+
+    @Override
+    public Map<String, Long> getCallsByBank() {
+        Map<String, Long> calls = new HashMap<>();
+        for (Map.Entry<UUID, Map<Operation, OperationSnapshot>> bank : BankingMetrics.snapshot().byBank().entrySet()) {
+            calls.put(bank.getKey().toString(), bank.getValue().get(operation).calls());
+        }
+        return calls;
+    }
+
+    @Override
+    public long getTimedCalls() {
+        return total().latency().getCount();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return total().latency().getMean();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return total().latency().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return total().latency().getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return total().latency().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return total().latency().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return total().latency().getMax();
+    }
+
+    /**
+     * Method to get the current snapshot of the operation summed over all banks.
+     *
+     * @return The snapshot.
+     */
+    private OperationSnapshot total() {
+        return BankingMetrics.snapshot().get(operation);
+    }
+}
@@ -0,0 +1,87 @@
+package lenko27.service.metrics;
+
+import java.util.Map;
+
+/**
+ * This interface exposes the metrics of one operation, summed over all banks, through JMX.
+ * Latencies are in nanoseconds and computed from the timed calls only.
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * Method to get the number of calls.
+     *
+     * @return The number of calls, failed ones included.
+     */
+    long getCalls();
+
+    /**
+     * Method to get the number of failed calls.
+     *
+     * @return The number of failures.
+     */
+    long getFailures();
+
+    /**
+     * Method to get the number of failed calls by exception type.
+     *
+     * @return The failures by simple name of the exception type.
+     */
+    Map<String, Long> getFailuresByType();
+
+    /**
+     * Method to get the number of calls by bank.
+     *
+     * @return The calls by bank identifier.
+     */
+    Map<String, Long> getCallsByBank();
+
+    /**
+     * Method to get the number of timed calls.
+     *
+     * @return The number of calls whose latency was recorded.
+     */
+    long getTimedCalls();
+
+    /**
+     * Method to get the mean latency.
+     *
+     * @return The mean latency.
+     */
+    double getMeanNanos();
+
+    /**
+     * Method to get the median latency.
+     *
+     * @return The 50th percentile.
+     */
+    long getP50Nanos();
+
+    /**
+     * Method to get the 90th percentile of the latency.
+     *
+     * @return The 90th percentile.
+     */
+    long getP90Nanos();
+
+    /**
+     * Method to get the 99th percentile of the latency.
+     *
+     * @return The 99th percentile.
+     */
+    long getP99Nanos();
+
+    /**
+     * Method to get the 99.9th percentile of the latency.
+     *
+     * @return The 99.9th percentile.
+     */
+    long getP999Nanos();
+
+    /**
+     * Method to get the largest latency.
+     *
+     * @return The maximum.
+     */
+    long getMaxNanos();
+}
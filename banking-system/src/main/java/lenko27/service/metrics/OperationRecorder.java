@@ -0,0 +1,165 @@
+package lenko27.service.metrics;
+
+import lenko27.entities.transactions.OperationStatus;
+import lenko27.exceptions.InsufficientFundsException;
+import lenko27.exceptions.UnauthorizedTransactionException;
+import lenko27.exceptions.VelocityLimitExceededException;
+import lenko27.exceptions.WithdrawalBeforeTermException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records the calls, failures and latencies of one operation of one bank.
+ * A call is counted when it starts, on a counter striped by thread; every call of a rare operation and one in
+ * BankingMetrics.getSampleRate() calls of a frequent one is also timed. Nothing is allocated on the path of a
+ * successful call.
+ */
+public class OperationRecorder {
+
+    /**
+     * Start time returned for calls that are not timed.
+     */
+    public static final long UNTIMED = Long.MIN_VALUE;
+
+    /**
+     * Number of counter slots between two stripes, so that stripes do not share a cache line.
+     */
+    private static final int PADDING = 16;
+
+    /**
+     * Number of stripes of the call counter and the histogram.
+     */
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+
+    /**
+     * The recorded operation.
+     */
+    private final Operation operation;
+
+    /**
+     * Calls per stripe, at every PADDING-th slot.
+     */
+    private final AtomicLongArray calls = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Latencies of the timed calls.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram(STRIPES);
+
+    /**
+     * Failed calls.
+     */
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Failed calls by exception type.
+     */
+    private final Map<Class<?>, LongAdder> failuresByType = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the OperationRecorder class.
+     *
+     * @param operation The recorded operation.
+     */
+    public OperationRecorder(Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Method to count a call that starts.
+     *
+     * @return The start time of the call if it is timed, UNTIMED otherwise.
+     */
+    public long start() {
+        if (!BankingMetrics.isEnabled()) {
+            return UNTIMED;
+        }
+        long call = calls.getAndIncrement(((int) Thread.currentThread().threadId() & (STRIPES - 1)) * PADDING);
+        if (operation.isSampled() && (call & BankingMetrics.getSampleMask()) != 0) {
+            return UNTIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Method to record a call that succeeded.
+     *
+     * @param start The value returned by start.
+     */
+    public void success(long start) {
+        if (start != UNTIMED) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Method to record a call that failed.
+     *
+     * @param start The value returned by start.
+     * @param cause The exception the call failed with.
+     */
+    public void failure(long start, Throwable cause) {
+        if (!BankingMetrics.isEnabled()) {
+            return;
+        }
+        success(start);
+        failures.increment();
+        failuresByType.computeIfAbsent(cause.getClass(), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * Method to record a call that reported its outcome instead of throwing.
+     * Rejections are counted under the exception type the throwing variant of the call would have thrown,
+     * so both variants add up to the same failure types.
+     *
+     * @param start The value returned by start.
+     * @param status The outcome of the call.
+     */
+    public void complete(long start, OperationStatus status) {
+        if (status == OperationStatus.COMPLETED) {
+            success(start);
+            return;
+        }
+        if (!BankingMetrics.isEnabled()) {
+            return;
+        }
+        success(start);
+        failures.increment();
+        failuresByType.computeIfAbsent(exceptionType(status), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * Method to get the exception type a rejection is thrown as by the throwing variants of the operations.
+     *
+     * @param status The outcome of a rejected call.
+     * @return The exception type.
+     */
+    private static Class<?> exceptionType(OperationStatus status) {
+        return switch (status) {
+            case UNAUTHORIZED -> UnauthorizedTransactionException.class;
+            case INSUFFICIENT_FUNDS -> InsufficientFundsException.class;
+            case WITHDRAWAL_BEFORE_TERM -> WithdrawalBeforeTermException.class;
+            case VELOCITY_LIMIT_EXCEEDED -> VelocityLimitExceededException.class;
+            default -> IllegalArgumentException.class;
+        };
+    }
+
+    /**
+     * Method to get what has been recorded so far.
+     *
+     * @return The snapshot of the operation.
+     */
+    public OperationSnapshot snapshot() {
+        long total = 0;
+        for (int stripe = 0; stripe < STRIPES; ++stripe) {
+            total += calls.get(stripe * PADDING);
+        }
+        Map<String, Long> byType = new HashMap<>();
+        failuresByType.forEach((type, count) -> byType.put(type.getSimpleName(), count.sum()));
+        return new OperationSnapshot(operation, total, failures.sum(), Map.copyOf(byType), latency.snapshot());
+    }
+}
@@ -0,0 +1,40 @@
+package lenko27.service.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This record represents what has been recorded for one operation up to some point.
+ *
+ * @param operation      The operation.
+ * @param calls          The number of calls, failed ones included.
+ * @param failures       The number of failed calls.
+ * @param failuresByType The number of failed calls by simple name of the exception type.
+ * @param latency        The latencies of the timed calls.
+ */
+public record OperationSnapshot(Operation operation, long calls, long failures, Map<String, Long> failuresByType,
+                                HistogramSnapshot latency) {
+
+    /**
+     * Method to get an empty snapshot of an operation.
+     *
+     * @param operation The operation.
+     * @return A snapshot without any call.
+     */
+    public static OperationSnapshot empty(Operation operation) {
+        return new OperationSnapshot(operation, 0, 0, Map.of(), HistogramSnapshot.EMPTY);
+    }
+
+    /**
+     * Method to combine the snapshots of the same operation of two banks.
+     *
+     * @param other The other snapshot.
+     * @return A snapshot holding the calls of both.
+     */
+    public OperationSnapshot merge(OperationSnapshot other) {
+        Map<String, Long> byType = new HashMap<>(failuresByType);
+        other.failuresByType.forEach((type, count) -> byType.merge(type, count, Long::sum));
+        return new OperationSnapshot(operation, calls + other.calls, failures + other.failures, Map.copyOf(byType),
+                latency.merge(other.latency));
+    }
+}
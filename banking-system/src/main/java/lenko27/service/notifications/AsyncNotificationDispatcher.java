@@ -0,0 +1,265 @@
+package lenko27.service.notifications;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class delivers notifications in the background, so that changing a bank parameter returns at once.
+ * Notifications are queued and fanned out one after another by a coordinator thread, which splits the
+ * subscribers of a notification into batches delivered in parallel on an executor. A notification is
+ * finished before the next one starts, so every client gets the notifications in the order they were sent.
+ * Backpressure is applied twice: dispatch blocks while too many notifications are queued, and the
+ * coordinator blocks while too many batches are running.
+ * A batch that throws or is rejected by the executor is recorded as failed on its delivery, and the
+ * dispatcher goes on with the next one.
+ */
+public class AsyncNotificationDispatcher implements NotificationDispatcher, AutoCloseable {
+
+    /**
+     * Default number of subscribers in one batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * Default number of notifications that can be queued before dispatch blocks.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Default number of batches that can run at the same time.
+     */
+    public static final int DEFAULT_MAX_BATCHES = 64;
+
+    /**
+     * Executor delivering the batches.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Whether the executor was created by this dispatcher and has to be shut down with it.
+     */
+    private final boolean ownsExecutor;
+
+    /**
+     * Number of subscribers in one batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Notifications waiting to be fanned out.
+     */
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * Permits for running batches.
+     */
+    private final Semaphore batchPermits;
+
+    /**
+     * Number of batches that can run at the same time.
+     */
+    private final int maxBatches;
+
+    /**
+     * Thread fanning out the queued notifications.
+     */
+    private final Thread coordinator;
+
+    /**
+     * Number of deliveries completed by this dispatcher.
+     */
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * Whether the dispatcher has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Lock making the check for closed and the enqueueing of dispatch one step against close:
+     * dispatch holds it shared, close holds it exclusively while setting closed.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor for the AsyncNotificationDispatcher class delivering on virtual threads with default settings.
+     */
+    public AsyncNotificationDispatcher() {
+        this(Executors.newVirtualThreadPerTaskExecutor(), true, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY,
+                DEFAULT_MAX_BATCHES);
+    }
+
+    /**
+     * Constructor for the AsyncNotificationDispatcher class.
+     *
+     * @param executor The executor delivering the batches, shut down by the caller.
+     * @param batchSize The number of subscribers in one batch.
+     * @param queueCapacity The number of notifications that can be queued before dispatch blocks.
+     * @param maxBatches The number of batches that can run at the same time.
+     */
+    public AsyncNotificationDispatcher(ExecutorService executor, int batchSize, int queueCapacity, int maxBatches) {
+        this(executor, false, batchSize, queueCapacity, maxBatches);
+    }
+
+    private AsyncNotificationDispatcher(ExecutorService executor, boolean ownsExecutor, int batchSize,
+                                        int queueCapacity, int maxBatches) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatches = maxBatches;
+        this.batchPermits = new Semaphore(maxBatches);
+        this.coordinator = Thread.ofPlatform().daemon().name("notification-dispatcher").start(this::run);
+    }
+
+    /**
+     * Method to queue a notification.
+     * Returns at once unless the queue is full, in which case it waits for room.
+     *
+     * @param subscribers The subscriptions, not changed during the delivery.
+     * @param position The position in the broadcast log after the notification.
+     * @return The delivery, completed in the background.
+     */
+    @Override
+    public NotificationDelivery dispatch(List<Subscription> subscribers, int position) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Notification dispatcher is closed.");
+            }
+            NotificationDelivery delivery = new NotificationDelivery(subscribers.size());
+            if (subscribers.isEmpty()) {
+                return delivery;
+            }
+            queue.put(new Pending(subscribers, position, delivery));
+            return delivery;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for room in the notification queue.", e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to get the number of deliveries completed by this dispatcher.
+     *
+     * @return The number of subscribers that got a notification, counted once per notification.
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * Method to get the number of notifications waiting to be fanned out.
+     *
+     * @return The number of queued notifications.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Method to deliver every queued notification and stop the dispatcher.
+     * Waits for dispatches that are already waiting for room in the queue, so each of them is delivered.
+     *
+     * @throws InterruptedException If interrupted while waiting for the deliveries.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        coordinator.interrupt();
+        coordinator.join();
+        if (ownsExecutor) {
+            executor.close();
+        }
+    }
+
+    /**
+     * Method run by the coordinator: fan out queued notifications one after another until closed and drained.
+     */
+    private void run() {
+        while (true) {
+            Pending pending;
+            try {
+                pending = closed ? queue.poll() : queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (pending == null) {
+                return;
+            }
+            fanOut(pending);
+        }
+    }
+
+    /**
+     * Method to deliver one notification in batches and wait until every batch is done.
+     *
+     * @param pending The notification.
+     */
+    private void fanOut(Pending pending) {
+        List<Subscription> subscribers = pending.subscribers();
+        for (int from = 0; from < subscribers.size(); from += batchSize) {
+            List<Subscription> batch = subscribers.subList(from, Math.min(subscribers.size(), from + batchSize));
+            batchPermits.acquireUninterruptibly();
+            try {
+                executor.execute(() -> deliver(pending, batch));
+            } catch (RejectedExecutionException e) {
+                batchPermits.release();
+                pending.delivery().failed(batch.size(), e);
+            }
+        }
+        batchPermits.acquireUninterruptibly(maxBatches);
+        batchPermits.release(maxBatches);
+    }
+
+    /**
+     * Method to deliver a notification to a batch of subscribers, run on the executor.
+     * The subscribers left when a delivery throws are recorded as failed, so the delivery still completes.
+     *
+     * @param pending The notification.
+     * @param batch The subscribers of the batch.
+     */
+    private void deliver(Pending pending, List<Subscription> batch) {
+        int done = 0;
+        try {
+            for (Subscription subscription : batch) {
+                subscription.deliver(pending.position());
+                ++done;
+            }
+        } catch (RuntimeException | Error e) {
+            pending.delivery().failed(batch.size() - done, e);
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            delivered.add(done);
+            pending.delivery().delivered(done);
+            batchPermits.release();
+        }
+    }
+
+    /**
+     * A queued notification.
+     *
+     * @param subscribers The subscriptions.
+     * @param position The position in the broadcast log after the notification.
+     * @param delivery The delivery tracking it.
+     */
+    private record Pending(List<Subscription> subscribers, int position, NotificationDelivery delivery) {
+    }
+}
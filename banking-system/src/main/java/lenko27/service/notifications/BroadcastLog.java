@@ -0,0 +1,80 @@
+package lenko27.service.notifications;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an append-only log of notifications, each stored once however many clients receive it.
+ * Every entry has a sequence number shared by all logs, so that the notifications a client got from
+ * several logs can be put in the order they were sent. Entries are appended by one writer at a time
+ * and read without locking.
+ */
+public class BroadcastLog {
+
+    /**
+     * Source of sequence numbers, shared by all logs.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * Messages, followed by free slots. Slots below the size are never changed once published.
+     */
+    private volatile String[] messages = new String[16];
+
+    /**
+     * Sequence numbers of the messages.
+     */
+    private volatile long[] sequences = new long[16];
+
+    /**
+     * Number of messages, written after the message it counts.
+     */
+    private volatile int size;
+
+    /**
+     * Method to append a message.
+     *
+     * @param message The message.
+     * @return The size of the log after the message, which is the position a reader has to reach to see it.
+     */
+    public synchronized int append(String message) {
+        int index = size;
+        if (index == messages.length) {
+            sequences = Arrays.copyOf(sequences, index * 2);
+            messages = Arrays.copyOf(messages, index * 2);
+        }
+        sequences[index] = SEQUENCE.incrementAndGet();
+        messages[index] = message;
+        size = index + 1;
+        return index + 1;
+    }
+
+    /**
+     * Method to get the number of messages in the log.
+     *
+     * @return The number of messages.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to get a message.
+     *
+     * @param index The position of the message, below the size.
+     * @return The message.
+     */
+    public String get(int index) {
+        return messages[index];
+    }
+
+    /**
+     * Method to get the sequence number of a message.
+     *
+     * @param index The position of the message, below the size.
+     * @return The sequence number.
+     */
+    public long getSequence(int index) {
+        return sequences[index];
+    }
+}
@@ -0,0 +1,132 @@
+package lenko27.service.notifications;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class tracks the delivery of one notification to the subscribers of a bank.
+ * Subscribers whose delivery failed are counted apart; once every subscriber is accounted for,
+ * the completion fails with the first failure if there was any.
+ */
+public class NotificationDelivery {
+
+    /**
+     * Number of subscribers the notification is delivered to.
+     */
+    private final int total;
+
+    /**
+     * Number of completed deliveries.
+     */
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * Number of failed deliveries.
+     */
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * First failure of a delivery, null if there was none.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * Future completed once every subscriber has the notification.
+     */
+    private final CompletableFuture<NotificationDelivery> completion = new CompletableFuture<>();
+
+    /**
+     * Constructor for the NotificationDelivery class.
+     *
+     * @param total The number of subscribers the notification is delivered to.
+     */
+    NotificationDelivery(int total) {
+        this.total = total;
+        if (total == 0) {
+            completion.complete(this);
+        }
+    }
+
+    /**
+     * Method to record completed deliveries.
+     *
+     * @param count The number of subscribers that got the notification.
+     */
+    void delivered(int count) {
+        delivered.add(count);
+        completeIfDone();
+    }
+
+    /**
+     * Method to record failed deliveries.
+     *
+     * @param count The number of subscribers that did not get the notification.
+     * @param cause The reason of the failure.
+     */
+    void failed(int count, Throwable cause) {
+        failure.compareAndSet(null, cause);
+        failed.add(count);
+        completeIfDone();
+    }
+
+    /**
+     * Method to complete the delivery once every subscriber has been accounted for.
+     */
+    private void completeIfDone() {
+        if (delivered.sum() + failed.sum() == total) {
+            Throwable cause = failure.get();
+            if (cause == null) {
+                completion.complete(this);
+            } else {
+                completion.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of subscribers the notification is delivered to.
+     *
+     * @return The number of subscribers.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Method to get the number of completed deliveries.
+     *
+     * @return The number of subscribers that got the notification so far.
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * Method to get the number of failed deliveries.
+     *
+     * @return The number of subscribers that will not get the notification.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Method to check if every subscriber has the notification.
+     *
+     * @return true if the delivery is complete.
+     */
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Method to get a future completed once every subscriber has the notification,
+     * or completed exceptionally once every delivery has either succeeded or failed.
+     *
+     * @return The future of the delivery.
+     */
+    public CompletableFuture<NotificationDelivery> completion() {
+        return completion;
+    }
+}
@@ -0,0 +1,20 @@
+package lenko27.service.notifications;
+
+import java.util.List;
+
+/**
+ * This interface represents the way a bank delivers notifications to its subscribers.
+ * A notification is stored once in the broadcast log of the bank; delivering it moves the position
+ * of every subscription past it.
+ */
+public interface NotificationDispatcher {
+
+    /**
+     * Method to deliver a notification to subscribers.
+     *
+     * @param subscribers The subscriptions, not changed during the delivery.
+     * @param position The position in the broadcast log after the notification.
+     * @return The delivery, which may still be in progress.
+     */
+    NotificationDelivery dispatch(List<Subscription> subscribers, int position);
+}
@@ -0,0 +1,89 @@
+package lenko27.service.notifications;
+
+import lenko27.entities.client.Client;
+
+import java.util.List;
+
+/**
+ * This class represents one kind of notification of a bank, with its own subscribers and broadcast log.
+ * A notification is stored once in the log and visits only the subscribers of its topic.
+ */
+public class NotificationTopic {
+
+    /**
+     * Log holding every notification of the topic once, read by the subscribers.
+     */
+    private final BroadcastLog log = new BroadcastLog();
+
+    /**
+     * Subscribers of the topic.
+     */
+    private final SubscriberList subscribers = new SubscriberList();
+
+    /**
+     * Method to subscribe a client to the topic, starting with the next notification.
+     *
+     * @param client The client to be subscribed.
+     * @return true if the client was subscribed, false if it already was.
+     */
+    public synchronized boolean subscribe(Client client) {
+        if (subscribers.contains(client)) {
+            return false;
+        }
+        Subscription subscription = new Subscription(client, log);
+        subscribers.add(subscription);
+        client.addSubscription(subscription);
+        return true;
+    }
+
+    /**
+     * Method to unsubscribe a client from the topic.
+     * Notifications published before keep being delivered to the client.
+     *
+     * @param client The client to be unsubscribed.
+     * @return true if the client was unsubscribed, false if it was not subscribed.
+     */
+    public synchronized boolean unsubscribe(Client client) {
+        Subscription subscription = subscribers.remove(client);
+        if (subscription == null) {
+            return false;
+        }
+        subscription.cancel();
+        return true;
+    }
+
+    /**
+     * Method to store a notification in the log and deliver it to the current subscribers.
+     *
+     * @param message The message to be sent to the subscribers.
+     * @param dispatcher The dispatcher delivering the message.
+     * @return The delivery of the message.
+     */
+    public NotificationDelivery publish(String message, NotificationDispatcher dispatcher) {
+        int position;
+        List<Subscription> snapshot;
+        synchronized (this) {
+            position = log.append(message);
+            snapshot = subscribers.snapshot();
+        }
+        return dispatcher.dispatch(snapshot, position);
+    }
+
+    /**
+     * Method to get the log of the topic.
+     *
+     * @return The log.
+     */
+    public BroadcastLog getLog() {
+        return log;
+    }
+
+    /**
+     * Method to get the number of subscribers of the topic.
+     *
+     * @return The number of subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+}
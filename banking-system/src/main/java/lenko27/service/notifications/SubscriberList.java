@@ -0,0 +1,117 @@
+package lenko27.service.notifications;
+
+import lenko27.entities.client.Client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the subscriptions of clients to one topic of a bank, at most one per client.
+ * Subscribing and unsubscribing take constant time: subscriptions are indexed by client and every subscription
+ * knows its slot, so removing one moves the last subscription into the freed slot.
+ * A snapshot of the subscribers is taken in constant time without copying, so a notification can be delivered
+ * in the background while clients keep subscribing. The first removal after a snapshot copies the subscribers,
+ * so snapshots are never affected by later changes.
+ */
+public class SubscriberList {
+
+    /**
+     * Subscribers, followed by free slots.
+     */
+    private volatile Subscription[] subscribers = new Subscription[16];
+
+    /**
+     * Number of subscribers, written after the subscriber it counts.
+     */
+    private volatile int count;
+
+    /**
+     * Subscriptions by client.
+     */
+    private final Map<Client, Subscription> byClient = new HashMap<>();
+
+    /**
+     * Whether a snapshot may still refer to the current subscriber array.
+     */
+    private boolean shared;
+
+    /**
+     * Method to add a subscriber.
+     *
+     * @param subscription The subscription of the client to be added.
+     * @return true if the subscription was added, false if the client was already subscribed.
+     */
+    public synchronized boolean add(Subscription subscription) {
+        if (byClient.putIfAbsent(subscription.getClient(), subscription) != null) {
+            return false;
+        }
+        Subscription[] current = subscribers;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            subscribers = current;
+            shared = false;
+        }
+        subscription.index = count;
+        current[count] = subscription;
+        count = count + 1;
+        return true;
+    }
+
+    /**
+     * Method to remove the subscription of a client.
+     *
+     * @param client The client to be removed.
+     * @return The removed subscription, or null if the client was not subscribed.
+     */
+    public synchronized Subscription remove(Client client) {
+        Subscription removed = byClient.remove(client);
+        if (removed == null) {
+            return null;
+        }
+        Subscription[] current = subscribers;
+        if (shared) {
+            current = current.clone();
+            subscribers = current;
+            shared = false;
+        }
+        int last = count - 1;
+        Subscription moved = current[last];
+        current[removed.index] = moved;
+        moved.index = removed.index;
+        current[last] = null;
+        count = last;
+        return removed;
+    }
+
+    /**
+     * Method to check if a client is subscribed.
+     *
+     * @param client The client.
+     * @return true if the client is subscribed.
+     */
+    public synchronized boolean contains(Client client) {
+        return byClient.containsKey(client);
+    }
+
+    /**
+     * Method to get the number of subscribers.
+     *
+     * @return The number of subscribers.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Method to get the current subscriptions.
+     *
+     * @return An unmodifiable list of the subscriptions, unaffected by later changes.
+     */
+    public synchronized List<Subscription> snapshot() {
+        shared = true;
+        return Collections.unmodifiableList(Arrays.asList(subscribers).subList(0, count));
+    }
+}
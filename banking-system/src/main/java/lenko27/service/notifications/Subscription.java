@@ -0,0 +1,127 @@
+package lenko27.service.notifications;
+
+import lenko27.entities.client.Client;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * This class represents the subscription of a client to the broadcast log of a bank.
+ * Instead of a copy of every notification it keeps only positions in the log: where the subscription started,
+ * how far notifications have been delivered and, once cancelled, where it ended.
+ */
+public class Subscription {
+
+    /**
+     * Access to the delivered position for lock-free updates.
+     */
+    private static final VarHandle DELIVERED;
+
+    static {
+        try {
+            DELIVERED = MethodHandles.lookup().findVarHandle(Subscription.class, "delivered", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The subscribed client.
+     */
+    private final Client client;
+
+    /**
+     * The log the client subscribed to.
+     */
+    private final BroadcastLog log;
+
+    /**
+     * Position of the first message of the subscription.
+     */
+    private final int from;
+
+    /**
+     * Position up to which messages have been delivered.
+     */
+    private volatile int delivered;
+
+    /**
+     * Position after the last message of the subscription, Integer.MAX_VALUE while it is active.
+     */
+    private volatile int to = Integer.MAX_VALUE;
+
+    /**
+     * Slot of the subscription in its subscriber list, maintained by the list under its lock.
+     */
+    int index;
+
+    /**
+     * Constructor for the Subscription class, starting after the last message already in the log.
+     *
+     * @param client The subscribed client.
+     * @param log The log the client subscribes to.
+     */
+    public Subscription(Client client, BroadcastLog log) {
+        this.client = client;
+        this.log = log;
+        this.from = log.size();
+        this.delivered = from;
+    }
+
+    /**
+     * Method to get the subscribed client.
+     *
+     * @return The client.
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Method to get the log the client subscribed to.
+     *
+     * @return The log.
+     */
+    public BroadcastLog getLog() {
+        return log;
+    }
+
+    /**
+     * Method to get the position of the first message of the subscription.
+     *
+     * @return The position in the log.
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * Method to get the position after the last message the client has got.
+     *
+     * @return The position in the log.
+     */
+    public int getEnd() {
+        return Math.min(delivered, to);
+    }
+
+    /**
+     * Method to mark the messages up to a position as delivered.
+     * Positions only move forward, so deliveries finishing out of order are harmless.
+     *
+     * @param position The position after the delivered message.
+     */
+    public void deliver(int position) {
+        int current = delivered;
+        while (current < position && !DELIVERED.weakCompareAndSet(this, current, position)) {
+            current = delivered;
+        }
+    }
+
+    /**
+     * Method to end the subscription after the last message in the log.
+     * Messages sent before keep being delivered.
+     */
+    public void cancel() {
+        to = log.size();
+    }
+}
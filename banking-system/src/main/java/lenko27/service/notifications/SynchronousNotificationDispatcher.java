@@ -0,0 +1,24 @@
+package lenko27.service.notifications;
+
+import java.util.List;
+
+/**
+ * This class delivers notifications on the calling thread, returning once every subscriber has the message.
+ */
+public class SynchronousNotificationDispatcher implements NotificationDispatcher {
+
+    /**
+     * Shared instance, the class has no state.
+     */
+    public static final SynchronousNotificationDispatcher INSTANCE = new SynchronousNotificationDispatcher();
+
+    @Override
+    public NotificationDelivery dispatch(List<Subscription> subscribers, int position) {
+        NotificationDelivery delivery = new NotificationDelivery(subscribers.size());
+        for (Subscription subscription : subscribers) {
+            subscription.deliver(position);
+        }
+        delivery.delivered(subscribers.size());
+        return delivery;
+    }
+}
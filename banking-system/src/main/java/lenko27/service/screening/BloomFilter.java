@@ -0,0 +1,110 @@
+package lenko27.service.screening;
+
+/**
+ * This class is a Bloom filter over 64-bit hashes, telling for sure that a value was not added
+ * and with a small false positive rate that it might have been.
+ * The filter is blocked: the bits are kept in a long array split into blocks of one cache line, and
+ * all bits of a value lie in the block chosen by the high half of its hash, so a test costs at most
+ * one cache miss however many bits it reads. Within the block the bits are derived from the low half
+ * of the hash by double hashing, and a test stops at the first clear bit.
+ * The filter is filled before it is shared and not changed afterwards.
+ */
+public final class BloomFilter {
+
+    /**
+     * Number of longs in a block, 64 bytes.
+     */
+    private static final int BLOCK_LONGS = 8;
+
+    /**
+     * Mask selecting a bit within a block.
+     */
+    private static final int BLOCK_BIT_MASK = BLOCK_LONGS * Long.SIZE - 1;
+
+    /**
+     * Bits of the filter.
+     */
+    private final long[] bits;
+
+    /**
+     * Mask selecting a block from the high half of a hash.
+     */
+    private final long blockMask;
+
+    /**
+     * Number of bits set or tested per value.
+     */
+    private final int hashes;
+
+    /**
+     * Constructor for the BloomFilter class.
+     *
+     * @param expectedValues The number of values that will be added.
+     * @param falsePositiveRate The wanted rate of values reported as added although they were not, between 0 and 1.
+     */
+    public BloomFilter(int expectedValues, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        int values = Math.max(1, expectedValues);
+        double optimalBits = -values * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long blocks = Math.max(1, Long.highestOneBit((long) Math.ceil(optimalBits / (BLOCK_BIT_MASK + 1)) * 2 - 1));
+        this.bits = new long[Math.toIntExact(blocks * BLOCK_LONGS)];
+        this.blockMask = blocks - 1;
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round(-Math.log(falsePositiveRate) / Math.log(2))));
+    }
+
+    /**
+     * Method to add a value.
+     *
+     * @param hash The 64-bit hash of the value.
+     */
+    public void add(long hash) {
+        int base = (int) ((hash >>> 32) & blockMask) * BLOCK_LONGS;
+        int bit = (int) hash;
+        int step = ((int) hash >>> 9) | 1;
+        for (int i = 0; i < hashes; ++i) {
+            int position = bit & BLOCK_BIT_MASK;
+            bits[base + (position >>> 6)] |= 1L << position;
+            bit += step;
+        }
+    }
+
+    /**
+     * Method to test a value.
+     *
+     * @param hash The 64-bit hash of the value.
+     * @return false if the value was certainly not added, true if it might have been.
+     */
+    public boolean mightContain(long hash) {
+        int base = (int) ((hash >>> 32) & blockMask) * BLOCK_LONGS;
+        int bit = (int) hash;
+        int step = ((int) hash >>> 9) | 1;
+        for (int i = 0; i < hashes; ++i) {
+            int position = bit & BLOCK_BIT_MASK;
+            if ((bits[base + (position >>> 6)] & (1L << position)) == 0) {
+                return false;
+            }
+            bit += step;
+        }
+        return true;
+    }
+
+    /**
+     * Method to get the size of the filter.
+     *
+     * @return The number of bits.
+     */
+    public long bitSize() {
+        return (long) bits.length * Long.SIZE;
+    }
+
+    /**
+     * Method to get the number of bits set or tested per value.
+     *
+     * @return The number of hash functions.
+     */
+    public int hashCount() {
+        return hashes;
+    }
+}
@@ -0,0 +1,14 @@
+package lenko27.service.screening;
+
+import lenko27.entities.client.Client;
+
+/**
+ * This rule flags clients who have given neither their address nor their passport data.
+ */
+public class MissingKycRule implements ScreeningRule {
+
+    @Override
+    public boolean flags(Client client) {
+        return client.getAddress() == null && client.getPassportData() == null;
+    }
+}
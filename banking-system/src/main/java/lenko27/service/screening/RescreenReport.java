@@ -0,0 +1,13 @@
+package lenko27.service.screening;
+
+/**
+ * This record represents the outcome of rescreening known clients after a rule was replaced.
+ *
+ * @param clients    The number of clients looked at.
+ * @param rescreened The number of clients whose current verdict was updated for the new rule only.
+ * @param flagged    The number of rescreened clients the new rule flags and the old one did not.
+ * @param cleared    The number of rescreened clients the old rule flagged and the new one does not.
+ * @param nanos      The time the rescreening took, in nanoseconds.
+ */
+public record RescreenReport(int clients, int rescreened, int flagged, int cleared, long nanos) {
+}
@@ -0,0 +1,68 @@
+package lenko27.service.screening;
+
+import lenko27.entities.client.Client;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This rule flags clients found on a local sanctions list, by full name or by passport number.
+ * Entries are compared ignoring case and whitespace, so "Ivan  Petrov" matches "ivan petrov"
+ * and "45 19 661355" matches "4519661355". The rule is immutable; an updated list is a new rule.
+ */
+public class SanctionsListRule implements ScreeningRule {
+
+    /**
+     * Normalized names and passport numbers on the list.
+     */
+    private final Set<String> entries;
+
+    /**
+     * Constructor for the SanctionsListRule class.
+     *
+     * @param entries The full names ("name surname") and passport numbers on the list.
+     */
+    public SanctionsListRule(Collection<String> entries) {
+        Set<String> normalized = new HashSet<>();
+        for (String entry : entries) {
+            normalized.add(normalize(entry));
+        }
+        this.entries = Set.copyOf(normalized);
+    }
+
+    @Override
+    public boolean flags(Client client) {
+        if (entries.contains(normalize(client.getName() + client.getSurname()))) {
+            return true;
+        }
+        String passportData = client.getPassportData();
+        return passportData != null && entries.contains(normalize(passportData));
+    }
+
+    /**
+     * Method to get the number of entries on the list.
+     *
+     * @return The number of distinct entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Method to bring a name or a passport number to the form entries are compared in.
+     *
+     * @param value The name or passport number.
+     * @return The value in lower case without whitespace, lowered character by character.
+     */
+    static String normalize(String value) {
+        StringBuilder normalized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,258 @@
+package lenko27.service.screening;
+
+import lenko27.entities.client.Client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class screens clients against an ordered list of compliance rules.
+ * A client is screened once; the verdict is a bitset of the rules that flagged it, cached by the client
+ * together with the version of the rules. Checking a client with a current verdict reads two volatile fields.
+ * A verdict is dropped by the client when its address or passport data change, and every verdict
+ * becomes stale when a rule is added, removed or replaced.
+ */
+public class ScreeningPipeline {
+
+    /**
+     * Largest number of rules, one bit of a verdict each.
+     */
+    public static final int MAX_RULES = Long.SIZE;
+
+    /**
+     * The rules, replaced as a whole on every change.
+     */
+    private volatile ScreeningRule[] rules;
+
+    /**
+     * Version of the rules, increased after every change; verdicts of older versions are stale.
+     */
+    private volatile long version = 1;
+
+    /**
+     * Constructor for the ScreeningPipeline class.
+     *
+     * @param rules The rules, in order.
+     */
+    public ScreeningPipeline(List<? extends ScreeningRule> rules) {
+        if (rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("At most " + MAX_RULES + " rules are supported.");
+        }
+        this.rules = rules.toArray(new ScreeningRule[0]);
+    }
+
+    /**
+     * Method to check if a client is flagged by any rule, screening it only if it has no current verdict.
+     *
+     * @param client The client.
+     * @return true if the client is suspicious.
+     */
+    public boolean isFlagged(Client client) {
+        return screen(client).isFlagged();
+    }
+
+    /**
+     * Method to get the verdict of a client, screening it only if it has no current verdict.
+     *
+     * @param client The client.
+     * @return The current verdict.
+     */
+    public ScreeningVerdict screen(Client client) {
+        ScreeningVerdict verdict = client.getScreeningVerdict();
+        if (verdict != null && verdict.version() == version) {
+            return verdict;
+        }
+        synchronized (client) {
+            long current = version;
+            ScreeningRule[] currentRules = rules;
+            verdict = client.getScreeningVerdict();
+            if (verdict != null && verdict.version() == current) {
+                return verdict;
+            }
+            long flags = 0;
+            for (int i = 0; i < currentRules.length; ++i) {
+                if (currentRules[i].flags(client)) {
+                    flags |= 1L << i;
+                }
+            }
+            verdict = new ScreeningVerdict(current, flags);
+            client.getVerdictCache().set(verdict);
+            return verdict;
+        }
+    }
+
+    /**
+     * Method to get the names of the rules that flag a client.
+     *
+     * @param client The client.
+     * @return The names of the flagging rules, in rule order; empty if the client is not suspicious.
+     */
+    public List<String> explain(Client client) {
+        ScreeningRule[] currentRules;
+        ScreeningVerdict verdict;
+        do {
+            verdict = screen(client);
+            currentRules = rules;
+        } while (verdict.version() != version);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < currentRules.length; ++i) {
+            if ((verdict.flags() & (1L << i)) != 0) {
+                names.add(currentRules[i].getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Method to get the rules.
+     *
+     * @return The rules, in order.
+     */
+    public List<ScreeningRule> getRules() {
+        return List.of(rules);
+    }
+
+    /**
+     * Method to get the version of the rules.
+     *
+     * @return The version, increased by every change of the rules.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Method to add a rule after the existing ones.
+     *
+     * @param rule The rule.
+     * @throws IllegalStateException If the pipeline already holds MAX_RULES rules.
+     */
+    public synchronized void addRule(ScreeningRule rule) {
+        if (rules.length == MAX_RULES) {
+            throw new IllegalStateException("At most " + MAX_RULES + " rules are supported.");
+        }
+        ScreeningRule[] changed = Arrays.copyOf(rules, rules.length + 1);
+        changed[rules.length] = rule;
+        publish(changed);
+    }
+
+    /**
+     * Method to remove a rule.
+     *
+     * @param rule The rule.
+     * @return true if the rule was part of the pipeline.
+     */
+    public synchronized boolean removeRule(ScreeningRule rule) {
+        int index = indexOf(rule);
+        if (index < 0) {
+            return false;
+        }
+        ScreeningRule[] changed = new ScreeningRule[rules.length - 1];
+        System.arraycopy(rules, 0, changed, 0, index);
+        System.arraycopy(rules, index + 1, changed, index, rules.length - index - 1);
+        publish(changed);
+        return true;
+    }
+
+    /**
+     * Method to replace a rule by a changed one at the same position, such as a sanctions list by its update.
+     *
+     * @param rule The rule to be replaced.
+     * @param replacement The new rule.
+     * @throws IllegalArgumentException If the rule is not part of the pipeline.
+     */
+    public synchronized void replaceRule(ScreeningRule rule, ScreeningRule replacement) {
+        int index = indexOf(rule);
+        if (index < 0) {
+            throw new IllegalArgumentException("Rule is not part of the pipeline: " + rule.getName());
+        }
+        ScreeningRule[] changed = rules.clone();
+        changed[index] = replacement;
+        publish(changed);
+    }
+
+    /**
+     * Method to replace a rule and rescreen the given clients for the new rule only.
+     * A client whose verdict was current before the replacement keeps the bits of the other rules and gets
+     * the bit of the new rule, so a watchlist update costs one rule check per client instead of a full
+     * screening on its next transfer. Clients with a stale or no verdict are left to be screened in full
+     * when next checked, as are clients checked while the rescreening is still running.
+     *
+     * @param rule The rule to be replaced.
+     * @param replacement The new rule.
+     * @param clients The clients to be rescreened, such as every client with an account.
+     * @return The report of the rescreening.
+     * @throws IllegalArgumentException If the rule is not part of the pipeline.
+     */
+    public RescreenReport replaceRule(ScreeningRule rule, ScreeningRule replacement, Iterable<Client> clients) {
+        long start = System.nanoTime();
+        long previous;
+        long current;
+        long bit;
+        synchronized (this) {
+            int index = indexOf(rule);
+            previous = version;
+            replaceRule(rule, replacement);
+            current = version;
+            bit = 1L << index;
+        }
+        int looked = 0;
+        int rescreened = 0;
+        int flagged = 0;
+        int cleared = 0;
+        for (Client client : clients) {
+            ++looked;
+            synchronized (client) {
+                ScreeningVerdict verdict = client.getScreeningVerdict();
+                if (verdict == null || verdict.version() != previous) {
+                    continue;
+                }
+                boolean wasFlagged = (verdict.flags() & bit) != 0;
+                boolean isFlagged = replacement.flags(client);
+                long flags = isFlagged ? verdict.flags() | bit : verdict.flags() & ~bit;
+                client.getVerdictCache().set(new ScreeningVerdict(current, flags));
+                ++rescreened;
+                if (isFlagged && !wasFlagged) {
+                    ++flagged;
+                } else if (wasFlagged && !isFlagged) {
+                    ++cleared;
+                }
+            }
+        }
+        return new RescreenReport(looked, rescreened, flagged, cleared, System.nanoTime() - start);
+    }
+
+    /**
+     * Method to make every cached verdict stale, for rules that depend on data outside the client.
+     */
+    public synchronized void invalidate() {
+        publish(rules);
+    }
+
+    /**
+     * Method to install changed rules. The rules are written before the version, so a reader that sees
+     * the new version also sees the new rules.
+     *
+     * @param changed The new rules.
+     */
+    private void publish(ScreeningRule[] changed) {
+        rules = changed;
+        version = version + 1;
+    }
+
+    /**
+     * Method to find a rule.
+     *
+     * @param rule The rule.
+     * @return The position of the rule, or -1 if it is not part of the pipeline.
+     */
+    private int indexOf(ScreeningRule rule) {
+        for (int i = 0; i < rules.length; ++i) {
+            if (rules[i] == rule) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
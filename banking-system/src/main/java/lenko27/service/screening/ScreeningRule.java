@@ -0,0 +1,29 @@
+package lenko27.service.screening;
+
+import lenko27.entities.client.Client;
+
+/**
+ * This interface represents a compliance rule that may flag a client.
+ * Rules must not change once they are part of a pipeline: a changed rule is put in with
+ * ScreeningPipeline.replaceRule, so that cached verdicts are invalidated.
+ */
+public interface ScreeningRule {
+
+    /**
+     * Method to check the client against the rule.
+     * Called with the monitor of the client held, so the address and passport data do not change meanwhile.
+     *
+     * @param client The client.
+     * @return true if the rule flags the client.
+     */
+    boolean flags(Client client);
+
+    /**
+     * Method to get the name of the rule, used to explain verdicts.
+     *
+     * @return The name of the rule.
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
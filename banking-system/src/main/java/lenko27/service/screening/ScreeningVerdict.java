@@ -0,0 +1,20 @@
+package lenko27.service.screening;
+
+/**
+ * This record represents the outcome of screening a client, cached by the client until its data
+ * or the rules change.
+ *
+ * @param version The version of the rules the client was screened against.
+ * @param flags   The rules that flagged the client, bit i standing for the rule at position i.
+ */
+public record ScreeningVerdict(long version, long flags) {
+
+    /**
+     * Method to check if any rule flagged the client.
+     *
+     * @return true if the client is suspicious.
+     */
+    public boolean isFlagged() {
+        return flags != 0;
+    }
+}
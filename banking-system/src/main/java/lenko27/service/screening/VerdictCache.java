@@ -0,0 +1,39 @@
+package lenko27.service.screening;
+
+/**
+ * This class holds the cached screening verdict of a client.
+ * Only the screening pipeline can store a verdict; anyone can drop it, which only makes the client screened again.
+ */
+public final class VerdictCache {
+
+    /**
+     * The cached verdict, null until the client is screened or after it is dropped.
+     */
+    private volatile ScreeningVerdict verdict;
+
+    /**
+     * Method to get the cached verdict.
+     *
+     * @return The verdict, or null if there is none.
+     */
+    public ScreeningVerdict get() {
+        return verdict;
+    }
+
+    /**
+     * Method to drop the cached verdict.
+     */
+    public void clear() {
+        verdict = null;
+    }
+
+    /**
+     * Method to cache a verdict.
+     * Called by the screening pipeline with the monitor of the client held.
+     *
+     * @param verdict The verdict.
+     */
+    void set(ScreeningVerdict verdict) {
+        this.verdict = verdict;
+    }
+}
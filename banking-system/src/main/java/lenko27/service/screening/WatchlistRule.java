@@ -0,0 +1,179 @@
+package lenko27.service.screening;
+
+import lenko27.entities.client.Client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This rule flags clients found on a large watchlist, by full name or by passport number, compared
+ * like the entries of SanctionsListRule. It is meant for lists of millions of entries loaded from a file.
+ * A Bloom filter in front of the exact entries answers for nearly every clean client: the name and passport
+ * are hashed as they are read, without building strings, and the filter rejects them after a read or two.
+ * Only values the filter might contain are normalized and looked up in the exact set, so false positives
+ * of the filter never flag a client. The rule is immutable; an updated list is a new rule.
+ */
+public class WatchlistRule implements ScreeningRule {
+
+    /**
+     * Default rate of clean values the filter passes on to the exact set.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Start of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    /**
+     * Multiplier of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Filter of the hashes of all entries.
+     */
+    private final BloomFilter filter;
+
+    /**
+     * Normalized names and passport numbers on the list.
+     */
+    private final Set<String> entries;
+
+    /**
+     * Constructor for the WatchlistRule class with the default false positive rate.
+     *
+     * @param entries The full names ("name surname") and passport numbers on the list.
+     */
+    public WatchlistRule(Collection<String> entries) {
+        this(entries, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Constructor for the WatchlistRule class.
+     *
+     * @param entries The full names ("name surname") and passport numbers on the list.
+     * @param falsePositiveRate The rate of clean values the filter passes on to the exact set.
+     */
+    public WatchlistRule(Collection<String> entries, double falsePositiveRate) {
+        Set<String> normalized = new HashSet<>(Math.max(16, (int) (entries.size() / 0.75f) + 1));
+        List<String> distinct = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            String value = SanctionsListRule.normalize(entry);
+            if (!value.isEmpty() && normalized.add(value)) {
+                distinct.add(entry);
+            }
+        }
+        this.entries = normalized;
+        this.filter = new BloomFilter(normalized.size(), falsePositiveRate);
+        for (String entry : distinct) {
+            filter.add(hash(entry, ""));
+        }
+    }
+
+    /**
+     * Method to load a watchlist from a UTF-8 text file with one entry per line.
+     * Blank lines and lines starting with '#' are skipped.
+     *
+     * @param file The file.
+     * @return The rule flagging the clients on the list.
+     * @throws IOException If the file can not be read.
+     */
+    public static WatchlistRule load(Path file) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    entries.add(line);
+                }
+            }
+        }
+        return new WatchlistRule(entries);
+    }
+
+    @Override
+    public boolean flags(Client client) {
+        if (filter.mightContain(hash(client.getName(), client.getSurname()))
+                && entries.contains(SanctionsListRule.normalize(client.getName() + client.getSurname()))) {
+            return true;
+        }
+        String passportData = client.getPassportData();
+        return passportData != null && filter.mightContain(hash(passportData, ""))
+                && entries.contains(SanctionsListRule.normalize(passportData));
+    }
+
+    /**
+     * Method to get the number of entries on the list.
+     *
+     * @return The number of distinct entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Method to get the filter in front of the entries.
+     *
+     * @return The Bloom filter.
+     */
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Method to hash the normalized form of two strings one after the other, without building it.
+     * Gives the same hash as the normalized concatenation, since normalizing works character by character.
+     *
+     * @param first The first string.
+     * @param second The second string, empty for a single value.
+     * @return The 64-bit hash.
+     */
+    static long hash(String first, String second) {
+        long h = mix(FNV_OFFSET, first);
+        h = mix(h, second);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Method to feed the normalized characters of a string into the hash.
+     * ASCII characters, which make up nearly all names and passport numbers, are lowered and
+     * checked for whitespace inline, with the same result as the Character methods used for the rest.
+     *
+     * @param h The hash so far.
+     * @param value The string.
+     * @return The hash including the string.
+     */
+    private static long mix(long h, String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == ' ' || (c >= '\t' && c <= '\r') || (c >= 0x1C && c <= 0x1F)) {
+                    continue;
+                }
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            } else {
+                c = Character.toLowerCase(c);
+            }
+            h = (h ^ c) * FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,236 @@
+package lenko27.service.velocity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts the transfers and the sum sent by one account or one client in a sliding window,
+ * admitting a transfer only while the window stays within its limit.
+ * The window is a ring of BUCKETS buckets, each covering 1/BUCKETS of it, so it slides in steps of one bucket.
+ * Every bucket is a word tagged with the bucket period it counts, in the high bits, next to the count
+ * in the low bits; a word with an older tag counts as zero and is reset by the next update, so nothing
+ * has to expire buckets. The position of a bucket in the ring already gives the low bits of its period,
+ * so the tag holds the lap of the ring, period / BUCKETS; tags of count and amount words repeat only after
+ * 2^32 periods. Counters take no lock and never allocate: a transfer sums the previous buckets
+ * and adds itself to the current one with a compare-and-set that fails if that would exceed the limit.
+ * Concurrent transfers on a hot account retry the compare-and-set only; exactly as many are admitted
+ * as the limit allows.
+ */
+public final class VelocityCounter {
+
+    /**
+     * Number of buckets of a window, a power of two.
+     */
+    public static final int BUCKETS = 16;
+
+    /**
+     * Number of low bits of a period given by the position of its bucket.
+     */
+    private static final int BUCKET_SHIFT = Integer.numberOfTrailingZeros(BUCKETS);
+
+    /**
+     * Bits of a word holding the number of transfers or the sum in cents, below the 28-bit tag.
+     */
+    private static final int VALUE_BITS = 36;
+
+    /**
+     * Mask of the value in a word.
+     */
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+    /**
+     * Number of transfers per bucket, tagged.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Sums in cents per bucket, tagged; null if the sum is not limited.
+     */
+    private final AtomicLongArray amounts;
+
+    /**
+     * Length of a bucket in nanoseconds.
+     */
+    private final long bucketNanos;
+
+    /**
+     * Largest number of transfers in the window.
+     */
+    private final long maxTransfers;
+
+    /**
+     * Largest sum in the window, in cents.
+     */
+    private final long maxCents;
+
+    /**
+     * Constructor for the VelocityCounter class.
+     *
+     * @param limit The rule the counter enforces.
+     */
+    public VelocityCounter(VelocityLimit limit) {
+        this.bucketNanos = limit.window().toNanos() / BUCKETS;
+        this.maxTransfers = limit.maxTransfers();
+        this.maxCents = limit.limitsAmount() ? toCents(limit.maxAmount()) : VALUE_MASK;
+        this.amounts = limit.limitsAmount() ? new AtomicLongArray(BUCKETS) : null;
+    }
+
+    /**
+     * Method to count a transfer if the window allows it.
+     *
+     * @param now The time of the transfer, from System.nanoTime.
+     * @param sum The sum of the transfer.
+     * @return true if the transfer was counted, false if it would exceed the limit.
+     */
+    public boolean tryAcquire(long now, double sum) {
+        long cents = amounts == null ? 0 : toCents(sum);
+        if (cents > maxCents) {
+            return false;
+        }
+        long period = Math.floorDiv(now, bucketNanos);
+        int slot = (int) (period & (BUCKETS - 1));
+        long previousTransfers = 0;
+        long previousCents = 0;
+        for (int i = 1; i < BUCKETS; ++i) {
+            long earlier = period - i;
+            int earlierSlot = (int) (earlier & (BUCKETS - 1));
+            long earlierTag = tag(earlier);
+            long count = counts.get(earlierSlot);
+            if ((count & ~VALUE_MASK) == earlierTag) {
+                previousTransfers += count & VALUE_MASK;
+                if (amounts != null) {
+                    long amount = amounts.get(earlierSlot);
+                    if ((amount & ~VALUE_MASK) == earlierTag) {
+                        previousCents += amount & VALUE_MASK;
+                    }
+                }
+            }
+        }
+        long tag = tag(period);
+        if (!tryAdd(counts, slot, tag, 1, maxTransfers - previousTransfers)) {
+            return false;
+        }
+        if (amounts != null && !tryAdd(amounts, slot, tag, cents, maxCents - previousCents)) {
+            subtract(counts, slot, tag, 1);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to take back a counted transfer that was not made after all, such as one declined for insufficient funds.
+     * Nothing is taken back once the bucket of the transfer has been reused.
+     *
+     * @param now The time passed to tryAcquire.
+     * @param sum The sum passed to tryAcquire.
+     */
+    public void release(long now, double sum) {
+        long period = Math.floorDiv(now, bucketNanos);
+        int slot = (int) (period & (BUCKETS - 1));
+        long tag = tag(period);
+        subtract(counts, slot, tag, 1);
+        if (amounts != null) {
+            subtract(amounts, slot, tag, toCents(sum));
+        }
+    }
+
+    /**
+     * Method to get the number of transfers counted in the window.
+     *
+     * @param now The end of the window, from System.nanoTime.
+     * @return The number of transfers.
+     */
+    public long getTransfers(long now) {
+        return sum(counts, Math.floorDiv(now, bucketNanos));
+    }
+
+    /**
+     * Method to get the sum counted in the window.
+     *
+     * @param now The end of the window, from System.nanoTime.
+     * @return The sum, or 0 if the sum is not limited.
+     */
+    public double getAmount(long now) {
+        return amounts == null ? 0 : sum(amounts, Math.floorDiv(now, bucketNanos)) / 100.0;
+    }
+
+    /**
+     * Method to add to the current bucket if the total stays within the room left by the other buckets.
+     *
+     * @param words The tagged words.
+     * @param slot The position of the current bucket.
+     * @param tag The tag of the current bucket period.
+     * @param delta The value to add.
+     * @param room The largest value the current bucket may reach.
+     * @return true if the value was added.
+     */
+    private static boolean tryAdd(AtomicLongArray words, int slot, long tag, long delta, long room) {
+        while (true) {
+            long word = words.get(slot);
+            long value = (word & ~VALUE_MASK) == tag ? word & VALUE_MASK : 0;
+            if (value + delta > room) {
+                return false;
+            }
+            if (words.compareAndSet(slot, word, tag | (value + delta))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Method to subtract from a bucket, unless it has been reused for a later period.
+     *
+     * @param words The tagged words.
+     * @param slot The position of the bucket.
+     * @param tag The tag of the period the value was added in.
+     * @param delta The value to subtract.
+     */
+    private static void subtract(AtomicLongArray words, int slot, long tag, long delta) {
+        while (true) {
+            long word = words.get(slot);
+            if ((word & ~VALUE_MASK) != tag) {
+                return;
+            }
+            if (words.compareAndSet(slot, word, tag | Math.max(0, (word & VALUE_MASK) - delta))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method to sum the buckets of the window ending in a period.
+     *
+     * @param words The tagged words.
+     * @param period The current bucket period.
+     * @return The sum of the values tagged with a period of the window.
+     */
+    private static long sum(AtomicLongArray words, long period) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            long word = words.get((int) ((period - i) & (BUCKETS - 1)));
+            if ((word & ~VALUE_MASK) == tag(period - i)) {
+                total += word & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Method to get the tag of a bucket period: its lap of the ring, in the bits above the value.
+     *
+     * @param period The bucket period.
+     * @return The tag.
+     */
+    private static long tag(long period) {
+        return (period >> BUCKET_SHIFT) << VALUE_BITS;
+    }
+
+    /**
+     * Method to convert a sum of money to whole cents.
+     *
+     * @param sum The sum.
+     * @return The sum in cents, at least 0.
+     */
+    private static long toCents(double sum) {
+        return Math.max(0, Math.round(sum * 100));
+    }
+}
@@ -0,0 +1,62 @@
+package lenko27.service.velocity;
+
+import java.time.Duration;
+
+/**
+ * This record represents a velocity rule: at most a number of transfers and at most a sum of money
+ * sent within a sliding window.
+ *
+ * @param maxTransfers The largest number of transfers in the window, Integer.MAX_VALUE for no limit.
+ * @param maxAmount    The largest sum sent in the window, Double.POSITIVE_INFINITY for no limit.
+ * @param window       The length of the window, at least one microsecond per bucket.
+ */
+public record VelocityLimit(int maxTransfers, double maxAmount, Duration window) {
+
+    /**
+     * Largest finite amount limit, so that the amounts of a bucket fit the 36 value bits of its counter in cents.
+     */
+    public static final double MAX_AMOUNT = 5e8;
+
+    public VelocityLimit {
+        if (maxTransfers <= 0) {
+            throw new IllegalArgumentException("Maximum number of transfers must be positive.");
+        }
+        if (!(maxAmount > 0) || (maxAmount > MAX_AMOUNT && maxAmount != Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Maximum amount must be positive and at most " + MAX_AMOUNT + ".");
+        }
+        if (window.toNanos() < VelocityCounter.BUCKETS * 1000L) {
+            throw new IllegalArgumentException("Window is too short: " + window);
+        }
+    }
+
+    /**
+     * Method to create a rule limiting the number of transfers only.
+     *
+     * @param maxTransfers The largest number of transfers in the window.
+     * @param window The length of the window.
+     * @return The rule.
+     */
+    public static VelocityLimit transfers(int maxTransfers, Duration window) {
+        return new VelocityLimit(maxTransfers, Double.POSITIVE_INFINITY, window);
+    }
+
+    /**
+     * Method to create a rule limiting the sum sent only.
+     *
+     * @param maxAmount The largest sum sent in the window.
+     * @param window The length of the window.
+     * @return The rule.
+     */
+    public static VelocityLimit amount(double maxAmount, Duration window) {
+        return new VelocityLimit(Integer.MAX_VALUE, maxAmount, window);
+    }
+
+    /**
+     * Method to check if the rule limits the sum sent.
+     *
+     * @return true if there is an amount limit.
+     */
+    public boolean limitsAmount() {
+        return maxAmount != Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,132 @@
+package lenko27.service.velocity;
+
+import lenko27.entities.accounts.Account;
+import lenko27.service.directory.UuidMap;
+
+import java.util.UUID;
+
+/**
+ * This class enforces the velocity policy of a bank on the transfers sent from its accounts.
+ * Every sending account and every sending client gets a counter on its first transfer; later transfers
+ * find it without locking or allocating. A transfer is admitted only if both the account and the client
+ * rule allow it, and is counted by both until it is released.
+ * The limiter is replaced as a whole when the policy of the bank changes, so new rules start with empty windows.
+ */
+public class VelocityLimiter {
+
+    /**
+     * The rules enforced.
+     */
+    private final VelocityPolicy policy;
+
+    /**
+     * Counters of the sending accounts by account identifier.
+     */
+    private final UuidMap<VelocityCounter> accounts = new UuidMap<>();
+
+    /**
+     * Counters of the sending clients by client identifier.
+     */
+    private final UuidMap<VelocityCounter> clients = new UuidMap<>();
+
+    /**
+     * Constructor for the VelocityLimiter class.
+     *
+     * @param policy The rules enforced.
+     */
+    public VelocityLimiter(VelocityPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Method to get the rules enforced.
+     *
+     * @return The policy.
+     */
+    public VelocityPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Method to count a transfer if the rules allow it.
+     *
+     * @param sender The sending account.
+     * @param sum The sum of the transfer.
+     * @param now The time of the transfer, from System.nanoTime.
+     * @return true if the transfer was counted, false if it would exceed a rule.
+     */
+    public boolean tryAcquire(Account sender, double sum, long now) {
+        VelocityCounter account = policy.perAccount() == null ? null
+                : counter(accounts, sender.getId(), policy.perAccount());
+        if (account != null && !account.tryAcquire(now, sum)) {
+            return false;
+        }
+        if (policy.perClient() != null
+                && !counter(clients, sender.getClient().getId(), policy.perClient()).tryAcquire(now, sum)) {
+            if (account != null) {
+                account.release(now, sum);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to take back a counted transfer that was not made after all.
+     *
+     * @param sender The sending account.
+     * @param sum The sum passed to tryAcquire.
+     * @param now The time passed to tryAcquire.
+     */
+    public void release(Account sender, double sum, long now) {
+        if (policy.perAccount() != null) {
+            counter(accounts, sender.getId(), policy.perAccount()).release(now, sum);
+        }
+        if (policy.perClient() != null) {
+            counter(clients, sender.getClient().getId(), policy.perClient()).release(now, sum);
+        }
+    }
+
+    /**
+     * Method to get the counter of an account.
+     *
+     * @param account The account.
+     * @return The counter, or null if accounts are not limited or the account has sent nothing yet.
+     */
+    public VelocityCounter getAccountCounter(Account account) {
+        return accounts.get(account.getId());
+    }
+
+    /**
+     * Method to get the counter of a client.
+     *
+     * @param clientId The identifier of the client.
+     * @return The counter, or null if clients are not limited or the client has sent nothing yet.
+     */
+    public VelocityCounter getClientCounter(UUID clientId) {
+        return clients.get(clientId);
+    }
+
+    /**
+     * Method to find a counter, creating it on first use.
+     *
+     * @param counters The counters.
+     * @param id The identifier of the account or client.
+     * @param limit The rule of a new counter.
+     * @return The counter.
+     */
+    private static VelocityCounter counter(UuidMap<VelocityCounter> counters, UUID id, VelocityLimit limit) {
+        VelocityCounter counter = counters.get(id);
+        if (counter != null) {
+            return counter;
+        }
+        synchronized (counters) {
+            counter = counters.get(id);
+            if (counter == null) {
+                counter = new VelocityCounter(limit);
+                counters.put(id, counter);
+            }
+            return counter;
+        }
+    }
+}
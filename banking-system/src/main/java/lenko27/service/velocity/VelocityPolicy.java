@@ -0,0 +1,10 @@
+package lenko27.service.velocity;
+
+/**
+ * This record represents the velocity rules of a bank, applied to transfers sent from its accounts.
+ *
+ * @param perAccount The rule for every sending account, or null for none.
+ * @param perClient  The rule for every sending client over all their accounts at the bank, or null for none.
+ */
+public record VelocityPolicy(VelocityLimit perAccount, VelocityLimit perClient) {
+}
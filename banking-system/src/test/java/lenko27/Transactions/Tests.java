@@ -9,21 +9,86 @@ import lenko27.service.Analyzers.CreditAnalyzer;
 import lenko27.service.Analyzers.DebitAnalyzer;
 import lenko27.service.Analyzers.DepositAnalyzer;
 import lenko27.service.ComplexInterestRate;
+import lenko27.service.accrual.AccrualReport;
+import lenko27.service.accrual.PartitionReport;
+import lenko27.service.TransferBatchReport;
+import lenko27.service.TransferRequest;
+import lenko27.service.clearing.SettlementReport;
+import lenko27.service.directory.UuidMap;
+import lenko27.service.events.AccrualEvent;
+import lenko27.service.events.BankingEvents;
+import lenko27.service.events.CancellationEvent;
+import lenko27.service.events.NotificationEvent;
+import lenko27.service.events.TransferEvent;
+import lenko27.service.ledger.ShardedLedger;
+import lenko27.service.http.BankingHttpServer;
+import lenko27.service.screening.BloomFilter;
+import lenko27.service.screening.RescreenReport;
+import lenko27.service.screening.SanctionsListRule;
+import lenko27.service.screening.ScreeningPipeline;
+import lenko27.service.screening.ScreeningRule;
+import lenko27.service.screening.WatchlistRule;
+import lenko27.service.metrics.BankingMetrics;
+import lenko27.service.metrics.MetricsSnapshot;
+import lenko27.service.metrics.Operation;
+import lenko27.service.metrics.OperationSnapshot;
+import lenko27.service.notifications.AsyncNotificationDispatcher;
+import lenko27.service.notifications.BroadcastLog;
+import lenko27.service.notifications.NotificationDelivery;
+import lenko27.service.notifications.Subscription;
+import lenko27.service.velocity.VelocityCounter;
+import lenko27.service.velocity.VelocityLimit;
+import lenko27.service.velocity.VelocityPolicy;
 import lenko27.entities.banks.Bank;
+import lenko27.entities.banks.BankParameter;
 import lenko27.entities.banks.CentralBank;
+import lenko27.entities.banks.StorageMode;
 import lenko27.entities.client.Client;
 import lenko27.entities.transactions.Transaction;
+import lenko27.entities.transactions.TransactionJournal;
+import lenko27.entities.transactions.OperationStatus;
 import lenko27.entities.transactions.TransactionType;
+import lenko27.exceptions.BankingOperationsException;
 import lenko27.exceptions.InsufficientFundsException;
+import lenko27.exceptions.InvalidBalanceException;
 import lenko27.exceptions.UnauthorizedTransactionException;
 import lenko27.exceptions.UnknownAccountTypeException;
+import lenko27.exceptions.VelocityLimitExceededException;
 import lenko27.exceptions.WithdrawalBeforeTermException;
+import lenko27.persistence.Durability;
+import lenko27.persistence.RecoveryReport;
+import lenko27.persistence.WalRecord;
+import lenko27.persistence.WalRecordType;
+import lenko27.persistence.WriteAheadLog;
+import lenko27.persistence.WriteAheadLogReader;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 class JUnitTests {
     CentralBank centralBank;
@@ -157,6 +222,78 @@ class JUnitTests {
         Assertions.assertEquals(2000, debitAccount1.getBalance());
         Assertions.assertEquals(2001, debitAccount2.getBalance());
     }
+    @SneakyThrows
+    @Test
+    public void tryCancelTransactionById() {
+        for (int i = 0; i < 1000; ++i) {
+            debitAccount.refill(100, true);
+        }
+        Transaction disputed = debitAccount.getTransactions().get(500);
+        debitAccount.cancellingTransaction(debitAccount, disputed);
+        debitAccount.cancellingTransaction(debitAccount, disputed);
+
+        List<Transaction> transactions = debitAccount.getTransactions();
+        Assertions.assertEquals(99_900, debitAccount.getBalance());
+        Assertions.assertEquals(1001, transactions.size());
+        Assertions.assertTrue(transactions.get(500).isCancelled());
+        Assertions.assertFalse(transactions.get(499).isCancelled());
+        Assertions.assertEquals(TransactionType.WITHDRAW, transactions.get(1000).getTransactionType());
+        Assertions.assertEquals(disputed.getId(), transactions.get(500).getId());
+    }
+    @SneakyThrows
+    @Test
+    public void tryTransferBatch() {
+        debitAccount1 = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        debitAccount2 = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        susDebitAccount = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, susClient), susClient);
+        debitAccount1.refill(1000, true);
+        List<TransferRequest> transfers = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            transfers.add(new TransferRequest(debitAccount1, debitAccount2, 1));
+            transfers.add(new TransferRequest(debitAccount2, debitAccount1, 0.5));
+        }
+        transfers.add(new TransferRequest(debitAccount2, debitAccount1, 10_000));
+        transfers.add(new TransferRequest(debitAccount1, susDebitAccount, 1));
+        transfers.add(new TransferRequest(debitAccount1, debitAccount2, -1));
+
+        TransferBatchReport report = centralBank.doTransferBatch(transfers);
+
+        Assertions.assertEquals(2000, report.getCompleted());
+        Assertions.assertEquals(OperationStatus.INSUFFICIENT_FUNDS, report.statuses().get(2000));
+        Assertions.assertEquals(OperationStatus.UNAUTHORIZED, report.statuses().get(2001));
+        Assertions.assertEquals(OperationStatus.INVALID_AMOUNT, report.statuses().get(2002));
+        Assertions.assertEquals(500, debitAccount1.getBalance());
+        Assertions.assertEquals(500, debitAccount2.getBalance());
+        Assertions.assertEquals(2001, debitAccount1.getTransactions().size());
+        Assertions.assertEquals(TransactionType.TRANSFERSENDER, debitAccount1.getTransactions().get(1).getTransactionType());
+        Assertions.assertEquals(TransactionType.TRANSFERACCEPTER, debitAccount1.getTransactions().get(2).getTransactionType());
+    }
+    @SneakyThrows
+    @Test
+    public void tryClearingCycle() {
+        Bank otherBank = centralBank.createBank(0.1, bank.getDepositInterest(), 1000, 0.2, 0);
+        Bank thirdBank = centralBank.createBank(0.1, bank.getDepositInterest(), 1000, 0.2, 0);
+        debitAccount1 = otherBank.createAccount(new DebitAccount(UUID.randomUUID(), otherBank, client), client);
+        debitAccount2 = thirdBank.createAccount(new DebitAccount(UUID.randomUUID(), thirdBank, client), client);
+        debitAccount.refill(1000, true);
+        debitAccount1.refill(1000, true);
+
+        centralBank.startClearing();
+        centralBank.doTransfer(debitAccount, debitAccount1, 300);
+        centralBank.doTransfer(debitAccount1, debitAccount, 100);
+        centralBank.doTransfer(debitAccount1, debitAccount2, 50);
+        centralBank.doTransferBatch(List.of(new TransferRequest(debitAccount2, debitAccount, 20)));
+        SettlementReport report = centralBank.stopClearing();
+
+        Assertions.assertEquals(820, debitAccount.getBalance());
+        Assertions.assertEquals(4, report.transfers());
+        Assertions.assertEquals(4, report.bankPairs());
+        Assertions.assertEquals(470, report.grossAmount());
+        Assertions.assertEquals(180, report.netAmount());
+        Assertions.assertEquals(-180, report.netPositions().get(bank.getId()));
+        Assertions.assertEquals(150, otherBank.getSettlementBalance());
+        Assertions.assertEquals(30, thirdBank.getSettlementBalance());
+    }
     @Test
     public void tryAnalyzeAccounts() throws WithdrawalBeforeTermException, InsufficientFundsException, UnauthorizedTransactionException {
         debitAccount.refill(200, true);
@@ -171,4 +308,906 @@ class JUnitTests {
         Assertions.assertEquals(115.5, depositAnalyzer.calculate());
         Assertions.assertEquals(-144, creditAnalyzer.calculate());
     }
-}
\ No newline at end of file
+    @Test
+    public void tryConcurrentOppositeTransfers() throws Exception {
+        debitAccount1 = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        debitAccount2 = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        debitAccount1.refill(100_000, true);
+        debitAccount2.refill(100_000, true);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; ++t) {
+            Account from = t % 2 == 0 ? debitAccount1 : debitAccount2;
+            Account to = t % 2 == 0 ? debitAccount2 : debitAccount1;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; ++i) {
+                    try {
+                        centralBank.doTransfer(from, to, 1);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(200_000, debitAccount1.getBalance() + debitAccount2.getBalance());
+        Assertions.assertEquals(100_000, debitAccount1.getBalance());
+        Assertions.assertEquals(8001, debitAccount1.getTransactions().size());
+    }
+    @SneakyThrows
+    @Test
+    public void tryColumnarStorage() {
+        Bank columnarBank = centralBank.createBank(0.1, bank.getDepositInterest(), 1000, 0.2, 0, StorageMode.COLUMNAR);
+        debitAccount1 = columnarBank.createAccount(new DebitAccount(UUID.randomUUID(), columnarBank, client), client);
+        debitAccount2 = columnarBank.createAccount(new DebitAccount(UUID.randomUUID(), columnarBank, client), client);
+        debitAccount1.refill(500, true);
+        centralBank.doTransfer(debitAccount1, debitAccount2, 100);
+        columnarBank.interestAccrual();
+
+        Assertions.assertEquals(1, debitAccount2.getSlot());
+        Assertions.assertEquals(440, columnarBank.getAccountStore().getBalance(debitAccount1.getSlot()));
+        Assertions.assertEquals(440, debitAccount1.getBalance());
+        Assertions.assertEquals(110, debitAccount2.getBalance());
+        Assertions.assertEquals(3, debitAccount1.getTransactions().size());
+    }
+    @SneakyThrows
+    @Test
+    public void tryInterestAccrualByAccountType() {
+        debitAccount.refill(200, true);
+        depositAccount.refill(200, true);
+        creditAccount.withdraw(100, true);
+        bank.interestAccrual();
+
+        Assertions.assertEquals(220, debitAccount.getBalance(), 1e-9);
+        Assertions.assertEquals(220, depositAccount.getBalance(), 1e-9);
+        Assertions.assertEquals(-120, creditAccount.getBalance(), 1e-9);
+        Assertions.assertEquals(TransactionType.WITHDRAW, creditAccount.getTransactions().get(1).getTransactionType());
+    }
+    @SneakyThrows
+    @Test
+    public void tryParallelAccrualSkipsSuspiciousAccounts() {
+        susDebitAccount = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, susClient), susClient);
+        debitAccount1 = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        debitAccount.refill(100, true);
+        debitAccount1.refill(300, true);
+
+        List<PartitionReport> progress = Collections.synchronizedList(new ArrayList<>());
+        AccrualReport report = centralBank.doParallelAccrual(ForkJoinPool.commonPool(), 2, progress::add);
+
+        Assertions.assertEquals(report.partitions().size(), progress.size());
+        Assertions.assertTrue(report.getFailures().stream().anyMatch(failure -> failure.account() == susDebitAccount));
+        Assertions.assertEquals(110, debitAccount.getBalance(), 1e-9);
+        Assertions.assertEquals(330, debitAccount1.getBalance(), 1e-9);
+    }
+    @Test
+    public void tryClosedFormAndBatchAnalyzers() {
+        double iterative = 1000;
+        for (int i = 0; i < 360; ++i) {
+            iterative += iterative * 0.005;
+        }
+        CreditAnalyzer creditAnalyzer = new CreditAnalyzer(24, -100, -300, 0.05);
+
+        Assertions.assertEquals(iterative, new DebitAnalyzer(360, 1000, 0.005).calculate(), iterative * 1e-9);
+        Assertions.assertArrayEquals(new double[]{242, 0, 121},
+                new DebitAnalyzer(2, 0, 0.1).calculate(new double[]{200, 0, 100}), 1e-9);
+        Assertions.assertArrayEquals(new double[]{-144, 50},
+                new CreditAnalyzer(2, 0, 1000, 0.2).calculate(new double[]{-100, 50}), 1e-9);
+        Assertions.assertEquals(-100 * Math.pow(1.05, 24), creditAnalyzer.calculate(), 1e-9);
+        Assertions.assertTrue(creditAnalyzer.isOverLimit());
+        Assertions.assertEquals(23, creditAnalyzer.getOverLimitPeriod());
+    }
+    @Test
+    public void tryDepositAnalyzerJumpsThroughTiers() {
+        List<ComplexInterestRate> depositInterest = bank.getDepositInterest();
+        double[] balances = {50, 100, 990, 5000};
+        double[] projected = new DepositAnalyzer(360, 0, depositInterest, 12).calculate(balances);
+
+        for (int k = 0; k < balances.length; ++k) {
+            double iterative = balances[k];
+            for (int i = 12; i < 360; ++i) {
+                for (int j = depositInterest.size() - 1; j >= 0; --j) {
+                    if (iterative >= depositInterest.get(j).balanceThreshold()) {
+                        iterative += iterative * depositInterest.get(j).interestRate();
+                        break;
+                    }
+                }
+            }
+            Assertions.assertEquals(iterative, projected[k], iterative * 1e-9);
+            Assertions.assertEquals(projected[k],
+                    new DepositAnalyzer(360, balances[k], bank.getDepositTiers(), 12).calculate(), iterative * 1e-12);
+        }
+    }
+    @SneakyThrows
+    @Test
+    public void tryLongTransactionJournal() {
+        for (int i = 1; i <= 10_000; ++i) {
+            debitAccount.refill(i, true);
+        }
+        List<Transaction> transactions = debitAccount.getTransactions();
+
+        Assertions.assertEquals(10_000, transactions.size());
+        for (int i = 0; i < transactions.size(); ++i) {
+            Assertions.assertEquals(i + 1, transactions.get(i).getSum());
+            Assertions.assertEquals(TransactionType.REFILL, transactions.get(i).getTransactionType());
+        }
+        Assertions.assertTrue(transactions.get(0).getId() < transactions.get(9_999).getId());
+        Assertions.assertTrue(transactions.get(9_999).getTimestamp() > 0);
+
+        TransactionJournal journal = new TransactionJournal();
+        long[] ids = {1, 1 + Integer.MAX_VALUE, 1 + (long) Integer.MIN_VALUE, -3_000_000_000L};
+        long[] timestamps = {0, Long.MAX_VALUE / 2, -1, 5_000_000_000L};
+        for (int i = 0; i < ids.length; ++i) {
+            journal.restore(TransactionType.REFILL, i, ids[i], timestamps[i], false);
+        }
+        for (int i = 0; i < ids.length; ++i) {
+            Assertions.assertEquals(ids[i], journal.getId(i));
+            Assertions.assertEquals(timestamps[i], journal.getTimestamp(i));
+        }
+        Assertions.assertEquals(2, journal.indexOf(1 + (long) Integer.MIN_VALUE));
+    }
+    @SneakyThrows
+    @Test
+    public void tryWriteAheadLog() {
+        Path directory = Files.createTempDirectory("wal");
+        Account account;
+        WriteAheadLog closed;
+        try (WriteAheadLog writeAheadLog = WriteAheadLog.open(directory, Durability.GROUP, 4096, 1, 16)) {
+            centralBank.attachWriteAheadLog(writeAheadLog);
+            account = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+            for (int i = 0; i < 100; ++i) {
+                account.refill(10, true);
+            }
+            centralBank.doTransfer(account, debitAccount, 5);
+            bank.changeDebitInterest(0.2);
+            Assertions.assertEquals(writeAheadLog.getLastLsn(), writeAheadLog.getDurableLsn());
+            writeAheadLog.appendEntry(account.getId(), TransactionType.REFILL, 1);
+            closed = writeAheadLog;
+        } finally {
+            centralBank.attachWriteAheadLog(null);
+        }
+        Assertions.assertEquals(closed.getLastLsn(), closed.getDurableLsn());
+        closed.commit(closed.getLastLsn());
+        Assertions.assertThrows(IllegalStateException.class, () -> closed.commit(closed.getLastLsn() + 1));
+
+        Map<WalRecordType, Integer> counts = new EnumMap<>(WalRecordType.class);
+        WalRecord transfer = null;
+        long lastLsn = 0;
+        try (WriteAheadLogReader reader = new WriteAheadLogReader(directory, 0)) {
+            while (reader.hasNext()) {
+                WalRecord record = reader.next();
+                Assertions.assertEquals(lastLsn + 1, record.lsn());
+                lastLsn = record.lsn();
+                counts.merge(record.type(), 1, Integer::sum);
+                if (record.type() == WalRecordType.TRANSFER) {
+                    transfer = record;
+                }
+            }
+        }
+        Assertions.assertEquals(1, counts.get(WalRecordType.ACCOUNT_OPENED));
+        Assertions.assertEquals(101, counts.get(WalRecordType.ENTRY));
+        Assertions.assertEquals(1, counts.get(WalRecordType.TRANSFER));
+        Assertions.assertEquals(1, counts.get(WalRecordType.BANK_PARAMETER));
+        Assertions.assertNotNull(transfer);
+        Assertions.assertEquals(account.getId(), WalRecord.getUuid(transfer.payload()));
+        Assertions.assertEquals(debitAccount.getId(), WalRecord.getUuid(transfer.payload()));
+        Assertions.assertEquals(5, transfer.payload().getDouble());
+        try (var segments = Files.list(directory)) {
+            Assertions.assertTrue(segments.count() > 1);
+        }
+    }
+    @SneakyThrows
+    @Test
+    public void tryRecoveryFromSnapshotAndLog() {
+        Path logDirectory = Files.createTempDirectory("wal");
+        Path snapshotDirectory = Files.createTempDirectory("snapshots");
+        Bank logged;
+        Account first, second, third;
+        try (WriteAheadLog writeAheadLog = WriteAheadLog.open(logDirectory, Durability.GROUP, 1 << 16, 1, 16)) {
+            centralBank.attachWriteAheadLog(writeAheadLog);
+            logged = centralBank.createBank(0.1, bank.getDepositInterest(), 1000, 0.2, 0, StorageMode.COLUMNAR);
+            first = logged.createAccount(new DebitAccount(UUID.randomUUID(), logged, client), client);
+            second = logged.createAccount(new CreditAccount(UUID.randomUUID(), logged, client), client);
+            first.refill(100, true);
+            centralBank.doTransfer(first, second, 30);
+            centralBank.takeSnapshot(snapshotDirectory);
+
+            second.refill(5, true);
+            centralBank.doTransfer(second, first, 10);
+            logged.changeCreditLimit(500);
+            third = logged.createAccount(new DebitAccount(UUID.randomUUID(), logged, client), client);
+            third.refill(7, true);
+            client.setAddress("Lenina");
+        } finally {
+            centralBank.attachWriteAheadLog(null);
+        }
+
+        RecoveryReport report = centralBank.recover(snapshotDirectory, logDirectory);
+        Bank recovered = centralBank.findBank(logged.getId());
+        Map<UUID, Account> accounts = new HashMap<>();
+        for (Account account : recovered.copyAccounts()) {
+            accounts.put(account.getId(), account);
+        }
+
+        Assertions.assertTrue(report.snapshotLsn() > 0);
+        Assertions.assertEquals(4, report.appliedChanges());
+        Assertions.assertEquals(3, accounts.size());
+        Assertions.assertEquals(80, accounts.get(first.getId()).getBalance(), 1e-9);
+        Assertions.assertEquals(25, accounts.get(second.getId()).getBalance(), 1e-9);
+        Assertions.assertEquals(7, accounts.get(third.getId()).getBalance(), 1e-9);
+        Assertions.assertEquals(500, recovered.getCreditLimit());
+        Assertions.assertEquals(StorageMode.COLUMNAR, recovered.getStorageMode());
+        Assertions.assertEquals("Lenina", accounts.get(third.getId()).getClient().getAddress());
+        List<Transaction> history = accounts.get(first.getId()).getTransactions();
+        Assertions.assertEquals(3, history.size());
+        Assertions.assertEquals(first.getTransactions().get(0).getId(), history.get(0).getId());
+        Assertions.assertEquals(TransactionType.TRANSFERSENDER, history.get(1).getTransactionType());
+        Assertions.assertEquals(TransactionType.TRANSFERACCEPTER, history.get(2).getTransactionType());
+    }
+    @SneakyThrows
+    @Test
+    public void tryCancelAfterRecovery() {
+        Path logDirectory = Files.createTempDirectory("wal");
+        Path snapshotDirectory = Files.createTempDirectory("snapshots");
+        Bank logged;
+        try (WriteAheadLog writeAheadLog = WriteAheadLog.open(logDirectory, Durability.GROUP, 1 << 16, 1, 16)) {
+            centralBank.attachWriteAheadLog(writeAheadLog);
+            logged = centralBank.createBank(0.1, bank.getDepositInterest(), 1000, 0.2, 0);
+            Account account = logged.createAccount(new DebitAccount(UUID.randomUUID(), logged, client), client);
+            account.refill(100, true);
+            account.refill(50, true);
+            account.cancellingTransaction(account, account.getTransactions().get(0));
+            Assertions.assertEquals(50, account.getBalance(), 1e-9);
+        } finally {
+            centralBank.attachWriteAheadLog(null);
+        }
+
+        centralBank.recover(snapshotDirectory, logDirectory);
+        Account recovered = centralBank.findBank(logged.getId()).copyAccounts().get(0);
+        Assertions.assertTrue(recovered.getTransactions().get(0).isCancelled());
+        recovered.cancellingTransaction(recovered, recovered.getTransactions().get(0));
+
+        Assertions.assertEquals(50, recovered.getBalance(), 1e-9);
+        Assertions.assertEquals(3, recovered.getTransactions().size());
+    }
+    @SneakyThrows
+    @Test
+    public void tryEntityDirectory() {
+        Account account = bank.createAccount(new DepositAccount(UUID.randomUUID(), bank, client), client);
+
+        Assertions.assertSame(bank, centralBank.findBank(bank.getId()));
+        Assertions.assertSame(account, centralBank.findAccount(account.getId()));
+        Assertions.assertSame(debitAccount, centralBank.findAccount(debitAccount.getId()));
+        Assertions.assertNull(centralBank.findAccount(UUID.randomUUID()));
+        Assertions.assertTrue(centralBank.getDirectory().findAccounts(client).containsAll(List.of(debitAccount, account)));
+
+        UuidMap<Integer> map = new UuidMap<>();
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 100_000; ++i) {
+            keys.add(UUID.randomUUID());
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < keys.size(); ++i) {
+                map.put(keys.get(i), i);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            int inserted = map.size();
+            for (int i = 0; i < inserted; ++i) {
+                Assertions.assertEquals(i, map.get(keys.get(i)));
+            }
+        }
+        writer.join();
+        Assertions.assertEquals(keys.size(), map.size());
+        Assertions.assertEquals(7, map.put(keys.get(7), -7));
+        Assertions.assertEquals(-7, map.get(keys.get(7)));
+    }
+    @SneakyThrows
+    @Test
+    public void tryAsyncNotificationDispatcher() {
+        List<Client> subscribers = new ArrayList<>();
+        for (int i = 0; i < 10_000; ++i) {
+            Client subscriber = Client.builder("Kolya", "Podpischikov").build();
+            subscribers.add(subscriber);
+            bank.subscribe(subscriber);
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(4);
+             AsyncNotificationDispatcher dispatcher = new AsyncNotificationDispatcher(executor, 100, 2, 4)) {
+            bank.setNotificationDispatcher(dispatcher);
+            bank.changeCreditLimit(2000);
+            NotificationDelivery second = bank.publish("Second");
+            bank.subscribe(client);
+
+            Assertions.assertEquals(subscribers.size(), second.getTotal());
+            second.completion().join();
+            Assertions.assertEquals(second.getTotal(), second.getDelivered());
+            Assertions.assertEquals(2L * second.getTotal(), dispatcher.getDelivered());
+        }
+        for (Client subscriber : subscribers) {
+            Assertions.assertEquals(2, subscriber.getMessages().size());
+            Assertions.assertEquals("Second", subscriber.getMessages().get(1));
+        }
+        Assertions.assertTrue(client.getMessages().isEmpty());
+
+        BroadcastLog log = new BroadcastLog();
+        Subscription working = new Subscription(client, log);
+        Subscription failing = new Subscription(client, log) {
+            @Override
+            public void deliver(int position) {
+                throw new IllegalStateException("Subscriber is gone.");
+            }
+        };
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        AsyncNotificationDispatcher closed;
+        try (ExecutorService executor = Executors.newFixedThreadPool(2);
+             AsyncNotificationDispatcher dispatcher = new AsyncNotificationDispatcher(executor, 1, 2, 2);
+             AsyncNotificationDispatcher rejecting = new AsyncNotificationDispatcher(stopped, 1, 2, 2)) {
+            NotificationDelivery partial = dispatcher.dispatch(List.of(failing, working), 1);
+            Assertions.assertThrows(CompletionException.class, () -> partial.completion().join());
+            Assertions.assertEquals(1, partial.getDelivered());
+            Assertions.assertEquals(1, partial.getFailed());
+            Assertions.assertEquals(1, working.getEnd());
+
+            NotificationDelivery rejected = rejecting.dispatch(List.of(working, working), 2);
+            Assertions.assertThrows(CompletionException.class, () -> rejected.completion().join());
+            Assertions.assertEquals(2, rejected.getFailed());
+            NotificationDelivery next = rejecting.dispatch(List.of(working), 2);
+            Assertions.assertThrows(CompletionException.class, () -> next.completion().join());
+            closed = rejecting;
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> closed.dispatch(List.of(working), 3));
+    }
+
+    @Test
+    public void tryBroadcastLog() {
+        Client other = Client.builder("Kolya", "Podpischikov").build();
+        bank.publish("Before");
+        bank.subscribe(client);
+        bank.subscribe(other);
+        bank.publish("First");
+        client.update("Direct");
+        bank.publish("Second");
+        bank.unsubscribe(other);
+        bank.publish("Third");
+
+        Assertions.assertEquals(4, bank.getAnnouncements().getLog().size());
+        Assertions.assertEquals(List.of("First", "Direct", "Second", "Third"), client.getMessages());
+        Assertions.assertEquals(List.of("First", "Second"), other.getMessages());
+        Assertions.assertSame(client.getMessages().get(0), other.getMessages().get(0));
+    }
+
+    @Test
+    public void tryTopicSubscriptions() {
+        Client other = Client.builder("Kolya", "Podpischikov").build();
+        bank.subscribe(client, BankParameter.CREDIT_LIMIT);
+        bank.subscribe(client, BankParameter.CREDIT_LIMIT);
+        bank.subscribe(other);
+        bank.changeCreditLimit(2000);
+        bank.changeTerm(12);
+        bank.unsubscribe(other, BankParameter.TERM);
+        bank.changeTerm(24);
+        bank.unsubscribe(client, BankParameter.CREDIT_LIMIT);
+        bank.changeCreditLimit(3000);
+
+        Assertions.assertEquals(1, client.getMessages().size());
+        Assertions.assertTrue(client.getMessages().get(0).contains("credit limit"));
+        Assertions.assertEquals(3, other.getMessages().size());
+        Assertions.assertEquals(0, bank.getTopic(BankParameter.TERM).getSubscriberCount());
+        Assertions.assertEquals(1, bank.getTopic(BankParameter.CREDIT_LIMIT).getSubscriberCount());
+    }
+
+    @Test
+    public void tryOperationMetrics() throws Exception {
+        BankingMetrics.setSampleRate(1);
+        try {
+            debitAccount.refill(300, true);
+            debitAccount.refill(100, true);
+            Assertions.assertThrows(InsufficientFundsException.class, () -> debitAccount.withdraw(1000, true));
+            centralBank.doTransfer(debitAccount, creditAccount, 50);
+            Assertions.assertThrows(InsufficientFundsException.class,
+                    () -> centralBank.doTransfer(debitAccount, creditAccount, 1000));
+            bank.interestAccrual();
+        } finally {
+            BankingMetrics.setSampleRate(BankingMetrics.DEFAULT_SAMPLE_RATE);
+        }
+
+        MetricsSnapshot snapshot = BankingMetrics.snapshot();
+        OperationSnapshot refills = snapshot.get(bank.getId(), Operation.REFILL);
+        Assertions.assertEquals(2, refills.calls());
+        Assertions.assertEquals(2, refills.latency().getCount());
+        Assertions.assertTrue(refills.latency().getValueAtPercentile(50) <= refills.latency().getMax());
+        OperationSnapshot withdrawals = snapshot.get(bank.getId(), Operation.WITHDRAW);
+        Assertions.assertEquals(1, withdrawals.failures());
+        OperationSnapshot transfers = snapshot.get(bank.getId(), Operation.TRANSFER);
+        Assertions.assertEquals(2, transfers.calls());
+        Assertions.assertEquals(Map.of("InsufficientFundsException", 1L), transfers.failuresByType());
+        Assertions.assertEquals(1, snapshot.get(bank.getId(), Operation.INTEREST_ACCRUAL).calls());
+        Assertions.assertTrue(snapshot.get(Operation.TRANSFER).calls() >= transfers.calls());
+
+        BankingMetrics.registerMBeans();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = BankingMetrics.objectName(Operation.TRANSFER);
+            Assertions.assertTrue((Long) server.getAttribute(name, "Calls") >= 2);
+            Assertions.assertTrue((Long) server.getAttribute(name, "Failures") >= 1);
+        } finally {
+            BankingMetrics.unregisterMBeans();
+        }
+    }
+
+    @Test
+    public void tryFlightRecorderEvents() throws Exception {
+        debitAccount.refill(300, true);
+        Path file = Files.createTempFile("banking", ".jfr");
+        try (Recording recording = new Recording()) {
+            BankingEvents.enable(recording);
+            recording.start();
+            centralBank.doTransfer(debitAccount, creditAccount, 50);
+            Assertions.assertThrows(InsufficientFundsException.class,
+                    () -> centralBank.doTransfer(debitAccount, creditAccount, 1000));
+            bank.interestAccrual();
+            bank.subscribe(client);
+            bank.changeTerm(12);
+            Transaction transfer = debitAccount.getTransactions().get(1);
+            debitAccount.cancellingTransaction(debitAccount, transfer);
+            debitAccount.cancellingTransaction(debitAccount, transfer);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        List<RecordedEvent> transfers = events.stream()
+                .filter(event -> event.getEventType().getName().equals(TransferEvent.NAME)).toList();
+        Assertions.assertEquals(2, transfers.size());
+        Assertions.assertEquals(bank.getId().toString(), transfers.get(0).getString("senderBank"));
+        Assertions.assertEquals(50, transfers.get(0).getDouble("amount"));
+        Assertions.assertEquals("COMPLETED", transfers.get(0).getString("outcome"));
+        Assertions.assertEquals("InsufficientFundsException", transfers.get(1).getString("outcome"));
+        RecordedEvent accrual = events.stream()
+                .filter(event -> event.getEventType().getName().equals(AccrualEvent.NAME)).findFirst().orElseThrow();
+        Assertions.assertEquals(3, accrual.getInt("processed"));
+        RecordedEvent notification = events.stream()
+                .filter(event -> event.getEventType().getName().equals(NotificationEvent.NAME)).findFirst().orElseThrow();
+        Assertions.assertEquals("TERM", notification.getString("topic"));
+        Assertions.assertEquals(1, notification.getInt("subscribers"));
+        List<String> cancellations = events.stream()
+                .filter(event -> event.getEventType().getName().equals(CancellationEvent.NAME))
+                .map(event -> event.getString("outcome")).toList();
+        Assertions.assertEquals(List.of("CANCELLED", "ALREADY_CANCELLED"), cancellations);
+    }
+
+    @SneakyThrows
+    @Test
+    public void tryOperationStatuses() {
+        Account suspicious = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, susClient), susClient);
+        Assertions.assertEquals(OperationStatus.COMPLETED, debitAccount.tryRefill(300, true));
+        Assertions.assertEquals(OperationStatus.INVALID_AMOUNT, debitAccount.tryRefill(-5, true));
+        Assertions.assertEquals(OperationStatus.UNAUTHORIZED, suspicious.tryRefill(100, true));
+        Assertions.assertEquals(OperationStatus.INSUFFICIENT_FUNDS, debitAccount.tryWithdraw(1000, true));
+        Assertions.assertEquals(OperationStatus.COMPLETED, debitAccount.tryWithdraw(100, true));
+        Assertions.assertEquals(OperationStatus.COMPLETED, depositAccount.tryRefill(100, true));
+        Assertions.assertEquals(OperationStatus.WITHDRAWAL_BEFORE_TERM, depositAccount.tryWithdraw(50, true));
+
+        Assertions.assertEquals(OperationStatus.COMPLETED, centralBank.tryTransfer(debitAccount, creditAccount, 50));
+        Assertions.assertEquals(OperationStatus.INSUFFICIENT_FUNDS, centralBank.tryTransfer(debitAccount, depositAccount, 500));
+        Assertions.assertEquals(OperationStatus.UNAUTHORIZED, centralBank.tryTransfer(debitAccount, suspicious, 10));
+        Assertions.assertEquals(OperationStatus.INVALID_AMOUNT, centralBank.tryTransfer(debitAccount, creditAccount, Double.NaN));
+        Assertions.assertEquals(150, debitAccount.getBalance());
+        Assertions.assertEquals(50, creditAccount.getBalance());
+        Assertions.assertEquals(100, depositAccount.getBalance());
+        Assertions.assertEquals(3, debitAccount.getTransactions().size());
+        Assertions.assertEquals(Map.of("InsufficientFundsException", 1L, "UnauthorizedTransactionException", 1L,
+                        "IllegalArgumentException", 1L),
+                BankingMetrics.snapshot().get(bank.getId(), Operation.TRANSFER).failuresByType());
+
+        BankingOperationsException.setStackless(true);
+        try {
+            InsufficientFundsException first = Assertions.assertThrows(InsufficientFundsException.class,
+                    () -> centralBank.doTransfer(debitAccount, creditAccount, 1000));
+            InsufficientFundsException second = Assertions.assertThrows(InsufficientFundsException.class,
+                    () -> debitAccount.withdraw(1000, true));
+            Assertions.assertSame(first, second);
+            Assertions.assertEquals(0, first.getStackTrace().length);
+        } finally {
+            BankingOperationsException.setStackless(false);
+        }
+        InsufficientFundsException fresh = Assertions.assertThrows(InsufficientFundsException.class,
+                () -> debitAccount.withdraw(1000, true));
+        Assertions.assertTrue(fresh.getStackTrace().length > 0);
+    }
+
+    @SneakyThrows
+    @Test
+    public void tryScreeningPipeline() {
+        ScreeningPipeline screening = centralBank.getScreening();
+        AtomicInteger evaluations = new AtomicInteger();
+        ScreeningRule counting = checked -> checked == client && evaluations.incrementAndGet() < 0;
+        ScreeningRule sanctions = new SanctionsListRule(List.of("Ivan Sanktsionov", "12 34 567890"));
+        ScreeningRule updatedSanctions = new SanctionsListRule(List.of("12 34 567890"));
+        Client listed = Client.builder("Ivan", "Sanktsionov").address("Lenina").build();
+        Client listedByPassport = Client.builder("Petr", "Petrov").passportData("1234567890").build();
+        Account listedAccount = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, listed), listed);
+        screening.addRule(counting);
+        screening.addRule(sanctions);
+        try {
+            for (int i = 0; i < 100; ++i) {
+                Assertions.assertFalse(client.isSuspicious());
+            }
+            Assertions.assertEquals(1, evaluations.get());
+            client.setAddress("Sadovaya");
+            Assertions.assertFalse(client.isSuspicious());
+            Assertions.assertEquals(2, evaluations.get());
+
+            Assertions.assertTrue(listed.isSuspicious());
+            Assertions.assertTrue(listedByPassport.isSuspicious());
+            Assertions.assertEquals(List.of("SanctionsListRule"), screening.explain(listed));
+            Assertions.assertEquals(List.of("MissingKycRule"), screening.explain(susClient));
+            Assertions.assertEquals(OperationStatus.UNAUTHORIZED, listedAccount.tryRefill(100, true));
+            listed.getVerdictCache().clear();
+            Assertions.assertNull(listed.getScreeningVerdict());
+            Assertions.assertTrue(listed.isSuspicious());
+            Assertions.assertTrue(listed.getScreeningVerdict().isFlagged());
+
+            screening.replaceRule(sanctions, updatedSanctions);
+            Assertions.assertFalse(listed.isSuspicious());
+            Assertions.assertTrue(listedByPassport.isSuspicious());
+            Assertions.assertEquals(OperationStatus.COMPLETED, listedAccount.tryRefill(100, true));
+            Assertions.assertFalse(client.isSuspicious());
+            Assertions.assertEquals(3, evaluations.get());
+        } finally {
+            screening.removeRule(counting);
+            screening.removeRule(sanctions);
+            screening.removeRule(updatedSanctions);
+        }
+        Assertions.assertEquals(1, screening.getRules().size());
+    }
+
+    @Test
+    @SneakyThrows
+    public void tryWatchlistRescreening() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        Random random = new Random(42);
+        long[] added = new long[10_000];
+        for (int i = 0; i < added.length; ++i) {
+            added[i] = random.nextLong();
+            filter.add(added[i]);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < added.length; ++i) {
+            Assertions.assertTrue(filter.mightContain(added[i]));
+            falsePositives += filter.mightContain(random.nextLong()) ? 1 : 0;
+        }
+        Assertions.assertTrue(falsePositives < added.length / 50);
+
+        ScreeningPipeline screening = centralBank.getScreening();
+        Client watched = Client.builder("ivan", "NABLYUDAEMOV").address("Lenina").build();
+        Client later = Client.builder("Petr", "Pozdnov").address("Lenina").passportData("99 99 999999").build();
+        Account watchedAccount = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, watched), watched);
+        Account laterAccount = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, later), later);
+        AtomicInteger evaluations = new AtomicInteger();
+        ScreeningRule counting = checked -> checked == later && evaluations.incrementAndGet() < 0;
+        Path file = Files.createTempFile("watchlist", ".txt");
+        List<String> lines = new ArrayList<>(List.of("# watchlist", "", "Ivan Nablyudaemov"));
+        for (int i = 0; i < 10_000; ++i) {
+            lines.add(String.format("%010d", i));
+        }
+        Files.write(file, lines);
+        WatchlistRule watchlist = WatchlistRule.load(file);
+        Assertions.assertEquals(10_001, watchlist.size());
+        WatchlistRule updated = null;
+        screening.addRule(counting);
+        screening.addRule(watchlist);
+        try {
+            Assertions.assertTrue(watched.isSuspicious());
+            Assertions.assertFalse(later.isSuspicious());
+            Assertions.assertFalse(client.isSuspicious());
+            for (int i = 0; i < 1000; ++i) {
+                Client clean = Client.builder("Clean" + i, "Client").passportData(String.format("%010d", 10_000 + i)).build();
+                Assertions.assertFalse(watchlist.flags(clean));
+            }
+
+            lines.remove("Ivan Nablyudaemov");
+            lines.add("9999999999");
+            Files.write(file, lines);
+            updated = WatchlistRule.load(file);
+            RescreenReport report = centralBank.replaceScreeningRule(watchlist, updated);
+            Assertions.assertTrue(report.rescreened() >= 3);
+            Assertions.assertEquals(1, report.flagged());
+            Assertions.assertEquals(1, report.cleared());
+            Assertions.assertFalse(watched.isSuspicious());
+            Assertions.assertTrue(later.isSuspicious());
+            Assertions.assertEquals(List.of("WatchlistRule"), screening.explain(later));
+            Assertions.assertEquals(1, evaluations.get());
+            Assertions.assertEquals(OperationStatus.COMPLETED, watchedAccount.tryRefill(100, true));
+            Assertions.assertEquals(OperationStatus.UNAUTHORIZED, laterAccount.tryRefill(100, true));
+        } finally {
+            screening.removeRule(counting);
+            screening.removeRule(watchlist);
+            if (updated != null) {
+                screening.removeRule(updated);
+            }
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void tryVelocityLimits() {
+        long second = 1_000_000_000L;
+        VelocityCounter counter = new VelocityCounter(new VelocityLimit(3, 100, Duration.ofSeconds(16)));
+        Assertions.assertTrue(counter.tryAcquire(0, 10));
+        Assertions.assertTrue(counter.tryAcquire(2 * second, 10));
+        Assertions.assertFalse(counter.tryAcquire(3 * second, 90));
+        Assertions.assertTrue(counter.tryAcquire(3 * second, 80));
+        Assertions.assertFalse(counter.tryAcquire(4 * second, 0.01));
+        Assertions.assertEquals(3, counter.getTransfers(4 * second));
+        Assertions.assertEquals(100, counter.getAmount(4 * second), 1e-9);
+        counter.release(3 * second, 80);
+        Assertions.assertTrue(counter.tryAcquire(5 * second, 50));
+        Assertions.assertFalse(counter.tryAcquire(15 * second, 1));
+        Assertions.assertTrue(counter.tryAcquire(16 * second, 1));
+        Assertions.assertEquals(61, counter.getAmount(16 * second), 1e-9);
+        VelocityCounter reused = new VelocityCounter(new VelocityLimit(2, 100, Duration.ofSeconds(16)));
+        Assertions.assertTrue(reused.tryAcquire(0, 100));
+        Assertions.assertTrue(reused.tryAcquire(65_536 * second, 100));
+        Assertions.assertTrue(reused.tryAcquire((65_536 + 17) * second, 100));
+        Assertions.assertEquals(100, reused.getAmount((65_536 + 17) * second), 1e-9);
+
+        Bank limited = centralBank.createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0);
+        Account first = limited.createAccount(new DebitAccount(UUID.randomUUID(), limited, client), client);
+        Account other = limited.createAccount(new DebitAccount(UUID.randomUUID(), limited, client), client);
+        first.refill(1000, false);
+        other.refill(20, false);
+        limited.setVelocityPolicy(new VelocityPolicy(VelocityLimit.transfers(2, Duration.ofMinutes(1)),
+                VelocityLimit.amount(150, Duration.ofMinutes(1))));
+        Assertions.assertEquals(OperationStatus.INSUFFICIENT_FUNDS, centralBank.tryTransfer(other, debitAccount, 60));
+        Assertions.assertEquals(OperationStatus.COMPLETED, centralBank.tryTransfer(first, debitAccount, 50));
+        Assertions.assertEquals(OperationStatus.COMPLETED, centralBank.tryTransfer(first, debitAccount, 50));
+        Assertions.assertEquals(OperationStatus.VELOCITY_LIMIT_EXCEEDED, centralBank.tryTransfer(first, debitAccount, 10));
+        Assertions.assertEquals(OperationStatus.COMPLETED, centralBank.tryTransfer(other, debitAccount, 20));
+        Assertions.assertThrows(VelocityLimitExceededException.class,
+                () -> centralBank.doTransfer(other, debitAccount, 40));
+        Assertions.assertEquals(900, first.getBalance(), 1e-9);
+
+        limited.setVelocityPolicy(new VelocityPolicy(VelocityLimit.transfers(100, Duration.ofMinutes(1)), null));
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger exceeded = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 2000; ++i) {
+                executor.submit(() -> {
+                    OperationStatus status = centralBank.tryTransfer(first, debitAccount, 1);
+                    (status == OperationStatus.COMPLETED ? completed : exceeded).incrementAndGet();
+                });
+            }
+        }
+        Assertions.assertEquals(100, completed.get());
+        Assertions.assertEquals(1900, exceeded.get());
+        Assertions.assertEquals(800, first.getBalance(), 1e-9);
+
+        limited.setVelocityPolicy(new VelocityPolicy(VelocityLimit.transfers(2, Duration.ofMinutes(1)), null));
+        TransferBatchReport report = centralBank.doTransferBatch(List.of(
+                new TransferRequest(first, debitAccount, 10),
+                new TransferRequest(first, debitAccount, 100_000),
+                new TransferRequest(first, debitAccount, 10)));
+        Assertions.assertEquals(List.of(OperationStatus.COMPLETED, OperationStatus.INSUFFICIENT_FUNDS,
+                OperationStatus.VELOCITY_LIMIT_EXCEEDED), report.statuses());
+        Assertions.assertEquals(OperationStatus.COMPLETED, centralBank.tryTransfer(first, debitAccount, 10));
+        Assertions.assertEquals(OperationStatus.VELOCITY_LIMIT_EXCEEDED, centralBank.tryTransfer(first, debitAccount, 10));
+        Assertions.assertEquals(780, first.getBalance(), 1e-9);
+
+        limited.setVelocityPolicy(null);
+        Assertions.assertEquals(OperationStatus.COMPLETED, centralBank.tryTransfer(first, debitAccount, 1));
+    }
+
+    @Test
+    @SneakyThrows
+    public void tryShardedLedger() {
+        Bank sharded = centralBank.createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0);
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            Account account = sharded.createAccount(new DebitAccount(UUID.randomUUID(), sharded, client), client);
+            account.refill(1000, false);
+            accounts.add(account);
+        }
+        Account suspicious = sharded.createAccount(new DebitAccount(UUID.randomUUID(), sharded, susClient), susClient);
+        ShardedLedger ledger = centralBank.startLedger(4);
+        try {
+            Assertions.assertSame(ledger, centralBank.startLedger(2));
+            Assertions.assertEquals(4, ledger.getShardCount());
+            try (WriteAheadLog writeAheadLog = WriteAheadLog.open(Files.createTempDirectory("ledger"), Durability.GROUP)) {
+                Assertions.assertThrows(IllegalStateException.class, () -> centralBank.attachWriteAheadLog(writeAheadLog));
+            }
+
+            AtomicInteger completed = new AtomicInteger();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 4000; ++i) {
+                    int from = i % 8;
+                    int to = (i * 5 + 3) % 8;
+                    boolean async = i % 2 == 0;
+                    executor.submit(() -> {
+                        Account sender = accounts.get(from);
+                        Account accepter = accounts.get(to);
+                        OperationStatus status = async ? centralBank.transferAsync(sender, accepter, 7).join()
+                                : centralBank.tryTransfer(sender, accepter, 7);
+                        if (status == OperationStatus.COMPLETED) {
+                            completed.incrementAndGet();
+                        }
+                    });
+                }
+            }
+            Assertions.assertEquals(8000, accounts.stream().mapToDouble(Account::getBalance).sum(), 1e-6);
+            Assertions.assertTrue(ledger.getCrossShardTransfers() > 0);
+            long senderLegs = 0;
+            long accepterLegs = 0;
+            for (Account account : accounts) {
+                for (int i = 0; i < account.getJournal().size(); ++i) {
+                    TransactionType type = account.getJournal().getType(i);
+                    senderLegs += type == TransactionType.TRANSFERSENDER ? 1 : 0;
+                    accepterLegs += type == TransactionType.TRANSFERACCEPTER ? 1 : 0;
+                }
+            }
+            Assertions.assertEquals(completed.get(), senderLegs);
+            Assertions.assertEquals(completed.get(), accepterLegs);
+
+            Account poor = accounts.get(0);
+            Account rich = accounts.get(1);
+            double balance = poor.getBalance();
+            Assertions.assertEquals(OperationStatus.INSUFFICIENT_FUNDS, centralBank.tryTransfer(poor, rich, balance + 1));
+            Assertions.assertThrows(InsufficientFundsException.class, () -> centralBank.doTransfer(poor, rich, balance + 1));
+            Assertions.assertThrows(InsufficientFundsException.class, () -> poor.withdraw(balance + 1, true));
+            Assertions.assertEquals(OperationStatus.UNAUTHORIZED, centralBank.transferAsync(poor, suspicious, 1).join());
+            Assertions.assertThrows(UnauthorizedTransactionException.class, () -> suspicious.refill(1, true));
+            Assertions.assertEquals(OperationStatus.INVALID_AMOUNT, poor.withdrawAsync(-1).join());
+
+            Assertions.assertEquals(OperationStatus.COMPLETED, poor.refillAsync(50).join());
+            Assertions.assertTrue(poor.withdraw(20, true));
+            Assertions.assertEquals(balance + 30, poor.getBalance(), 1e-9);
+            Transaction refill = poor.getJournal().get(poor.getJournal().size() - 2);
+            Assertions.assertEquals(TransactionType.REFILL, refill.getTransactionType());
+            poor.cancellingTransaction(poor, refill);
+            Assertions.assertEquals(balance - 20, poor.getBalance(), 1e-9);
+        } finally {
+            centralBank.stopLedger();
+        }
+        Assertions.assertNull(centralBank.getLedger());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> ledger.refill(accounts.get(0), 1));
+        Assertions.assertNull(ledger.awaitTransfer(accounts.get(0), accounts.get(1), 1));
+        Assertions.assertEquals(OperationStatus.COMPLETED, accounts.get(0).tryRefill(1, true));
+    }
+
+    @Test
+    @SneakyThrows
+    public void tryHttpFrontEnd() {
+        try (BankingHttpServer server = new BankingHttpServer(centralBank, new InetSocketAddress("127.0.0.1", 0), 128);
+             HttpClient http = HttpClient.newHttpClient()) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.getPort();
+            Function<String, HttpResponse<String>> post = path -> http.sendAsync(HttpRequest.newBuilder(URI.create(base + path))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString()).join();
+            Function<String, HttpResponse<String>> get = path -> http.sendAsync(HttpRequest.newBuilder(URI.create(base + path))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString()).join();
+            Function<HttpResponse<String>, String> id = response -> response.body().substring(7, 43);
+
+            String bankId = id.apply(post.apply("/banks?interest=0.1&creditLimit=1000&creditCommission=0.2"));
+            String clientId = id.apply(post.apply("/clients?name=John&surname=Doe&address=Street&passport=AB1234"));
+            String suspiciousId = id.apply(post.apply("/clients?name=Jane&surname=Roe"));
+            String first = id.apply(post.apply("/accounts?bank=" + bankId + "&client=" + clientId));
+            String second = id.apply(post.apply("/accounts?bank=" + bankId + "&client=" + clientId + "&type=CREDIT"));
+            String suspicious = id.apply(post.apply("/accounts?bank=" + bankId + "&client=" + suspiciousId));
+
+            Assertions.assertEquals(200, post.apply("/accounts/" + first + "/refill?sum=500").statusCode());
+            Assertions.assertEquals(200, post.apply("/accounts/" + first + "/withdraw?sum=100").statusCode());
+            HttpResponse<String> declined = post.apply("/transfers?from=" + first + "&to=" + second + "&sum=1000");
+            Assertions.assertEquals(409, declined.statusCode());
+            Assertions.assertTrue(declined.body().contains("INSUFFICIENT_FUNDS"));
+            Assertions.assertEquals(200, post.apply("/transfers?from=" + first + "&to=" + second + "&sum=150").statusCode());
+            Assertions.assertEquals(403, post.apply("/accounts/" + suspicious + "/refill?sum=1").statusCode());
+            Assertions.assertEquals(400, post.apply("/accounts/" + first + "/refill?sum=-1").statusCode());
+            Assertions.assertEquals(400, post.apply("/accounts/" + first + "/refill?sum=many").statusCode());
+            Assertions.assertEquals("{\"error\":\"Parameter sum is not a number: many\\n\\\"\\\\\\u0001.\"}",
+                    post.apply("/accounts/" + first + "/refill?sum=many%0A%22%5C%01").body());
+            Assertions.assertEquals(400, post.apply("/accounts?bank=" + bankId + "&client=" + clientId + "&type=GOLD").statusCode());
+            Assertions.assertEquals(404, get.apply("/accounts/" + UUID.randomUUID()).statusCode());
+            Assertions.assertEquals(404, get.apply("/loans").statusCode());
+            HttpResponse<String> tooLarge = http.sendAsync(HttpRequest.newBuilder(URI.create(base + "/accounts/" + first + "/refill"))
+                    .POST(HttpRequest.BodyPublishers.ofString("sum=1&padding=" + "x".repeat(10_000))).build(),
+                    HttpResponse.BodyHandlers.ofString()).join();
+            Assertions.assertEquals(413, tooLarge.statusCode());
+            HttpResponse<String> form = http.sendAsync(HttpRequest.newBuilder(URI.create(base + "/accounts/" + first + "/refill"))
+                    .POST(HttpRequest.BodyPublishers.ofString("sum=-1")).build(), HttpResponse.BodyHandlers.ofString()).join();
+            Assertions.assertEquals(400, form.statusCode());
+            Assertions.assertTrue(form.body().contains("INVALID_AMOUNT"));
+            ScreeningRule failing = checked -> {
+                if (checked.getName().equals("Jane")) {
+                    throw new IllegalStateException("Screening service is down.");
+                }
+                return false;
+            };
+            centralBank.getScreening().addRule(failing);
+            try {
+                HttpResponse<String> failed = post.apply("/accounts/" + suspicious + "/refill?sum=1");
+                Assertions.assertEquals(500, failed.statusCode());
+                Assertions.assertEquals("{\"error\":\"Internal error.\"}", failed.body());
+            } finally {
+                centralBank.getScreening().removeRule(failing);
+            }
+
+            Account account = centralBank.findAccount(UUID.fromString(first));
+            Assertions.assertEquals(250, account.getBalance(), 1e-9);
+            Assertions.assertTrue(get.apply("/accounts/" + first).body().contains("\"balance\":250.0"));
+            String history = get.apply("/accounts/" + first + "/history?limit=2").body();
+            Assertions.assertTrue(history.indexOf("TRANSFERSENDER") < history.indexOf("WITHDRAW"));
+            Assertions.assertFalse(history.contains("REFILL"));
+            String projection = get.apply("/accounts/" + first + "/projection?months=12").body();
+            double expected = new DebitAnalyzer(12, 250, 0.1).calculate();
+            Assertions.assertTrue(projection.endsWith("\"projected\":" + expected + "}"));
+
+            Account accepter = centralBank.findAccount(UUID.fromString(second));
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; ++i) {
+                responses.add(http.sendAsync(HttpRequest.newBuilder(URI.create(base + "/transfers?from=" + first + "&to=" + second + "&sum=1"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            long completed = responses.stream().map(CompletableFuture::join).filter(r -> r.statusCode() == 200).count();
+            Assertions.assertEquals(200, completed);
+            Assertions.assertEquals(50, account.getBalance(), 1e-9);
+            Assertions.assertEquals(350, accepter.getBalance(), 1e-9);
+        }
+    }
+    @Test
+    @SneakyThrows
+    public void tryAccrualWithInvalidBalance() {
+        for (StorageMode mode : StorageMode.values()) {
+            Bank accruing = centralBank.createBank(0.1, List.of(new ComplexInterestRate(0, 0.05)), 1000, 0.2, 0, mode);
+            Account broken = accruing.createAccount(new DebitAccount(UUID.randomUUID(), accruing, client), client);
+            Account healthy = accruing.createAccount(new DebitAccount(UUID.randomUUID(), accruing, client), client);
+            broken.restoreState(Double.NaN, 0);
+            healthy.refill(100, false);
+            PartitionReport report = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> accruing.interestAccrual(0, 2));
+            Assertions.assertEquals(1, report.processed());
+            Assertions.assertEquals(1, report.failures().size());
+            Assertions.assertSame(broken, report.failures().get(0).account());
+            Assertions.assertInstanceOf(InvalidBalanceException.class, report.failures().get(0).cause());
+            Assertions.assertEquals(110, healthy.getBalance(), 1e-9);
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> accruing.interestAccrual());
+            Assertions.assertEquals(121, healthy.getBalance(), 1e-9);
+            Assertions.assertTrue(Double.isNaN(broken.getBalance()));
+        }
+    }
+    @Test
+    @SneakyThrows
+    public void tryInvalidAmounts() {
+        Account sender = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        Account accepter = bank.createAccount(new DebitAccount(UUID.randomUUID(), bank, client), client);
+        sender.refill(100, true);
+        for (int mode = 0; mode < 2; ++mode) {
+            if (mode == 1) {
+                centralBank.startLedger(2);
+            }
+            try {
+                for (double sum : new double[]{-100, 0, Double.NaN, Double.POSITIVE_INFINITY}) {
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> sender.refill(sum, true));
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> sender.withdraw(sum, true));
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> sender.refill(sum, false));
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> centralBank.doTransfer(sender, accepter, sum));
+                    Assertions.assertThrows(IllegalArgumentException.class,
+                            () -> centralBank.getTransferEngine().transfer(sender, accepter, sum));
+                    Assertions.assertEquals(OperationStatus.INVALID_AMOUNT, sender.tryRefill(sum, true));
+                    Assertions.assertEquals(OperationStatus.INVALID_AMOUNT, centralBank.tryTransfer(sender, accepter, sum));
+                }
+                Assertions.assertEquals(100, sender.getBalance(), 1e-9);
+                Assertions.assertEquals(0, accepter.getBalance(), 1e-9);
+            } finally {
+                centralBank.stopLedger();
+            }
+        }
+    }
+}